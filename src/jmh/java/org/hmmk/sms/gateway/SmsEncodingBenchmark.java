@@ -0,0 +1,65 @@
+package org.hmmk.sms.gateway;
+
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Detection and segment counting run once per message on the send path and once per row of a CSV upload.
+ * Run with -prof gc to confirm they allocate nothing.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SmsEncodingBenchmark {
+
+    @Param({"otp", "latin", "long-gsm", "amharic"})
+    String kind;
+
+    String text;
+    SmsJob.MessageType type;
+
+    @Setup
+    public void setup() {
+        text = switch (kind) {
+            case "otp" -> "Your verification code is 482913. It expires in 5 minutes.";
+            case "latin" -> "Réservation confirmée: 2 nuits à l'hôtel, total €240. Merci!";
+            case "long-gsm" -> "Dear customer, {promo} ends soon. ".repeat(12);
+            case "amharic" -> "የማረጋገጫ ኮድዎ 482913 ነው። በ5 ደቂቃ ውስጥ ያበቃል።";
+            default -> throw new IllegalArgumentException(kind);
+        };
+        type = SmsEncoding.detect(text);
+    }
+
+    @Benchmark
+    public SmsJob.MessageType detect() {
+        return SmsEncoding.detect(text);
+    }
+
+    @Benchmark
+    public int segments() {
+        return SmsEncoding.segments(text, type);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return type == SmsJob.MessageType.English
+                ? SmsEncoding.toGsm7(text)
+                : text.getBytes(StandardCharsets.UTF_16BE);
+    }
+}
@@ -0,0 +1,30 @@
+package org.hmmk.sms.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * SMS traffic of one second on one node, as pushed by the admin dashboard stream.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AdminDashboardTick {
+    public Instant second;
+    public long queued;
+    public long sent;
+    public long failed;
+    public long delivered;
+    public long undelivered;
+    public long creditsBurned;
+    public Map<String, Long> tenantTps; // messages sent in the second per tenant id, tenants that sent any
+    public Map<String, Long> queueDepth; // recipients waiting per dispatch lane (priority)
+}
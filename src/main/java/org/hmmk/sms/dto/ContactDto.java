@@ -3,6 +3,8 @@ package org.hmmk.sms.dto;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Pattern;
 
+import java.util.Map;
+
 public class ContactDto {
 
     public String id;
@@ -15,5 +17,8 @@ public class ContactDto {
 
     public String email;
 
+    /** Values for message placeholders beyond name and phone, e.g. {"city": "Adama"}. */
+    public Map<String, String> customFields;
+
 }
 
@@ -1,5 +1,6 @@
 package org.hmmk.sms.dto;
 
+import java.time.Instant;
 import java.util.List;
 
 import lombok.AllArgsConstructor;
@@ -15,6 +16,8 @@ import lombok.Setter;
 @Builder
 public class DashboardOverviewResponse {
     public String granularity;
+    public Instant from;
+    public Instant to;
     public List<DashboardTimeSeriesPoint> points;
 }
 
@@ -1,6 +1,7 @@
 package org.hmmk.sms.dto;
 
 import java.time.Instant;
+import java.util.Map;
 
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -18,5 +19,6 @@ public class DashboardTimeSeriesPoint {
     public Instant periodStart;
     public Instant periodEnd;
     public long totalSms;
+    public Map<String, Long> senders; // SENT per sender id, only when a breakdown was asked for
 }
 
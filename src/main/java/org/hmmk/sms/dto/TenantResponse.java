@@ -14,6 +14,7 @@ public class TenantResponse {
     private Tenant.TenantStatus status;
     private long smsCredit;
     private int smsApprovalThreshold;
+    private Integer smsRetentionMonths;
     private boolean isCompany;
     private String tinNumber;
     private String description;
@@ -29,6 +30,7 @@ public class TenantResponse {
         response.setStatus(tenant.status);
         response.setSmsCredit(tenant.smsCredit);
         response.setSmsApprovalThreshold(tenant.smsApprovalThreshold);
+        response.setSmsRetentionMonths(tenant.smsRetentionMonths);
         response.setCompany(tenant.isCompany);
         response.setTinNumber(tenant.tinNumber);
         response.setDescription(tenant.description);
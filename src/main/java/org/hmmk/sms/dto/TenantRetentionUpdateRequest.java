@@ -0,0 +1,10 @@
+package org.hmmk.sms.dto;
+
+import jakarta.validation.constraints.Min;
+import lombok.Data;
+
+@Data
+public class TenantRetentionUpdateRequest {
+    @Min(value = 1, message = "Retention must be at least one month")
+    private Integer retentionMonths;
+}
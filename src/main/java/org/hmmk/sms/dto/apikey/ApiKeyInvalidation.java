@@ -0,0 +1,19 @@
+package org.hmmk.sms.dto.apikey;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Broadcast to every node when cached API keys must be dropped: either one key, or all keys of a sender.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ApiKeyInvalidation {
+
+    private String apiKeyId;
+    private String senderId;
+}
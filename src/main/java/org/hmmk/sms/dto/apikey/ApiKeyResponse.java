@@ -12,7 +12,8 @@ public class ApiKeyResponse {
     private String id;
     private String senderId;
     private String senderName;
-    private String apiKey;
+    private String apiKey; // only returned when the key is created
+    private String keyPrefix;
     private String name;
     private Instant createdAt;
 
@@ -22,6 +23,7 @@ public class ApiKeyResponse {
                 .senderId(entity.sender.id)
                 .senderName(entity.sender.name)
                 .apiKey(entity.apiKey)
+                .keyPrefix(entity.keyPrefix)
                 .name(entity.name)
                 .createdAt(entity.createdAt)
                 .build();
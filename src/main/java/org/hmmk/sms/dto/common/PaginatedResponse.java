@@ -7,6 +7,10 @@ public class PaginatedResponse<T> {
     public long total;
     public int page;
     public int size;
+    // Pass back as ?cursor= for the page after this one; null on the last page
+    public String nextCursor;
+    // Whether total is the database's estimate rather than an exact count
+    public boolean approximateTotal;
 
     public PaginatedResponse() {}
 
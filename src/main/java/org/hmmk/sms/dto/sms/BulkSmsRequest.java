@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hmmk.sms.entity.sms.SmsJob;
 
 import java.time.Instant;
 
@@ -28,4 +29,9 @@ public class BulkSmsRequest {
      * Optional scheduled time. If null, SMS will be sent immediately.
      */
     private Instant scheduledAt;
+
+    /**
+     * Optional NORMAL or LOW. If null, derived from the job type.
+     */
+    private SmsJob.Priority priority;
 }
@@ -0,0 +1,39 @@
+package org.hmmk.sms.dto.sms;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Status change of one message, POSTed to the webhook URL given when the message was sent.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DeliveryReport {
+
+    /** Id of the message, as returned in {@code recipientId} by the send endpoints. */
+    private UUID recipientId;
+    private UUID jobId;
+    private String to;
+    /** SENT, FAILED, DELIVERED or UNDELIVERED. */
+    private String status;
+    private Instant occurredAt;
+
+    /**
+     * Several reports for the same webhook URL in one POST, sent when {@code sms.webhooks.max-batch-size} is above 1.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Batch {
+        private List<DeliveryReport> reports;
+    }
+}
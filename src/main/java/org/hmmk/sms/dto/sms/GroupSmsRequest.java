@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hmmk.sms.entity.sms.SmsJob;
 
 import java.time.Instant;
 
@@ -30,4 +31,9 @@ public class GroupSmsRequest {
      * Optional scheduled time. If null, SMS will be sent immediately.
      */
     private Instant scheduledAt;
+
+    /**
+     * Optional NORMAL or LOW. If null, derived from the job type.
+     */
+    private SmsJob.Priority priority;
 }
@@ -0,0 +1,36 @@
+package org.hmmk.sms.dto.sms;
+
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Several messages sent with one API call. Items are validated one by one, so a bad item
+ * does not fail the rest of the batch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PublicSmsBatchRequest {
+
+    @NotEmpty(message = "At least one message is required")
+    private List<Item> messages;
+
+    private Instant scheduledAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private String to;
+        private String message;
+        private String webhookUrl;
+    }
+}
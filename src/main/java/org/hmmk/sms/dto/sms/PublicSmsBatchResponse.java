@@ -0,0 +1,43 @@
+package org.hmmk.sms.dto.sms;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Result of a batch send: the job holding the accepted messages and one result per request item,
+ * in request order.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PublicSmsBatchResponse {
+
+    private UUID jobId;
+    private int accepted;
+    private int rejected;
+    private long totalSmsCount;
+    private List<ItemResult> results;
+
+    public enum ItemStatus {
+        ACCEPTED, REJECTED
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class ItemResult {
+        private int index;
+        private String to;
+        private ItemStatus status;
+        private UUID recipientId;
+        private Integer smsCount;
+        private String error;
+    }
+}
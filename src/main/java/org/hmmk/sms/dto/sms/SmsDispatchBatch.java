@@ -0,0 +1,48 @@
+package org.hmmk.sms.dto.sms;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hmmk.sms.entity.sms.SmsJob;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A batch of recipients of one job, published to the dispatch exchange.
+ * Delivery workers consume these and report back with an {@link SmsOutcomeBatch}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsDispatchBatch {
+
+    private UUID jobId;
+    private String tenantId;
+    private String senderId;
+    /** The sender name used as the originating address. */
+    private String sourceAddress;
+    private SmsJob.MessageType messageType;
+    /** The job's message, sent to every recipient that has none of its own. */
+    private String message;
+    /** Delivery attempt this batch belongs to, starting at 1; bumped when a worker re-publishes transient failures. */
+    private int attempt;
+    /** The job's priority, which picks the lane; re-published retries stay on it. Null means NORMAL. */
+    private SmsJob.Priority priority;
+    private List<Item> recipients;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Item {
+        private UUID recipientId;
+        private String phoneNumber;
+        /** This recipient's own or personalized message; null for the batch's message. */
+        private String message;
+        /** Encoding of this recipient's message when it differs from the job's, as in API batches. */
+        private SmsJob.MessageType messageType;
+    }
+}
@@ -0,0 +1,49 @@
+package org.hmmk.sms.dto.sms;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsJobIngestion;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Response DTO for the recipient ingestion progress of a bulk or group job.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsJobProgressResponse {
+
+    private UUID jobId;
+    private SmsJob.JobStatus status;
+    private long rowsParsed;
+    private long rowsAccepted;
+    /** Rows that are not a valid phone number. */
+    private long rowsRejected;
+    /** Valid numbers that already appeared earlier in the file. */
+    private long rowsDuplicate;
+    private long rowsPersisted;
+    private String error;
+    private Instant startedAt;
+    private Instant finishedAt;
+
+    public static SmsJobProgressResponse from(SmsJob job, SmsJobIngestion progress) {
+        return SmsJobProgressResponse.builder()
+                .jobId(job.id)
+                .status(job.status)
+                .rowsParsed(progress.rowsParsed)
+                .rowsAccepted(progress.rowsAccepted)
+                .rowsRejected(progress.rowsRejected)
+                .rowsDuplicate(progress.rowsDuplicate)
+                .rowsPersisted(progress.rowsPersisted)
+                .error(progress.error)
+                .startedAt(progress.createdAt)
+                .finishedAt(progress.finishedAt)
+                .build();
+    }
+}
@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
 
 import java.time.Instant;
 import java.util.UUID;
@@ -20,6 +21,7 @@ public class SmsJobResponse {
 
     private UUID id;
     private SmsJob.JobType jobType;
+    private SmsJob.Priority priority;
     private SmsJob.JobStatus status;
     private SmsJob.ApprovalStatus approvalStatus;
     private Long totalRecipients;
@@ -27,6 +29,8 @@ public class SmsJobResponse {
     private Instant scheduledAt;
     private Instant createdAt;
     private String message;
+    /** The message's own id, for single API messages that are attached to a shared rollup job. */
+    private UUID recipientId;
 
     /**
      * Creates a response from an SmsJob entity.
@@ -35,6 +39,7 @@ public class SmsJobResponse {
         return SmsJobResponse.builder()
                 .id(job.id)
                 .jobType(job.jobType)
+                .priority(job.priority)
                 .status(job.status)
                 .approvalStatus(job.approvalStatus)
                 .totalRecipients(job.totalRecipients)
@@ -44,4 +49,24 @@ public class SmsJobResponse {
                 .message(message)
                 .build();
     }
+
+    /**
+     * Creates a response for a single API message sent through its sender's TRANSACTIONAL rollup job.
+     * The totals describe this message, not the whole rollup.
+     */
+    public static SmsJobResponse fromTransactional(SmsRecipient recipient, String message) {
+        return SmsJobResponse.builder()
+                .id(recipient.job.id)
+                .recipientId(recipient.id)
+                .jobType(SmsJob.JobType.TRANSACTIONAL)
+                .priority(SmsJob.Priority.HIGH)
+                .status(SmsJob.JobStatus.SENDING)
+                .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                .totalRecipients(1L)
+                .totalSmsCount(recipient.smsCount != null ? recipient.smsCount.longValue() : null)
+                .scheduledAt(recipient.createdAt)
+                .createdAt(recipient.createdAt)
+                .message(message)
+                .build();
+    }
 }
@@ -0,0 +1,33 @@
+package org.hmmk.sms.dto.sms;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Per-recipient send outcomes reported by delivery workers.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsOutcomeBatch {
+
+    private List<Outcome> outcomes;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @Builder
+    public static class Outcome {
+        private UUID recipientId;
+        private SmsRecipient.RecipientStatus status;
+        /** Carrier message id of an accepted submission, used to match its delivery receipt. */
+        private String messageId;
+    }
+}
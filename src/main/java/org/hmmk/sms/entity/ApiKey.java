@@ -6,9 +6,13 @@ import lombok.*;
 import org.hmmk.sms.entity.Sender;
 import org.hmmk.sms.entity.TenantScopedEntity;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.Instant;
 import java.util.Base64;
+import java.util.HexFormat;
 
 @Entity
 @Table(name = "api_keys")
@@ -24,6 +28,16 @@ import java.util.Base64;
 })
 public class ApiKey extends TenantScopedEntity {
 
+    private static final int PREFIX_LENGTH = 8;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
     @Id
     @GeneratedValue(strategy = GenerationType.UUID)
     public String id;
@@ -32,15 +46,27 @@ public class ApiKey extends TenantScopedEntity {
     @JoinColumn(name = "sender_id", nullable = false)
     public Sender sender;
 
-    @Column(name = "api_key", nullable = false, unique = true)
+    // Plaintext key, only known right after creation; the database stores its digest
+    @Transient
     public String apiKey;
 
+    @Column(name = "key_digest", length = 64, unique = true)
+    public String keyDigest;
+
+    // First characters of the key, so users can tell their keys apart
+    @Column(name = "key_prefix", length = 16)
+    public String keyPrefix;
+
     public String name;
 
     @PrePersist
     public void prePersist() {
-        if (this.apiKey == null) {
-            this.apiKey = generateApiKey();
+        if (this.keyDigest == null) {
+            if (this.apiKey == null) {
+                this.apiKey = generateApiKey();
+            }
+            this.keyDigest = digest(this.apiKey);
+            this.keyPrefix = prefix(this.apiKey);
         }
     }
 
@@ -50,4 +76,18 @@ public class ApiKey extends TenantScopedEntity {
         random.nextBytes(bytes);
         return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
     }
+
+    /**
+     * Hex SHA-256 of a key. Keys are 256 random bits, so an unsalted fast hash is enough to make a leaked
+     * digest useless, and lookups by digest can use a plain unique index.
+     */
+    public static String digest(String apiKey) {
+        MessageDigest sha256 = SHA_256.get();
+        sha256.reset();
+        return HexFormat.of().formatHex(sha256.digest(apiKey.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public static String prefix(String apiKey) {
+        return apiKey.substring(0, Math.min(PREFIX_LENGTH, apiKey.length()));
+    }
 }
@@ -0,0 +1,51 @@
+package org.hmmk.sms.entity;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Overrides the default dispatch throughput of one tenant or one sender.
+ * A null or non-positive messagesPerSecond lifts the limit; weight only applies to tenants and sets their
+ * share of the dispatcher when several tenants have work queued.
+ */
+@Entity
+@Table(name = "send_rate_limits", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_send_rate_limits_scope", columnNames = {"scope", "scopeId"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SendRateLimit extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public Scope scope;
+
+    @Column(nullable = false)
+    public String scopeId; // tenant id or sender id, depending on scope
+
+    public Double messagesPerSecond;
+
+    public Integer weight;
+
+    public Instant updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        this.updatedAt = Instant.now();
+    }
+
+    public enum Scope {
+        TENANT, SENDER
+    }
+}
@@ -48,6 +48,9 @@ public class Tenant extends PanacheEntityBase {
     @Column(name = "sms_approval_threshold", nullable = false)
     public int smsApprovalThreshold = 100; // Number of recipients above which an SMS job requires admin approval
 
+    @Column(name = "sms_retention_months")
+    public Integer smsRetentionMonths; // Months SMS recipients are kept; null for sms.retention.default-months
+
     @Column(name = "config_json", columnDefinition = "TEXT")
     public String configJson;
 
@@ -5,6 +5,7 @@ import lombok.*;
 import org.hmmk.sms.entity.TenantScopedEntity;
 
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 @Entity
@@ -24,6 +25,9 @@ public class Contact extends TenantScopedEntity {
     public String phone;
     public String name;
     public String email;
+    @Convert(converter = ContactFieldsConverter.class)
+    @Column(columnDefinition = "TEXT")
+    public Map<String, String> customFields; // extra values for message placeholders, keyed by field name
 
     @OneToMany(fetch = FetchType.EAGER, mappedBy = "contact", cascade = CascadeType.ALL, orphanRemoval = true)
     @Builder.Default
@@ -5,7 +5,9 @@ import lombok.*;
 import org.hmmk.sms.entity.TenantScopedEntity;
 
 @Entity
-@Table(name = "contact_group_members")
+@Table(name = "contact_group_members", indexes = {
+        @Index(name = "idx_contact_group_members_group", columnList = "group_id, contact_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,32 @@
+package org.hmmk.sms.entity.credit;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * A tenant's credit balance folded up to and including ledger entry {@code lastEntryId}.
+ * The current balance is this balance plus the sum of the tenant's later ledger entries.
+ */
+@Entity
+@Table(name = "credit_balance_snapshot")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CreditBalanceSnapshot extends PanacheEntityBase {
+
+    @Id
+    public String tenantId;
+
+    @Column(nullable = false)
+    public long balance;
+
+    @Column(nullable = false)
+    public long lastEntryId;
+
+    public Instant updatedAt;
+}
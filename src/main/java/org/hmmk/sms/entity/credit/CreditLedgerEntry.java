@@ -0,0 +1,52 @@
+package org.hmmk.sms.entity.credit;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.Instant;
+
+/**
+ * One change to a tenant's SMS credit balance. Rows are only ever inserted, never updated or deleted.
+ * Debits have a negative amount, credits a positive one.
+ */
+@Entity
+@Table(name = "credit_ledger", indexes = {
+        @Index(name = "idx_credit_ledger_tenant_id", columnList = "tenantId, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class CreditLedgerEntry extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false)
+    public String tenantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    public EntryType entryType;
+
+    @Column(nullable = false)
+    public long amount;
+
+    public String reference; // job, payment transaction or admin action the entry belongs to
+
+    @CreationTimestamp
+    @Column(nullable = false, updatable = false)
+    public Instant createdAt;
+
+    public enum EntryType {
+        PURCHASE,
+        RESERVE,
+        REFUND,
+        ADMIN_ADJUST,
+        DELIVERY_FAIL_REFUND
+    }
+}
@@ -0,0 +1,58 @@
+package org.hmmk.sms.entity.sms;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+
+/**
+ * A message text stored once and shared by every recipient that sends it, found by the SHA-256 digest of the text.
+ * Recipients point to it with {@link SmsRecipient#messageBodyId}; the text of a row never changes. lastUsedAt is
+ * when a node last handed out the id, and bodies without recipients are purged once that is long enough ago.
+ */
+@Entity
+@Table(name = "message_bodies", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_message_bodies_digest", columnNames = "digest")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessageBody extends PanacheEntityBase {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false, length = 64)
+    public String digest;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    public String body;
+
+    @Column(nullable = false)
+    public Instant createdAt;
+
+    @Column(nullable = false)
+    public Instant lastUsedAt;
+
+    public static String digest(String body) {
+        MessageDigest sha256 = SHA_256.get();
+        sha256.reset();
+        return HexFormat.of().formatHex(sha256.digest(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,49 @@
+package org.hmmk.sms.entity.sms;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * How many of a tenant's recipients from jobs of one source and sender reached a final status on one UTC day.
+ * Rows are only ever incremented, by {@link org.hmmk.sms.service.SmsStatsService}, and serve the dashboard without
+ * scanning recipients.
+ */
+@Entity
+@Table(name = "sms_daily_stats", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_sms_daily_stats", columnNames = {"tenantId", "statDate", "sourceType", "senderId",
+                "status"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsDailyStat extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false)
+    public String tenantId;
+
+    @Column(nullable = false)
+    public LocalDate statDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    public SmsJob.SourceType sourceType;
+
+    @Column(nullable = false)
+    public String senderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    public SmsRecipient.RecipientStatus status;
+
+    @Column(nullable = false)
+    public long messageCount;
+}
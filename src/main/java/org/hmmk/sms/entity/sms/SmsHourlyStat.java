@@ -0,0 +1,43 @@
+package org.hmmk.sms.entity.sms;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Like {@link SmsDailyStat} but per hour and without the job source, for hourly traffic curves.
+ * Only the last {@code sms.stats.hourly.retention} is kept.
+ */
+@Entity
+@Table(name = "sms_hourly_stats", uniqueConstraints = {
+        @UniqueConstraint(name = "uq_sms_hourly_stats", columnNames = {"tenantId", "statHour", "senderId", "status"})
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsHourlyStat extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false)
+    public String tenantId;
+
+    @Column(nullable = false)
+    public Instant statHour;
+
+    @Column(nullable = false)
+    public String senderId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    public SmsRecipient.RecipientStatus status;
+
+    @Column(nullable = false)
+    public long messageCount;
+}
@@ -8,7 +8,9 @@ import java.time.Instant;
 import java.util.UUID;
 
 @Entity
-@Table(name = "sms_jobs")
+@Table(name = "sms_jobs", indexes = {
+        @Index(name = "idx_sms_jobs_status_scheduled", columnList = "status, scheduledAt")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -24,7 +26,7 @@ public class SmsJob extends TenantScopedEntity {
     public String senderId;
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
-    public JobType jobType; // SINGLE, GROUP, BULK
+    public JobType jobType; // SINGLE, GROUP, BULK, TRANSACTIONAL
     @Enumerated(EnumType.STRING)
     @Column(nullable = false)
     public SourceType sourceType; // MANUAL, CSV_UPLOAD
@@ -49,13 +51,17 @@ public class SmsJob extends TenantScopedEntity {
 
     @Column(name = "group_id")
     public String groupId; // ContactGroup ID for JobType.GROUP
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    public Priority priority; // dispatch lane, derived from jobType and sourceType unless set
 
     public enum ApprovalStatus {
         PENDING, APPROVED, REJECTED
     }
 
     public enum JobType {
-        SINGLE, GROUP, BULK
+        SINGLE, GROUP, BULK,
+        TRANSACTIONAL // rollup of the immediate single API messages of one sender and day
     }
 
     public enum SourceType {
@@ -63,17 +69,34 @@ public class SmsJob extends TenantScopedEntity {
     }
 
     public enum JobStatus {
-        PENDING_APPROVAL, SCHEDULED, SENDING, COMPLETED, FAILED, CANCELED
+        INGESTING, PENDING_APPROVAL, SCHEDULED, SENDING, COMPLETED, FAILED, CANCELED
     }
 
     public enum MessageType {
         English, UNICODE
     } // can be detected automatically based on content
 
+    /**
+     * Each priority is published to its own queue with its own consumers, so a long LOW campaign never delays
+     * HIGH messages. HIGH is reserved for single messages, which are also exempt from throughput shaping.
+     */
+    public enum Priority {
+        HIGH, NORMAL, LOW;
+
+        public static Priority derive(JobType jobType, SourceType sourceType) {
+            if (jobType == JobType.SINGLE || jobType == JobType.TRANSACTIONAL) {
+                return HIGH;
+            }
+            return jobType == JobType.BULK && sourceType == SourceType.CSV_UPLOAD ? LOW : NORMAL;
+        }
+    }
+
     @PrePersist
     public void prePersist() {
         if (status == null)
             status = JobStatus.PENDING_APPROVAL;
+        if (priority == null)
+            priority = Priority.derive(jobType, sourceType);
     }
 
 }
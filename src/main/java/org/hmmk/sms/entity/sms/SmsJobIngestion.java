@@ -0,0 +1,37 @@
+package org.hmmk.sms.entity.sms;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hmmk.sms.entity.TenantScopedEntity;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Progress of the background recipient expansion of a bulk or group job.
+ * One row per job, written while the job is INGESTING.
+ */
+@Entity
+@Table(name = "sms_job_ingestion")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsJobIngestion extends TenantScopedEntity {
+
+    @Id
+    @Column(name = "job_id", columnDefinition = "uuid")
+    public UUID jobId;
+    public long rowsParsed;
+    public long rowsAccepted;
+    public long rowsRejected;
+    public long rowsDuplicate;
+    public long rowsPersisted;
+    @Column(columnDefinition = "TEXT")
+    public String error;
+    public Instant finishedAt;
+    // Node running the ingestion, and when it last showed it is still at it
+    public String ownerNode;
+    public Instant heartbeatAt;
+}
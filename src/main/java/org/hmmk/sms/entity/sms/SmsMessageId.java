@@ -0,0 +1,34 @@
+package org.hmmk.sms.entity.sms;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Maps the carrier's message id of an accepted submission to its recipient, so delivery receipts can be
+ * matched without an index on the much wider recipients table. Rows are purged once receipts stop arriving.
+ */
+@Entity
+@Table(name = "sms_message_ids", indexes = {
+        @Index(name = "idx_sms_message_ids_created", columnList = "createdAt")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SmsMessageId extends PanacheEntityBase {
+
+    @Id
+    @Column(length = 64)
+    public String messageId;
+
+    @Column(nullable = false)
+    public UUID recipientId;
+
+    @Column(nullable = false)
+    public Instant createdAt;
+}
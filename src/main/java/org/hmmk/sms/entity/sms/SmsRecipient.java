@@ -14,7 +14,8 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Table(name = "sms_recipients", indexes = {
-        @Index(name = "idx_tenant_job", columnList = "tenantId, job_id")
+        @Index(name = "idx_tenant_job", columnList = "tenantId, job_id"),
+        @Index(name = "idx_sms_recipients_job_status", columnList = "job_id, status, id")
 })
 public class SmsRecipient extends TenantScopedEntity {
     @Id
@@ -28,7 +29,8 @@ public class SmsRecipient extends TenantScopedEntity {
     public SmsJob job;
     @Column(nullable = false)
     public String phoneNumber;
-    public String message;
+    public String message; // short texts only; null for the job's template or a shared body
+    public Long messageBodyId; // MessageBody holding the text when it is not inline
 
     @Column(name = "webhook_url", columnDefinition = "TEXT")
     public String webhookUrl;
@@ -39,8 +41,18 @@ public class SmsRecipient extends TenantScopedEntity {
     @Column(nullable = false)
     public RecipientStatus status;
     public Instant sentAt;
+    public Instant publishedAt; // handed to the broker by dispatch; set while the recipient is still PENDING
+    public Integer smsCount; // segments, recorded for messages of TRANSACTIONAL rollup jobs
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    public DeliveryStatus deliveryStatus; // set from the carrier's delivery receipt, SENT recipients only
+    public Instant deliveredAt;
 
     public enum RecipientStatus {
         PENDING, SENT, FAILED, CANCELED
     }
+
+    public enum DeliveryStatus {
+        DELIVERED, UNDELIVERED
+    }
 }
@@ -0,0 +1,56 @@
+package org.hmmk.sms.entity.webhook;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A delivery report that could not be delivered to its webhook URL within the retry budget.
+ */
+@Entity
+@Table(name = "webhook_dead_letters", indexes = {
+        @Index(name = "idx_webhook_dead_letters_tenant", columnList = "tenantId, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WebhookDeadLetter extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false)
+    public String tenantId;
+
+    @Column(nullable = false)
+    public UUID recipientId;
+
+    @Column(nullable = false)
+    public UUID jobId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    public String url;
+
+    @Column(nullable = false)
+    public String phoneNumber;
+
+    @Column(nullable = false, length = 32)
+    public String status; // SENT or FAILED from the SMSC, DELIVERED or UNDELIVERED from a delivery receipt
+
+    @Column(nullable = false)
+    public Instant occurredAt;
+
+    public int attempts;
+
+    @Column(columnDefinition = "TEXT")
+    public String lastError;
+
+    @Column(nullable = false)
+    public Instant failedAt;
+}
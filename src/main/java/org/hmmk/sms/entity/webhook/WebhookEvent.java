@@ -0,0 +1,60 @@
+package org.hmmk.sms.entity.webhook;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A delivery report waiting to be POSTed to a recipient's webhook URL.
+ * Rows are deleted once delivered, or moved to {@link WebhookDeadLetter} when retries run out.
+ */
+@Entity
+@Table(name = "webhook_events", indexes = {
+        @Index(name = "idx_webhook_events_next_attempt", columnList = "nextAttemptAt, id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class WebhookEvent extends PanacheEntityBase {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    public Long id;
+
+    @Column(nullable = false)
+    public String tenantId;
+
+    @Column(nullable = false)
+    public UUID recipientId;
+
+    @Column(nullable = false)
+    public UUID jobId;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    public String url;
+
+    @Column(nullable = false)
+    public String phoneNumber;
+
+    @Column(nullable = false, length = 32)
+    public String status; // SENT or FAILED from the SMSC, DELIVERED or UNDELIVERED from a delivery receipt
+
+    @Column(nullable = false)
+    public Instant occurredAt;
+
+    public int attempts;
+
+    @Column(nullable = false)
+    public Instant nextAttemptAt; // also pushed ahead while a node is delivering the event
+
+    @Column(columnDefinition = "TEXT")
+    public String lastError;
+
+    @Column(nullable = false, updatable = false)
+    public Instant createdAt;
+}
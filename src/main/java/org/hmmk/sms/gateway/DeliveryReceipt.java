@@ -0,0 +1,12 @@
+package org.hmmk.sms.gateway;
+
+/**
+ * A final delivery receipt reported by the carrier for an earlier submission.
+ * Gateways fire these as CDI events.
+ *
+ * @param messageId the carrier message id returned in {@link SubmitResult#messageId()}
+ * @param delivered whether the message reached the handset
+ * @param state     the carrier's final state as reported, e.g. DELIVRD, UNDELIV or EXPIRED
+ */
+public record DeliveryReceipt(String messageId, boolean delivered, String state) {
+}
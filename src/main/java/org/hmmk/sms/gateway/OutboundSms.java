@@ -0,0 +1,16 @@
+package org.hmmk.sms.gateway;
+
+import org.hmmk.sms.entity.sms.SmsJob;
+
+import java.util.UUID;
+
+/**
+ * A single message to submit, built from an SmsRecipient row.
+ *
+ * @param recipientId   the SmsRecipient id, used to correlate the outcome
+ * @param senderId      the Sender id; gateways keep their carrier binds per sender
+ * @param sourceAddress the sender name shown on the handset
+ */
+public record OutboundSms(UUID recipientId, String senderId, String sourceAddress, String phoneNumber,
+        String message, SmsJob.MessageType messageType) {
+}
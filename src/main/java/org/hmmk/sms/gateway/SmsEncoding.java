@@ -0,0 +1,156 @@
+package org.hmmk.sms.gateway;
+
+import org.hmmk.sms.entity.sms.SmsJob;
+
+/**
+ * Character set detection, segment counting and encoding for SMS text.
+ *
+ * Text that fits the GSM 03.38 default alphabet, including its extension table, is sent as GSM 7-bit; anything
+ * else, such as Ethiopic script, as UCS-2. Counting follows the carrier's rules: extension characters take two
+ * septets, characters outside the BMP take two UTF-16 units, and a multipart message loses room for the
+ * concatenation UDH in every part, without splitting an escape sequence or a surrogate pair between parts.
+ * Detection and counting read the text in place through lookup tables and allocate nothing.
+ */
+public final class SmsEncoding {
+
+    public static final int GSM7_SINGLE = 160;
+    public static final int GSM7_PART = 153;
+    public static final int UCS2_SINGLE = 70;
+    public static final int UCS2_PART = 67;
+
+    private static final byte ESCAPE = 0x1B;
+    private static final byte REPLACEMENT = 0x3F; // '?'
+
+    /** The default alphabet by septet; 0x1B is the escape to the extension table, not a character. */
+    private static final String BASIC =
+            "@£$¥èéùìòÇ\nØø\rÅåΔ_ΦΓΛΩΠΨΣΘΞ\u001BÆæßÉ !\"#¤%&'()*+,-./0123456789:;<=>?" +
+            "¡ABCDEFGHIJKLMNOPQRSTUVWXYZÄÖÑÜ§¿abcdefghijklmnopqrstuvwxyzäöñüà";
+
+    /** Extension table characters and their septets, sent after an escape. */
+    private static final String EXTENDED = "\f^{}\\[~]|€";
+    private static final byte[] EXTENDED_SEPTETS = {0x0A, 0x14, 0x28, 0x29, 0x2F, 0x3C, 0x3D, 0x3E, 0x40, 0x65};
+
+    /** Every GSM character but the euro sign is below this, so the tables stay small. */
+    private static final int TABLE_SIZE = 0x0400;
+    private static final char EURO = '€';
+    private static final byte EURO_SEPTET = 0x65;
+
+    /** Septets a character takes: 1 in the default alphabet, 2 in the extension table, 0 if not GSM at all. */
+    private static final byte[] COST = new byte[TABLE_SIZE];
+    /** The character's septet; for extension characters the one that follows the escape. */
+    private static final byte[] SEPTET = new byte[TABLE_SIZE];
+
+    static {
+        for (int septet = 0; septet < BASIC.length(); septet++) {
+            if (septet != ESCAPE) {
+                COST[BASIC.charAt(septet)] = 1;
+                SEPTET[BASIC.charAt(septet)] = (byte) septet;
+            }
+        }
+        for (int i = 0; i < EXTENDED.length(); i++) {
+            char c = EXTENDED.charAt(i);
+            if (c < TABLE_SIZE) {
+                COST[c] = 2;
+                SEPTET[c] = EXTENDED_SEPTETS[i];
+            }
+        }
+    }
+
+    private SmsEncoding() {
+    }
+
+    /**
+     * UNICODE if any character is outside the GSM 7-bit alphabet, English otherwise.
+     */
+    public static SmsJob.MessageType detect(CharSequence text) {
+        return isGsm7(text) ? SmsJob.MessageType.English : SmsJob.MessageType.UNICODE;
+    }
+
+    public static boolean isGsm7(CharSequence text) {
+        // No early exit, so the loop body stays branch free
+        int missing = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            missing |= cost(text.charAt(i)) - 1 >>> 31;
+        }
+        return missing == 0;
+    }
+
+    /**
+     * Septets the text takes as GSM 7-bit. Characters outside the alphabet count as the one septet of the
+     * replacement they are sent as.
+     */
+    public static int septets(CharSequence text) {
+        int septets = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            septets += Math.max(cost(text.charAt(i)), 1);
+        }
+        return septets;
+    }
+
+    /**
+     * Number of parts the text is sent and billed as.
+     */
+    public static int segments(CharSequence text, SmsJob.MessageType messageType) {
+        if (messageType == SmsJob.MessageType.UNICODE) {
+            if (text.length() <= UCS2_SINGLE) {
+                return 1;
+            }
+            int segments = 1;
+            int used = 0;
+            for (int i = 0, n = text.length(); i < n; i++) {
+                int units = Character.isHighSurrogate(text.charAt(i)) && i + 1 < n
+                        && Character.isLowSurrogate(text.charAt(i + 1)) ? 2 : 1;
+                if (used + units > UCS2_PART) {
+                    segments++;
+                    used = 0;
+                }
+                used += units;
+                i += units - 1;
+            }
+            return segments;
+        }
+
+        if (septets(text) <= GSM7_SINGLE) {
+            return 1;
+        }
+        int segments = 1;
+        int used = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            int septets = Math.max(cost(text.charAt(i)), 1);
+            if (used + septets > GSM7_PART) {
+                segments++;
+                used = 0;
+            }
+            used += septets;
+        }
+        return segments;
+    }
+
+    /**
+     * Encodes the text as unpacked GSM 7-bit, one septet per octet as SMPP carries it with data_coding 0.
+     * Characters outside the alphabet are replaced with '?'.
+     */
+    public static byte[] toGsm7(CharSequence text) {
+        byte[] out = new byte[septets(text)];
+        int position = 0;
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char c = text.charAt(i);
+            switch (cost(c)) {
+                case 1 -> out[position++] = SEPTET[c];
+                case 2 -> {
+                    out[position++] = ESCAPE;
+                    out[position++] = c == EURO ? EURO_SEPTET : SEPTET[c];
+                }
+                default -> out[position++] = REPLACEMENT;
+            }
+        }
+        return out;
+    }
+
+    private static int cost(char c) {
+        if (c < TABLE_SIZE) {
+            return COST[c];
+        }
+        return c == EURO ? 2 : 0;
+    }
+}
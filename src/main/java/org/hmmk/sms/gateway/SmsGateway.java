@@ -0,0 +1,15 @@
+package org.hmmk.sms.gateway;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * SPI for connectors that hand messages over to a carrier SMSC.
+ *
+ * Implementations must not block for the carrier's answer: {@link #submit(OutboundSms)} returns as soon
+ * as the message is on the wire (or rejected locally), and the stage completes when the SMSC responds.
+ * Implementations may block briefly to apply backpressure, e.g. while their in-flight window is full.
+ */
+public interface SmsGateway {
+
+    CompletionStage<SubmitResult> submit(OutboundSms sms);
+}
@@ -0,0 +1,42 @@
+package org.hmmk.sms.gateway;
+
+/**
+ * The SMSC's answer to a submission.
+ *
+ * @param messageId the carrier message id when accepted, used to correlate delivery receipts
+ */
+public record SubmitResult(Status status, String messageId, String error) {
+
+    public enum Status {
+        /** The SMSC took the message. */
+        ACCEPTED,
+        /** The SMSC refused the message for good, e.g. an invalid destination. */
+        REJECTED,
+        /**
+         * Transient failure before the SMSC took the message (throttled, window full, not bound); the message
+         * can be submitted again.
+         */
+        RETRY,
+        /**
+         * The submission went out but no answer came back (timed out, connection lost). The SMSC may have taken
+         * it, so it must not be submitted again.
+         */
+        UNCONFIRMED
+    }
+
+    public static SubmitResult accepted(String messageId) {
+        return new SubmitResult(Status.ACCEPTED, messageId, null);
+    }
+
+    public static SubmitResult rejected(String error) {
+        return new SubmitResult(Status.REJECTED, null, error);
+    }
+
+    public static SubmitResult retry(String error) {
+        return new SubmitResult(Status.RETRY, null, error);
+    }
+
+    public static SubmitResult unconfirmed(String error) {
+        return new SubmitResult(Status.UNCONFIRMED, null, error);
+    }
+}
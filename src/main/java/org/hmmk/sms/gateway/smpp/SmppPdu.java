@@ -0,0 +1,173 @@
+package org.hmmk.sms.gateway.smpp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An SMPP 3.4 protocol data unit: the 16 byte header plus a raw body,
+ * with small helpers to write and read the body fields we use.
+ */
+final class SmppPdu {
+
+    static final int HEADER_LENGTH = 16;
+    static final int MAX_PDU_LENGTH = 64 * 1024;
+
+    static final int RESPONSE_MASK = 0x80000000;
+    static final int GENERIC_NACK = 0x80000000;
+    static final int BIND_RECEIVER = 0x00000001;
+    static final int BIND_TRANSMITTER = 0x00000002;
+    static final int SUBMIT_SM = 0x00000004;
+    static final int DELIVER_SM = 0x00000005;
+    static final int UNBIND = 0x00000006;
+    static final int BIND_TRANSCEIVER = 0x00000009;
+    static final int ENQUIRE_LINK = 0x00000015;
+
+    static final int ESME_ROK = 0x00000000;
+    static final int ESME_RINVMSGLEN = 0x00000001;
+    static final int ESME_RINVCMDID = 0x00000003;
+    static final int ESME_RSYSERR = 0x00000008;
+    static final int ESME_RMSGQFUL = 0x00000014;
+    static final int ESME_RTHROTTLED = 0x00000058;
+
+    static final int INTERFACE_VERSION = 0x34;
+    static final int TAG_MESSAGE_PAYLOAD = 0x0424;
+    static final int TAG_RECEIPTED_MESSAGE_ID = 0x001E;
+    static final int TAG_MESSAGE_STATE = 0x0427;
+
+    static final int DATA_CODING_DEFAULT = 0x00;
+    static final int DATA_CODING_UCS2 = 0x08;
+
+    /** esm_class bits 2-5 of a deliver_sm that carries an SMSC delivery receipt. */
+    static final int ESM_CLASS_DELIVERY_RECEIPT = 0x04;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    final int commandId;
+    final int commandStatus;
+    final int sequenceNumber;
+    final byte[] body;
+
+    SmppPdu(int commandId, int commandStatus, int sequenceNumber, byte[] body) {
+        this.commandId = commandId;
+        this.commandStatus = commandStatus;
+        this.sequenceNumber = sequenceNumber;
+        this.body = body == null ? EMPTY : body;
+    }
+
+    static SmppPdu response(SmppPdu request, int commandStatus, byte[] body) {
+        return new SmppPdu(request.commandId | RESPONSE_MASK, commandStatus, request.sequenceNumber, body);
+    }
+
+    boolean isResponse() {
+        return (commandId & RESPONSE_MASK) != 0;
+    }
+
+    byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + body.length);
+        buffer.putInt(HEADER_LENGTH + body.length);
+        buffer.putInt(commandId);
+        buffer.putInt(commandStatus);
+        buffer.putInt(sequenceNumber);
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    static SmppPdu read(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < HEADER_LENGTH || length > MAX_PDU_LENGTH) {
+            throw new IOException("Invalid SMPP command_length " + length);
+        }
+        int commandId = in.readInt();
+        int commandStatus = in.readInt();
+        int sequenceNumber = in.readInt();
+        byte[] body = new byte[length - HEADER_LENGTH];
+        in.readFully(body);
+        return new SmppPdu(commandId, commandStatus, sequenceNumber, body);
+    }
+
+    /**
+     * Builds a PDU body field by field.
+     */
+    static final class Writer {
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+
+        Writer cString(String value) {
+            if (value != null) {
+                buffer.writeBytes(value.getBytes(StandardCharsets.US_ASCII));
+            }
+            buffer.write(0);
+            return this;
+        }
+
+        Writer u8(int value) {
+            buffer.write(value);
+            return this;
+        }
+
+        Writer u16(int value) {
+            buffer.write(value >>> 8);
+            buffer.write(value);
+            return this;
+        }
+
+        Writer octets(byte[] value) {
+            buffer.writeBytes(value);
+            return this;
+        }
+
+        Writer tlv(int tag, byte[] value) {
+            return u16(tag).u16(value.length).octets(value);
+        }
+
+        byte[] toByteArray() {
+            return buffer.toByteArray();
+        }
+    }
+
+    /**
+     * Reads PDU body fields in order.
+     */
+    static final class Reader {
+        private final byte[] body;
+        private int position;
+
+        Reader(byte[] body) {
+            this.body = body;
+        }
+
+        String cString() {
+            int start = position;
+            while (position < body.length && body[position] != 0) {
+                position++;
+            }
+            String value = new String(body, start, position - start, StandardCharsets.US_ASCII);
+            if (position < body.length) {
+                position++;
+            }
+            return value;
+        }
+
+        int u8() {
+            return position < body.length ? body[position++] & 0xFF : 0;
+        }
+
+        int u16() {
+            return (u8() << 8) | u8();
+        }
+
+        boolean hasRemaining() {
+            return position < body.length;
+        }
+
+        byte[] octets(int length) {
+            int available = Math.min(length, body.length - position);
+            byte[] value = new byte[Math.max(available, 0)];
+            System.arraycopy(body, position, value, 0, value.length);
+            position += value.length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package org.hmmk.sms.gateway.smpp;
+
+import org.jboss.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * One persistent SMPP 3.4 transceiver bind.
+ *
+ * Requests are written as soon as a window slot is free and answered asynchronously by a reader thread
+ * that matches responses to requests by sequence number, so up to {@code windowSize} submit_sm PDUs
+ * are in flight at once instead of paying a full round trip per message.
+ */
+final class SmppSession implements Closeable {
+
+    private static final Logger LOG = Logger.getLogger(SmppSession.class);
+
+    /** Fails a request none of which was written, so the SMSC never saw it. */
+    static final class NotSentException extends IOException {
+        NotSentException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    private final String name;
+    private final SmppSessionConfig config;
+    private final Semaphore window;
+    private final Map<Integer, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Object writeLock = new Object();
+    private final Consumer<SmppPdu> deliverHandler;
+
+    private volatile Socket socket;
+    private volatile OutputStream out;
+    private volatile boolean bound;
+    private long lastBindAttemptNanos;
+
+    SmppSession(String name, SmppSessionConfig config) {
+        this(name, config, pdu -> {
+        });
+    }
+
+    /**
+     * @param deliverHandler called on the reader thread with every deliver_sm before it is acknowledged;
+     *                       must hand the PDU off quickly
+     */
+    SmppSession(String name, SmppSessionConfig config, Consumer<SmppPdu> deliverHandler) {
+        this.name = name;
+        this.config = config;
+        this.window = new Semaphore(config.windowSize());
+        this.deliverHandler = deliverHandler;
+    }
+
+    boolean isBound() {
+        return bound;
+    }
+
+    int inFlight() {
+        return config.windowSize() - window.availablePermits();
+    }
+
+    /**
+     * Connects and binds if the session is down. Bind attempts are spaced by the reconnect delay
+     * so an unreachable SMSC is not hammered by every submitter.
+     */
+    synchronized void ensureBound() throws IOException {
+        if (bound) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (lastBindAttemptNanos != 0 && now - lastBindAttemptNanos < config.reconnectDelay().toNanos()) {
+            throw new IOException("SMPP session " + name + " is not bound");
+        }
+        lastBindAttemptNanos = now;
+        connectAndBind();
+    }
+
+    private void connectAndBind() throws IOException {
+        Socket s = new Socket();
+        s.setTcpNoDelay(true);
+        s.setKeepAlive(true);
+        s.connect(new InetSocketAddress(config.host(), config.port()), (int) config.connectTimeout().toMillis());
+        socket = s;
+        out = new BufferedOutputStream(s.getOutputStream());
+        DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+        Thread reader = new Thread(() -> readLoop(s, in), "smpp-reader-" + name);
+        reader.setDaemon(true);
+        reader.start();
+
+        byte[] body = new SmppPdu.Writer()
+                .cString(config.systemId())
+                .cString(config.password())
+                .cString(config.systemType())
+                .u8(SmppPdu.INTERFACE_VERSION)
+                .u8(0)
+                .u8(0)
+                .cString("")
+                .toByteArray();
+        SmppPdu response;
+        try {
+            response = request(SmppPdu.BIND_TRANSCEIVER, body, false)
+                    .get(config.responseTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            connectionLost(s, new IOException("Interrupted while binding"));
+            throw new IOException("Interrupted while binding " + name, e);
+        } catch (ExecutionException | TimeoutException e) {
+            connectionLost(s, new IOException("Bind failed"));
+            throw new IOException("Bind of SMPP session " + name + " failed", e);
+        }
+        if (response.commandStatus != SmppPdu.ESME_ROK) {
+            connectionLost(s, new IOException("Bind rejected"));
+            throw new IOException(String.format("SMSC rejected bind of %s with status 0x%08X", name,
+                    response.commandStatus));
+        }
+        bound = true;
+        LOG.infof("SMPP session %s bound to %s:%d", name, config.host(), config.port());
+    }
+
+    /**
+     * Sends a request PDU and returns a future for its response. Windowed requests wait for a free
+     * window slot first. The future fails with a {@link NotSentException} when the request could not be
+     * written, e.g. because no window slot freed up in time or the session is down; any other failure, such
+     * as a missing response or a connection lost while waiting, means the SMSC may have received it.
+     */
+    CompletableFuture<SmppPdu> request(int commandId, byte[] body, boolean windowed) {
+        if (windowed) {
+            try {
+                if (!window.tryAcquire(config.windowTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                    return CompletableFuture.failedFuture(
+                            new NotSentException("SMPP window of " + name + " is full", null));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(new NotSentException("Interrupted waiting for the SMPP window", e));
+            }
+        }
+
+        int seq = nextSequence();
+        PendingRequest request = new PendingRequest(new CompletableFuture<>(),
+                System.nanoTime() + config.responseTimeout().toNanos(), windowed);
+        pending.put(seq, request);
+        Socket s = socket;
+        try {
+            write(new SmppPdu(commandId, SmppPdu.ESME_ROK, seq, body));
+        } catch (IOException e) {
+            PendingRequest failed = take(seq);
+            if (failed != null) {
+                failed.future.completeExceptionally(new NotSentException(e.getMessage(), e));
+            }
+            connectionLost(s, e);
+        }
+        return request.future;
+    }
+
+    /**
+     * Sends enquire_link and drops the connection when the SMSC does not answer.
+     */
+    void enquireLink() {
+        if (!bound) {
+            return;
+        }
+        Socket s = socket;
+        request(SmppPdu.ENQUIRE_LINK, null, false).whenComplete((response, error) -> {
+            if (error != null) {
+                LOG.warnf("SMPP session %s missed enquire_link response, reconnecting", name);
+                connectionLost(s, new IOException("enquire_link timed out"));
+            }
+        });
+    }
+
+    /**
+     * Fails requests whose response did not arrive within the response timeout.
+     */
+    void expireStale() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Integer, PendingRequest>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, PendingRequest> entry = it.next();
+            if (entry.getValue().deadlineNanos - now < 0) {
+                PendingRequest expired = take(entry.getKey());
+                if (expired != null) {
+                    expired.future.completeExceptionally(
+                            new TimeoutException("No SMPP response for sequence " + entry.getKey()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        Socket s = socket;
+        if (bound) {
+            try {
+                request(SmppPdu.UNBIND, null, false).get(1, TimeUnit.SECONDS);
+            } catch (Exception e) {
+                LOG.debugf("SMPP session %s unbind not acknowledged: %s", name, e.getMessage());
+            }
+        }
+        connectionLost(s, new IOException("SMPP session " + name + " closed"));
+    }
+
+    private void readLoop(Socket s, DataInputStream in) {
+        try {
+            while (!s.isClosed()) {
+                SmppPdu pdu = SmppPdu.read(in);
+                if (pdu.isResponse()) {
+                    PendingRequest request = take(pdu.sequenceNumber);
+                    if (request != null) {
+                        request.future.complete(pdu);
+                    }
+                } else {
+                    handleRequest(pdu);
+                }
+            }
+        } catch (IOException e) {
+            if (!s.isClosed()) {
+                LOG.warnf("SMPP session %s read failed: %s", name, e.getMessage());
+            }
+        } finally {
+            connectionLost(s, new IOException("SMPP connection of " + name + " closed"));
+        }
+    }
+
+    private void handleRequest(SmppPdu pdu) throws IOException {
+        switch (pdu.commandId) {
+            case SmppPdu.ENQUIRE_LINK -> write(SmppPdu.response(pdu, SmppPdu.ESME_ROK, null));
+            // Delivery receipts and MO messages; acknowledge so the SMSC does not redeliver
+            case SmppPdu.DELIVER_SM -> {
+                try {
+                    deliverHandler.accept(pdu);
+                } catch (RuntimeException e) {
+                    LOG.warnf(e, "SMPP session %s could not handle deliver_sm", name);
+                }
+                write(SmppPdu.response(pdu, SmppPdu.ESME_ROK, new SmppPdu.Writer().cString("").toByteArray()));
+            }
+            case SmppPdu.UNBIND -> {
+                write(SmppPdu.response(pdu, SmppPdu.ESME_ROK, null));
+                connectionLost(socket, new IOException("SMSC unbound " + name));
+            }
+            default -> write(new SmppPdu(SmppPdu.GENERIC_NACK, SmppPdu.ESME_RINVCMDID, pdu.sequenceNumber, null));
+        }
+    }
+
+    private void write(SmppPdu pdu) throws IOException {
+        OutputStream stream = out;
+        if (stream == null) {
+            throw new IOException("SMPP session " + name + " is not connected");
+        }
+        byte[] bytes = pdu.encode();
+        synchronized (writeLock) {
+            stream.write(bytes);
+            stream.flush();
+        }
+    }
+
+    private synchronized void connectionLost(Socket s, IOException cause) {
+        if (s == null || s != socket) {
+            return;
+        }
+        bound = false;
+        socket = null;
+        out = null;
+        try {
+            s.close();
+        } catch (IOException ignored) {
+            // already broken
+        }
+        for (Integer seq : pending.keySet()) {
+            PendingRequest request = take(seq);
+            if (request != null) {
+                request.future.completeExceptionally(cause);
+            }
+        }
+    }
+
+    /**
+     * Removes a pending request and gives its window slot back, exactly once per request.
+     */
+    private PendingRequest take(int seq) {
+        PendingRequest request = pending.remove(seq);
+        if (request != null && request.windowed) {
+            window.release();
+        }
+        return request;
+    }
+
+    private int nextSequence() {
+        return sequence.updateAndGet(s -> s >= 0x7FFFFFFF ? 1 : s + 1);
+    }
+
+    private record PendingRequest(CompletableFuture<SmppPdu> future, long deadlineNanos, boolean windowed) {
+    }
+}
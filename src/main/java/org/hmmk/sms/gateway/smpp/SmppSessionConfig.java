@@ -0,0 +1,15 @@
+package org.hmmk.sms.gateway.smpp;
+
+import java.time.Duration;
+
+/**
+ * Connection settings shared by all binds of the SMPP gateway.
+ *
+ * @param windowSize      maximum number of submit_sm PDUs awaiting a response on one bind
+ * @param windowTimeout   how long a submitter waits for a free window slot before giving up
+ * @param reconnectDelay  minimum pause between two bind attempts of the same session
+ */
+record SmppSessionConfig(String host, int port, String systemId, String password, String systemType,
+        int windowSize, Duration connectTimeout, Duration responseTimeout, Duration windowTimeout,
+        Duration reconnectDelay) {
+}
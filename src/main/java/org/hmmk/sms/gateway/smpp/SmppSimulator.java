@@ -0,0 +1,240 @@
+package org.hmmk.sms.gateway.smpp;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal in-process SMSC for offline load testing.
+ *
+ * Accepts any bind, acknowledges every submit_sm with a generated message id and answers
+ * enquire_link and unbind. Like a real SMSC it rejects a short_message longer than one SMS, 160 septets or
+ * 140 octets of UCS-2, with ESME_RINVMSGLEN; longer texts have to come in message_payload. With {@code sms.gateway.smpp.simulator.delivery-receipts} it also reports
+ * every message as delivered right away. Enable it with {@code sms.gateway.smpp.simulator.enabled=true}
+ * and point {@code sms.gateway.smpp.host/port} at it.
+ */
+@ApplicationScoped
+public class SmppSimulator {
+
+    private static final Logger LOG = Logger.getLogger(SmppSimulator.class);
+
+    @ConfigProperty(name = "sms.gateway.smpp.simulator.enabled", defaultValue = "false")
+    boolean enabled;
+
+    @ConfigProperty(name = "sms.gateway.smpp.simulator.port", defaultValue = "2775")
+    int configuredPort;
+
+    @ConfigProperty(name = "sms.gateway.smpp.simulator.delivery-receipts", defaultValue = "true")
+    boolean deliveryReceipts;
+
+    private final AtomicLong messageIds = new AtomicLong();
+    private final AtomicInteger sequence = new AtomicInteger();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private volatile ServerSocket server;
+
+    void onStart(@Observes StartupEvent event) throws IOException {
+        if (enabled) {
+            start(configuredPort);
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        stop();
+    }
+
+    /**
+     * Starts listening; port 0 picks a free port, see {@link #port()}.
+     */
+    public synchronized void start(int port) throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = new ServerSocket(port);
+        Thread acceptor = new Thread(this::acceptLoop, "smpp-simulator");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        LOG.infof("SMPP simulator listening on port %d", server.getLocalPort());
+    }
+
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        try {
+            server.close();
+        } catch (IOException ignored) {
+            // shutting down
+        }
+        for (Socket socket : connections) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // shutting down
+            }
+        }
+        connections.clear();
+        server = null;
+    }
+
+    private void acceptLoop() {
+        ServerSocket listening = server;
+        while (listening != null && !listening.isClosed()) {
+            try {
+                Socket socket = listening.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "smpp-simulator-" + socket.getPort());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (!listening.isClosed()) {
+                    LOG.warnf("SMPP simulator accept failed: %s", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            while (true) {
+                SmppPdu request = SmppPdu.read(in);
+                if (request.isResponse()) {
+                    continue;
+                }
+                String messageId = null;
+                SmppPdu response = switch (request.commandId) {
+                    case SmppPdu.BIND_TRANSCEIVER, SmppPdu.BIND_TRANSMITTER, SmppPdu.BIND_RECEIVER ->
+                            SmppPdu.response(request, SmppPdu.ESME_ROK,
+                                    new SmppPdu.Writer().cString("simulator").toByteArray());
+                    case SmppPdu.SUBMIT_SM -> {
+                        if (!fitsShortMessage(request.body)) {
+                            yield SmppPdu.response(request, SmppPdu.ESME_RINVMSGLEN, null);
+                        }
+                        messageId = Long.toHexString(messageIds.incrementAndGet());
+                        yield SmppPdu.response(request, SmppPdu.ESME_ROK,
+                                new SmppPdu.Writer().cString(messageId).toByteArray());
+                    }
+                    case SmppPdu.ENQUIRE_LINK, SmppPdu.UNBIND -> SmppPdu.response(request, SmppPdu.ESME_ROK, null);
+                    default -> new SmppPdu(SmppPdu.GENERIC_NACK, SmppPdu.ESME_RINVCMDID, request.sequenceNumber, null);
+                };
+                // Writes from a single connection thread, flushed only when no more requests are buffered
+                out.write(response.encode());
+                if (messageId != null && deliveryReceipts) {
+                    out.write(deliveryReceipt(messageId).encode());
+                }
+                if (in.available() == 0) {
+                    out.flush();
+                }
+                if (request.commandId == SmppPdu.UNBIND) {
+                    out.flush();
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            // client disconnected
+        } catch (IOException e) {
+            LOG.debugf("SMPP simulator connection closed: %s", e.getMessage());
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Whether the submit_sm's short_message fits a single SMS for its data_coding.
+     */
+    static boolean fitsShortMessage(byte[] submitSm) {
+        SmppPdu.Reader reader = skipToDataCoding(submitSm);
+        int dataCoding = reader.u8();
+        reader.u8();                               // sm_default_msg_id
+        int length = reader.u8();
+        return length <= (dataCoding == SmppPdu.DATA_CODING_UCS2 ? 140 : 160);
+    }
+
+    /**
+     * The text octets of a submit_sm, from short_message or, if that is empty, the message_payload TLV.
+     */
+    static byte[] submittedText(byte[] submitSm) {
+        SmppPdu.Reader reader = skipToDataCoding(submitSm);
+        reader.u8();                               // data_coding
+        reader.u8();                               // sm_default_msg_id
+        byte[] shortMessage = reader.octets(reader.u8());
+        while (shortMessage.length == 0 && reader.hasRemaining()) {
+            int tag = reader.u16();
+            byte[] value = reader.octets(reader.u16());
+            if (tag == SmppPdu.TAG_MESSAGE_PAYLOAD) {
+                return value;
+            }
+        }
+        return shortMessage;
+    }
+
+    private static SmppPdu.Reader skipToDataCoding(byte[] submitSm) {
+        SmppPdu.Reader reader = new SmppPdu.Reader(submitSm);
+        reader.cString();                          // service_type
+        reader.u8();                               // source_addr_ton
+        reader.u8();                               // source_addr_npi
+        reader.cString();                          // source_addr
+        reader.u8();                               // dest_addr_ton
+        reader.u8();                               // dest_addr_npi
+        reader.cString();                          // destination_addr
+        reader.u8();                               // esm_class
+        reader.u8();                               // protocol_id
+        reader.u8();                               // priority_flag
+        reader.cString();                          // schedule_delivery_time
+        reader.cString();                          // validity_period
+        reader.u8();                               // registered_delivery
+        reader.u8();                               // replace_if_present_flag
+        return reader;
+    }
+
+    private SmppPdu deliveryReceipt(String messageId) {
+        String date = DateTimeFormatter.ofPattern("yyMMddHHmm").withZone(ZoneOffset.UTC).format(Instant.now());
+        byte[] text = String.format("id:%s sub:001 dlvrd:001 submit date:%s done date:%s stat:DELIVRD err:000 text:",
+                messageId, date, date).getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new SmppPdu.Writer()
+                .cString("")                          // service_type
+                .u8(0).u8(0).cString("")              // source address
+                .u8(0).u8(0).cString("")              // destination address
+                .u8(SmppPdu.ESM_CLASS_DELIVERY_RECEIPT)
+                .u8(0)                                // protocol_id
+                .u8(0)                                // priority_flag
+                .cString("")                          // schedule_delivery_time
+                .cString("")                          // validity_period
+                .u8(0)                                // registered_delivery
+                .u8(0)                                // replace_if_present_flag
+                .u8(0)                                // data_coding
+                .u8(0)                                // sm_default_msg_id
+                .u8(text.length)
+                .octets(text)
+                .tlv(SmppPdu.TAG_RECEIPTED_MESSAGE_ID, new SmppPdu.Writer().cString(messageId).toByteArray())
+                .tlv(SmppPdu.TAG_MESSAGE_STATE, new byte[]{2})
+                .toByteArray();
+        return new SmppPdu(SmppPdu.DELIVER_SM, SmppPdu.ESME_ROK, sequence.incrementAndGet(), body);
+    }
+}
@@ -0,0 +1,315 @@
+package org.hmmk.sms.gateway.smpp;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.gateway.DeliveryReceipt;
+import org.hmmk.sms.gateway.OutboundSms;
+import org.hmmk.sms.gateway.SmsEncoding;
+import org.hmmk.sms.gateway.SmsGateway;
+import org.hmmk.sms.gateway.SubmitResult;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * {@link SmsGateway} backed by persistent SMPP 3.4 transceiver binds.
+ *
+ * Each sender gets its own pool of binds (carriers usually provision throughput per bind),
+ * and submissions are spread over the pool round-robin. Binds are opened lazily on first use.
+ * Final delivery receipts arriving on any bind are fired as {@link DeliveryReceipt} events.
+ */
+@ApplicationScoped
+public class SmppSmsGateway implements SmsGateway {
+
+    private static final Logger LOG = Logger.getLogger(SmppSmsGateway.class);
+
+    @Inject
+    Event<DeliveryReceipt> receipts;
+
+    @ConfigProperty(name = "sms.gateway.smpp.host", defaultValue = "localhost")
+    String host;
+
+    @ConfigProperty(name = "sms.gateway.smpp.port", defaultValue = "2775")
+    int port;
+
+    @ConfigProperty(name = "sms.gateway.smpp.system-id", defaultValue = "a2p")
+    String systemId;
+
+    @ConfigProperty(name = "sms.gateway.smpp.password", defaultValue = "password")
+    String password;
+
+    @ConfigProperty(name = "sms.gateway.smpp.system-type")
+    Optional<String> systemType;
+
+    @ConfigProperty(name = "sms.gateway.smpp.binds-per-sender", defaultValue = "2")
+    int bindsPerSender;
+
+    @ConfigProperty(name = "sms.gateway.smpp.window-size", defaultValue = "100")
+    int windowSize;
+
+    @ConfigProperty(name = "sms.gateway.smpp.connect-timeout", defaultValue = "5s")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "sms.gateway.smpp.response-timeout", defaultValue = "10s")
+    Duration responseTimeout;
+
+    @ConfigProperty(name = "sms.gateway.smpp.window-timeout", defaultValue = "30s")
+    Duration windowTimeout;
+
+    @ConfigProperty(name = "sms.gateway.smpp.reconnect-delay", defaultValue = "5s")
+    Duration reconnectDelay;
+
+    @ConfigProperty(name = "sms.gateway.smpp.enquire-link-interval", defaultValue = "30s")
+    Duration enquireLinkInterval;
+
+    private final Map<String, BindPool> pools = new ConcurrentHashMap<>();
+    private SmppSessionConfig sessionConfig;
+    private ScheduledExecutorService housekeeping;
+
+    @PostConstruct
+    void init() {
+        sessionConfig = new SmppSessionConfig(host, port, systemId, password, systemType.orElse(""), windowSize,
+                connectTimeout, responseTimeout, windowTimeout, reconnectDelay);
+        housekeeping = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "smpp-housekeeping");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeping.scheduleWithFixedDelay(() -> forEachSession(SmppSession::expireStale), 1, 1, TimeUnit.SECONDS);
+        long keepAlive = enquireLinkInterval.toMillis();
+        housekeeping.scheduleWithFixedDelay(() -> forEachSession(SmppSession::enquireLink),
+                keepAlive, keepAlive, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        housekeeping.shutdownNow();
+        forEachSession(SmppSession::close);
+        pools.clear();
+    }
+
+    @Override
+    public CompletionStage<SubmitResult> submit(OutboundSms sms) {
+        SmppSession session = pools.computeIfAbsent(sms.senderId(), BindPool::new).next();
+        try {
+            session.ensureBound();
+        } catch (IOException e) {
+            return CompletableFuture.completedFuture(SubmitResult.retry(e.getMessage()));
+        }
+        return session.request(SmppPdu.SUBMIT_SM, encodeSubmitSm(sms), true)
+                .handle((response, error) -> error != null ? toResult(error) : toResult(response));
+    }
+
+    /**
+     * Only a submit_sm that was never written is submitted again. Once it is out, a missing response or a
+     * dropped connection does not tell whether the SMSC took it, and resending could deliver it twice.
+     */
+    static SubmitResult toResult(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof SmppSession.NotSentException
+                ? SubmitResult.retry(cause.getMessage())
+                : SubmitResult.unconfirmed(String.valueOf(cause.getMessage()));
+    }
+
+    /**
+     * Encodes a submit_sm. A text that fits one part goes into short_message; a longer one into the
+     * message_payload TLV, which the SMSC splits into concatenated parts itself, as many parts as
+     * {@link SmsEncoding#segments} billed for. short_message would take up to 254 octets, but a single SMS only
+     * carries 140, so SMSCs reject or cut off anything longer there.
+     */
+    static byte[] encodeSubmitSm(OutboundSms sms) {
+        boolean unicode = sms.messageType() == SmsJob.MessageType.UNICODE;
+        String message = sms.message() == null ? "" : sms.message();
+        byte[] text = unicode ? message.getBytes(StandardCharsets.UTF_16BE) : SmsEncoding.toGsm7(message);
+
+        String source = sms.sourceAddress() == null ? "" : sms.sourceAddress();
+        boolean alphanumeric = !source.chars().allMatch(c -> c == '+' || Character.isDigit(c));
+        String destination = sms.phoneNumber();
+        boolean international = destination.startsWith("+");
+        if (international) {
+            destination = destination.substring(1);
+        }
+
+        SmppPdu.Writer writer = new SmppPdu.Writer()
+                .cString("")                          // service_type
+                .u8(alphanumeric ? 5 : 0)             // source_addr_ton
+                .u8(alphanumeric ? 0 : 1)             // source_addr_npi
+                .cString(source)
+                .u8(international ? 1 : 0)            // dest_addr_ton
+                .u8(1)                                // dest_addr_npi
+                .cString(destination)
+                .u8(0)                                // esm_class
+                .u8(0)                                // protocol_id
+                .u8(0)                                // priority_flag
+                .cString("")                          // schedule_delivery_time
+                .cString("")                          // validity_period
+                .u8(1)                                // registered_delivery: final receipt
+                .u8(0)                                // replace_if_present_flag
+                .u8(unicode ? SmppPdu.DATA_CODING_UCS2 : SmppPdu.DATA_CODING_DEFAULT)
+                .u8(0);                               // sm_default_msg_id
+        if (SmsEncoding.segments(message, sms.messageType()) == 1) {
+            writer.u8(text.length).octets(text);
+        } else {
+            writer.u8(0).tlv(SmppPdu.TAG_MESSAGE_PAYLOAD, text);
+        }
+        return writer.toByteArray();
+    }
+
+    private static SubmitResult toResult(SmppPdu response) {
+        return switch (response.commandStatus) {
+            case SmppPdu.ESME_ROK -> SubmitResult.accepted(new SmppPdu.Reader(response.body).cString());
+            case SmppPdu.ESME_RTHROTTLED, SmppPdu.ESME_RMSGQFUL, SmppPdu.ESME_RSYSERR ->
+                    SubmitResult.retry(String.format("SMSC status 0x%08X", response.commandStatus));
+            default -> SubmitResult.rejected(String.format("SMSC status 0x%08X", response.commandStatus));
+        };
+    }
+
+    private void onDeliverSm(SmppPdu pdu) {
+        DeliveryReceipt receipt = parseReceipt(pdu.body);
+        if (receipt != null) {
+            receipts.fire(receipt);
+        }
+    }
+
+    /**
+     * Reads a final delivery receipt from a deliver_sm body. The receipted_message_id and message_state TLVs
+     * win over the {@code id:} and {@code stat:} fields of the receipt text, which not every SMSC sends.
+     * Returns null for MO messages, intermediate receipts and receipts without a message id.
+     */
+    static DeliveryReceipt parseReceipt(byte[] body) {
+        SmppPdu.Reader reader = new SmppPdu.Reader(body);
+        reader.cString();                          // service_type
+        reader.u8();                               // source_addr_ton
+        reader.u8();                               // source_addr_npi
+        reader.cString();                          // source_addr
+        reader.u8();                               // dest_addr_ton
+        reader.u8();                               // dest_addr_npi
+        reader.cString();                          // destination_addr
+        int esmClass = reader.u8();
+        if ((esmClass & 0x3C) != SmppPdu.ESM_CLASS_DELIVERY_RECEIPT) {
+            return null;
+        }
+        reader.u8();                               // protocol_id
+        reader.u8();                               // priority_flag
+        reader.cString();                          // schedule_delivery_time
+        reader.cString();                          // validity_period
+        reader.u8();                               // registered_delivery
+        reader.u8();                               // replace_if_present_flag
+        reader.u8();                               // data_coding
+        reader.u8();                               // sm_default_msg_id
+        String text = new String(reader.octets(reader.u8()), StandardCharsets.US_ASCII);
+
+        String messageId = receiptField(text, "id:");
+        String state = receiptField(text, "stat:");
+        if (state != null) {
+            state = state.toUpperCase();
+        }
+        while (reader.hasRemaining()) {
+            int tag = reader.u16();
+            byte[] value = reader.octets(reader.u16());
+            if (tag == SmppPdu.TAG_RECEIPTED_MESSAGE_ID) {
+                messageId = new SmppPdu.Reader(value).cString();
+            } else if (tag == SmppPdu.TAG_MESSAGE_STATE && value.length == 1) {
+                state = messageState(value[0] & 0xFF);
+            }
+        }
+        if (messageId == null || messageId.isEmpty() || state == null) {
+            return null;
+        }
+        return switch (state) {
+            case "DELIVRD" -> new DeliveryReceipt(messageId, true, state);
+            case "UNDELIV", "EXPIRED", "DELETED", "REJECTD" -> new DeliveryReceipt(messageId, false, state);
+            default -> null; // ENROUTE, ACCEPTD, UNKNOWN: not final
+        };
+    }
+
+    /**
+     * Value of a {@code name:value} field of a receipt text, or null when the field is missing or empty.
+     */
+    private static String receiptField(String text, String name) {
+        int start = text.toLowerCase().indexOf(name);
+        if (start < 0) {
+            return null;
+        }
+        start += name.length();
+        int end = text.indexOf(' ', start);
+        String value = text.substring(start, end < 0 ? text.length() : end);
+        return value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Maps the message_state TLV to the state names used in receipt texts.
+     */
+    private static String messageState(int value) {
+        return switch (value) {
+            case 1 -> "ENROUTE";
+            case 2 -> "DELIVRD";
+            case 3 -> "EXPIRED";
+            case 4 -> "DELETED";
+            case 5 -> "UNDELIV";
+            case 6 -> "ACCEPTD";
+            case 8 -> "REJECTD";
+            default -> "UNKNOWN";
+        };
+    }
+
+    private void forEachSession(Consumer<SmppSession> action) {
+        for (BindPool pool : pools.values()) {
+            for (SmppSession session : pool.sessions) {
+                try {
+                    action.accept(session);
+                } catch (RuntimeException e) {
+                    LOG.warnf(e, "SMPP housekeeping failed");
+                }
+            }
+        }
+    }
+
+    private final class BindPool {
+        private final List<SmppSession> sessions;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        BindPool(String senderId) {
+            sessions = IntStream.range(0, Math.max(1, bindsPerSender))
+                    .mapToObj(i -> new SmppSession(senderId + "-" + i, sessionConfig,
+                            SmppSmsGateway.this::onDeliverSm))
+                    .toList();
+        }
+
+        /**
+         * Picks the next bound session round-robin, falling back to any session so a dead bind
+         * gets a chance to reconnect.
+         */
+        SmppSession next() {
+            int size = sessions.size();
+            int start = Math.floorMod(cursor.getAndIncrement(), size);
+            for (int i = 0; i < size; i++) {
+                SmppSession candidate = sessions.get((start + i) % size);
+                if (candidate.isBound()) {
+                    return candidate;
+                }
+            }
+            return sessions.get(start);
+        }
+    }
+}
@@ -14,9 +14,10 @@ import org.hmmk.sms.dto.apikey.ApiKeyResponse;
 import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.entity.ApiKey;
 import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.service.ApiKeyCache;
+import org.hmmk.sms.service.KeysetPager;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Path("/api/api-keys")
 @Produces(MediaType.APPLICATION_JSON)
@@ -27,6 +28,12 @@ public class ApiKeyResource {
     @Inject
     JsonWebToken jwt;
 
+    @Inject
+    ApiKeyCache apiKeyCache;
+
+    @Inject
+    KeysetPager keysetPager;
+
     private String tenantIdFromJwt() {
         if (jwt == null)
             return null;
@@ -39,16 +46,13 @@ public class ApiKeyResource {
     @Operation(summary = "List API Keys", description = "List all API keys for the current tenant with pagination")
     public PaginatedResponse<ApiKeyResponse> list(
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("approximateTotal") boolean approximateTotal) {
         String tenantId = tenantIdFromJwt();
 
-        var query = ApiKey.find("tenantId", tenantId).page(io.quarkus.panache.common.Page.of(page, size));
-        List<ApiKeyResponse> items = query.stream()
-                .map(apiKey -> ApiKeyResponse.fromEntity((ApiKey) apiKey))
-                .collect(Collectors.toList());
-        long total = query.count();
-
-        return new PaginatedResponse<>(items, total, page, size);
+        return keysetPager.page(ApiKey.class, Map.of("tenantId", tenantId), page, size, cursor, approximateTotal,
+                ApiKeyResponse::fromEntity);
     }
 
     @POST
@@ -88,5 +92,6 @@ public class ApiKeyResource {
             throw new NotFoundException("API Key not found");
         }
         apiKey.delete();
+        apiKeyCache.invalidateKey(id);
     }
 }
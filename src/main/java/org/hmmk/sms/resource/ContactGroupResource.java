@@ -11,9 +11,9 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.entity.contact.ContactGroup;
+import org.hmmk.sms.service.KeysetPager;
 
-import java.util.List;
-import io.quarkus.panache.common.Page;
+import java.util.Map;
 import org.hmmk.sms.entity.contact.ContactGroupMember;
 
 @Path("/api/contact-groups")
@@ -25,6 +25,9 @@ public class ContactGroupResource {
     @Inject
     JsonWebToken jwt;
 
+    @Inject
+    KeysetPager keysetPager;
+
     private String tenantIdFromJwt() {
         if (jwt == null)
             return null;
@@ -62,13 +65,12 @@ public class ContactGroupResource {
     @GET
     @RolesAllowed("tenant_admin")
     public PaginatedResponse<ContactGroup> list(@QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("approximateTotal") boolean approximateTotal) {
         String tenantId = tenantIdFromJwt();
-        Page p = Page.of(page, size);
-        var query = ContactGroup.find("tenantId", tenantId).page(p);
-        List<ContactGroup> items = query.list();
-        long total = ContactGroup.count("tenantId", tenantId);
-        return new PaginatedResponse<>(items, total, page, size);
+        return keysetPager.page(ContactGroup.class, Map.of("tenantId", tenantId), page, size, cursor,
+                approximateTotal, g -> g);
     }
 
     @GET
@@ -19,13 +19,15 @@ import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.entity.contact.Contact;
 import org.hmmk.sms.entity.contact.ContactGroupMember;
 import org.hmmk.sms.service.ContactImportService;
+import org.hmmk.sms.service.KeysetPager;
+import org.hmmk.sms.service.PhoneNumberNormalizer;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 import org.jboss.resteasy.reactive.RestForm;
 
 import java.io.InputStream;
 import java.nio.file.Files;
 import java.util.List;
-import io.quarkus.panache.common.Page;
+import java.util.Map;
 
 @Path("/api/contacts")
 @Produces(MediaType.APPLICATION_JSON)
@@ -36,6 +38,12 @@ public class ContactResource {
     @Inject
     ContactImportService importService;
 
+    @Inject
+    KeysetPager keysetPager;
+
+    @Inject
+    PhoneNumberNormalizer phoneNumberNormalizer;
+
     @Inject
     JsonWebToken jwt;
 
@@ -52,9 +60,10 @@ public class ContactResource {
     public Contact create(@Valid ContactDto dto) {
         String tenantId = tenantIdFromJwt();
         Contact c = new Contact();
-        c.phone = dto.phone;
+        c.phone = normalizePhone(dto.phone);
         c.name = dto.name;
         c.email = dto.email;
+        c.customFields = dto.customFields;
         c.tenantId = tenantId;
         c.persist();
         return c;
@@ -68,23 +77,33 @@ public class ContactResource {
         Contact c = Contact.findById(id);
         if (c == null)
             throw new NotFoundException();
-        c.phone = dto.phone;
+        c.phone = normalizePhone(dto.phone);
         c.name = dto.name;
         c.email = dto.email;
+        c.customFields = dto.customFields;
         c.persist();
         return c;
     }
 
+    /**
+     * Contacts keep the number in the form recipients are stored in, so a message finds its contact.
+     */
+    private String normalizePhone(String phone) {
+        String normalized = phoneNumberNormalizer.normalize(phone);
+        if (normalized == null)
+            throw new BadRequestException("Invalid phone number format");
+        return normalized;
+    }
+
     @GET
     @RolesAllowed({ "tenant_admin" })
     public PaginatedResponse<Contact> list(@QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("approximateTotal") boolean approximateTotal) {
         String tenantId = tenantIdFromJwt();
-        Page p = Page.of(page, size);
-        var query = Contact.find("tenantId", tenantId).page(p);
-        List<Contact> items = query.list();
-        long total = Contact.count("tenantId", tenantId);
-        return new PaginatedResponse<>(items, total, page, size);
+        return keysetPager.page(Contact.class, Map.of("tenantId", tenantId), page, size, cursor, approximateTotal,
+                c -> c);
     }
 
     @GET
@@ -115,6 +134,9 @@ public class ContactResource {
     @RolesAllowed("tenant_admin")
     public Contact findByPhone(@QueryParam("phone") String phone) {
         String tenantId = tenantIdFromJwt();
+        String normalized = phoneNumberNormalizer.normalize(phone);
+        if (normalized != null)
+            phone = normalized;
         if (tenantId == null)
             return Contact.find("phone", phone).firstResult();
         return Contact.find("tenantId = ?1 and phone = ?2", tenantId, phone).firstResult();
@@ -1,5 +1,6 @@
 package org.hmmk.sms.resource;
 
+import io.smallrye.mutiny.Multi;
 import jakarta.annotation.security.RolesAllowed;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.GET;
@@ -9,12 +10,21 @@ import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.jwt.JsonWebToken;
+import org.jboss.resteasy.reactive.RestStreamElementType;
 import org.hmmk.sms.dto.AdminDashboardResponse;
+import org.hmmk.sms.dto.AdminDashboardTick;
 import org.hmmk.sms.dto.DashboardOverviewResponse;
 import org.hmmk.sms.dto.DashboardResponse;
 import org.hmmk.sms.dto.SmsSentBySource;
+import org.hmmk.sms.service.DashboardCache;
 import org.hmmk.sms.service.DashboardService;
 import org.hmmk.sms.service.DashboardService.Granularity;
+import org.hmmk.sms.service.SmsMetrics;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 
 @Path("/api/dashboard")
 @Produces(MediaType.APPLICATION_JSON)
@@ -26,6 +36,12 @@ public class DashboardResource {
     @Inject
     DashboardService dashboardService;
 
+    @Inject
+    DashboardCache dashboardCache;
+
+    @Inject
+    SmsMetrics smsMetrics;
+
     private String tenantIdFromJwt() {
         if (jwt == null) return null;
         Object claim = jwt.getClaim("tenantId");
@@ -44,20 +60,35 @@ public class DashboardResource {
                     .smsSentBySource(SmsSentBySource.builder().api(0).manual(0).csvUpload(0).build())
                     .build();
         }
-        return dashboardService.getDashboard(tenantId);
+        return dashboardCache.get(tenantId, "dashboard", () -> dashboardService.getDashboard(tenantId));
     }
 
     @GET
     @Path("/admin")
     @RolesAllowed("sys_admin")
     public AdminDashboardResponse getAdminDashboard() {
-        return dashboardService.getAdminDashboardOverview();
+        return dashboardCache.getAdmin("overview", dashboardService::getAdminDashboardOverview);
+    }
+
+    /**
+     * Live per-second traffic of the node serving the request, as server-sent events.
+     */
+    @GET
+    @Path("/admin/stream")
+    @RolesAllowed("sys_admin")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    @RestStreamElementType(MediaType.APPLICATION_JSON)
+    public Multi<AdminDashboardTick> streamAdminDashboard() {
+        return smsMetrics.stream();
     }
 
     @GET
     @Path("/overview")
     @RolesAllowed("tenant_admin")
-    public Response getSmsOverview(@QueryParam("granularity") String granularityParam) {
+    public Response getSmsOverview(@QueryParam("granularity") String granularityParam,
+                                   @QueryParam("from") String fromParam,
+                                   @QueryParam("to") String toParam,
+                                   @QueryParam("bySender") boolean bySender) {
         String tenantId = tenantIdFromJwt();
         if (tenantId == null) {
             return Response.status(Response.Status.BAD_REQUEST)
@@ -71,12 +102,43 @@ public class DashboardResource {
                 granularity = Granularity.valueOf(granularityParam.toUpperCase());
             } catch (IllegalArgumentException ex) {
                 return Response.status(Response.Status.BAD_REQUEST)
-                        .entity("Invalid granularity. Use MONTH, QUARTER, or YEAR.")
+                        .entity("Invalid granularity. Use HOUR, DAY, WEEK, MONTH, QUARTER, or YEAR.")
                         .build();
             }
         }
 
-        DashboardOverviewResponse overview = dashboardService.getSmsOverview(tenantId, granularity);
+        Instant from;
+        Instant to;
+        try {
+            from = parseInstant(fromParam);
+            to = parseInstant(toParam);
+        } catch (DateTimeParseException ex) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("Invalid from or to. Use an ISO-8601 instant or date.")
+                    .build();
+        }
+        if (from == null && to != null) {
+            return Response.status(Response.Status.BAD_REQUEST)
+                    .entity("from is required when to is given")
+                    .build();
+        }
+
+        Granularity selected = granularity;
+        DashboardOverviewResponse overview = dashboardCache.get(tenantId,
+                dashboardService.overviewKey(granularity, from, to, bySender),
+                () -> dashboardService.getSmsOverview(tenantId, selected, from, to, bySender));
         return Response.ok(overview).build();
     }
+
+    /**
+     * Parses an ISO-8601 instant, or a date meaning its start in UTC; null when absent.
+     */
+    private static Instant parseInstant(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return value.contains("T")
+                ? Instant.parse(value)
+                : LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
 }
@@ -71,14 +71,16 @@ public class PaymentResource {
     public PaginatedResponse<PaymentTransaction> listTransactions(
             @QueryParam("page") @DefaultValue("0") int page,
             @QueryParam("size") @DefaultValue("20") int size,
-            @QueryParam("status") org.hmmk.sms.entity.payment.PaymentTransaction.PaymentStatus status) {
+            @QueryParam("status") org.hmmk.sms.entity.payment.PaymentTransaction.PaymentStatus status,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("approximateTotal") boolean approximateTotal) {
 
         String tenantId = jwt.getClaim("tenantId");
         if (tenantId == null) {
             throw new ForbiddenException("No tenant associated with this user");
         }
 
-        return paymentService.listTransactions(tenantId, page, size, status);
+        return paymentService.listTransactions(tenantId, page, size, status, cursor, approximateTotal);
     }
 
     /**
@@ -1,18 +1,24 @@
 package org.hmmk.sms.resource;
 
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.tags.Tag;
+import org.hmmk.sms.dto.sms.PublicSmsBatchRequest;
+import org.hmmk.sms.dto.sms.PublicSmsBatchResponse;
 import org.hmmk.sms.dto.sms.PublicSmsRequest;
 import org.hmmk.sms.dto.sms.SingleSmsRequest;
 import org.hmmk.sms.dto.sms.SmsJobResponse;
-import org.hmmk.sms.entity.ApiKey;
+import org.hmmk.sms.entity.Sender;
 import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.service.ApiKeyCache;
 import org.hmmk.sms.service.SmsJobService;
+import org.hmmk.sms.service.TransactionalSmsService;
+
+import java.time.Instant;
 
 @Path("/api/p/sms")
 @Produces(MediaType.APPLICATION_JSON)
@@ -23,6 +29,12 @@ public class PublicSmsResource {
     @Inject
     SmsJobService smsJobService;
 
+    @Inject
+    ApiKeyCache apiKeyCache;
+
+    @Inject
+    TransactionalSmsService transactionalSmsService;
+
     @POST
     @Path("/send")
     @Operation(summary = "Send SMS", description = "Send an SMS using JSON body with optional scheduling and webhook")
@@ -34,6 +46,19 @@ public class PublicSmsResource {
         return processSms(apiKeyStr, request);
     }
 
+    @POST
+    @Path("/send-batch")
+    @Operation(summary = "Send SMS batch", description = "Send many SMS with one request; each message has its own recipient, text and optional webhook, and gets its own result")
+    public PublicSmsBatchResponse sendBatch(
+            @HeaderParam("API-Key") String apiKeyStr,
+            @Valid PublicSmsBatchRequest request) {
+
+        validateApiKey(apiKeyStr);
+        ApiKeyCache.ResolvedKey apiKey = resolveActiveKey(apiKeyStr);
+        return smsJobService.sendBatchFromVerifiedSender(apiKey.tenantId(), "API-KEY:" + apiKey.apiKeyId(),
+                apiKey.senderId(), request);
+    }
+
     private void validateApiKey(String apiKeyStr) {
         if (apiKeyStr == null || apiKeyStr.isBlank()) {
             throw new NotAuthorizedException("API Key is required");
@@ -41,28 +66,42 @@ public class PublicSmsResource {
     }
 
     private SmsJobResponse processSms(String apiKeyStr, PublicSmsRequest request) {
-        ApiKey apiKey = ApiKey.find("apiKey", apiKeyStr).firstResult();
-        if (apiKey == null) {
-            throw new NotAuthorizedException("Invalid API Key");
-        }
+        ApiKeyCache.ResolvedKey apiKey = resolveActiveKey(apiKeyStr);
 
-        // Ensure sender is still active
-        if (apiKey.sender.status != org.hmmk.sms.entity.Sender.SenderStatus.ACTIVE) {
-            throw new BadRequestException("Associated sender is not active");
+        // Immediate messages skip the per-message job and go out right after commit
+        if (request.getScheduledAt() == null || !request.getScheduledAt().isAfter(Instant.now())) {
+            SmsRecipient recipient = transactionalSmsService.send(apiKey, request.getTo(), request.getMessage(),
+                    request.getWebhookUrl());
+            return SmsJobResponse.fromTransactional(recipient, "SMS sent successfully");
         }
 
         SingleSmsRequest internalRequest = SingleSmsRequest.builder()
-                .senderId(apiKey.sender.id)
+                .senderId(apiKey.senderId())
                 .phoneNumber(request.getTo())
                 .message(request.getMessage())
                 .scheduledAt(request.getScheduledAt())
                 .build();
 
         // Use "API-KEY:<id>" as the userId to trace source
-        String userId = "API-KEY:" + apiKey.id;
+        String userId = "API-KEY:" + apiKey.apiKeyId();
 
-        SmsJob job = smsJobService.sendSingle(apiKey.tenantId, userId, internalRequest, request.getWebhookUrl());
+        // The cached key already vouches for tenant and sender, so no further lookups are needed
+        SmsJob job = smsJobService.sendSingleFromVerifiedSender(apiKey.tenantId(), userId, internalRequest,
+                request.getWebhookUrl());
 
         return SmsJobResponse.fromEntity(job, "SMS sent successfully");
     }
+
+    private ApiKeyCache.ResolvedKey resolveActiveKey(String apiKeyStr) {
+        ApiKeyCache.ResolvedKey apiKey = apiKeyCache.resolve(apiKeyStr);
+        if (apiKey == null) {
+            throw new NotAuthorizedException("Invalid API Key");
+        }
+
+        // Ensure sender is still active
+        if (apiKey.senderStatus() != Sender.SenderStatus.ACTIVE) {
+            throw new BadRequestException("Associated sender is not active");
+        }
+        return apiKey;
+    }
 }
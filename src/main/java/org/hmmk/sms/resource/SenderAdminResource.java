@@ -16,6 +16,8 @@ import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.dto.SenderRejectRequest;
 import org.hmmk.sms.dto.SenderResponse;
 import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.service.ApiKeyCache;
+import org.hmmk.sms.service.DashboardCache;
 
 import java.util.List;
 
@@ -33,6 +35,12 @@ public class SenderAdminResource {
     @Inject
     JsonWebToken jwt;
 
+    @Inject
+    ApiKeyCache apiKeyCache;
+
+    @Inject
+    DashboardCache dashboardCache;
+
     private String userIdFromJwt() {
         if (jwt == null)
             return null;
@@ -103,6 +111,8 @@ public class SenderAdminResource {
 
         sender.setStatus(Sender.SenderStatus.ACTIVE);
         sender.persist();
+        apiKeyCache.invalidateSender(sender.id);
+        dashboardCache.invalidateAdmin();
 
         return SenderResponse.fromEntity(sender, "Sender approved successfully");
     }
@@ -130,6 +140,8 @@ public class SenderAdminResource {
 
         sender.setStatus(Sender.SenderStatus.REJECTED);
         sender.persist();
+        apiKeyCache.invalidateSender(sender.id);
+        dashboardCache.invalidateAdmin();
 
         String message = "Sender rejected";
         if (request != null && request.getReason() != null && !request.getReason().isBlank()) {
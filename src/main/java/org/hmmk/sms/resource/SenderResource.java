@@ -17,6 +17,8 @@ import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.dto.SenderCreateRequest;
 import org.hmmk.sms.dto.SenderResponse;
 import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.service.ApiKeyCache;
+import org.hmmk.sms.service.DashboardCache;
 
 import java.util.List;
 
@@ -34,6 +36,12 @@ public class SenderResource {
     @Inject
     JsonWebToken jwt;
 
+    @Inject
+    ApiKeyCache apiKeyCache;
+
+    @Inject
+    DashboardCache dashboardCache;
+
     private String tenantIdFromJwt() {
         if (jwt == null)
             return null;
@@ -59,6 +67,7 @@ public class SenderResource {
                 .build();
         sender.tenantId = tenantId;
         sender.persist();
+        dashboardCache.invalidateAdmin();
 
         return SenderResponse.fromEntity(sender, "Sender created and pending admin approval");
     }
@@ -133,6 +142,7 @@ public class SenderResource {
 
         sender.setStatus(Sender.SenderStatus.PENDING_VERIFICATION);
         sender.persist();
+        dashboardCache.invalidateAdmin();
 
         return SenderResponse.fromEntity(sender, "Sender updated and pending admin approval");
     }
@@ -155,5 +165,7 @@ public class SenderResource {
         }
 
         sender.delete();
+        apiKeyCache.invalidateSender(id);
+        dashboardCache.invalidateAdmin();
     }
 }
@@ -5,6 +5,7 @@ import jakarta.inject.Inject;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.media.Content;
@@ -14,17 +15,17 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.hmmk.sms.dto.sms.BulkSmsRequest;
 import org.hmmk.sms.dto.sms.GroupSmsRequest;
 import org.hmmk.sms.dto.sms.SingleSmsRequest;
+import org.hmmk.sms.dto.sms.SmsJobProgressResponse;
 import org.hmmk.sms.dto.sms.SmsJobResponse;
 import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.service.KeysetPager;
 import org.hmmk.sms.service.SmsJobService;
 import org.jboss.resteasy.reactive.RestForm;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.InputStream;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 /**
@@ -42,6 +43,9 @@ public class SmsJobResource {
     @Inject
     SmsJobService smsJobService;
 
+    @Inject
+    KeysetPager keysetPager;
+
     private String tenantIdFromJwt() {
         if (jwt == null)
             return null;
@@ -76,42 +80,42 @@ public class SmsJobResource {
 
     /**
      * Send SMS to all contacts in a contact group.
+     * Recipients are expanded in the background; poll the progress endpoint for the outcome.
      */
     @POST
     @Path("/group")
     @RolesAllowed("tenant_admin")
     @Operation(summary = "Send group SMS", description = "Send an SMS to all contacts in a contact group")
-    @APIResponse(responseCode = "200", description = "SMS job created successfully", content = @Content(schema = @Schema(implementation = SmsJobResponse.class)))
+    @APIResponse(responseCode = "202", description = "SMS job accepted for ingestion", content = @Content(schema = @Schema(implementation = SmsJobResponse.class)))
     @APIResponse(responseCode = "400", description = "Invalid request or empty group")
     @APIResponse(responseCode = "404", description = "Contact group or sender not found")
-    public SmsJobResponse sendToGroup(@Valid GroupSmsRequest request) {
+    public Response sendToGroup(@Valid GroupSmsRequest request) {
         String tenantId = tenantIdFromJwt();
         String userId = userIdFromJwt();
 
         SmsJob job = smsJobService.sendToGroup(tenantId, userId, request);
 
-        String message = job.approvalStatus == SmsJob.ApprovalStatus.PENDING
-                ? "Group SMS job created and pending approval"
-                : "Group SMS job created and scheduled";
-
-        return SmsJobResponse.fromEntity(job, message);
+        return Response.accepted(SmsJobResponse.fromEntity(job, "Group SMS job accepted, recipients are being added"))
+                .build();
     }
 
     /**
      * Send bulk SMS from a CSV file containing phone numbers.
+     * The file is ingested in the background; poll the progress endpoint for the outcome.
      */
     @POST
     @Path("/bulk")
     @RolesAllowed("tenant_admin")
     @Consumes(MediaType.MULTIPART_FORM_DATA)
     @Operation(summary = "Send bulk SMS", description = "Send SMS to phone numbers from a CSV file")
-    @APIResponse(responseCode = "200", description = "SMS job created successfully", content = @Content(schema = @Schema(implementation = SmsJobResponse.class)))
+    @APIResponse(responseCode = "202", description = "SMS job accepted for ingestion", content = @Content(schema = @Schema(implementation = SmsJobResponse.class)))
     @APIResponse(responseCode = "400", description = "Invalid request or CSV file")
     @APIResponse(responseCode = "404", description = "Sender not found")
-    public SmsJobResponse sendBulk(
+    public Response sendBulk(
             @RestForm("senderId") String senderId,
             @RestForm("message") String message,
             @RestForm("scheduledAt") String scheduledAtStr,
+            @RestForm("priority") String priorityStr,
             @RestForm("file") FileUpload file) {
 
         String tenantId = tenantIdFromJwt();
@@ -136,23 +140,40 @@ public class SmsJobResource {
             }
         }
 
+        SmsJob.Priority priority = null;
+        if (priorityStr != null && !priorityStr.isBlank()) {
+            try {
+                priority = SmsJob.Priority.valueOf(priorityStr.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new BadRequestException("Invalid priority. Use NORMAL or LOW.");
+            }
+        }
+
         BulkSmsRequest request = BulkSmsRequest.builder()
                 .senderId(senderId)
                 .message(message)
                 .scheduledAt(scheduledAt)
+                .priority(priority)
                 .build();
 
-        try (InputStream inputStream = new FileInputStream(file.uploadedFile().toFile())) {
-            SmsJob job = smsJobService.sendBulk(tenantId, userId, inputStream, request);
+        SmsJob job = smsJobService.sendBulk(tenantId, userId, file.uploadedFile(), request);
 
-            String responseMessage = job.approvalStatus == SmsJob.ApprovalStatus.PENDING
-                    ? "Bulk SMS job created and pending approval"
-                    : "Bulk SMS job created and scheduled";
+        return Response.accepted(SmsJobResponse.fromEntity(job, "Bulk SMS job accepted, recipients are being added"))
+                .build();
+    }
 
-            return SmsJobResponse.fromEntity(job, responseMessage);
-        } catch (IOException e) {
-            throw new BadRequestException("Failed to read CSV file: " + e.getMessage());
-        }
+    /**
+     * Get the recipient ingestion progress of a bulk or group SMS job.
+     */
+    @GET
+    @Path("/{id}/progress")
+    @RolesAllowed("tenant_admin")
+    @Operation(summary = "Get SMS job progress", description = "Rows parsed, accepted, rejected and persisted while a bulk or group job is ingested")
+    @APIResponse(responseCode = "200", description = "Ingestion progress", content = @Content(schema = @Schema(implementation = SmsJobProgressResponse.class)))
+    @APIResponse(responseCode = "404", description = "SMS job not found")
+    public SmsJobProgressResponse progress(@PathParam("id") UUID id) {
+        String tenantId = tenantIdFromJwt();
+        return smsJobService.getIngestionProgress(id, tenantId);
     }
 
     /**
@@ -163,12 +184,12 @@ public class SmsJobResource {
     @Operation(summary = "List SMS jobs", description = "Get all SMS jobs for the current tenant with pagination")
     public org.hmmk.sms.dto.common.PaginatedResponse<SmsJob> list(
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("approximateTotal") boolean approximateTotal) {
         String tenantId = tenantIdFromJwt();
-        var query = SmsJob.find("tenantId", tenantId).page(io.quarkus.panache.common.Page.of(page, size));
-        List<SmsJob> items = query.list();
-        long total = SmsJob.count("tenantId", tenantId);
-        return new org.hmmk.sms.dto.common.PaginatedResponse<>(items, total, page, size);
+        return keysetPager.page(SmsJob.class, Map.of("tenantId", tenantId), page, size, cursor, approximateTotal,
+                job -> job);
     }
 
     /**
@@ -182,7 +203,8 @@ public class SmsJobResource {
             @QueryParam("page") @DefaultValue("0") int page,
             @QueryParam("size") @DefaultValue("20") int size) {
         String tenantId = tenantIdFromJwt();
-        var query = SmsJob.find("tenantId = ?1 and approvalStatus = ?2", tenantId, SmsJob.ApprovalStatus.PENDING);
+        var query = SmsJob.find("tenantId = ?1 and approvalStatus = ?2 and status = ?3", tenantId,
+                SmsJob.ApprovalStatus.PENDING, SmsJob.JobStatus.PENDING_APPROVAL);
         List<SmsJob> items = query.list();
         long total = items.size();
         return new org.hmmk.sms.dto.common.PaginatedResponse<>(items, total, page, size);
@@ -1,7 +1,7 @@
 package org.hmmk.sms.resource;
 
-import io.quarkus.panache.common.Page;
 import jakarta.annotation.security.RolesAllowed;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
 import jakarta.ws.rs.*;
@@ -14,10 +14,14 @@ import org.eclipse.microprofile.openapi.annotations.tags.Tag;
 import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.dto.TenantResponse;
 import org.hmmk.sms.dto.TenantStatusUpdateRequest;
+import org.hmmk.sms.dto.TenantRetentionUpdateRequest;
 import org.hmmk.sms.dto.TenantThresholdUpdateRequest;
 import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
+import org.hmmk.sms.service.CreditService;
+import org.hmmk.sms.service.KeysetPager;
 
-import java.util.List;
+import java.util.Map;
 
 @Path("/api/admin/tenants")
 @Produces(MediaType.APPLICATION_JSON)
@@ -26,21 +30,21 @@ import java.util.List;
 @RolesAllowed("sys_admin")
 public class TenantAdminResource {
 
+    @Inject
+    CreditService creditService;
+
+    @Inject
+    KeysetPager keysetPager;
+
     @GET
     @Operation(summary = "List tenants", description = "List all tenants with pagination")
     @APIResponse(responseCode = "200", description = "Paginated list of tenants")
     public PaginatedResponse<TenantResponse> list(
             @QueryParam("page") @DefaultValue("0") int page,
-            @QueryParam("size") @DefaultValue("20") int size) {
-        Page p = Page.of(page, size);
-        List<Tenant> tenants = Tenant.findAll().page(p).list();
-        long total = Tenant.count();
-
-        List<TenantResponse> items = tenants.stream()
-                .map(TenantResponse::from)
-                .toList();
-
-        return new PaginatedResponse<>(items, total, page, size);
+            @QueryParam("size") @DefaultValue("20") int size,
+            @QueryParam("cursor") String cursor,
+            @QueryParam("approximateTotal") boolean approximateTotal) {
+        return keysetPager.page(Tenant.class, Map.of(), page, size, cursor, approximateTotal, TenantResponse::from);
     }
 
     @GET
@@ -85,6 +89,22 @@ public class TenantAdminResource {
         tenant.smsApprovalThreshold = request.getApprovalThreshold();
         return TenantResponse.from(tenant);
     }
+
+    @PUT
+    @Path("/{id}/retention")
+    @Transactional
+    @Operation(summary = "Update SMS retention", description = "Set how many months the tenant's SMS recipients are kept; null restores the default")
+    @APIResponse(responseCode = "200", description = "Updated tenant", content = @Content(schema = @Schema(implementation = TenantResponse.class)))
+    @APIResponse(responseCode = "404", description = "Tenant not found")
+    public TenantResponse updateRetention(@PathParam("id") String id, @Valid TenantRetentionUpdateRequest request) {
+        Tenant tenant = Tenant.findById(id);
+        if (tenant == null) {
+            throw new NotFoundException("Tenant not found");
+        }
+        tenant.smsRetentionMonths = request.getRetentionMonths();
+        return TenantResponse.from(tenant);
+    }
+
     @PUT
     @Path("/{id}/credit")
     @Transactional
@@ -96,7 +116,8 @@ public class TenantAdminResource {
         if (tenant == null) {
             throw new NotFoundException("Tenant not found");
         }
-        tenant.smsCredit += amount;
+        creditService.add(id, amount, CreditLedgerEntry.EntryType.ADMIN_ADJUST, null);
+        Tenant.getEntityManager().refresh(tenant);
         return TenantResponse.from(tenant);
     }
 }
@@ -0,0 +1,208 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.smallrye.reactive.messaging.annotations.Blocking;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.hmmk.sms.dto.apikey.ApiKeyInvalidation;
+import org.hmmk.sms.entity.ApiKey;
+import org.hmmk.sms.entity.Sender;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves public API keys to their tenant and sender without going to the database on every request.
+ *
+ * Keys are looked up by their SHA-256 digest, both here and in the unique {@code key_digest} index,
+ * so plaintext keys are neither stored nor kept in memory.
+ * Entries expire after {@code sms.api-keys.cache.ttl}, and the cache never holds more than
+ * {@code sms.api-keys.cache.max-size} keys. Revoking a key or changing a sender drops the affected entries
+ * on every node: the invalidation is applied locally and fanned out over RabbitMQ once the change commits.
+ * The TTL bounds how long a node that missed a broadcast keeps serving a stale entry.
+ */
+@ApplicationScoped
+public class ApiKeyCache {
+
+    private static final Logger LOG = Logger.getLogger(ApiKeyCache.class);
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    @Inject
+    DatabaseSupport databaseSupport;
+
+    @Inject
+    @Channel("api-key-invalidations")
+    Emitter<ApiKeyInvalidation> invalidationEmitter;
+
+    @ConfigProperty(name = "sms.api-keys.cache.ttl", defaultValue = "5m")
+    Duration ttl;
+
+    @ConfigProperty(name = "sms.api-keys.cache.max-size", defaultValue = "10000")
+    int maxSize;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * What a valid API key grants: sending as one sender of one tenant.
+     */
+    public record ResolvedKey(String apiKeyId, String tenantId, String senderId, String senderName,
+            Sender.SenderStatus senderStatus) {
+    }
+
+    private record Entry(ResolvedKey key, long expiresAtNanos) {
+    }
+
+    /**
+     * Returns the tenant and sender of an API key, or null if there is no such key.
+     * Unknown keys are not cached, so guessing keys cannot fill the cache.
+     */
+    public ResolvedKey resolve(String apiKey) {
+        String digest = ApiKey.digest(apiKey);
+        long now = System.nanoTime();
+        Entry entry = entries.get(digest);
+        if (entry != null && now - entry.expiresAtNanos() < 0) {
+            return entry.key();
+        }
+        ResolvedKey resolved = load(digest);
+        if (resolved == null) {
+            entries.remove(digest);
+            return null;
+        }
+        if (entries.size() >= maxSize) {
+            evict(now);
+        }
+        entries.put(digest, new Entry(resolved, now + ttl.toNanos()));
+        return resolved;
+    }
+
+    /**
+     * Drops a revoked key on all nodes once the current transaction commits.
+     */
+    public void invalidateKey(String apiKeyId) {
+        broadcastAfterCommit(ApiKeyInvalidation.builder().apiKeyId(apiKeyId).build());
+    }
+
+    /**
+     * Drops all keys of a sender whose status changed or that was deleted, on all nodes, once the current
+     * transaction commits.
+     */
+    public void invalidateSender(String senderId) {
+        broadcastAfterCommit(ApiKeyInvalidation.builder().senderId(senderId).build());
+    }
+
+    @Incoming("api-key-invalidations-in")
+    @Blocking
+    public void onInvalidation(JsonObject payload) {
+        apply(payload.mapTo(ApiKeyInvalidation.class));
+    }
+
+    void apply(ApiKeyInvalidation invalidation) {
+        entries.values().removeIf(entry ->
+                (invalidation.getApiKeyId() != null && invalidation.getApiKeyId().equals(entry.key().apiKeyId()))
+                        || (invalidation.getSenderId() != null
+                        && invalidation.getSenderId().equals(entry.key().senderId())));
+    }
+
+    private ResolvedKey load(String digest) {
+        // One query instead of key, lazy sender and tenant lookups
+        List<Object[]> found = em.createQuery(
+                        "SELECT k.id, k.tenantId, s.id, s.name, s.status FROM ApiKey k JOIN k.sender s " +
+                                "WHERE k.keyDigest = :digest",
+                        Object[].class)
+                .setParameter("digest", digest)
+                .getResultList();
+        if (found.isEmpty()) {
+            return null;
+        }
+        Object[] row = found.get(0);
+        return new ResolvedKey((String) row[0], (String) row[1], (String) row[2], (String) row[3],
+                (Sender.SenderStatus) row[4]);
+    }
+
+    /**
+     * Replaces plaintext keys created before keys were hashed with their digest and prefix.
+     * Idempotent, so nodes starting together do not get in each other's way.
+     */
+    void hashPlaintextKeys(@Observes StartupEvent event) {
+        String table = databaseSupport.tableName(ApiKey.class);
+        QuarkusTransaction.requiringNew().run(() -> {
+            @SuppressWarnings("unchecked")
+            List<Object[]> plaintext = em.createNativeQuery(
+                            "SELECT id, api_key FROM " + table + " WHERE key_digest IS NULL AND api_key IS NOT NULL")
+                    .getResultList();
+            for (Object[] row : plaintext) {
+                String apiKey = (String) row[1];
+                em.createNativeQuery("UPDATE " + table + " SET key_digest = ?1, key_prefix = ?2, api_key = NULL " +
+                                "WHERE id = ?3 AND key_digest IS NULL")
+                        .setParameter(1, ApiKey.digest(apiKey))
+                        .setParameter(2, ApiKey.prefix(apiKey))
+                        .setParameter(3, row[0])
+                        .executeUpdate();
+            }
+            if (!plaintext.isEmpty()) {
+                LOG.infof("Hashed %d plaintext API keys", plaintext.size());
+            }
+        });
+    }
+
+    /**
+     * Makes room for a new entry: expired entries go first, then arbitrary ones until below the bound.
+     */
+    private void evict(long now) {
+        entries.values().removeIf(entry -> now - entry.expiresAtNanos() >= 0);
+        Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() >= maxSize && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private void broadcastAfterCommit(ApiKeyInvalidation invalidation) {
+        if (txRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            broadcast(invalidation);
+            return;
+        }
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    broadcast(invalidation);
+                }
+            }
+        });
+    }
+
+    private void broadcast(ApiKeyInvalidation invalidation) {
+        apply(invalidation);
+        try {
+            invalidationEmitter.send(invalidation);
+        } catch (RuntimeException e) {
+            // Other nodes fall back to the TTL
+            LOG.warnf(e, "Could not broadcast API key invalidation %s", invalidation);
+        }
+    }
+}
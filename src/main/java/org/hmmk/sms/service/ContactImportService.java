@@ -1,6 +1,7 @@
 package org.hmmk.sms.service;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.BadRequestException;
 import org.apache.poi.ss.usermodel.Row;
@@ -18,11 +19,16 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 @ApplicationScoped
 public class ContactImportService {
 
+    @Inject
+    PhoneNumberNormalizer phoneNumberNormalizer;
+
     @Transactional
     public void addContactsToGroup(String tenantId, String groupId, List<String> contactIds) {
         ContactGroup group = ContactGroup.findById(groupId);
@@ -83,7 +89,7 @@ public class ContactImportService {
                         String name = getCellString(row, 1);
                         String email = getCellString(row, 2);
                         if (phone == null || phone.isBlank()) continue;
-                        processContactRow(result, tenantId, group, phone.trim(), (name == null ? null : name.trim()), (email == null ? null : email.trim()));
+                        processContactRow(result, tenantId, group, phone.trim(), (name == null ? null : name.trim()), (email == null ? null : email.trim()), null);
                     }
                     parsed = true;
                 }
@@ -97,7 +103,8 @@ public class ContactImportService {
             // Parse as CSV using an internal parser to avoid external dependency
             try (ByteArrayInputStream bais2 = new ByteArrayInputStream(bytes);
                  BufferedReader reader = new BufferedReader(new InputStreamReader(bais2, StandardCharsets.UTF_8))) {
-                String header = reader.readLine(); // skip header if present
+                // skip header if present; columns after phone, name and email are custom fields named by it
+                String[] header = parseCsvLine(reader.readLine());
                 String line;
                 while ((line = reader.readLine()) != null) {
                     String[] cols = parseCsvLine(line);
@@ -105,7 +112,14 @@ public class ContactImportService {
                     String name = cols.length > 1 ? cols[1] : null;
                     String email = cols.length > 2 ? cols[2] : null;
                     if (phone == null || phone.isBlank()) continue;
-                    processContactRow(result, tenantId, group, phone.trim(), (name == null ? null : name.trim()), (email == null ? null : email.trim()));
+                    Map<String, String> customFields = null;
+                    for (int i = 3; i < cols.length && i < header.length; i++) {
+                        if (!header[i].isBlank() && !cols[i].isBlank()) {
+                            if (customFields == null) customFields = new LinkedHashMap<>();
+                            customFields.put(header[i], cols[i]);
+                        }
+                    }
+                    processContactRow(result, tenantId, group, phone.trim(), (name == null ? null : name.trim()), (email == null ? null : email.trim()), customFields);
                 }
             }
         }
@@ -113,13 +127,18 @@ public class ContactImportService {
         return result;
     }
 
-    private void processContactRow(List<Contact> result, String tenantId, ContactGroup group, String phone, String name, String email) {
+    private void processContactRow(List<Contact> result, String tenantId, ContactGroup group, String rawPhone, String name, String email,
+            Map<String, String> customFields) {
+        // Stored like recipient numbers so that messages find their contact; rows that are no number are skipped
+        String phone = phoneNumberNormalizer.normalize(rawPhone);
+        if (phone == null) return;
         Contact c = Contact.find("tenantId = ?1 and phone = ?2", tenantId, phone).firstResult();
         if (c == null) {
             c = new Contact();
             c.phone = phone;
             c.name = name;
             c.email = email;
+            c.customFields = customFields;
             c.tenantId = tenantId;
             c.persist();
         }
@@ -0,0 +1,438 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.Transactional;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.ws.rs.BadRequestException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.credit.CreditBalanceSnapshot;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry.EntryType;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns every change to a tenant's SMS credit balance.
+ *
+ * Every change is appended to the {@link CreditLedgerEntry credit ledger}. Balance reads use the tenant's
+ * {@link CreditBalanceSnapshot} plus the ledger entries after it, and a background job folds settled
+ * entries into the snapshots, so reads never touch the tenant row and the ledger doubles as audit trail.
+ *
+ * {@code tenant.sms_credit} remains the overdraw guard: reservations are a single conditional decrement
+ * ({@code sms_credit = sms_credit - n WHERE sms_credit >= n}), so concurrent senders can never overdraw
+ * a tenant and nobody holds the tenant row longer than one statement.
+ *
+ * Tenants listed in {@code sms.credits.lease.tenants} additionally get a striped in-memory credit lease:
+ * blocks of credit are taken from the database up front and small reservations are served from the
+ * stripes with a CAS, without touching the tenant row at all. Once less than a block is left, reservations
+ * gather from all stripes and take what they lack from the database exactly. Unused lease credit is handed
+ * back to the database by a background reconcile and on shutdown. If the node dies in between, at most
+ * {@code stripes * block-size} credits of such a tenant stay reserved until corrected by an admin.
+ */
+@ApplicationScoped
+public class CreditService {
+
+    private static final Logger LOG = Logger.getLogger(CreditService.class);
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    @Inject
+    DashboardCache dashboardCache;
+
+    @Inject
+    SmsMetrics metrics;
+
+    @ConfigProperty(name = "sms.credits.snapshot.settle", defaultValue = "1m")
+    Duration snapshotSettle;
+
+    @ConfigProperty(name = "sms.credits.lease.tenants")
+    Optional<List<String>> leaseTenants;
+
+    @ConfigProperty(name = "sms.credits.lease.block-size", defaultValue = "1000")
+    long leaseBlockSize;
+
+    @ConfigProperty(name = "sms.credits.lease.stripes", defaultValue = "8")
+    int leaseStripes;
+
+    private final Map<String, CreditLease> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Atomically takes credits from the tenant's balance, returning false when the balance is too low.
+     * Joins the caller's transaction, so a rollback gives the credits back.
+     *
+     * @param reference what the credits are reserved for, e.g. the job id; recorded in the ledger
+     */
+    @Transactional
+    public boolean tryReserve(String tenantId, long credits, String reference) {
+        if (credits <= 0) {
+            return true;
+        }
+        CreditLease lease = leaseFor(tenantId);
+        if (lease != null && credits <= leaseBlockSize) {
+            if (!lease.tryTake(credits)) {
+                return false;
+            }
+            // Lease credits live outside the database transaction, so return them explicitly on rollback
+            txRegistry.registerInterposedSynchronization(new ReturnOnRollback(lease, credits));
+        } else if (decrement(tenantId, credits)) {
+            ensureSnapshot(tenantId, -credits);
+        } else {
+            return false;
+        }
+        append(tenantId, EntryType.RESERVE, -credits, reference);
+        metrics.creditsBurned(credits);
+        return true;
+    }
+
+    /**
+     * Like {@link #tryReserve} but fails with a 400 when the balance is too low.
+     */
+    @Transactional
+    public void reserve(String tenantId, long credits, String reference) {
+        if (!tryReserve(tenantId, credits, reference)) {
+            throw insufficient(tenantId, credits);
+        }
+    }
+
+    /**
+     * Checks the balance without reserving anything, e.g. for jobs that still wait for approval.
+     */
+    public void ensureAvailable(String tenantId, long credits) {
+        if (getBalance(tenantId) < credits) {
+            throw insufficient(tenantId, credits);
+        }
+    }
+
+    /**
+     * Gives previously reserved credits back, e.g. when a job is canceled ({@link EntryType#REFUND})
+     * or messages could not be delivered ({@link EntryType#DELIVERY_FAIL_REFUND}).
+     */
+    @Transactional
+    public void refund(String tenantId, long credits, EntryType type, String reference) {
+        change(tenantId, credits, type, reference);
+    }
+
+    /**
+     * Adds purchased credits ({@link EntryType#PURCHASE}) or applies an admin correction
+     * ({@link EntryType#ADMIN_ADJUST}), which may be negative.
+     */
+    @Transactional
+    public void add(String tenantId, long credits, EntryType type, String reference) {
+        change(tenantId, credits, type, reference);
+    }
+
+    /**
+     * Available credits: the tenant's snapshot plus the ledger entries after it.
+     * Includes credits held in leases, on this node or any other.
+     */
+    public long getBalance(String tenantId) {
+        CreditBalanceSnapshot snapshot = CreditBalanceSnapshot.findById(tenantId);
+        if (snapshot == null) {
+            // No credit change yet, so nothing was ever leased or written to the ledger
+            Tenant tenant = Tenant.findById(tenantId);
+            return tenant == null ? 0L : tenant.smsCredit;
+        }
+        Long tail = em.createQuery("SELECT COALESCE(SUM(e.amount), 0) FROM CreditLedgerEntry e " +
+                        "WHERE e.tenantId = :tenantId AND e.id > :after", Long.class)
+                .setParameter("tenantId", tenantId)
+                .setParameter("after", snapshot.lastEntryId)
+                .getSingleResult();
+        return snapshot.balance + tail;
+    }
+
+    /**
+     * Folds settled ledger entries into the balance snapshots, then reconciles them with the tenant rows.
+     *
+     * Only entries older than {@code sms.credits.snapshot.settle} are folded: ledger ids are handed out at
+     * insert time, and a transaction still open past the snapshot's {@code lastEntryId} would otherwise
+     * commit an entry the balance never sees. An entry that still commits after its id was folded past, e.g.
+     * from a transaction held up longer than that, is found by {@link #reconcileSnapshots()}.
+     */
+    @Scheduled(every = "${sms.credits.snapshot.interval:1m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void foldLedger() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Long upTo = em.createQuery("SELECT MAX(e.id) FROM CreditLedgerEntry e WHERE e.createdAt < :settled",
+                            Long.class)
+                    .setParameter("settled", Instant.now().minus(snapshotSettle))
+                    .getSingleResult();
+            if (upTo == null) {
+                return;
+            }
+            int folded = em.createQuery("UPDATE CreditBalanceSnapshot s SET " +
+                            "s.balance = s.balance + (SELECT COALESCE(SUM(e.amount), 0) FROM CreditLedgerEntry e " +
+                            "WHERE e.tenantId = s.tenantId AND e.id > s.lastEntryId AND e.id <= :upTo), " +
+                            "s.lastEntryId = :upTo, s.updatedAt = :now " +
+                            "WHERE EXISTS (SELECT 1 FROM CreditLedgerEntry e " +
+                            "WHERE e.tenantId = s.tenantId AND e.id > s.lastEntryId AND e.id <= :upTo)")
+                    .setParameter("upTo", upTo)
+                    .setParameter("now", Instant.now())
+                    .executeUpdate();
+            if (folded > 0) {
+                LOG.debugf("Folded credit ledger up to entry %d into %d balance snapshots", upTo, (Integer) folded);
+            }
+        });
+        QuarkusTransaction.requiringNew().run(this::reconcileSnapshots);
+    }
+
+    /**
+     * Corrects snapshots that disagree with {@code tenant.sms_credit}, which every ledger entry changes in
+     * its own transaction. Both are read in one statement, so they agree unless an entry was skipped by a
+     * fold. Leased tenants are left out, since their row does not count what the leases hold.
+     */
+    void reconcileSnapshots() {
+        boolean leased = leaseTenants.isPresent() && !leaseTenants.get().isEmpty();
+        var query = em.createQuery("SELECT s.tenantId, s.lastEntryId, s.balance, t.smsCredit, " +
+                "(SELECT COALESCE(SUM(e.amount), 0) FROM CreditLedgerEntry e " +
+                "WHERE e.tenantId = s.tenantId AND e.id > s.lastEntryId) " +
+                "FROM CreditBalanceSnapshot s, Tenant t WHERE t.id = s.tenantId" +
+                (leased ? " AND s.tenantId NOT IN :leased" : ""), Object[].class);
+        if (leased) {
+            query.setParameter("leased", leaseTenants.get());
+        }
+        for (Object[] row : query.getResultList()) {
+            long balance = ((Number) row[2]).longValue() + ((Number) row[4]).longValue();
+            long actual = ((Number) row[3]).longValue();
+            if (balance == actual) {
+                continue;
+            }
+            LOG.warnf("Credit snapshot of tenant %s is off by %d (ledger says %d, tenant row %d), correcting it",
+                    row[0], actual - balance, balance, actual);
+            // Only if no fold moved the snapshot in the meantime; the next run checks again otherwise
+            CreditBalanceSnapshot.update("balance = balance + ?1, updatedAt = ?2 " +
+                            "where tenantId = ?3 and lastEntryId = ?4 and balance = ?5",
+                    actual - balance, Instant.now(), row[0], row[1], row[2]);
+        }
+    }
+
+    private void change(String tenantId, long credits, EntryType type, String reference) {
+        if (credits == 0) {
+            return;
+        }
+        increment(tenantId, credits);
+        ensureSnapshot(tenantId, credits);
+        append(tenantId, type, credits, reference);
+    }
+
+    private void append(String tenantId, EntryType type, long amount, String reference) {
+        CreditLedgerEntry entry = CreditLedgerEntry.builder()
+                .tenantId(tenantId)
+                .entryType(type)
+                .amount(amount)
+                .reference(reference)
+                .build();
+        entry.persist();
+        dashboardCache.invalidateTenant(tenantId);
+    }
+
+    /**
+     * Creates the opening snapshot on a tenant's first credit change, from the balance it had before.
+     * Must run after {@code delta} was applied to the tenant row in the current transaction: the row lock
+     * keeps concurrent first changes from both creating a snapshot.
+     */
+    private void ensureSnapshot(String tenantId, long delta) {
+        if (CreditBalanceSnapshot.findById(tenantId) != null) {
+            return;
+        }
+        Tenant tenant = Tenant.findById(tenantId);
+        if (tenant == null) {
+            return;
+        }
+        em.refresh(tenant);
+        CreditBalanceSnapshot snapshot = CreditBalanceSnapshot.builder()
+                .tenantId(tenantId)
+                .balance(tenant.smsCredit - delta)
+                .lastEntryId(0L)
+                .updatedAt(Instant.now())
+                .build();
+        snapshot.persist();
+    }
+
+    private BadRequestException insufficient(String tenantId, long credits) {
+        return new BadRequestException(String.format("Insufficient SMS credits. Required: %d, Available: %d",
+                credits, getBalance(tenantId)));
+    }
+
+    private boolean decrement(String tenantId, long credits) {
+        return Tenant.update("smsCredit = smsCredit - ?1 where id = ?2 and smsCredit >= ?1", credits, tenantId) == 1;
+    }
+
+    private void increment(String tenantId, long credits) {
+        Tenant.update("smsCredit = smsCredit + ?1 where id = ?2", credits, tenantId);
+    }
+
+    private CreditLease leaseFor(String tenantId) {
+        if (leaseTenants.isEmpty() || !leaseTenants.get().contains(tenantId)) {
+            return null;
+        }
+        return leases.computeIfAbsent(tenantId, CreditLease::new);
+    }
+
+    /**
+     * Hands unused lease credit back to the database so balances shown elsewhere stay close to the truth.
+     */
+    @Scheduled(every = "${sms.credits.lease.reconcile-interval:30s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void reconcileLeases() {
+        for (CreditLease lease : leases.values()) {
+            lease.releaseIdle();
+        }
+    }
+
+    @PreDestroy
+    void releaseLeases() {
+        for (CreditLease lease : leases.values()) {
+            lease.releaseAll();
+        }
+    }
+
+    /**
+     * Credit pre-allocated to this node for one tenant, split over stripes to avoid CAS contention.
+     */
+    final class CreditLease {
+        private final String tenantId;
+        private final AtomicLong[] stripes;
+        private final Set<Integer> usedSinceReconcile = ConcurrentHashMap.newKeySet();
+
+        CreditLease(String tenantId) {
+            this.tenantId = tenantId;
+            this.stripes = new AtomicLong[Math.max(1, leaseStripes)];
+            for (int i = 0; i < stripes.length; i++) {
+                stripes[i] = new AtomicLong();
+            }
+        }
+
+        boolean tryTake(long credits) {
+            int index = (int) (Thread.currentThread().threadId() % stripes.length);
+            AtomicLong stripe = stripes[index];
+            usedSinceReconcile.add(index);
+            while (takeUpTo(stripe, credits, true) == 0) {
+                if (!takeFromDatabase(Math.max(leaseBlockSize, credits))) {
+                    return takeRemainder(stripe, credits);
+                }
+                stripe.addAndGet(Math.max(leaseBlockSize, credits));
+            }
+            return true;
+        }
+
+        /**
+         * For when the database has less than a block left: gathers the credits from all stripes, since other
+         * threads may hold them, and takes what they lack from the database exactly.
+         */
+        private boolean takeRemainder(AtomicLong own, long credits) {
+            long collected = 0;
+            for (AtomicLong stripe : stripes) {
+                collected += takeUpTo(stripe, credits - collected, false);
+                if (collected == credits) {
+                    return true;
+                }
+            }
+            if (takeFromDatabase(credits - collected)) {
+                return true;
+            }
+            own.addAndGet(collected);
+            return false;
+        }
+
+        /**
+         * Takes {@code credits} from the stripe, or with {@code all} false as many of them as it has.
+         * Returns what was taken.
+         */
+        private long takeUpTo(AtomicLong stripe, long credits, boolean all) {
+            while (true) {
+                long available = stripe.get();
+                long taken = Math.min(available, credits);
+                if (taken <= 0 || (all && taken < credits)) {
+                    return 0;
+                }
+                if (stripe.compareAndSet(available, available - taken)) {
+                    return taken;
+                }
+            }
+        }
+
+        /**
+         * Moves credits from the tenant row into the lease, in a separate transaction: they belong to the lease,
+         * not to the caller's transaction.
+         */
+        private boolean takeFromDatabase(long credits) {
+            return QuarkusTransaction.requiringNew().call(() -> {
+                if (!decrement(tenantId, credits)) {
+                    return false;
+                }
+                // Moving credit into the lease is not a ledger change, but the snapshot must predate it
+                ensureSnapshot(tenantId, -credits);
+                return true;
+            });
+        }
+
+        void giveBack(long credits) {
+            stripes[(int) (Thread.currentThread().threadId() % stripes.length)].addAndGet(credits);
+        }
+
+        long available() {
+            long total = 0;
+            for (AtomicLong stripe : stripes) {
+                total += stripe.get();
+            }
+            return total;
+        }
+
+        void releaseIdle() {
+            for (int i = 0; i < stripes.length; i++) {
+                if (!usedSinceReconcile.remove(i)) {
+                    release(stripes[i]);
+                }
+            }
+        }
+
+        void releaseAll() {
+            for (AtomicLong stripe : stripes) {
+                release(stripe);
+            }
+        }
+
+        private void release(AtomicLong stripe) {
+            long unused = stripe.getAndSet(0);
+            if (unused > 0) {
+                try {
+                    QuarkusTransaction.requiringNew().run(() -> increment(tenantId, unused));
+                } catch (RuntimeException e) {
+                    stripe.addAndGet(unused);
+                    LOG.warnf(e, "Could not return %d leased credits of tenant %s", unused, tenantId);
+                }
+            }
+        }
+    }
+
+    private record ReturnOnRollback(CreditLease lease, long credits) implements Synchronization {
+        @Override
+        public void beforeCompletion() {
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            if (status != Status.STATUS_COMMITTED) {
+                lease.giveBack(credits);
+            }
+        }
+    }
+}
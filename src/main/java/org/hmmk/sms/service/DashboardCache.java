@@ -0,0 +1,169 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Keeps dashboard responses on this node for {@code sms.dashboard.cache.ttl}, per tenant and view.
+ *
+ * Concurrent requests for a view that is missing or expired share one computation: the first one loads it and
+ * the others wait for its result, so a burst of dashboard refreshes costs the queries once. A failed load is not
+ * kept. Credit changes drop a tenant's views, and job and sender changes that show on the admin overview drop
+ * that, once their transaction commits. Other nodes are not told; the short TTL bounds how stale they get.
+ *
+ * Views can be keyed by request parameters, so a scope keeps at most {@code sms.dashboard.cache.max-views}
+ * of them: adding one beyond that drops the expired views first and then the ones expiring soonest. Expired
+ * views and empty scopes are also swept every minute.
+ */
+@ApplicationScoped
+public class DashboardCache {
+
+    /** Scope of views that are not about one tenant, such as the admin overview. */
+    private static final String ADMIN = "";
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    @ConfigProperty(name = "sms.dashboard.cache.ttl", defaultValue = "15s")
+    Duration ttl;
+
+    @ConfigProperty(name = "sms.dashboard.cache.max-views", defaultValue = "100")
+    int maxViews;
+
+    private final Map<String, Map<String, Entry>> scopes = new ConcurrentHashMap<>();
+
+    private record Entry(CompletableFuture<Object> value, long expiresAtNanos) {
+        boolean isExpired(long now) {
+            // A view still being loaded is never expired, so it is not loaded twice
+            return value.isDone() && now - expiresAtNanos >= 0;
+        }
+    }
+
+    /**
+     * Returns the tenant's view, loading it if it is not cached or being loaded already.
+     */
+    public <T> T get(String tenantId, String view, Supplier<T> loader) {
+        return load(tenantId, view, loader);
+    }
+
+    /**
+     * Returns a view that is not about one tenant.
+     */
+    public <T> T getAdmin(String view, Supplier<T> loader) {
+        return load(ADMIN, view, loader);
+    }
+
+    /**
+     * Drops the tenant's views once the current transaction commits.
+     */
+    public void invalidateTenant(String tenantId) {
+        afterCommit(() -> scopes.remove(tenantId));
+    }
+
+    /**
+     * Drops the views that are not about one tenant once the current transaction commits.
+     */
+    public void invalidateAdmin() {
+        afterCommit(() -> scopes.remove(ADMIN));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T load(String scope, String view, Supplier<T> loader) {
+        Map<String, Entry> entries = scopes.computeIfAbsent(scope, s -> new ConcurrentHashMap<>());
+        long now = System.nanoTime();
+        Entry[] created = new Entry[1];
+        Entry entry = entries.compute(view, (v, existing) -> existing != null && !existing.isExpired(now)
+                ? existing
+                : (created[0] = new Entry(new CompletableFuture<>(), now + ttl.toNanos())));
+
+        if (entry == created[0]) {
+            if (entries.size() > maxViews) {
+                evict(entries, entry, now);
+            }
+            try {
+                entry.value().complete(loader.get());
+            } catch (RuntimeException e) {
+                entries.remove(view, entry);
+                entry.value().completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return (T) entry.value().join();
+        } catch (CompletionException e) {
+            // Waiters get the loader's own exception, e.g. a 404
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Drops expired views and scopes left without any.
+     */
+    @Scheduled(every = "1m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void sweep() {
+        long now = System.nanoTime();
+        for (String scope : scopes.keySet()) {
+            scopes.computeIfPresent(scope, (s, entries) -> {
+                entries.values().removeIf(e -> e.isExpired(now));
+                return entries.isEmpty() ? null : entries;
+            });
+        }
+    }
+
+    /**
+     * Brings a scope back to {@code maxViews}, sparing the view just added and those still loading.
+     */
+    private void evict(Map<String, Entry> entries, Entry added, long now) {
+        entries.values().removeIf(e -> e.isExpired(now));
+        if (entries.size() <= maxViews) {
+            return;
+        }
+        List<Map.Entry<String, Entry>> loaded = new ArrayList<>();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            if (e.getValue() != added && e.getValue().value().isDone()) {
+                loaded.add(e);
+            }
+        }
+        loaded.sort(Comparator.comparingLong(e -> e.getValue().expiresAtNanos() - now));
+        for (int i = 0; i < loaded.size() && entries.size() > maxViews; i++) {
+            entries.remove(loaded.get(i).getKey(), loaded.get(i).getValue());
+        }
+    }
+
+    private void afterCommit(Runnable invalidation) {
+        if (txRegistry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            invalidation.run();
+            return;
+        }
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    invalidation.run();
+                }
+            }
+        });
+    }
+}
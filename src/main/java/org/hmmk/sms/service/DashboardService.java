@@ -4,7 +4,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.Query;
-import jakarta.persistence.TypedQuery;
+import jakarta.ws.rs.BadRequestException;
 import org.hmmk.sms.dto.AdminDashboardResponse;
 import org.hmmk.sms.dto.DashboardOverviewResponse;
 import org.hmmk.sms.dto.DashboardResponse;
@@ -17,18 +17,17 @@ import org.hmmk.sms.entity.sms.SmsJob;
 import org.hmmk.sms.entity.sms.SmsRecipient;
 import org.hmmk.sms.entity.payment.SmsPackageTier;
 
-import java.sql.Timestamp;
 import java.time.Clock;
 import java.time.Instant;
+import java.time.LocalDate;
 import java.time.ZoneOffset;
-import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 @ApplicationScoped
 public class DashboardService {
@@ -36,6 +35,13 @@ public class DashboardService {
     @Inject
     EntityManager em;
 
+    @Inject
+    CreditService creditService;
+
+    private static final int DEFAULT_PERIODS = 12;
+    private static final int MAX_POINTS = 5000;
+    private static final long SECONDS_PER_DAY = 86_400L;
+
     private Clock clock = Clock.systemUTC();
 
     void setClock(Clock clock) {
@@ -69,8 +75,7 @@ public class DashboardService {
     }
 
     public long getRemainingCredits(String tenantId) {
-        Tenant t = Tenant.findById(tenantId);
-        return t == null ? 0L : t.smsCredit;
+        return creditService.getBalance(tenantId);
     }
 
     public long getContactCount(String tenantId) {
@@ -78,7 +83,7 @@ public class DashboardService {
     }
 
     /**
-     * Count SmsRecipient rows with status = SENT grouped by parent job.sourceType
+     * Sum the tenant's SENT rollups grouped by job sourceType.
      * Return a map that always contains the known SourceType names as keys (with 0 if none).
      */
     public SmsSentBySource getTotalSmsSentBySource(String tenantId) {
@@ -86,12 +91,12 @@ public class DashboardService {
         long manual = 0L;
         long csvUpload = 0L;
 
-        String jpql = "SELECT j.sourceType, COUNT(r) FROM SmsRecipient r JOIN r.job j " +
-                "WHERE r.tenantId = :tenantId AND r.status = :sent GROUP BY j.sourceType";
+        String jpql = "SELECT s.sourceType, SUM(s.messageCount) FROM SmsDailyStat s " +
+                "WHERE s.tenantId = :tenantId AND s.status = :sent GROUP BY s.sourceType";
 
         Query q = em.createQuery(jpql);
         q.setParameter("tenantId", tenantId);
-        q.setParameter("sent", org.hmmk.sms.entity.sms.SmsRecipient.RecipientStatus.SENT);
+        q.setParameter("sent", SmsRecipient.RecipientStatus.SENT);
 
         @SuppressWarnings("unchecked")
         List<Object[]> results = q.getResultList();
@@ -125,163 +130,226 @@ public class DashboardService {
     }
 
     public DashboardOverviewResponse getSmsOverview(String tenantId, Granularity granularity) {
-        int periods = 12;
-        List<DashboardTimeSeriesPoint> points = buildEmptyBuckets(granularity, periods);
-        Map<Instant, DashboardTimeSeriesPoint> bucketIndex = points.stream()
-                .collect(Collectors.toMap(DashboardTimeSeriesPoint::getPeriodStart, Function.identity()));
-
-        String truncExpr = "DATE_TRUNC('" + granularity.toPgUnit().toUpperCase() + "', r.sentAt)";
-        String jpql = "SELECT " + truncExpr + ", COUNT(r) FROM SmsRecipient r " +
-                "WHERE r.tenantId = :tenantId AND r.status = :status AND r.sentAt >= :from " +
-                "GROUP BY " + truncExpr + " ORDER BY " + truncExpr;
-        Query query = em.createQuery(jpql);
-        query.setParameter("tenantId", tenantId);
-        query.setParameter("status", SmsRecipient.RecipientStatus.SENT);
-        query.setParameter("from", points.get(0).periodStart);
+        return getSmsOverview(tenantId, granularity, null, null, false);
+    }
 
-        @SuppressWarnings("unchecked")
-        List<Object[]> results = query.getResultList();
+    /**
+     * SENT counts per period from the period holding {@code from} through the one holding the instant before
+     * {@code to}, optionally broken down by sender id. Without {@code from}, the last 12 periods up to and
+     * including the current one; without {@code to}, up to now.
+     *
+     * Counts come from the rollups, hourly ones for HOUR and daily ones otherwise, so the cost depends on the
+     * window and not on how much history the tenant has. Bucket boundaries are computed once per request and
+     * rollup rows are placed by binary search over them. Hourly rollups only go back
+     * {@code sms.stats.hourly.retention}.
+     */
+    public DashboardOverviewResponse getSmsOverview(String tenantId, Granularity granularity, Instant from,
+                                                    Instant to, boolean bySender) {
+        Instant now = clock.instant();
+        if (from == null) {
+            to = granularity.next(granularity.floor(now));
+            from = to;
+            for (int i = 0; i < DEFAULT_PERIODS; i++) {
+                from = granularity.previous(from);
+            }
+        } else if (to == null) {
+            to = now;
+        }
+        if (!from.isBefore(to)) {
+            throw new BadRequestException("from must be before to");
+        }
+        Instant start = granularity.floor(from);
+        Instant end = granularity.floor(to).equals(to) ? to : granularity.next(granularity.floor(to));
+
+        List<Long> bounds = new ArrayList<>();
+        for (Instant bound = start; !bound.isAfter(end); bound = granularity.next(bound)) {
+            if (bounds.size() > MAX_POINTS) {
+                throw new BadRequestException("Range too large: at most " + MAX_POINTS + " " +
+                        granularity.name().toLowerCase() + " periods per request");
+            }
+            bounds.add(bound.getEpochSecond());
+        }
+        long[] boundaries = bounds.stream().mapToLong(Long::longValue).toArray();
+
+        List<DashboardTimeSeriesPoint> points = new ArrayList<>(boundaries.length - 1);
+        for (int i = 0; i + 1 < boundaries.length; i++) {
+            Instant periodStart = Instant.ofEpochSecond(boundaries[i]);
+            points.add(DashboardTimeSeriesPoint.builder()
+                    .label(granularity.label(periodStart))
+                    .periodStart(periodStart)
+                    .periodEnd(Instant.ofEpochSecond(boundaries[i + 1]))
+                    .totalSms(0L)
+                    .senders(bySender ? new HashMap<>() : null)
+                    .build());
+        }
+
+        String sender = bySender ? ", s.senderId" : "";
+        List<Object[]> results;
+        if (granularity == Granularity.HOUR) {
+            results = em.createQuery("SELECT s.statHour, SUM(s.messageCount)" + sender + " FROM SmsHourlyStat s " +
+                            "WHERE s.tenantId = :tenantId AND s.status = :status " +
+                            "AND s.statHour >= :from AND s.statHour < :to GROUP BY s.statHour" + sender,
+                            Object[].class)
+                    .setParameter("tenantId", tenantId)
+                    .setParameter("status", SmsRecipient.RecipientStatus.SENT)
+                    .setParameter("from", start)
+                    .setParameter("to", end)
+                    .getResultList();
+        } else {
+            results = em.createQuery("SELECT s.statDate, SUM(s.messageCount)" + sender + " FROM SmsDailyStat s " +
+                            "WHERE s.tenantId = :tenantId AND s.status = :status " +
+                            "AND s.statDate >= :from AND s.statDate < :to GROUP BY s.statDate" + sender,
+                            Object[].class)
+                    .setParameter("tenantId", tenantId)
+                    .setParameter("status", SmsRecipient.RecipientStatus.SENT)
+                    .setParameter("from", LocalDate.ofInstant(start, ZoneOffset.UTC))
+                    .setParameter("to", LocalDate.ofInstant(end, ZoneOffset.UTC))
+                    .getResultList();
+        }
         for (Object[] row : results) {
-            Instant bucketStart = ((Timestamp) row[0]).toInstant();
+            long at = row[0] instanceof LocalDate day
+                    ? day.toEpochDay() * SECONDS_PER_DAY
+                    : ((Instant) row[0]).getEpochSecond();
+            int index = Arrays.binarySearch(boundaries, at);
+            // Between two boundaries, the insertion point is the one after the period's start
+            index = index >= 0 ? index : -index - 2;
+            if (index < 0 || index >= points.size()) {
+                continue;
+            }
+            DashboardTimeSeriesPoint point = points.get(index);
             long count = ((Number) row[1]).longValue();
-            DashboardTimeSeriesPoint point = bucketIndex.get(bucketStart);
-            if (point != null) {
-                point.setTotalSms(count);
+            point.setTotalSms(point.getTotalSms() + count);
+            if (bySender) {
+                point.getSenders().merge((String) row[2], count, Long::sum);
             }
         }
 
         return DashboardOverviewResponse.builder()
                 .granularity(granularity.name())
+                .from(start)
+                .to(end)
                 .points(points)
                 .build();
     }
 
-    private List<DashboardTimeSeriesPoint> buildEmptyBuckets(Granularity granularity, int periods) {
-        List<DashboardTimeSeriesPoint> buckets = new ArrayList<>();
-        Instant now = clock.instant().truncatedTo(ChronoUnit.DAYS);
-        BucketAligner aligner = granularity.getAligner();
-        Instant alignedEnd = aligner.alignEnd(now);
-        Instant cursor = alignedEnd;
-        for (int i = 0; i < periods; i++) {
-            Instant start = aligner.shift(cursor, -1);
-            buckets.add(DashboardTimeSeriesPoint.builder()
-                    .label(aligner.label(start))
-                    .periodStart(start)
-                    .periodEnd(cursor)
-                    .totalSms(0L)
-                    .build());
-            cursor = start;
+    /**
+     * Identifies an overview by the periods it covers rather than the instants asked for, so requests whose
+     * windows floor to the same periods share one cached response.
+     */
+    public String overviewKey(Granularity granularity, Instant from, Instant to, boolean bySender) {
+        String window;
+        if (from == null) {
+            window = "latest";
+        } else {
+            Instant until = to != null ? to : clock.instant();
+            Instant end = granularity.floor(until).equals(until) ? until : granularity.next(granularity.floor(until));
+            window = granularity.floor(from) + ":" + end;
         }
-        Collections.reverse(buckets);
-        return buckets;
+        return "overview:" + granularity + ":" + window + ":" + bySender;
     }
 
+    /**
+     * Periods of the overview, aligned in UTC. Weeks start on Monday and are labelled by ISO week.
+     */
     public enum Granularity {
+        HOUR {
+            @Override
+            Instant floor(Instant instant) { return instant.truncatedTo(ChronoUnit.HOURS); }
+            @Override
+            Instant next(Instant start) { return start.plus(1, ChronoUnit.HOURS); }
+            @Override
+            Instant previous(Instant start) { return start.minus(1, ChronoUnit.HOURS); }
+            @Override
+            String label(Instant start) { return HOUR_LABEL.format(start); }
+        },
+        DAY {
+            @Override
+            Instant floor(Instant instant) { return instant.truncatedTo(ChronoUnit.DAYS); }
+            @Override
+            Instant next(Instant start) { return start.plus(1, ChronoUnit.DAYS); }
+            @Override
+            Instant previous(Instant start) { return start.minus(1, ChronoUnit.DAYS); }
+            @Override
+            String label(Instant start) { return date(start).toString(); }
+        },
+        WEEK {
+            @Override
+            Instant floor(Instant instant) {
+                // 1970-01-05, epoch day 4, was a Monday
+                long epochDay = Math.floorDiv(instant.getEpochSecond(), SECONDS_PER_DAY);
+                return Instant.ofEpochSecond((Math.floorDiv(epochDay - 4, 7) * 7 + 4) * SECONDS_PER_DAY);
+            }
+            @Override
+            Instant next(Instant start) { return start.plus(7, ChronoUnit.DAYS); }
+            @Override
+            Instant previous(Instant start) { return start.minus(7, ChronoUnit.DAYS); }
+            @Override
+            String label(Instant start) {
+                LocalDate date = date(start);
+                return date.get(IsoFields.WEEK_BASED_YEAR) + "-W" +
+                        String.format("%02d", date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            }
+        },
         MONTH {
             @Override
-            ChronoUnit unit() { return ChronoUnit.MONTHS; }
+            Instant floor(Instant instant) { return instant(date(instant).withDayOfMonth(1)); }
+            @Override
+            Instant next(Instant start) { return instant(date(start).plusMonths(1)); }
+            @Override
+            Instant previous(Instant start) { return instant(date(start).minusMonths(1)); }
             @Override
-            String toPgUnit() { return "month"; }
+            String label(Instant start) {
+                LocalDate date = date(start);
+                return date.getYear() + "-" + String.format("%02d", date.getMonthValue());
+            }
         },
         QUARTER {
             @Override
-            ChronoUnit unit() { return ChronoUnit.MONTHS; }
+            Instant floor(Instant instant) {
+                LocalDate date = date(instant);
+                return instant(date.withDayOfMonth(1).withMonth((date.getMonthValue() - 1) / 3 * 3 + 1));
+            }
+            @Override
+            Instant next(Instant start) { return instant(date(start).plusMonths(3)); }
+            @Override
+            Instant previous(Instant start) { return instant(date(start).minusMonths(3)); }
             @Override
-            String toPgUnit() { return "quarter"; }
+            String label(Instant start) {
+                LocalDate date = date(start);
+                return date.getYear() + "-Q" + ((date.getMonthValue() - 1) / 3 + 1);
+            }
         },
         YEAR {
             @Override
-            ChronoUnit unit() { return ChronoUnit.YEARS; }
+            Instant floor(Instant instant) { return instant(date(instant).withDayOfYear(1)); }
+            @Override
+            Instant next(Instant start) { return instant(date(start).plusYears(1)); }
             @Override
-            String toPgUnit() { return "year"; }
+            Instant previous(Instant start) { return instant(date(start).minusYears(1)); }
+            @Override
+            String label(Instant start) { return String.valueOf(date(start).getYear()); }
         };
 
-        abstract ChronoUnit unit();
-        abstract String toPgUnit();
-
-        BucketAligner getAligner() {
-            switch (this) {
-                case MONTH: return new MonthAligner();
-                case QUARTER: return new QuarterAligner();
-                case YEAR: return new YearAligner();
-                default: throw new IllegalStateException("Unexpected value: " + this);
-            }
-        }
-    }
+        private static final DateTimeFormatter HOUR_LABEL =
+                DateTimeFormatter.ofPattern("yyyy-MM-dd HH:00").withZone(ZoneOffset.UTC);
 
-    private interface BucketAligner {
-        Instant alignEnd(Instant instant);
-        Instant shift(Instant instant, int periods);
-        String label(Instant instant);
-    }
+        /** Start of the period holding the instant. */
+        abstract Instant floor(Instant instant);
 
-    private static class MonthAligner implements BucketAligner {
-        @Override
-        public Instant alignEnd(Instant instant) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            ZonedDateTime end = zdt.plusMonths(1).withDayOfMonth(1).truncatedTo(ChronoUnit.DAYS);
-            return end.toInstant();
-        }
+        /** Start of the period after the one starting at {@code start}. */
+        abstract Instant next(Instant start);
 
-        @Override
-        public Instant shift(Instant instant, int periods) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            return zdt.plusMonths(periods).toInstant();
-        }
-
-        @Override
-        public String label(Instant instant) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            return zdt.getYear() + "-" + String.format("%02d", zdt.getMonthValue());
-        }
-    }
+        /** Start of the period before the one starting at {@code start}. */
+        abstract Instant previous(Instant start);
 
-    private static class QuarterAligner implements BucketAligner {
-        @Override
-        public Instant alignEnd(Instant instant) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            int currentQuarter = (zdt.getMonthValue() - 1) / 3;
-            ZonedDateTime end = zdt.withMonth(currentQuarter * 3 + 1)
-                    .withDayOfMonth(1)
-                    .truncatedTo(ChronoUnit.DAYS)
-                    .plusMonths(3);
-            return end.toInstant();
-        }
-
-        @Override
-        public Instant shift(Instant instant, int periods) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            return zdt.plusMonths(periods * 3L).toInstant();
-        }
-
-        @Override
-        public String label(Instant instant) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            int quarter = ((zdt.getMonthValue() - 1) / 3) + 1;
-            return zdt.getYear() + "-Q" + quarter;
-        }
-    }
-
-    private static class YearAligner implements BucketAligner {
-        @Override
-        public Instant alignEnd(Instant instant) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            return zdt.plusYears(1)
-                    .withDayOfYear(1)
-                    .truncatedTo(ChronoUnit.DAYS)
-                    .toInstant();
-        }
+        abstract String label(Instant start);
 
-        @Override
-        public Instant shift(Instant instant, int periods) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            return zdt.plusYears(periods).toInstant();
+        private static LocalDate date(Instant instant) {
+            return LocalDate.ofInstant(instant, ZoneOffset.UTC);
         }
 
-        @Override
-        public String label(Instant instant) {
-            ZonedDateTime zdt = ZonedDateTime.ofInstant(instant, ZoneOffset.UTC);
-            return String.valueOf(zdt.getYear());
+        private static Instant instant(LocalDate date) {
+            return date.atStartOfDay(ZoneOffset.UTC).toInstant();
         }
     }
 }
@@ -0,0 +1,71 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+
+import java.security.SecureRandom;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Helpers for the few places that bypass Hibernate and talk JDBC directly.
+ */
+@ApplicationScoped
+public class DatabaseSupport {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    @Inject
+    EntityManager em;
+
+    private final Map<Class<?>, String> tableNames = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the schema-qualified table name exactly as Hibernate renders it for the entity.
+     */
+    public String tableName(Class<?> entityClass) {
+        return tableNames.computeIfAbsent(entityClass, type -> {
+            SessionFactoryImplementor factory = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+            return ((AbstractEntityPersister) factory.getMappingMetamodel().getEntityDescriptor(type)).getTableName();
+        });
+    }
+
+    public boolean isPostgres() {
+        return dialect() instanceof PostgreSQLDialect;
+    }
+
+    /**
+     * SQL expression producing a random UUID: gen_random_uuid() on PostgreSQL 13+, RANDOM_UUID() on H2.
+     */
+    public String randomUuidFunction() {
+        return isPostgres() ? "gen_random_uuid()" : "RANDOM_UUID()";
+    }
+
+    public Dialect dialect() {
+        return em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+    }
+
+    public Session session() {
+        return em.unwrap(Session.class);
+    }
+
+    /**
+     * Creates a version 7 UUID: a millisecond timestamp followed by random bits.
+     * Ids created close together sort close together, so bulk inserts append to the primary key
+     * index instead of splitting random pages all over it.
+     */
+    public static UUID newTimeOrderedId() {
+        long millis = System.currentTimeMillis();
+        long random = RANDOM.nextLong();
+        long msb = (millis << 16) | 0x7000L | (random & 0x0FFFL);
+        long lsb = (RANDOM.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+}
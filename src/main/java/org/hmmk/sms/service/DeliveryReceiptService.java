@@ -0,0 +1,242 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.dto.sms.SmsOutcomeBatch;
+import org.hmmk.sms.entity.sms.SmsMessageId;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.gateway.DeliveryReceipt;
+import org.jboss.logging.Logger;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies carrier delivery receipts to recipients in large batches.
+ *
+ * Accepted submissions leave their carrier message id in the narrow {@code sms_message_ids} table.
+ * Receipts fired by the gateway are buffered in memory and a single writer thread drains them in batches of
+ * up to {@code sms.receipts.batch-size}: one query resolves the batch's message ids to recipients and one
+ * UPDATE per delivery status records them, instead of one statement per receipt.
+ * Receipts that overtake the SENT outcome of their message are retried with later batches until
+ * {@code sms.receipts.unmatched-retention} has passed. Buffered receipts are lost if the node stops, since
+ * the SMSC already got its acknowledgement; the recipient then simply stays SENT.
+ */
+@ApplicationScoped
+public class DeliveryReceiptService {
+
+    private static final Logger LOG = Logger.getLogger(DeliveryReceiptService.class);
+
+    private static final Duration UNMATCHED_RETRY_DELAY = Duration.ofSeconds(5);
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    @Inject
+    WebhookDispatcher webhookDispatcher;
+
+    @Inject
+    SmsMetrics metrics;
+
+    @ConfigProperty(name = "sms.receipts.batch-size", defaultValue = "5000")
+    int batchSize;
+
+    @ConfigProperty(name = "sms.receipts.linger", defaultValue = "500ms")
+    Duration linger;
+
+    @ConfigProperty(name = "sms.receipts.buffer-size", defaultValue = "100000")
+    int bufferSize;
+
+    @ConfigProperty(name = "sms.receipts.unmatched-retention", defaultValue = "2m")
+    Duration unmatchedRetention;
+
+    @ConfigProperty(name = "sms.receipts.message-id-retention", defaultValue = "3d")
+    Duration messageIdRetention;
+
+    private BlockingQueue<PendingReceipt> buffer;
+    private final List<PendingReceipt> unmatched = new ArrayList<>();
+    private long nextUnmatchedRetryNanos;
+    private Thread writer;
+
+    @PostConstruct
+    void init() {
+        buffer = new ArrayBlockingQueue<>(bufferSize);
+        writer = new Thread(this::drainLoop, "sms-receipts");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        writer.interrupt();
+    }
+
+    /**
+     * Buffers a receipt; called on the gateway's reader thread, so it never blocks.
+     */
+    void onReceipt(@Observes DeliveryReceipt receipt) {
+        if (!buffer.offer(new PendingReceipt(receipt, Instant.now()))) {
+            LOG.warnf("Delivery receipt buffer is full, dropping receipt for message %s", receipt.messageId());
+        }
+    }
+
+    /**
+     * Records the carrier message ids of accepted submissions. Must run in the transaction that records
+     * their SENT outcome; ids already present, e.g. from a redelivered outcome, are skipped.
+     */
+    public void recordMessageIds(List<SmsOutcomeBatch.Outcome> outcomes) {
+        List<SmsOutcomeBatch.Outcome> accepted = outcomes.stream()
+                .filter(o -> o.getStatus() == SmsRecipient.RecipientStatus.SENT && o.getMessageId() != null)
+                .toList();
+        if (accepted.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO " + db.tableName(SmsMessageId.class) +
+                " (messageId, recipientId, createdAt) VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+        Timestamp now = Timestamp.from(Instant.now());
+        db.session().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (SmsOutcomeBatch.Outcome outcome : accepted) {
+                    ps.setString(1, outcome.getMessageId());
+                    ps.setObject(2, outcome.getRecipientId());
+                    ps.setTimestamp(3, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+    }
+
+    private void drainLoop() {
+        List<PendingReceipt> batch = new ArrayList<>(batchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                PendingReceipt first = buffer.poll(linger.toMillis(), TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    // Give a trickle of receipts a moment to add up before paying for a round of statements
+                    long deadline = System.nanoTime() + linger.toNanos();
+                    while (batch.size() < batchSize) {
+                        PendingReceipt next = buffer.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                        buffer.drainTo(batch, batchSize - batch.size());
+                    }
+                }
+                if (System.nanoTime() - nextUnmatchedRetryNanos >= 0) {
+                    nextUnmatchedRetryNanos = System.nanoTime() + UNMATCHED_RETRY_DELAY.toNanos();
+                    synchronized (unmatched) {
+                        int retry = Math.min(Math.max(batchSize - batch.size(), 0), unmatched.size());
+                        batch.addAll(unmatched.subList(0, retry));
+                        unmatched.subList(0, retry).clear();
+                    }
+                }
+                if (!batch.isEmpty()) {
+                    apply(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                LOG.errorf(e, "Failed to apply %d delivery receipts", batch.size());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Applies one batch in a single transaction and keeps back the receipts whose message id is not known yet.
+     */
+    void apply(List<PendingReceipt> batch) {
+        Map<String, PendingReceipt> byMessageId = new LinkedHashMap<>();
+        for (PendingReceipt pending : batch) {
+            byMessageId.put(pending.receipt().messageId(), pending);
+        }
+
+        List<PendingReceipt> late = QuarkusTransaction.requiringNew().call(() -> {
+            List<Object[]> rows = em.createQuery(
+                            "SELECT m.messageId, m.recipientId FROM SmsMessageId m WHERE m.messageId IN :ids",
+                            Object[].class)
+                    .setParameter("ids", byMessageId.keySet())
+                    .getResultList();
+
+            Map<SmsRecipient.DeliveryStatus, List<UUID>> byStatus = new EnumMap<>(SmsRecipient.DeliveryStatus.class);
+            for (Object[] row : rows) {
+                PendingReceipt pending = byMessageId.remove((String) row[0]);
+                SmsRecipient.DeliveryStatus status = pending.receipt().delivered()
+                        ? SmsRecipient.DeliveryStatus.DELIVERED
+                        : SmsRecipient.DeliveryStatus.UNDELIVERED;
+                byStatus.computeIfAbsent(status, s -> new ArrayList<>()).add((UUID) row[1]);
+            }
+
+            Instant now = Instant.now();
+            for (Map.Entry<SmsRecipient.DeliveryStatus, List<UUID>> entry : byStatus.entrySet()) {
+                webhookDispatcher.enqueue(entry.getValue(), entry.getKey(), now);
+                long applied = SmsRecipient.update("deliveryStatus = ?1, deliveredAt = ?2, updatedAt = ?2 " +
+                                "where id in ?3 and deliveryStatus is null",
+                        entry.getKey(), now, entry.getValue());
+                if (entry.getKey() == SmsRecipient.DeliveryStatus.DELIVERED) {
+                    metrics.receipts(applied, 0);
+                } else {
+                    metrics.receipts(0, applied);
+                }
+            }
+            return new ArrayList<>(byMessageId.values());
+        });
+
+        if (!late.isEmpty()) {
+            Instant cutoff = Instant.now().minus(unmatchedRetention);
+            int dropped = 0;
+            synchronized (unmatched) {
+                for (PendingReceipt pending : late) {
+                    if (pending.receivedAt().isBefore(cutoff)) {
+                        dropped++;
+                    } else {
+                        unmatched.add(pending);
+                    }
+                }
+            }
+            if (dropped > 0) {
+                LOG.debugf("Dropped %d delivery receipts that matched no submitted message", dropped);
+            }
+        }
+    }
+
+    /**
+     * Forgets message ids old enough that no more receipts are expected for them.
+     */
+    @Scheduled(every = "${sms.receipts.purge-interval:1h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void purgeMessageIds() {
+        long purged = QuarkusTransaction.requiringNew().call(() ->
+                SmsMessageId.delete("createdAt < ?1", Instant.now().minus(messageIdRetention)));
+        if (purged > 0) {
+            LOG.infof("Purged %d carrier message ids", purged);
+        }
+    }
+
+    record PendingReceipt(DeliveryReceipt receipt, Instant receivedAt) {
+    }
+}
@@ -0,0 +1,171 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import jakarta.ws.rs.BadRequestException;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hmmk.sms.dto.common.PaginatedResponse;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pages through an entity's rows newest first, on (createdAt, id).
+ *
+ * Each page carries a continuation token naming its last row, and the next page starts right after that row
+ * in the index instead of skipping over all rows before it, so a deep page costs the same as the first. A page
+ * number without a token still works through OFFSET, for clients that jump straight to a page. The exact total
+ * is a count over all matching rows; on PostgreSQL a caller can ask for the planner's estimate instead, which
+ * costs no scan at all.
+ */
+@ApplicationScoped
+public class KeysetPager {
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\":\\s*(\\d+)");
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    private record Cursor(int page, Instant createdAt, String id) {
+    }
+
+    /**
+     * Returns a page of the entity's rows whose properties equal the given filter values.
+     *
+     * @param cursor            the previous page's nextCursor, or null to start at the page number
+     * @param approximateTotal  whether an estimated total will do
+     */
+    public <T, R> PaginatedResponse<R> page(Class<T> entity, Map<String, Object> filters, int page, int size,
+                                            String cursor, boolean approximateTotal, Function<T, R> mapper) {
+        if (size < 1) {
+            throw new BadRequestException("Page size must be at least 1");
+        }
+        Cursor after = cursor != null && !cursor.isBlank() ? decode(cursor) : null;
+        if (after == null && page < 0) {
+            throw new BadRequestException("Page must not be negative");
+        }
+
+        StringBuilder where = new StringBuilder();
+        for (String property : filters.keySet()) {
+            where.append(where.isEmpty() ? "" : " AND ").append(property).append(" = :").append(property);
+        }
+        String name = em.getMetamodel().entity(entity).getName();
+        String hql = "FROM " + name + (where.isEmpty() ? "" : " WHERE " + where);
+        if (after != null) {
+            hql += (where.isEmpty() ? " WHERE " : " AND ") +
+                    "(createdAt < :afterCreatedAt OR (createdAt = :afterCreatedAt AND id < :afterId))";
+        }
+        TypedQuery<T> query = em.createQuery(hql + " ORDER BY createdAt DESC, id DESC", entity);
+        filters.forEach(query::setParameter);
+        if (after != null) {
+            query.setParameter("afterCreatedAt", after.createdAt());
+            query.setParameter("afterId", id(entity, after.id()));
+        } else {
+            query.setFirstResult(page * size);
+        }
+        // One row more than the page tells whether there is a next one
+        List<T> rows = query.setMaxResults(size + 1).getResultList();
+
+        int number = after != null ? after.page() + 1 : page;
+        String nextCursor = null;
+        if (rows.size() > size) {
+            rows = rows.subList(0, size);
+            nextCursor = encode(entity, number, rows.get(size - 1));
+        }
+        List<R> items = new ArrayList<>(rows.size());
+        rows.forEach(row -> items.add(mapper.apply(row)));
+
+        Long estimate = approximateTotal && db.isPostgres() ? estimate(entity, filters) : null;
+        long total = estimate != null ? estimate : count(name, where.toString(), filters);
+        PaginatedResponse<R> response = new PaginatedResponse<>(items, total, number, size);
+        response.nextCursor = nextCursor;
+        response.approximateTotal = estimate != null;
+        return response;
+    }
+
+    private long count(String entityName, String where, Map<String, Object> filters) {
+        TypedQuery<Long> query = em.createQuery("SELECT COUNT(*) FROM " + entityName +
+                (where.isEmpty() ? "" : " WHERE " + where), Long.class);
+        filters.forEach(query::setParameter);
+        return query.getSingleResult();
+    }
+
+    /**
+     * The planner's row estimate for the filter, from the table's statistics, or null if there is no plan.
+     */
+    private Long estimate(Class<?> entity, Map<String, Object> filters) {
+        AbstractEntityPersister persister = persister(entity);
+        StringBuilder sql = new StringBuilder("EXPLAIN (FORMAT JSON) SELECT 1 FROM ").append(db.tableName(entity));
+        List<Object> values = new ArrayList<>();
+        filters.forEach((property, value) -> {
+            sql.append(values.isEmpty() ? " WHERE " : " AND ")
+                    .append(persister.getPropertyColumnNames(property)[0]).append(" = ?");
+            // Bound as stored, e.g. an ordinal enum as its number
+            values.add(persister.findAttributeMapping(property).getSingleJdbcMapping().convertToRelationalValue(value));
+        });
+        Long[] rows = new Long[1];
+        db.session().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql.toString())) {
+                for (int i = 0; i < values.size(); i++) {
+                    ps.setObject(i + 1, values.get(i));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        Matcher plan = PLAN_ROWS.matcher(rs.getString(1));
+                        if (plan.find()) {
+                            rows[0] = Long.parseLong(plan.group(1));
+                        }
+                    }
+                }
+            }
+        });
+        return rows[0];
+    }
+
+    private String encode(Class<?> entity, int page, Object row) {
+        String token = page + "|" + persister(entity).getPropertyValue(row, "createdAt") + "|" +
+                em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(row);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Cursor decode(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", 3);
+            return new Cursor(Integer.parseInt(parts[0]), Instant.parse(parts[1]), parts[2]);
+        } catch (RuntimeException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private Object id(Class<?> entity, String id) {
+        if (em.getMetamodel().entity(entity).getIdType().getJavaType() != UUID.class) {
+            return id;
+        }
+        try {
+            return UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+
+    private AbstractEntityPersister persister(Class<?> entity) {
+        return (AbstractEntityPersister) em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel().getEntityDescriptor(entity);
+    }
+}
@@ -0,0 +1,194 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.sms.MessageBody;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps message texts in {@link MessageBody} once instead of on every recipient, and reads them back for dispatch.
+ *
+ * Texts of up to {@code sms.messages.inline-max-length} characters, typically personalized ones such as one-time
+ * codes, stay inline on the recipient, where they take less room than a body row would. Longer texts are stored
+ * by digest and shared by all recipients sending them. New bodies are written in a transaction of their own, so
+ * an id once handed out is never rolled back and can be cached; a body whose caller rolled back just stays unused.
+ * Digests and texts are kept in LRU caches of {@code sms.messages.cache.max-size} entries, so the bodies of
+ * running campaigns cost no queries while dispatching.
+ *
+ * Bodies no recipient references are purged by {@link SmsRetentionService}. To keep it from deleting a body an id
+ * was just handed out for, each lookup in the database stamps the body's lastUsedAt, and a cached id is looked up
+ * again once it is older than {@code sms.messages.cache.ttl}; the purge leaves bodies used within
+ * {@code sms.messages.orphan-grace}, which is far longer.
+ */
+@ApplicationScoped
+public class MessageBodyStore {
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    @ConfigProperty(name = "sms.messages.inline-max-length", defaultValue = "40")
+    int inlineMaxLength;
+
+    @ConfigProperty(name = "sms.messages.cache.max-size", defaultValue = "10000")
+    int cacheMaxSize;
+
+    @ConfigProperty(name = "sms.messages.cache.ttl", defaultValue = "1h")
+    Duration cacheTtl;
+
+    private record CachedId(Long id, Instant resolvedAt) {
+    }
+
+    private Map<String, CachedId> idsByDigest;
+    private Map<Long, String> bodiesById;
+
+    @PostConstruct
+    void init() {
+        idsByDigest = lru(cacheMaxSize);
+        bodiesById = lru(cacheMaxSize);
+    }
+
+    /**
+     * Whether the text is kept on the recipient rather than as a shared body.
+     */
+    public boolean isInline(String text) {
+        return text == null || text.length() <= inlineMaxLength;
+    }
+
+    /**
+     * Sets the recipient's message, inline or as a shared body.
+     */
+    public void assign(SmsRecipient recipient, String text) {
+        if (isInline(text)) {
+            recipient.message = text;
+            recipient.messageBodyId = null;
+        } else {
+            recipient.message = null;
+            recipient.messageBodyId = store(List.of(text)).get(text);
+        }
+    }
+
+    /**
+     * Returns the body id of every text that is not kept inline, storing the ones not seen before.
+     */
+    public Map<String, Long> store(Collection<String> texts) {
+        Map<String, Long> ids = new HashMap<>();
+        Map<String, String> missing = new HashMap<>();
+        Instant now = Instant.now();
+        for (String text : new HashSet<>(texts)) {
+            if (isInline(text)) {
+                continue;
+            }
+            String digest = MessageBody.digest(text);
+            CachedId cached = idsByDigest.get(digest);
+            if (cached != null && cached.resolvedAt().plus(cacheTtl).isAfter(now)) {
+                ids.put(text, cached.id());
+            } else {
+                missing.put(digest, text);
+            }
+        }
+        if (!missing.isEmpty()) {
+            Map<String, Long> stored = QuarkusTransaction.requiringNew().call(() -> insert(missing, now));
+            stored.forEach((digest, id) -> {
+                String text = missing.get(digest);
+                idsByDigest.put(digest, new CachedId(id, now));
+                bodiesById.put(id, text);
+                ids.put(text, id);
+            });
+        }
+        return ids;
+    }
+
+    /**
+     * Returns the texts of the given bodies, from the cache where possible and with one query for the rest.
+     */
+    @Transactional
+    public Map<Long, String> load(Collection<Long> ids) {
+        Map<Long, String> bodies = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long id : new HashSet<>(ids)) {
+            String body = bodiesById.get(id);
+            if (body != null) {
+                bodies.put(id, body);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<Object[]> rows = em.createQuery("SELECT b.id, b.body FROM MessageBody b WHERE b.id IN :ids",
+                            Object[].class)
+                    .setParameter("ids", missing)
+                    .getResultList();
+            for (Object[] row : rows) {
+                bodiesById.put((Long) row[0], (String) row[1]);
+                bodies.put((Long) row[0], (String) row[1]);
+            }
+        }
+        return bodies;
+    }
+
+    /**
+     * Marks the bodies that exist as used, inserts the ones that are not stored yet, possibly by another node
+     * meanwhile, and returns all their ids.
+     */
+    private Map<String, Long> insert(Map<String, String> bodies, Instant usedAt) {
+        // Stamped first: the row lock makes a concurrent purge see the new lastUsedAt and keep the body, and a
+        // body it already deleted is inserted afresh below
+        em.createQuery("UPDATE MessageBody b SET b.lastUsedAt = :usedAt WHERE b.digest IN :digests")
+                .setParameter("usedAt", usedAt)
+                .setParameter("digests", bodies.keySet())
+                .executeUpdate();
+
+        String sql = "INSERT INTO " + db.tableName(MessageBody.class) +
+                " (digest, body, createdAt, lastUsedAt) VALUES (?, ?, ?, ?) ON CONFLICT DO NOTHING";
+        Timestamp now = Timestamp.from(usedAt);
+        db.session().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (Map.Entry<String, String> body : bodies.entrySet()) {
+                    ps.setString(1, body.getKey());
+                    ps.setString(2, body.getValue());
+                    ps.setTimestamp(3, now);
+                    ps.setTimestamp(4, now);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+        });
+
+        Map<String, Long> ids = new HashMap<>();
+        em.createQuery("SELECT b.digest, b.id FROM MessageBody b WHERE b.digest IN :digests", Object[].class)
+                .setParameter("digests", bodies.keySet())
+                .getResultList()
+                .forEach(row -> ids.put((String) row[0], (Long) row[1]));
+        return ids;
+    }
+
+    private static <K, V> Map<K, V> lru(int maxSize) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+}
@@ -0,0 +1,110 @@
+package org.hmmk.sms.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A message text with placeholders, compiled once and rendered for many recipients.
+ *
+ * A placeholder is a field name in braces, such as {@code {name}}, optionally followed by a fallback used when
+ * the recipient has no value for it: {@code {name|Customer}}. Field names start with a letter or underscore and
+ * may contain letters, digits, '_', '-' and '.'. Braces that do not form a placeholder are kept as they are.
+ * Compiling splits the text into literal parts and fields, so rendering is one pass of appends with no parsing.
+ */
+public final class MessageTemplate {
+
+    private final String source;
+    /** Text before each field, and after the last one; always one longer than {@link #fields}. */
+    private final String[] literals;
+    private final String[] fields;
+    private final String[] fallbacks;
+    private final int literalLength;
+
+    private MessageTemplate(String source, String[] literals, String[] fields, String[] fallbacks) {
+        this.source = source;
+        this.literals = literals;
+        this.fields = fields;
+        this.fallbacks = fallbacks;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static MessageTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        List<String> fallbacks = new ArrayList<>();
+        int literalStart = 0;
+        int open = source.indexOf('{');
+        while (open >= 0) {
+            int close = source.indexOf('}', open + 1);
+            if (close < 0) {
+                break;
+            }
+            int nested = source.lastIndexOf('{', close);
+            if (nested > open) {
+                // "{{name}" keeps the first brace as text
+                open = nested;
+            }
+            String placeholder = source.substring(open + 1, close);
+            int bar = placeholder.indexOf('|');
+            String field = bar >= 0 ? placeholder.substring(0, bar) : placeholder;
+            if (isFieldName(field)) {
+                literals.add(source.substring(literalStart, open));
+                fields.add(field);
+                fallbacks.add(bar >= 0 ? placeholder.substring(bar + 1) : "");
+                literalStart = close + 1;
+            }
+            open = source.indexOf('{', close + 1);
+        }
+        literals.add(source.substring(literalStart));
+        return new MessageTemplate(source, literals.toArray(String[]::new), fields.toArray(String[]::new),
+                fallbacks.toArray(String[]::new));
+    }
+
+    /**
+     * The text as written, placeholders included.
+     */
+    public String source() {
+        return source;
+    }
+
+    /**
+     * Whether the text has any placeholders, i.e. may render differently per recipient.
+     */
+    public boolean isPersonalized() {
+        return fields.length > 0;
+    }
+
+    /**
+     * Renders the text with each field's value, or its fallback when the value is null or blank.
+     */
+    public String render(Function<String, String> values) {
+        if (fields.length == 0) {
+            return source;
+        }
+        StringBuilder out = new StringBuilder(literalLength + fields.length * 16);
+        for (int i = 0; i < fields.length; i++) {
+            out.append(literals[i]);
+            String value = values.apply(fields[i]);
+            out.append(value != null && !value.isBlank() ? value : fallbacks[i]);
+        }
+        return out.append(literals[fields.length]).toString();
+    }
+
+    private static boolean isFieldName(String field) {
+        if (field.isEmpty() || !(Character.isLetter(field.charAt(0)) || field.charAt(0) == '_')) {
+            return false;
+        }
+        for (int i = 1; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (!(Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -8,6 +8,7 @@ import org.hmmk.sms.dto.PaymentInitResponse;
 import org.hmmk.sms.dto.PaymentTransactionHistoryPoint;
 import org.hmmk.sms.dto.common.PaginatedResponse;
 import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
 import org.hmmk.sms.entity.payment.PaymentTransaction;
 import org.hmmk.sms.entity.payment.SmsPackageTier;
 
@@ -29,6 +30,12 @@ public class PaymentService {
     @Inject
     ChapaPaymentService chapaPaymentService;
 
+    @Inject
+    CreditService creditService;
+
+    @Inject
+    KeysetPager keysetPager;
+
     /**
      * Initialize a payment for SMS credits.
      * 
@@ -152,7 +159,7 @@ public class PaymentService {
             transaction.persist();
 
             // Credit SMS to tenant
-            creditSmsToTenant(transaction.tenantId, transaction.smsCredited);
+            creditSmsToTenant(transaction);
 
         }
     }
@@ -176,7 +183,7 @@ public class PaymentService {
             transaction.persist();
 
             // Credit SMS to tenant
-            creditSmsToTenant(transaction.tenantId, transaction.smsCredited);
+            creditSmsToTenant(transaction);
         }
 
         // Initialize lazy association to avoid 500 error during serialization
@@ -185,12 +192,9 @@ public class PaymentService {
         return transaction;
     }
 
-    private void creditSmsToTenant(String tenantId, int smsCredits) {
-        Tenant tenant = Tenant.findById(tenantId);
-        if (tenant != null) {
-            tenant.smsCredit += smsCredits;
-            tenant.persist();
-        }
+    private void creditSmsToTenant(PaymentTransaction transaction) {
+        creditService.add(transaction.tenantId, transaction.smsCredited, CreditLedgerEntry.EntryType.PURCHASE,
+                transaction.id);
     }
 
     /**
@@ -201,30 +205,21 @@ public class PaymentService {
      * @param page     Page number (0-indexed)
      * @param size     Page size
      * @param status   Optional status filter
+     * @param cursor   The previous page's nextCursor, taking precedence over the page number
+     * @param approximateTotal Whether the total may be an estimate
      * @return Paginated list of transactions
      */
     public PaginatedResponse<PaymentTransaction> listTransactions(
-            String tenantId, int page, int size, PaymentTransaction.PaymentStatus status) {
-
-        io.quarkus.panache.common.Page p = io.quarkus.panache.common.Page.of(page, size);
-
-        String query;
-        java.util.Map<String, Object> params = new java.util.HashMap<>();
-        params.put("tenantId", tenantId);
+            String tenantId, int page, int size, PaymentTransaction.PaymentStatus status,
+            String cursor, boolean approximateTotal) {
 
+        Map<String, Object> filters = new LinkedHashMap<>();
+        filters.put("tenantId", tenantId);
         if (status != null) {
-            query = "tenantId = :tenantId AND paymentStatus = :status ORDER BY createdAt DESC";
-            params.put("status", status);
-        } else {
-            query = "tenantId = :tenantId ORDER BY createdAt DESC";
+            filters.put("paymentStatus", status);
         }
 
-        List<PaymentTransaction> items = PaymentTransaction.find(query, params).page(p).list();
-        long total = PaymentTransaction.count(
-                status != null ? "tenantId = :tenantId AND paymentStatus = :status" : "tenantId = :tenantId",
-                params);
-
-        return new PaginatedResponse<>(items, total, page, size);
+        return keysetPager.page(PaymentTransaction.class, filters, page, size, cursor, approximateTotal, tx -> tx);
     }
 
     public PaymentTransaction getTransactionById(String tenantId, String transactionId) {
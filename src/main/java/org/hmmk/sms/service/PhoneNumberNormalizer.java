@@ -0,0 +1,73 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.util.Optional;
+
+/**
+ * Brings user supplied phone numbers into one canonical form.
+ *
+ * Formatting characters (spaces, dashes, dots, parentheses) are dropped, a {@code 00} international
+ * prefix becomes {@code +}, and when a default country code is configured a national number with a
+ * single leading {@code 0} is turned into {@code +<country code><number>}. The result must then match
+ * the same {@code +?[0-9]{10,15}} rule the single SMS endpoint validates against.
+ */
+@ApplicationScoped
+public class PhoneNumberNormalizer {
+
+    private static final int MIN_DIGITS = 10;
+    private static final int MAX_DIGITS = 15;
+
+    @ConfigProperty(name = "sms.phone.default-country-code")
+    Optional<String> defaultCountryCode;
+
+    /**
+     * Returns the normalized number, or null when the input is not a valid phone number.
+     */
+    public String normalize(String raw) {
+        if (raw == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(raw.length() + 4);
+        boolean plus = false;
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c == '+' && digits.isEmpty() && !plus) {
+                plus = true;
+            } else if (c != ' ' && c != '-' && c != '.' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+
+        if (!plus && digits.length() > 2 && digits.charAt(0) == '0' && digits.charAt(1) == '0') {
+            digits.delete(0, 2);
+            plus = true;
+        } else if (!plus && defaultCountryCode.isPresent() && digits.length() > 1 && digits.charAt(0) == '0') {
+            digits.replace(0, 1, defaultCountryCode.get());
+            plus = true;
+        }
+
+        if (digits.length() < MIN_DIGITS || digits.length() > MAX_DIGITS) {
+            return null;
+        }
+        return plus ? "+" + digits : digits.toString();
+    }
+
+    /**
+     * Packs a normalized number into a long for cheap de-duplication.
+     * Numbers have at most 15 digits, so the value fits in 50 bits; the lowest bit records the '+'.
+     */
+    public static long key(String normalized) {
+        boolean plus = normalized.charAt(0) == '+';
+        long value = 0;
+        for (int i = plus ? 1 : 0; i < normalized.length(); i++) {
+            value = value * 10 + (normalized.charAt(i) - '0');
+        }
+        // Keep the digit count too, so that leading zeros stay significant
+        int digits = normalized.length() - (plus ? 1 : 0);
+        return (value << 5 | digits) << 1 | (plus ? 1 : 0);
+    }
+}
@@ -0,0 +1,46 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.reactive.messaging.Channel;
+import org.eclipse.microprofile.reactive.messaging.Emitter;
+import org.hmmk.sms.dto.sms.SmsDispatchBatch;
+import org.hmmk.sms.entity.sms.SmsJob;
+
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Publishes dispatch batches to the lane of their priority. Every lane is a routing key on the dispatch
+ * exchange bound to a queue of its own, consumed by {@link SmsSendWorker} with its own concurrency.
+ */
+@ApplicationScoped
+public class SmsDispatchPublisher {
+
+    @Inject
+    @Channel("sms-dispatch-high")
+    Emitter<SmsDispatchBatch> high;
+
+    @Inject
+    @Channel("sms-dispatch")
+    Emitter<SmsDispatchBatch> normal;
+
+    @Inject
+    @Channel("sms-dispatch-low")
+    Emitter<SmsDispatchBatch> low;
+
+    @Inject
+    SmsMetrics metrics;
+
+    /**
+     * Completes once the broker acknowledged the batch.
+     */
+    public CompletionStage<Void> publish(SmsDispatchBatch batch) {
+        SmsJob.Priority priority = batch.getPriority() != null ? batch.getPriority() : SmsJob.Priority.NORMAL;
+        metrics.queued(priority, batch.getRecipients().size());
+        return switch (priority) {
+            case HIGH -> high.send(batch);
+            case NORMAL -> normal.send(batch);
+            case LOW -> low.send(batch);
+        };
+    }
+}
@@ -0,0 +1,600 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.common.annotation.Blocking;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.hmmk.sms.dto.sms.SmsDispatchBatch;
+import org.hmmk.sms.dto.sms.SmsOutcomeBatch;
+import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.entity.contact.Contact;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.gateway.SmsEncoding;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Drains due SMS jobs into RabbitMQ and folds per-recipient outcomes back into job status.
+ *
+ * Every poll claims SCHEDULED jobs whose scheduledAt has passed by flipping them to SENDING
+ * with a conditional update, so several nodes can poll the same table without sending a job twice.
+ * Recipients of claimed jobs are then published in batches to the dispatch exchange, spread over as many
+ * polls as the {@link ThroughputShaper} requires, on the lane of the job's priority. HIGH jobs are never held
+ * back; NORMAL jobs share what the throughput limits leave by weighted round robin across tenants, and LOW jobs
+ * share what is left after them.
+ * Shared message texts are resolved through the {@link MessageBodyStore}'s cache.
+ * Recipients without a message of their own get the job's text, which is a {@link MessageTemplate} compiled once
+ * per job: plain text travels once per batch, while placeholders are rendered per recipient from the
+ * {@link Contact} with the recipient's phone number in the job's tenant. Such jobs are billed per recipient by
+ * the template as written, so a rendered text that takes more parts, e.g. because a name turned it into UCS-2,
+ * has the difference reserved before it is published; recipients the tenant cannot pay that for are failed.
+ * A node keeps the jobs it publishes leased by bumping their updatedAt, and stamps recipients with publishedAt
+ * once the broker acknowledged their batch. A SENDING job whose lease ran out with recipients never published,
+ * e.g. because its node stopped, is claimed again by any node, which publishes only those: the others are still
+ * queued or being retried by the send workers, however long their outcomes take, and would be sent twice.
+ */
+@ApplicationScoped
+public class SmsDispatchService {
+
+    private static final Logger LOG = Logger.getLogger(SmsDispatchService.class);
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    SmsDispatchPublisher publisher;
+
+    @Inject
+    ThroughputShaper shaper;
+
+    @Inject
+    WebhookDispatcher webhookDispatcher;
+
+    @Inject
+    DeliveryReceiptService deliveryReceiptService;
+
+    @Inject
+    MessageBodyStore messageBodies;
+
+    @Inject
+    SmsStatsService stats;
+
+    @Inject
+    CreditService creditService;
+
+    @ConfigProperty(name = "sms.dispatch.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "sms.dispatch.max-jobs-per-poll", defaultValue = "20")
+    int maxJobsPerPoll;
+
+    @ConfigProperty(name = "sms.dispatch.stale-after", defaultValue = "10m")
+    Duration staleAfter;
+
+    /**
+     * Recipients read for publishing, and how many of those read were failed instead for lack of credits.
+     */
+    record PendingBatch(List<SmsDispatchBatch.Item> items, int heldBack) {
+    }
+
+    /**
+     * A job this node is publishing, with the keyset position of the last published recipient.
+     */
+    static final class ActiveJob {
+        final UUID id;
+        final String tenantId;
+        final String senderId;
+        final SmsJob.MessageType messageType;
+        final SmsJob.Priority priority;
+        final MessageTemplate template;
+        String sourceAddress;
+        UUID after;
+        Instant lease;
+
+        ActiveJob(UUID id, String tenantId, String senderId, SmsJob.MessageType messageType,
+                  SmsJob.Priority priority, MessageTemplate template, Instant lease) {
+            this.id = id;
+            this.tenantId = tenantId;
+            this.senderId = senderId;
+            this.messageType = messageType;
+            this.priority = priority;
+            this.template = template;
+            this.lease = lease;
+        }
+    }
+
+    private final Map<UUID, ActiveJob> active = new LinkedHashMap<>();
+
+    @Scheduled(every = "${sms.dispatch.poll-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    synchronized void poll() {
+        for (ActiveJob job : claimDueJobs()) {
+            job.sourceAddress = loadSenderName(job.senderId);
+            active.put(job.id, job);
+        }
+        renewLeases();
+        pump();
+        completeFinishedJobs();
+    }
+
+    /**
+     * Moves due SCHEDULED jobs to SENDING, takes over SENDING jobs whose lease ran out, and returns the jobs
+     * this node managed to claim.
+     */
+    @Transactional
+    List<ActiveJob> claimDueJobs() {
+        Instant now = now();
+        List<Object[]> due = em.createQuery(
+                        "SELECT j.id, j.tenantId, j.senderId, j.messageType, j.priority, j.messageContent " +
+                                "FROM SmsJob j " +
+                                "WHERE j.status = :scheduled AND j.scheduledAt <= :now " +
+                                "ORDER BY j.scheduledAt", Object[].class)
+                .setParameter("scheduled", SmsJob.JobStatus.SCHEDULED)
+                .setParameter("now", now)
+                .setMaxResults(maxJobsPerPoll)
+                .getResultList();
+
+        List<ActiveJob> claimed = new ArrayList<>(due.size());
+        for (Object[] row : due) {
+            int updated = SmsJob.update("status = ?1, updatedAt = ?2 where id = ?3 and status = ?4",
+                    SmsJob.JobStatus.SENDING, now, row[0], SmsJob.JobStatus.SCHEDULED);
+            if (updated == 1) {
+                claimed.add(activeJob(row, now));
+            }
+        }
+
+        Instant cutoff = now.minus(staleAfter);
+        List<Object[]> stale = em.createQuery(
+                        "SELECT j.id, j.tenantId, j.senderId, j.messageType, j.priority, j.messageContent " +
+                                "FROM SmsJob j " +
+                                "WHERE j.status = :sending AND j.jobType <> :transactional AND j.updatedAt < :cutoff " +
+                                "AND EXISTS (SELECT r.id FROM SmsRecipient r WHERE r.job = j AND r.status = :pending " +
+                                "AND r.publishedAt IS NULL)",
+                        Object[].class)
+                .setParameter("sending", SmsJob.JobStatus.SENDING)
+                .setParameter("transactional", SmsJob.JobType.TRANSACTIONAL)
+                .setParameter("cutoff", cutoff)
+                .setParameter("pending", SmsRecipient.RecipientStatus.PENDING)
+                .setMaxResults(maxJobsPerPoll)
+                .getResultList();
+        for (Object[] row : stale) {
+            if (active.containsKey((UUID) row[0])) {
+                continue;
+            }
+            int updated = SmsJob.update("updatedAt = ?1 where id = ?2 and status = ?3 and updatedAt < ?4",
+                    now, row[0], SmsJob.JobStatus.SENDING, cutoff);
+            if (updated == 1) {
+                LOG.infof("Took over SMS job %s, whose lease ran out with recipients not yet published", row[0]);
+                claimed.add(activeJob(row, now));
+            }
+        }
+        return claimed;
+    }
+
+    private static ActiveJob activeJob(Object[] row, Instant lease) {
+        return new ActiveJob((UUID) row[0], (String) row[1], (String) row[2], (SmsJob.MessageType) row[3],
+                (SmsJob.Priority) row[4], MessageTemplate.compile((String) row[5]), lease);
+    }
+
+    /**
+     * Bumps the lease of active jobs once a third of it has passed. A job whose updatedAt changed under us was
+     * canceled, closed or taken over by another node, so this node stops publishing it.
+     */
+    void renewLeases() {
+        Instant now = now();
+        Instant renewBefore = now.minus(staleAfter.dividedBy(3));
+        Iterator<ActiveJob> jobs = active.values().iterator();
+        while (jobs.hasNext()) {
+            ActiveJob job = jobs.next();
+            if (job.lease.isAfter(renewBefore)) {
+                continue;
+            }
+            if (renewLease(job.id, job.lease, now)) {
+                job.lease = now;
+            } else {
+                LOG.infof("Stopped publishing SMS job %s, it is no longer leased to this node", job.id);
+                jobs.remove();
+            }
+        }
+    }
+
+    @Transactional
+    boolean renewLease(UUID jobId, Instant lease, Instant now) {
+        return SmsJob.update("updatedAt = ?1 where id = ?2 and status = ?3 and updatedAt = ?4",
+                now, jobId, SmsJob.JobStatus.SENDING, lease) == 1;
+    }
+
+    /**
+     * Publishes from the active jobs as far as the throughput limits allow: HIGH jobs in full, then NORMAL and
+     * finally LOW jobs with the tokens that remain.
+     */
+    void pump() {
+        Map<SmsJob.Priority, Map<String, Deque<ActiveJob>>> byPriority = new EnumMap<>(SmsJob.Priority.class);
+        for (ActiveJob job : new ArrayList<>(active.values())) {
+            if (job.priority == SmsJob.Priority.HIGH) {
+                int published;
+                do {
+                    published = publishNext(job, batchSize);
+                } while (published > 0);
+            } else {
+                byPriority.computeIfAbsent(job.priority, p -> new LinkedHashMap<>())
+                        .computeIfAbsent(job.tenantId, t -> new ArrayDeque<>())
+                        .add(job);
+            }
+        }
+        for (Map<String, Deque<ActiveJob>> byTenant : byPriority.values()) {
+            shareFairly(byTenant);
+        }
+    }
+
+    /**
+     * Lets tenants take turns by deficit round robin: every round each tenant is credited its weight in batches
+     * and spends the credit on its jobs in turn, so a tenant with a huge job gets no more than its share while
+     * other tenants have work queued. A job is set aside for the rest of the poll once its tenant or sender runs
+     * out of tokens.
+     */
+    private void shareFairly(Map<String, Deque<ActiveJob>> byTenant) {
+        Map<String, Integer> deficits = new HashMap<>();
+        while (!byTenant.isEmpty()) {
+            Iterator<Map.Entry<String, Deque<ActiveJob>>> tenants = byTenant.entrySet().iterator();
+            while (tenants.hasNext()) {
+                Map.Entry<String, Deque<ActiveJob>> entry = tenants.next();
+                Deque<ActiveJob> jobs = entry.getValue();
+                int credit = deficits.getOrDefault(entry.getKey(), 0) + shaper.weight(entry.getKey()) * batchSize;
+                while (credit > 0 && !jobs.isEmpty()) {
+                    ActiveJob job = jobs.poll();
+                    int published = publishNext(job, Math.min(credit, batchSize));
+                    if (published > 0) {
+                        credit -= published;
+                        jobs.add(job);
+                    }
+                }
+                if (jobs.isEmpty()) {
+                    tenants.remove();
+                } else {
+                    deficits.put(entry.getKey(), credit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Publishes the next batch of up to {@code max} unpublished recipients of the job and returns how many went out.
+     * Returns 0 when throttled or when publishing failed, in which case the batch is retried on a later poll,
+     * and -1 when the job has nothing left to publish.
+     */
+    private int publishNext(ActiveJob job, int max) {
+        boolean exempt = job.priority == SmsJob.Priority.HIGH;
+        int allowed = exempt ? max : shaper.acquire(job.tenantId, job.senderId, max);
+        if (allowed == 0) {
+            return 0;
+        }
+        List<SmsDispatchBatch.Item> items;
+        int heldBack;
+        try {
+            PendingBatch pending = fetchPendingBatch(job, allowed);
+            items = pending.items();
+            heldBack = pending.heldBack();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Failed to read recipients of SMS job %s", job.id);
+            if (!exempt) {
+                shaper.release(job.tenantId, job.senderId, allowed);
+            }
+            return 0;
+        }
+        if (exempt) {
+            shaper.consume(job.tenantId, job.senderId, items.size());
+        } else {
+            shaper.release(job.tenantId, job.senderId, allowed - items.size());
+        }
+        if (items.isEmpty()) {
+            if (heldBack > 0) {
+                // The failed recipients are skipped on the next read, which carries on after them
+                return 0;
+            }
+            active.remove(job.id);
+            return -1;
+        }
+
+        SmsDispatchBatch batch = SmsDispatchBatch.builder()
+                .jobId(job.id)
+                .tenantId(job.tenantId)
+                .senderId(job.senderId)
+                .sourceAddress(job.sourceAddress)
+                .messageType(job.messageType)
+                .message(job.template.source())
+                .attempt(1)
+                .priority(job.priority)
+                .recipients(items)
+                .build();
+        try {
+            // Wait for the broker ack so a slow broker throttles us instead of overflowing the emitter
+            publisher.publish(batch).toCompletableFuture().join();
+        } catch (RuntimeException e) {
+            LOG.errorf(e, "Failed to publish a batch of SMS job %s, retrying on the next poll", job.id);
+            if (!exempt) {
+                shaper.release(job.tenantId, job.senderId, items.size());
+            }
+            return 0;
+        }
+        job.after = items.get(items.size() - 1).getRecipientId();
+        try {
+            markPublished(items);
+        } catch (RuntimeException e) {
+            // Only matters if the job is taken over, which would then publish the batch again
+            LOG.errorf(e, "Failed to mark a published batch of SMS job %s", job.id);
+        }
+        return items.size();
+    }
+
+    @Transactional
+    void markPublished(List<SmsDispatchBatch.Item> items) {
+        List<UUID> ids = new ArrayList<>(items.size());
+        items.forEach(item -> ids.add(item.getRecipientId()));
+        SmsRecipient.update("publishedAt = ?1 where id in ?2", now(), ids);
+    }
+
+    @Transactional
+    String loadSenderName(String senderId) {
+        Sender sender = Sender.findById(senderId);
+        return sender != null ? sender.name : senderId;
+    }
+
+    /**
+     * Reads the next page of PENDING recipients not published yet using keyset paging on id. For a personalized template the
+     * recipients' contacts are joined in and the template is rendered for every recipient without a message.
+     * Rendered texts that take more parts than the template was billed for are charged the difference and kept
+     * on the recipient, so a batch read again after a failed publish is not charged twice.
+     */
+    @Transactional
+    PendingBatch fetchPendingBatch(ActiveJob job, int limit) {
+        UUID jobId = job.id;
+        UUID after = job.after;
+        MessageTemplate template = job.template;
+        boolean personalized = template.isPersonalized();
+        String jpql = "SELECT r.id, r.phoneNumber, r.message, r.messageType, r.messageBodyId" +
+                (personalized ? ", c.name, c.email, c.customFields" : "") +
+                " FROM SmsRecipient r" +
+                (personalized ? " LEFT JOIN Contact c ON c.tenantId = r.tenantId AND c.phone = r.phoneNumber" : "") +
+                " WHERE r.job.id = :jobId AND r.status = :pending AND r.publishedAt IS NULL" +
+                (after != null ? " AND r.id > :after" : "") +
+                " ORDER BY r.id";
+        var query = em.createQuery(jpql, Object[].class)
+                .setParameter("jobId", jobId)
+                .setParameter("pending", SmsRecipient.RecipientStatus.PENDING)
+                .setMaxResults(limit);
+        if (after != null) {
+            query.setParameter("after", after);
+        }
+
+        List<Object[]> rows = query.getResultList();
+        List<Long> bodyIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (row[4] != null) {
+                bodyIds.add((Long) row[4]);
+            }
+        }
+        Map<Long, String> bodies = bodyIds.isEmpty() ? Map.of() : messageBodies.load(bodyIds);
+
+        List<SmsDispatchBatch.Item> items = new ArrayList<>(limit);
+        Map<SmsDispatchBatch.Item, Integer> surcharges = new LinkedHashMap<>();
+        int billed = personalized ? SmsEncoding.segments(template.source(), job.messageType) : 0;
+        for (Object[] row : rows) {
+            SmsDispatchBatch.Item item = SmsDispatchBatch.Item.builder()
+                    .recipientId((UUID) row[0])
+                    .phoneNumber((String) row[1])
+                    .message(row[2] != null ? (String) row[2] : bodies.get((Long) row[4]))
+                    .messageType((SmsJob.MessageType) row[3])
+                    .build();
+            if (personalized && item.getMessage() == null) {
+                item.setMessage(render(template, row));
+                item.setMessageType(SmsEncoding.detect(item.getMessage()));
+                int surcharge = SmsEncoding.segments(item.getMessage(), item.getMessageType()) - billed;
+                if (surcharge > 0) {
+                    surcharges.put(item, surcharge);
+                }
+            }
+            items.add(item);
+        }
+        int heldBack = surcharges.isEmpty() ? 0 : chargeSurcharges(job, surcharges, items);
+        return new PendingBatch(items, heldBack);
+    }
+
+    /**
+     * Reserves the extra parts of rendered texts, all at once or else recipient by recipient as far as the
+     * credits go. Charged recipients keep their rendered text; the others are failed and removed from the items,
+     * which refunds what the template was billed for them. Returns how many were failed.
+     */
+    private int chargeSurcharges(ActiveJob job, Map<SmsDispatchBatch.Item, Integer> surcharges,
+                                 List<SmsDispatchBatch.Item> items) {
+        String reference = job.id.toString();
+        long total = surcharges.values().stream().mapToLong(Integer::longValue).sum();
+        boolean allPaid = creditService.tryReserve(job.tenantId, total, reference);
+
+        List<SmsOutcomeBatch.Outcome> unpaid = new ArrayList<>();
+        for (Map.Entry<SmsDispatchBatch.Item, Integer> entry : surcharges.entrySet()) {
+            SmsDispatchBatch.Item item = entry.getKey();
+            if (allPaid || creditService.tryReserve(job.tenantId, entry.getValue(), reference)) {
+                SmsRecipient.update("message = ?1, messageType = ?2 where id = ?3",
+                        item.getMessage(), item.getMessageType(), item.getRecipientId());
+            } else {
+                items.remove(item);
+                unpaid.add(SmsOutcomeBatch.Outcome.builder()
+                        .recipientId(item.getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.FAILED)
+                        .build());
+            }
+        }
+        if (!unpaid.isEmpty()) {
+            LOG.warnf("Failed %d recipients of SMS job %s whose rendered text needs more credits than are left",
+                    unpaid.size(), job.id);
+            recordOutcomes(unpaid);
+        }
+        return unpaid.size();
+    }
+
+    /**
+     * Renders the template for a recipient row of {@link #fetchPendingBatch}. Fields other than name, phone and
+     * email come from the contact's custom fields; a recipient without a contact only has a phone number.
+     */
+    @SuppressWarnings("unchecked")
+    private static String render(MessageTemplate template, Object[] row) {
+        Map<String, String> customFields = (Map<String, String>) row[7];
+        return template.render(field -> switch (field) {
+            case "name" -> (String) row[5];
+            case "phone" -> (String) row[1];
+            case "email" -> (String) row[6];
+            default -> customFields != null ? customFields.get(field) : null;
+        });
+    }
+
+    /**
+     * Lease timestamps are compared for equality, so they are cut to the precision the database keeps.
+     */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    /**
+     * Consumes outcome batches reported by delivery workers.
+     */
+    @Incoming("sms-outcomes")
+    @Blocking
+    public void onOutcomes(JsonObject payload) {
+        SmsOutcomeBatch batch = payload.mapTo(SmsOutcomeBatch.class);
+        if (batch.getOutcomes() != null && !batch.getOutcomes().isEmpty()) {
+            recordOutcomes(batch.getOutcomes());
+        }
+    }
+
+    /**
+     * Applies recipient outcomes with one update statement per distinct status.
+     * Only PENDING recipients are touched, so redelivered outcome messages are harmless.
+     * Recipients with a webhook URL get a delivery report queued in the same transaction, and the carrier
+     * message ids of accepted messages are kept to match their delivery receipts. The recipients that did change
+     * are added to the daily rollups, told apart from already recorded ones by the updatedAt just set, and the
+     * ones that failed get the credits reserved for them back.
+     */
+    @Transactional
+    public void recordOutcomes(List<SmsOutcomeBatch.Outcome> outcomes) {
+        Map<SmsRecipient.RecipientStatus, List<UUID>> byStatus = new EnumMap<>(SmsRecipient.RecipientStatus.class);
+        for (SmsOutcomeBatch.Outcome outcome : outcomes) {
+            byStatus.computeIfAbsent(outcome.getStatus(), s -> new ArrayList<>()).add(outcome.getRecipientId());
+        }
+
+        Instant now = now();
+        for (Map.Entry<SmsRecipient.RecipientStatus, List<UUID>> entry : byStatus.entrySet()) {
+            webhookDispatcher.enqueue(entry.getValue(), entry.getKey(), now);
+            if (entry.getKey() == SmsRecipient.RecipientStatus.SENT) {
+                SmsRecipient.update("status = ?1, sentAt = ?2, updatedAt = ?2 where id in ?3 and status = ?4",
+                        entry.getKey(), now, entry.getValue(), SmsRecipient.RecipientStatus.PENDING);
+            } else {
+                SmsRecipient.update("status = ?1, updatedAt = ?2 where id in ?3 and status = ?4",
+                        entry.getKey(), now, entry.getValue(), SmsRecipient.RecipientStatus.PENDING);
+            }
+            stats.recordTransitions(entry.getValue(), entry.getKey(), now);
+            if (entry.getKey() == SmsRecipient.RecipientStatus.FAILED) {
+                refundFailed(entry.getValue(), now);
+            }
+        }
+        deliveryReceiptService.recordMessageIds(outcomes);
+    }
+
+    /**
+     * Refunds the parts billed for the given recipients that were just failed, as {@link
+     * CreditLedgerEntry.EntryType#DELIVERY_FAIL_REFUND} under the reference they were reserved with: the
+     * recipient for transactional messages, which record their parts, and the job otherwise. A recipient without
+     * a text of its own was billed the job's text.
+     */
+    private void refundFailed(List<UUID> recipientIds, Instant failedAt) {
+        List<Object[]> rows = em.createQuery("SELECT r.id, r.tenantId, j.id, r.smsCount, r.message, " +
+                        "r.messageBodyId, r.messageType, j.messageContent, j.messageType " +
+                        "FROM SmsRecipient r JOIN r.job j " +
+                        "WHERE r.id IN :ids AND r.status = :failed AND r.updatedAt = :failedAt", Object[].class)
+                .setParameter("ids", recipientIds)
+                .setParameter("failed", SmsRecipient.RecipientStatus.FAILED)
+                .setParameter("failedAt", failedAt)
+                .getResultList();
+        List<Long> bodyIds = new ArrayList<>();
+        for (Object[] row : rows) {
+            if (row[3] == null && row[4] == null && row[5] != null) {
+                bodyIds.add((Long) row[5]);
+            }
+        }
+        Map<Long, String> bodies = bodyIds.isEmpty() ? Map.of() : messageBodies.load(bodyIds);
+
+        Map<List<String>, Long> refunds = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            String reference;
+            int parts;
+            if (row[3] != null) {
+                reference = row[0].toString();
+                parts = (Integer) row[3];
+            } else {
+                reference = row[2].toString();
+                String text = row[4] != null ? (String) row[4] : bodies.get((Long) row[5]);
+                parts = text != null
+                        ? SmsEncoding.segments(text, (SmsJob.MessageType) row[6])
+                        : SmsEncoding.segments((String) row[7], (SmsJob.MessageType) row[8]);
+            }
+            refunds.merge(List.of((String) row[1], reference), (long) parts, Long::sum);
+        }
+        refunds.forEach((key, credits) -> creditService.refund(key.get(0), credits,
+                CreditLedgerEntry.EntryType.DELIVERY_FAIL_REFUND, key.get(1)));
+    }
+
+    /**
+     * Closes SENDING jobs that have no PENDING recipients left:
+     * COMPLETED when at least one recipient was sent, FAILED otherwise.
+     * TRANSACTIONAL rollup jobs stay open until their day is over, since messages keep arriving until then.
+     */
+    @Transactional
+    void completeFinishedJobs() {
+        Instant now = Instant.now();
+        Instant openRollups = now.minus(1, ChronoUnit.DAYS);
+        em.createQuery("UPDATE SmsJob j SET j.status = :completed, j.updatedAt = :now " +
+                        "WHERE j.status = :sending " +
+                        "AND NOT (j.jobType = :transactional AND j.scheduledAt > :openRollups) " +
+                        "AND NOT EXISTS (SELECT r.id FROM SmsRecipient r WHERE r.job = j AND r.status = :pending) " +
+                        "AND EXISTS (SELECT r.id FROM SmsRecipient r WHERE r.job = j AND r.status = :sent)")
+                .setParameter("completed", SmsJob.JobStatus.COMPLETED)
+                .setParameter("now", now)
+                .setParameter("sending", SmsJob.JobStatus.SENDING)
+                .setParameter("pending", SmsRecipient.RecipientStatus.PENDING)
+                .setParameter("sent", SmsRecipient.RecipientStatus.SENT)
+                .setParameter("transactional", SmsJob.JobType.TRANSACTIONAL)
+                .setParameter("openRollups", openRollups)
+                .executeUpdate();
+
+        em.createQuery("UPDATE SmsJob j SET j.status = :failed, j.updatedAt = :now " +
+                        "WHERE j.status = :sending " +
+                        "AND NOT (j.jobType = :transactional AND j.scheduledAt > :openRollups) " +
+                        "AND NOT EXISTS (SELECT r.id FROM SmsRecipient r WHERE r.job = j AND r.status = :pending)")
+                .setParameter("failed", SmsJob.JobStatus.FAILED)
+                .setParameter("now", now)
+                .setParameter("sending", SmsJob.JobStatus.SENDING)
+                .setParameter("pending", SmsRecipient.RecipientStatus.PENDING)
+                .setParameter("transactional", SmsJob.JobType.TRANSACTIONAL)
+                .setParameter("openRollups", openRollups)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,307 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsJobIngestion;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.jboss.logging.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Expands bulk and group jobs into recipients in the background.
+ *
+ * Jobs arrive in INGESTING state. CSV recipients are written in chunks, each chunk in its own transaction,
+ * and the job's {@link SmsJobIngestion} row is updated after every chunk so clients can poll progress.
+ * Group recipients are created by a single INSERT ... SELECT inside the database.
+ * Once all rows are in, {@link SmsJobService#completeIngestion} applies totals, approval and credits.
+ *
+ * The node a job is submitted on owns it and keeps a heartbeat on its progress row every
+ * {@code sms.ingestion.heartbeat-interval}, from submission through the end of its task, so a job waiting for
+ * a worker or inside one long group insert is not mistaken for a stalled one. Any node fails ingestions whose
+ * heartbeat is older than {@code sms.ingestion.stale-after}. Finishing and failing both set finishedAt only
+ * if it is still unset, so exactly one of them wins, and a worker whose job was failed under it stops at
+ * its next chunk.
+ */
+@ApplicationScoped
+public class SmsJobIngestionService {
+
+    private static final Logger LOG = Logger.getLogger(SmsJobIngestionService.class);
+
+    /** Thrown inside a worker's transaction when its job was finished elsewhere, rolling back its writes. */
+    private static final class IngestionAbandoned extends RuntimeException {
+        IngestionAbandoned(UUID jobId) {
+            super("Ingestion of SMS job " + jobId + " was finished elsewhere", null, false, false);
+        }
+    }
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    SmsJobService smsJobService;
+
+    @Inject
+    SmsRecipientWriter recipientWriter;
+
+    @Inject
+    PhoneNumberCsvReader csvReader;
+
+    @ConfigProperty(name = "sms.ingestion.workers", defaultValue = "2")
+    int workers;
+
+    @ConfigProperty(name = "sms.ingestion.chunk-size", defaultValue = "10000")
+    int chunkSize;
+
+    @ConfigProperty(name = "sms.ingestion.work-dir")
+    Optional<String> workDir;
+
+    @ConfigProperty(name = "sms.ingestion.stale-after", defaultValue = "10m")
+    Duration staleAfter;
+
+    private final String node = ManagementFactory.getRuntimeMXBean().getName() + "/" +
+            UUID.randomUUID().toString().substring(0, 8);
+    private final Set<UUID> owned = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, r -> {
+            Thread t = new Thread(r, "sms-ingestion-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Moves an uploaded file into the ingestion work directory, so it outlives the HTTP request
+     * whose upload directory is cleaned up when the response is sent.
+     */
+    public Path stage(Path upload) throws IOException {
+        Path dir = workDir.map(Path::of).orElse(Path.of(System.getProperty("java.io.tmpdir")));
+        Files.createDirectories(dir);
+        Path staged = Files.createTempFile(dir, "sms-bulk-", ".csv");
+        return Files.move(upload, staged, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public void submitBulk(UUID jobId, Path csvFile) {
+        own(jobId);
+        executor.execute(() -> ingestBulk(jobId, csvFile));
+    }
+
+    public void submitGroup(UUID jobId) {
+        own(jobId);
+        executor.execute(() -> ingestGroup(jobId));
+    }
+
+    /**
+     * Claims the job for this node, whose heartbeat then covers it while it waits for a worker.
+     */
+    private void own(UUID jobId) {
+        owned.add(jobId);
+        QuarkusTransaction.requiringNew().run(() -> SmsJobIngestion.update(
+                "ownerNode = ?1, heartbeatAt = ?2 where jobId = ?3", node, Instant.now(), jobId));
+    }
+
+    /**
+     * Marks the start of the job's task, returning false if the job is no longer INGESTING, e.g. because it
+     * was failed as stale while waiting.
+     */
+    private boolean start(UUID jobId) {
+        return QuarkusTransaction.requiringNew().call(() -> SmsJobIngestion.update(
+                "ownerNode = ?1, heartbeatAt = ?2 where jobId = ?3 and finishedAt is null",
+                node, Instant.now(), jobId) == 1
+                && SmsJob.count("id = ?1 and status = ?2", jobId, SmsJob.JobStatus.INGESTING) == 1);
+    }
+
+    /**
+     * Refreshes the heartbeat of the jobs this node owns, queued or running.
+     */
+    @Scheduled(every = "${sms.ingestion.heartbeat-interval:30s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void heartbeat() {
+        if (owned.isEmpty()) {
+            return;
+        }
+        List<UUID> jobIds = new ArrayList<>(owned);
+        QuarkusTransaction.requiringNew().run(() -> SmsJobIngestion.update(
+                "heartbeatAt = ?1 where jobId in ?2 and ownerNode = ?3 and finishedAt is null",
+                Instant.now(), jobIds, node));
+    }
+
+    void ingestBulk(UUID jobId, Path csvFile) {
+        PhoneNumberCsvReader.Counters counters = new PhoneNumberCsvReader.Counters();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(csvFile))) {
+            if (!start(jobId)) {
+                LOG.infof("Skipped ingestion of SMS job %s, it is no longer being ingested", jobId);
+                return;
+            }
+            SmsJob job = QuarkusTransaction.requiringNew().call(() -> SmsJob.<SmsJob>findById(jobId));
+            List<String> chunk = new ArrayList<>(chunkSize);
+            long[] persisted = {0};
+            csvReader.read(in, counters, phoneNumber -> {
+                chunk.add(phoneNumber);
+                if (chunk.size() == chunkSize) {
+                    persisted[0] += writeChunk(job, chunk, counters, persisted[0]);
+                }
+            });
+            persisted[0] += writeChunk(job, chunk, counters, persisted[0]);
+            complete(jobId, counters, persisted[0]);
+        } catch (IngestionAbandoned e) {
+            LOG.infof("Stopped ingestion of SMS job %s, it was finished elsewhere", jobId);
+        } catch (Exception e) {
+            LOG.errorf(e, "Ingestion of SMS job %s failed", jobId);
+            fail(jobId, counters, e.getMessage());
+        } finally {
+            owned.remove(jobId);
+            try {
+                Files.deleteIfExists(csvFile);
+            } catch (IOException e) {
+                LOG.warnf("Could not delete staged upload %s: %s", csvFile, e.getMessage());
+            }
+        }
+    }
+
+    void ingestGroup(UUID jobId) {
+        PhoneNumberCsvReader.Counters counters = new PhoneNumberCsvReader.Counters();
+        try {
+            if (!start(jobId)) {
+                LOG.infof("Skipped ingestion of SMS job %s, it is no longer being ingested", jobId);
+                return;
+            }
+            long persisted = QuarkusTransaction.requiringNew().call(() ->
+                    recipientWriter.insertFromGroup(SmsJob.findById(jobId)));
+            counters.rows = persisted;
+            counters.accepted = persisted;
+            complete(jobId, counters, persisted);
+        } catch (IngestionAbandoned e) {
+            LOG.infof("Stopped ingestion of SMS job %s, it was finished elsewhere", jobId);
+        } catch (Exception e) {
+            LOG.errorf(e, "Ingestion of SMS job %s failed", jobId);
+            fail(jobId, counters, e.getMessage());
+        } finally {
+            owned.remove(jobId);
+        }
+    }
+
+    /**
+     * Writes one chunk of recipients and the progress so far in a single transaction.
+     */
+    private int writeChunk(SmsJob job, List<String> chunk, PhoneNumberCsvReader.Counters counters, long persistedBefore) {
+        if (chunk.isEmpty()) {
+            return 0;
+        }
+        int size = chunk.size();
+        QuarkusTransaction.requiringNew().run(() -> {
+            try (SmsRecipientWriter.Batch recipients = recipientWriter.open(job, null, job.messageType, null)) {
+                chunk.forEach(recipients::add);
+            }
+            if (updateProgress(job.id, counters, persistedBefore + size) == 0) {
+                throw new IngestionAbandoned(job.id);
+            }
+        });
+        chunk.clear();
+        return size;
+    }
+
+    private void complete(UUID jobId, PhoneNumberCsvReader.Counters counters, long persisted) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            if (updateProgress(jobId, counters, persisted) == 0) {
+                throw new IngestionAbandoned(jobId);
+            }
+            SmsJobIngestion.update("finishedAt = ?1 where jobId = ?2", Instant.now(), jobId);
+            smsJobService.completeIngestion(jobId, counters.accepted);
+        });
+    }
+
+    /**
+     * Marks the job FAILED and removes whatever recipients were already written, unless it got past INGESTING.
+     */
+    void fail(UUID jobId, PhoneNumberCsvReader.Counters counters, String error) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            int failed = SmsJob.update("status = ?1, updatedAt = ?2 where id = ?3 and status = ?4",
+                    SmsJob.JobStatus.FAILED, Instant.now(), jobId, SmsJob.JobStatus.INGESTING);
+            if (failed == 0) {
+                return;
+            }
+            SmsRecipient.delete("job.id", jobId);
+            SmsJobIngestion.update("rowsParsed = ?1, rowsAccepted = ?2, rowsRejected = ?3, rowsDuplicate = ?4, " +
+                            "rowsPersisted = 0, error = ?5, finishedAt = ?6, updatedAt = ?6 where jobId = ?7",
+                    counters.rows, counters.accepted, counters.rejected, counters.duplicates,
+                    error != null ? error : "Ingestion failed", Instant.now(), jobId);
+        });
+    }
+
+    /**
+     * Records progress of an unfinished ingestion, returning 0 if it was finished in the meantime.
+     */
+    private int updateProgress(UUID jobId, PhoneNumberCsvReader.Counters counters, long persisted) {
+        return SmsJobIngestion.update("rowsParsed = ?1, rowsAccepted = ?2, rowsRejected = ?3, rowsDuplicate = ?4, " +
+                        "rowsPersisted = ?5, updatedAt = ?6, heartbeatAt = ?6 where jobId = ?7 and finishedAt is null",
+                counters.rows, counters.accepted, counters.rejected, counters.duplicates, persisted,
+                Instant.now(), jobId);
+    }
+
+    /**
+     * Fails ingestions whose owner stopped its heartbeat, e.g. because the node running them went down.
+     */
+    @Scheduled(every = "1m", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void failStaleIngestions() {
+        Instant cutoff = Instant.now().minus(staleAfter);
+        List<UUID> stale = QuarkusTransaction.requiringNew().call(() -> em.createQuery(
+                        "SELECT i.jobId FROM SmsJobIngestion i " +
+                                "WHERE i.finishedAt IS NULL AND COALESCE(i.heartbeatAt, i.updatedAt) < :cutoff",
+                        UUID.class)
+                .setParameter("cutoff", cutoff)
+                .getResultList());
+        for (UUID jobId : stale) {
+            // Finishing it here first makes the owner, should it still be alive, stop instead of completing it
+            SmsJobIngestion progress = QuarkusTransaction.requiringNew().call(() -> {
+                int claimed = SmsJobIngestion.update("finishedAt = ?1 where jobId = ?2 and finishedAt is null " +
+                        "and coalesce(heartbeatAt, updatedAt) < ?3", Instant.now(), jobId, cutoff);
+                return claimed == 1 ? SmsJobIngestion.<SmsJobIngestion>findById(jobId) : null;
+            });
+            if (progress == null) {
+                continue;
+            }
+            LOG.warnf("Ingestion of SMS job %s on %s has had no heartbeat for %s, failing it", jobId,
+                    progress.ownerNode, staleAfter);
+            PhoneNumberCsvReader.Counters counters = new PhoneNumberCsvReader.Counters();
+            counters.rows = progress.rowsParsed;
+            counters.accepted = progress.rowsAccepted;
+            counters.rejected = progress.rowsRejected;
+            counters.duplicates = progress.rowsDuplicate;
+            fail(jobId, counters, "Ingestion stalled");
+        }
+    }
+}
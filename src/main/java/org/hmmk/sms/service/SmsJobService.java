@@ -1,32 +1,36 @@
 package org.hmmk.sms.service;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.ClientErrorException;
 import jakarta.ws.rs.NotFoundException;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
+import jakarta.ws.rs.core.Response;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.hmmk.sms.dto.sms.BulkSmsRequest;
 import org.hmmk.sms.dto.sms.GroupSmsRequest;
+import org.hmmk.sms.dto.sms.PublicSmsBatchRequest;
+import org.hmmk.sms.dto.sms.PublicSmsBatchResponse;
 import org.hmmk.sms.dto.sms.SingleSmsRequest;
+import org.hmmk.sms.dto.sms.SmsJobProgressResponse;
 import org.hmmk.sms.entity.Sender;
 import org.hmmk.sms.entity.Tenant;
-import org.hmmk.sms.entity.contact.Contact;
 import org.hmmk.sms.entity.contact.ContactGroup;
 import org.hmmk.sms.entity.contact.ContactGroupMember;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
 import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsJobIngestion;
 import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.gateway.SmsEncoding;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
-import java.util.regex.Pattern;
 
 /**
  * Service for creating and managing SMS jobs.
@@ -34,7 +38,32 @@ import java.util.regex.Pattern;
 @ApplicationScoped
 public class SmsJobService {
 
-    private static final Pattern PHONE_PATTERN = Pattern.compile("^\\+?[0-9]{10,15}$");
+    @Inject
+    SmsRecipientWriter recipientWriter;
+
+    @Inject
+    MessageBodyStore messageBodies;
+
+    @Inject
+    SmsJobIngestionService ingestionService;
+
+    @Inject
+    CreditService creditService;
+
+    @Inject
+    SmsStatsService stats;
+
+    @Inject
+    DashboardCache dashboardCache;
+
+    @Inject
+    PhoneNumberNormalizer phoneNumberNormalizer;
+
+    @Inject
+    WebhookUrlPolicy webhookUrlPolicy;
+
+    @ConfigProperty(name = "sms.public.batch.max-size", defaultValue = "1000")
+    int maxBatchSize;
 
     /**
      * Creates a single SMS job for one recipient.
@@ -47,13 +76,23 @@ public class SmsJobService {
     @Transactional
     public SmsJob sendSingle(String tenantId, String userId, SingleSmsRequest req, String webhookUrl) {
         validateSender(tenantId, req.getSenderId());
-        Tenant tenant = getTenant(tenantId);
-
-        SmsJob.MessageType messageType = detectMessageType(req.getMessage());
-        int smsCount = calculateSmsCount(req.getMessage(), messageType);
+        getTenant(tenantId);
+        return sendSingleFromVerifiedSender(tenantId, userId, req, webhookUrl);
+    }
 
-        // Validate sufficient credits (single SMS is always auto-approved)
-        validateSufficientCredits(tenant, smsCount);
+    /**
+     * Creates a single SMS job for a sender the caller already verified as active for the tenant,
+     * e.g. from a cached API key. Skips the sender and tenant lookups; an unknown tenant has no credits.
+     */
+    @Transactional
+    public SmsJob sendSingleFromVerifiedSender(String tenantId, String userId, SingleSmsRequest req,
+            String webhookUrl) {
+        String webhookError = webhookUrlPolicy.rejectionReason(webhookUrl);
+        if (webhookError != null) {
+            throw new BadRequestException(webhookError);
+        }
+        SmsJob.MessageType messageType = SmsEncoding.detect(req.getMessage());
+        int smsCount = SmsEncoding.segments(req.getMessage(), messageType);
 
         SmsJob job = SmsJob.builder()
                 .senderId(req.getSenderId())
@@ -72,8 +111,8 @@ public class SmsJobService {
 
         job.persist();
 
-        // Deduct credits immediately for auto-approved job
-        deductCredits(tenant, smsCount);
+        // Reserve credits right away (single SMS is always auto-approved); rolled back if anything below fails
+        creditService.reserve(tenantId, smsCount, job.id.toString());
 
         // Create recipient
         createRecipient(job, req.getPhoneNumber(), req.getMessage(), messageType, tenantId, webhookUrl);
@@ -82,151 +121,246 @@ public class SmsJobService {
     }
 
     /**
-     * Creates a group SMS job for all contacts in a contact group.
+     * Creates one job for a batch of API messages, each with its own recipient, text and webhook, for a sender
+     * the caller already verified. Invalid items are reported back instead of failing the batch. Credits for
+     * all valid items are reserved at once and their recipients written in one JDBC batch.
+     * Like single API messages, batches are auto-approved.
      */
     @Transactional
-    public SmsJob sendToGroup(String tenantId, String userId, GroupSmsRequest req) {
-        validateSender(tenantId, req.getSenderId());
-        Tenant tenant = getTenant(tenantId);
-
-        // Validate contact group exists and belongs to tenant
-        ContactGroup group = ContactGroup.findById(req.getGroupId());
-        if (group == null || !tenantId.equals(group.tenantId)) {
-            throw new NotFoundException("Contact group not found");
+    public PublicSmsBatchResponse sendBatchFromVerifiedSender(String tenantId, String userId, String senderId,
+            PublicSmsBatchRequest req) {
+        List<PublicSmsBatchRequest.Item> items = req.getMessages();
+        if (items.size() > maxBatchSize) {
+            throw new BadRequestException("A batch can contain at most " + maxBatchSize + " messages");
         }
 
-        // Get all contacts in the group
-        List<ContactGroupMember> members = ContactGroupMember.list("group.id", req.getGroupId());
-        if (members.isEmpty()) {
-            throw new BadRequestException("Contact group has no members");
+        List<PublicSmsBatchResponse.ItemResult> results = new ArrayList<>(items.size());
+        String[] phoneNumbers = new String[items.size()];
+        SmsJob.MessageType[] messageTypes = new SmsJob.MessageType[items.size()];
+        String firstMessage = null;
+        boolean anyUnicode = false;
+        long totalSmsCount = 0;
+        int accepted = 0;
+        for (int i = 0; i < items.size(); i++) {
+            PublicSmsBatchRequest.Item item = items.get(i);
+            PublicSmsBatchResponse.ItemResult result = PublicSmsBatchResponse.ItemResult.builder()
+                    .index(i)
+                    .to(item != null ? item.getTo() : null)
+                    .status(PublicSmsBatchResponse.ItemStatus.REJECTED)
+                    .build();
+            results.add(result);
+            if (item == null || item.getMessage() == null || item.getMessage().isBlank()) {
+                result.setError("Message content is required");
+                continue;
+            }
+            String phoneNumber = phoneNumberNormalizer.normalize(item.getTo());
+            if (phoneNumber == null) {
+                result.setError("Invalid phone number format");
+                continue;
+            }
+            String webhookError = webhookUrlPolicy.rejectionReason(item.getWebhookUrl());
+            if (webhookError != null) {
+                result.setError(webhookError);
+                continue;
+            }
+            SmsJob.MessageType messageType = SmsEncoding.detect(item.getMessage());
+            int smsCount = SmsEncoding.segments(item.getMessage(), messageType);
+            phoneNumbers[i] = phoneNumber;
+            messageTypes[i] = messageType;
+            result.setStatus(PublicSmsBatchResponse.ItemStatus.ACCEPTED);
+            result.setSmsCount(smsCount);
+            firstMessage = firstMessage != null ? firstMessage : item.getMessage();
+            anyUnicode |= messageType == SmsJob.MessageType.UNICODE;
+            totalSmsCount += smsCount;
+            accepted++;
         }
 
-        SmsJob.MessageType messageType = detectMessageType(req.getMessage());
-        int smsCountPerRecipient = calculateSmsCount(req.getMessage(), messageType);
-        long totalRecipients = members.size();
-        long totalSmsCount = totalRecipients * smsCountPerRecipient;
-
-        // Check if approval is required
-        boolean requiresApproval = totalRecipients > tenant.smsApprovalThreshold;
-
-        // Validate sufficient credits
-        validateSufficientCredits(tenant, totalSmsCount);
+        PublicSmsBatchResponse response = PublicSmsBatchResponse.builder()
+                .accepted(accepted)
+                .rejected(items.size() - accepted)
+                .totalSmsCount(totalSmsCount)
+                .results(results)
+                .build();
+        if (accepted == 0) {
+            return response;
+        }
 
+        // Recipients carry their own message and type; the job's are only a summary
         SmsJob job = SmsJob.builder()
-                .senderId(req.getSenderId())
-                .jobType(SmsJob.JobType.GROUP)
-                .sourceType(SmsJob.SourceType.MANUAL)
-                .messageContent(req.getMessage())
-                .messageType(messageType)
-                .totalRecipients(totalRecipients)
+                .senderId(senderId)
+                .jobType(SmsJob.JobType.BULK)
+                .sourceType(SmsJob.SourceType.API)
+                .messageContent(firstMessage)
+                .messageType(anyUnicode ? SmsJob.MessageType.UNICODE : SmsJob.MessageType.English)
+                .totalRecipients((long) accepted)
                 .totalSmsCount(totalSmsCount)
                 .createdBy(userId)
                 .scheduledAt(req.getScheduledAt() != null ? req.getScheduledAt() : Instant.now())
-                .groupId(req.getGroupId())
-                .approvalStatus(requiresApproval ? SmsJob.ApprovalStatus.PENDING : SmsJob.ApprovalStatus.APPROVED)
-                .status(requiresApproval ? SmsJob.JobStatus.PENDING_APPROVAL : SmsJob.JobStatus.SCHEDULED)
+                .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                .status(SmsJob.JobStatus.SCHEDULED)
                 .build();
         job.tenantId = tenantId;
+        job.persistAndFlush();
 
-        job.persist();
+        creditService.reserve(tenantId, totalSmsCount, job.id.toString());
 
-        // Deduct credits immediately if auto-approved
-        if (!requiresApproval) {
-            deductCredits(tenant, totalSmsCount);
+        try (SmsRecipientWriter.Batch recipients = recipientWriter.open(job)) {
+            for (int i = 0; i < items.size(); i++) {
+                if (phoneNumbers[i] != null) {
+                    PublicSmsBatchRequest.Item item = items.get(i);
+                    results.get(i).setRecipientId(recipients.add(phoneNumbers[i], item.getMessage(),
+                            messageTypes[i], item.getWebhookUrl()));
+                }
+            }
         }
+        response.setJobId(job.id);
+        return response;
+    }
 
-        // Create recipients for each group member
-        for (ContactGroupMember member : members) {
-            Contact contact = member.getContact();
-            createRecipient(job, contact.phone, req.getMessage(), messageType, tenantId);
-        }
+    /**
+     * Creates a group SMS job for all contacts in a contact group.
+     * The job is returned in INGESTING state; recipients are expanded in the background.
+     */
+    public SmsJob sendToGroup(String tenantId, String userId, GroupSmsRequest req) {
+        SmsJob job = QuarkusTransaction.requiringNew().call(() -> {
+            validateSender(tenantId, req.getSenderId());
+            getTenant(tenantId);
+
+            // Validate contact group exists and belongs to tenant; counted rather than loaded,
+            // since loading a group eagerly pulls in all of its members
+            if (ContactGroup.count("id = ?1 and tenantId = ?2", req.getGroupId(), tenantId) == 0) {
+                throw new NotFoundException("Contact group not found");
+            }
+            if (ContactGroupMember.count("group.id", req.getGroupId()) == 0) {
+                throw new BadRequestException("Contact group has no members");
+            }
 
+            return createIngestingJob(tenantId, userId, req.getSenderId(), SmsJob.JobType.GROUP,
+                    SmsJob.SourceType.MANUAL, req.getMessage(), req.getScheduledAt(), req.getGroupId(),
+                    req.getPriority());
+        });
+        ingestionService.submitGroup(job.id);
         return job;
     }
 
     /**
-     * Creates a bulk SMS job from a CSV file containing phone numbers.
+     * Creates a bulk SMS job from an uploaded CSV file containing phone numbers.
+     * The upload is moved aside and the job is returned in INGESTING state; the file is
+     * streamed into recipients in the background.
      */
-    @Transactional
-    public SmsJob sendBulk(String tenantId, String userId, InputStream csvInputStream, BulkSmsRequest req) {
-        validateSender(tenantId, req.getSenderId());
-        Tenant tenant = getTenant(tenantId);
-
-        // Parse phone numbers from CSV
-        List<String> phoneNumbers = parsePhoneNumbersFromCsv(csvInputStream);
-        if (phoneNumbers.isEmpty()) {
-            throw new BadRequestException("CSV file contains no valid phone numbers");
+    public SmsJob sendBulk(String tenantId, String userId, Path csvFile, BulkSmsRequest req) {
+        SmsJob job = QuarkusTransaction.requiringNew().call(() -> {
+            validateSender(tenantId, req.getSenderId());
+            getTenant(tenantId);
+            return createIngestingJob(tenantId, userId, req.getSenderId(), SmsJob.JobType.BULK,
+                    SmsJob.SourceType.CSV_UPLOAD, req.getMessage(), req.getScheduledAt(), null, req.getPriority());
+        });
+
+        Path staged;
+        try {
+            staged = ingestionService.stage(csvFile);
+        } catch (IOException e) {
+            ingestionService.fail(job.id, new PhoneNumberCsvReader.Counters(), "Failed to read CSV file");
+            throw new BadRequestException("Failed to read CSV file: " + e.getMessage());
         }
+        ingestionService.submitBulk(job.id, staged);
+        return job;
+    }
 
-        SmsJob.MessageType messageType = detectMessageType(req.getMessage());
-        int smsCountPerRecipient = calculateSmsCount(req.getMessage(), messageType);
-        long totalRecipients = phoneNumbers.size();
-        long totalSmsCount = totalRecipients * smsCountPerRecipient;
-
-        // Check if approval is required
-        boolean requiresApproval = totalRecipients > tenant.smsApprovalThreshold;
-
-        // Validate sufficient credits
-        validateSufficientCredits(tenant, totalSmsCount);
-
+    /**
+     * Persists a job in INGESTING state together with its progress row.
+     * Totals are zero and the approval status is provisional until ingestion completes.
+     * A requested priority may only be NORMAL or LOW, since HIGH jobs skip throughput shaping.
+     */
+    private SmsJob createIngestingJob(String tenantId, String userId, String senderId, SmsJob.JobType jobType,
+            SmsJob.SourceType sourceType, String message, Instant scheduledAt, String groupId,
+            SmsJob.Priority priority) {
+        if (priority == SmsJob.Priority.HIGH) {
+            throw new BadRequestException("HIGH priority is reserved for single messages");
+        }
         SmsJob job = SmsJob.builder()
-                .senderId(req.getSenderId())
-                .jobType(SmsJob.JobType.BULK)
-                .sourceType(SmsJob.SourceType.CSV_UPLOAD)
-                .messageContent(req.getMessage())
-                .messageType(messageType)
-                .totalRecipients(totalRecipients)
-                .totalSmsCount(totalSmsCount)
+                .senderId(senderId)
+                .jobType(jobType)
+                .sourceType(sourceType)
+                .messageContent(message)
+                .messageType(SmsEncoding.detect(message))
+                .totalRecipients(0L)
+                .totalSmsCount(0L)
                 .createdBy(userId)
-                .scheduledAt(req.getScheduledAt() != null ? req.getScheduledAt() : Instant.now())
-                .approvalStatus(requiresApproval ? SmsJob.ApprovalStatus.PENDING : SmsJob.ApprovalStatus.APPROVED)
-                .status(requiresApproval ? SmsJob.JobStatus.PENDING_APPROVAL : SmsJob.JobStatus.SCHEDULED)
+                .scheduledAt(scheduledAt != null ? scheduledAt : Instant.now())
+                .groupId(groupId)
+                .priority(priority)
+                .approvalStatus(SmsJob.ApprovalStatus.PENDING)
+                .status(SmsJob.JobStatus.INGESTING)
                 .build();
         job.tenantId = tenantId;
-
         job.persist();
+        // Awaits approval until ingested, so it counts as pending on the admin dashboard
+        dashboardCache.invalidateAdmin();
 
-        // Deduct credits immediately if auto-approved
-        if (!requiresApproval) {
-            deductCredits(tenant, totalSmsCount);
-        }
-
-        // Create recipients for each phone number
-        for (String phoneNumber : phoneNumbers) {
-            createRecipient(job, phoneNumber, req.getMessage(), messageType, tenantId);
-        }
-
+        SmsJobIngestion progress = SmsJobIngestion.builder()
+                .jobId(job.id)
+                .build();
+        progress.tenantId = tenantId;
+        progress.persist();
         return job;
     }
 
     /**
-     * Detects whether the message contains Unicode characters.
+     * Finishes an INGESTING job once all its recipients are written: sets the totals, decides on approval
+     * and deducts credits for auto-approved jobs. Throws if there are no recipients or not enough credits,
+     * in which case the caller fails the job.
      */
-    private SmsJob.MessageType detectMessageType(String message) {
-        for (char c : message.toCharArray()) {
-            if (c > 127) {
-                return SmsJob.MessageType.UNICODE;
-            }
+    @Transactional
+    public SmsJob completeIngestion(UUID jobId, long totalRecipients) {
+        SmsJob job = SmsJob.findById(jobId);
+        if (job == null) {
+            throw new NotFoundException("SMS job not found");
+        }
+        if (job.status != SmsJob.JobStatus.INGESTING) {
+            throw new BadRequestException("Job is not being ingested");
+        }
+        if (totalRecipients == 0) {
+            throw new BadRequestException(job.jobType == SmsJob.JobType.BULK
+                    ? "CSV file contains no valid phone numbers"
+                    : "Contact group has no members");
         }
-        return SmsJob.MessageType.English;
+
+        Tenant tenant = getTenant(job.tenantId);
+        // Templates are billed by their text as written, placeholders included, since they render at dispatch
+        long totalSmsCount = totalRecipients * SmsEncoding.segments(job.messageContent, job.messageType);
+
+        // Check if approval is required
+        boolean requiresApproval = totalRecipients > tenant.smsApprovalThreshold;
+
+        // Reserve credits immediately if auto-approved
+        if (!requiresApproval) {
+            creditService.reserve(job.tenantId, totalSmsCount, job.id.toString());
+        } else {
+            creditService.ensureAvailable(job.tenantId, totalSmsCount);
+        }
+
+        job.totalRecipients = totalRecipients;
+        job.totalSmsCount = totalSmsCount;
+        job.approvalStatus = requiresApproval ? SmsJob.ApprovalStatus.PENDING : SmsJob.ApprovalStatus.APPROVED;
+        job.status = requiresApproval ? SmsJob.JobStatus.PENDING_APPROVAL : SmsJob.JobStatus.SCHEDULED;
+        dashboardCache.invalidateAdmin();
+        return job;
     }
 
     /**
-     * Calculates the number of SMS segments required for a message.
-     * English SMS: 160 chars for single, 153 chars per segment for multipart
-     * Unicode SMS: 70 chars for single, 67 chars per segment for multipart
+     * Gets the ingestion progress of a tenant's bulk or group job.
      */
-    private int calculateSmsCount(String message, SmsJob.MessageType messageType) {
-        int length = message.length();
-        if (messageType == SmsJob.MessageType.UNICODE) {
-            if (length <= 70)
-                return 1;
-            return (int) Math.ceil((double) length / 67);
-        } else {
-            if (length <= 160)
-                return 1;
-            return (int) Math.ceil((double) length / 153);
+    public SmsJobProgressResponse getIngestionProgress(UUID jobId, String tenantId) {
+        SmsJob job = SmsJob.find("id = ?1 and tenantId = ?2", jobId, tenantId).firstResult();
+        if (job == null) {
+            throw new NotFoundException("SMS job not found");
         }
+        SmsJobIngestion progress = SmsJobIngestion.findById(jobId);
+        if (progress == null) {
+            throw new NotFoundException("SMS job has no ingestion progress");
+        }
+        return SmsJobProgressResponse.from(job, progress);
     }
 
     /**
@@ -238,58 +372,15 @@ public class SmsJobService {
                 .senderId(job.senderId)
                 .job(job)
                 .phoneNumber(phoneNumber)
-                .message(message)
                 .messageType(messageType)
                 .status(SmsRecipient.RecipientStatus.PENDING)
                 .webhookUrl(webhookUrl)
                 .build();
+        messageBodies.assign(recipient, message);
         recipient.tenantId = tenantId;
         recipient.persist();
     }
 
-    private void createRecipient(SmsJob job, String phoneNumber, String message,
-            SmsJob.MessageType messageType, String tenantId) {
-        createRecipient(job, phoneNumber, message, messageType, tenantId, null);
-    }
-
-    /**
-     * Parses phone numbers from a CSV file.
-     * Expects phone numbers in the first column (with or without header).
-     */
-    private List<String> parsePhoneNumbersFromCsv(InputStream inputStream) {
-        List<String> phoneNumbers = new ArrayList<>();
-
-        try (CSVParser parser = CSVFormat.DEFAULT
-                .builder()
-                .setSkipHeaderRecord(false)
-                .setIgnoreEmptyLines(true)
-                .setTrim(true)
-                .build()
-                .parse(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
-
-            for (CSVRecord record : parser) {
-                if (record.size() > 0) {
-                    String phoneNumber = record.get(0).trim();
-                    // Skip header row if it looks like a header
-                    if (phoneNumber.equalsIgnoreCase("phone") ||
-                            phoneNumber.equalsIgnoreCase("phonenumber") ||
-                            phoneNumber.equalsIgnoreCase("phone_number") ||
-                            phoneNumber.equalsIgnoreCase("mobile")) {
-                        continue;
-                    }
-                    // Validate phone number format
-                    if (PHONE_PATTERN.matcher(phoneNumber).matches()) {
-                        phoneNumbers.add(phoneNumber);
-                    }
-                }
-            }
-        } catch (IOException e) {
-            throw new BadRequestException("Failed to parse CSV file: " + e.getMessage());
-        }
-
-        return phoneNumbers;
-    }
-
     /**
      * Validates that the sender belongs to the tenant and is active.
      */
@@ -314,25 +405,6 @@ public class SmsJobService {
         return tenant;
     }
 
-    /**
-     * Validates that the tenant has sufficient SMS credits.
-     */
-    private void validateSufficientCredits(Tenant tenant, long requiredCredits) {
-        if (tenant.smsCredit < requiredCredits) {
-            throw new BadRequestException(
-                    String.format("Insufficient SMS credits. Required: %d, Available: %d",
-                            requiredCredits, tenant.smsCredit));
-        }
-    }
-
-    /**
-     * Deducts SMS credits from the tenant's balance.
-     */
-    private void deductCredits(Tenant tenant, long credits) {
-        tenant.smsCredit -= credits;
-        tenant.persist();
-    }
-
     /**
      * Approves an SMS job that is pending approval.
      * Changes the job status to SCHEDULED and records the approver.
@@ -344,20 +416,19 @@ public class SmsJobService {
             throw new NotFoundException("SMS job not found");
         }
 
-        if (job.approvalStatus != SmsJob.ApprovalStatus.PENDING) {
+        if (job.approvalStatus != SmsJob.ApprovalStatus.PENDING || job.status != SmsJob.JobStatus.PENDING_APPROVAL) {
             throw new BadRequestException("Job is not pending approval");
         }
 
-        // Get tenant and validate/deduct credits
-        Tenant tenant = getTenant(job.tenantId);
-        validateSufficientCredits(tenant, job.totalSmsCount);
-        deductCredits(tenant, job.totalSmsCount);
+        // Reserve the job's credits now that it is approved
+        creditService.reserve(job.tenantId, job.totalSmsCount, job.id.toString());
 
         job.approvalStatus = SmsJob.ApprovalStatus.APPROVED;
         job.status = SmsJob.JobStatus.SCHEDULED;
         job.approvedBy = adminUserId;
         job.approvedAt = Instant.now();
         job.persist();
+        dashboardCache.invalidateAdmin();
 
         return job;
     }
@@ -373,7 +444,7 @@ public class SmsJobService {
             throw new NotFoundException("SMS job not found");
         }
 
-        if (job.approvalStatus != SmsJob.ApprovalStatus.PENDING) {
+        if (job.approvalStatus != SmsJob.ApprovalStatus.PENDING || job.status != SmsJob.JobStatus.PENDING_APPROVAL) {
             throw new BadRequestException("Job is not pending approval");
         }
 
@@ -382,6 +453,7 @@ public class SmsJobService {
         job.approvedBy = adminUserId; // Records who rejected it
         job.approvedAt = Instant.now();
         job.persist();
+        dashboardCache.invalidateAdmin();
 
         return job;
     }
@@ -390,10 +462,12 @@ public class SmsJobService {
      * Lists SMS jobs pending approval with pagination.
      */
     public PaginatedResult<SmsJob> listPendingApprovalJobs(int page, int size) {
-        var query = SmsJob.find("approvalStatus", SmsJob.ApprovalStatus.PENDING)
+        var query = SmsJob.find("approvalStatus = ?1 and status = ?2",
+                        SmsJob.ApprovalStatus.PENDING, SmsJob.JobStatus.PENDING_APPROVAL)
                 .page(io.quarkus.panache.common.Page.of(page, size));
         List<SmsJob> items = query.list();
-        long total = SmsJob.count("approvalStatus", SmsJob.ApprovalStatus.PENDING);
+        long total = SmsJob.count("approvalStatus = ?1 and status = ?2",
+                SmsJob.ApprovalStatus.PENDING, SmsJob.JobStatus.PENDING_APPROVAL);
         return new PaginatedResult<>(items, total, page, size);
     }
 
@@ -417,6 +491,8 @@ public class SmsJobService {
     /**
      * Cancels an SMS job that is pending approval or scheduled.
      * Refunds credits if the job was already approved/scheduled.
+     * The status moves only if it is still one of those, so a job the dispatcher claims at the same moment is
+     * either canceled before it is claimed or left SENDING (409), never both canceled and sent.
      */
     @Transactional
     public SmsJob cancelJob(UUID jobId, String tenantId) {
@@ -429,19 +505,30 @@ public class SmsJobService {
             throw new BadRequestException("Only jobs in PENDING_APPROVAL or SCHEDULED status can be canceled");
         }
 
+        // Whether credits come back depends on the status actually replaced, not the one read above
+        Instant now = Instant.now();
+        boolean refund = SmsJob.update("status = ?1, updatedAt = ?2 where id = ?3 and status = ?4 " +
+                        "and approvalStatus = ?5", SmsJob.JobStatus.CANCELED, now, jobId,
+                SmsJob.JobStatus.SCHEDULED, SmsJob.ApprovalStatus.APPROVED) == 1;
+        if (!refund && SmsJob.update("status = ?1, updatedAt = ?2 where id = ?3 and (status = ?4 " +
+                        "or (status = ?5 and approvalStatus <> ?6))", SmsJob.JobStatus.CANCELED, now, jobId,
+                SmsJob.JobStatus.PENDING_APPROVAL, SmsJob.JobStatus.SCHEDULED, SmsJob.ApprovalStatus.APPROVED) == 0) {
+            throw new ClientErrorException("Job changed status while being canceled", Response.Status.CONFLICT);
+        }
+
         // Refund credits if it was already scheduled (credits were deducted)
-        if (job.status == SmsJob.JobStatus.SCHEDULED && job.approvalStatus == SmsJob.ApprovalStatus.APPROVED) {
-            Tenant tenant = getTenant(tenantId);
-            tenant.smsCredit += job.totalSmsCount;
-            tenant.persist();
+        if (refund) {
+            creditService.refund(tenantId, job.totalSmsCount, CreditLedgerEntry.EntryType.REFUND, job.id.toString());
         }
 
-        job.status = SmsJob.JobStatus.CANCELED;
-        job.persist();
+        SmsJob.getEntityManager().refresh(job);
+        dashboardCache.invalidateAdmin();
 
         // Update all recipients to CANCELED if they are still PENDING
-        SmsRecipient.update("status = ?1 where job.id = ?2 and status = ?3",
+        int canceled = SmsRecipient.update("status = ?1 where job.id = ?2 and status = ?3",
                 SmsRecipient.RecipientStatus.CANCELED, jobId, SmsRecipient.RecipientStatus.PENDING);
+        stats.increment(tenantId, Instant.now(), job.sourceType, job.senderId,
+                SmsRecipient.RecipientStatus.CANCELED, canceled);
 
         return job;
     }
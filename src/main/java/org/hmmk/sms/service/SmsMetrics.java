@@ -0,0 +1,164 @@
+package org.hmmk.sms.service;
+
+import io.smallrye.mutiny.Multi;
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import org.hmmk.sms.dto.AdminDashboardTick;
+import org.hmmk.sms.entity.sms.SmsJob;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live SMS traffic figures of this node, per second, for the admin dashboard stream.
+ *
+ * Counters go into a ring of one slot per second. A slot is claimed for its second with a compare-and-set
+ * that swaps in a fresh one, and counting is a {@link LongAdder} increment, so recording takes no lock and
+ * costs the sending paths next to nothing. The stream reads the second that just ended once for all
+ * subscribers, however many admins are watching. Queue depth per lane is what this node published minus what
+ * its workers took, which matches the broker when dispatcher and workers run on the same nodes.
+ */
+@ApplicationScoped
+public class SmsMetrics {
+
+    /** Seconds kept; a power of two so the slot is a mask of the second. */
+    private static final int SLOTS = 64;
+
+    private final AtomicReferenceArray<Second> ring = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicLongArray queueDepth = new AtomicLongArray(SmsJob.Priority.values().length);
+
+    private Multi<AdminDashboardTick> stream;
+
+    /**
+     * Counters of one second.
+     */
+    private static final class Second {
+        final long epochSecond;
+        final LongAdder queued = new LongAdder();
+        final LongAdder sent = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder delivered = new LongAdder();
+        final LongAdder undelivered = new LongAdder();
+        final LongAdder creditsBurned = new LongAdder();
+        final Map<String, LongAdder> sentByTenant = new ConcurrentHashMap<>();
+
+        Second(long epochSecond) {
+            this.epochSecond = epochSecond;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        // One tick computation shared by every subscriber, stopped while nobody listens
+        stream = Multi.createFrom().ticks().every(Duration.ofSeconds(1))
+                .onOverflow().drop()
+                .map(tick -> snapshot(Instant.now().getEpochSecond() - 1))
+                .broadcast().withCancellationAfterLastSubscriberDeparture().toAllSubscribers();
+    }
+
+    /**
+     * Per-second figures for as long as the subscriber stays, starting with the next full second.
+     */
+    public Multi<AdminDashboardTick> stream() {
+        return stream;
+    }
+
+    /**
+     * Recipients published to a dispatch lane.
+     */
+    public void queued(SmsJob.Priority lane, int count) {
+        current().queued.add(count);
+        queueDepth.addAndGet(lane.ordinal(), count);
+    }
+
+    /**
+     * Recipients taken off a dispatch lane by a worker.
+     */
+    public void consumed(SmsJob.Priority lane, int count) {
+        queueDepth.addAndGet(lane.ordinal(), -count);
+    }
+
+    /**
+     * Recipients of a tenant that left PENDING as sent or failed.
+     */
+    public void outcomes(String tenantId, long sent, long failed) {
+        Second second = current();
+        second.sent.add(sent);
+        second.failed.add(failed);
+        if (sent > 0) {
+            second.sentByTenant.computeIfAbsent(tenantId, t -> new LongAdder()).add(sent);
+        }
+    }
+
+    /**
+     * Delivery receipts applied.
+     */
+    public void receipts(long delivered, long undelivered) {
+        Second second = current();
+        second.delivered.add(delivered);
+        second.undelivered.add(undelivered);
+    }
+
+    /**
+     * Credits reserved for sending.
+     */
+    public void creditsBurned(long credits) {
+        current().creditsBurned.add(credits);
+    }
+
+    /**
+     * The figures of the given second, zero if nothing was recorded in it or it is no longer kept.
+     */
+    AdminDashboardTick snapshot(long epochSecond) {
+        Second second = ring.get(slot(epochSecond));
+        Map<String, Long> depth = new LinkedHashMap<>();
+        for (SmsJob.Priority lane : SmsJob.Priority.values()) {
+            // A restart forgets what was published before it, so consumption can run ahead
+            depth.put(lane.name(), Math.max(0L, queueDepth.get(lane.ordinal())));
+        }
+        AdminDashboardTick.AdminDashboardTickBuilder tick = AdminDashboardTick.builder()
+                .second(Instant.ofEpochSecond(epochSecond))
+                .queueDepth(depth);
+        if (second == null || second.epochSecond != epochSecond) {
+            return tick.tenantTps(Map.of()).build();
+        }
+        Map<String, Long> tenantTps = new HashMap<>();
+        second.sentByTenant.forEach((tenantId, sent) -> tenantTps.put(tenantId, sent.sum()));
+        return tick.queued(second.queued.sum())
+                .sent(second.sent.sum())
+                .failed(second.failed.sum())
+                .delivered(second.delivered.sum())
+                .undelivered(second.undelivered.sum())
+                .creditsBurned(second.creditsBurned.sum())
+                .tenantTps(tenantTps)
+                .build();
+    }
+
+    /**
+     * The slot of the current second, replacing the one left from {@link #SLOTS} seconds ago.
+     */
+    private Second current() {
+        long now = System.currentTimeMillis() / 1000;
+        int index = slot(now);
+        Second second = ring.get(index);
+        while (second == null || second.epochSecond < now) {
+            Second fresh = new Second(now);
+            if (ring.compareAndSet(index, second, fresh)) {
+                return fresh;
+            }
+            second = ring.get(index);
+        }
+        return second;
+    }
+
+    private static int slot(long epochSecond) {
+        return (int) (epochSecond & (SLOTS - 1));
+    }
+}
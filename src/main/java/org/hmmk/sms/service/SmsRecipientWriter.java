@@ -0,0 +1,187 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.contact.Contact;
+import org.hmmk.sms.entity.contact.ContactGroupMember;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Writes SmsRecipient rows with JDBC batch inserts instead of one managed entity per row.
+ *
+ * Rows are buffered in fixed-size chunks and flushed as a single batch, so memory stays bounded
+ * by the chunk size no matter how many recipients a job has. Messages go through the {@link MessageBodyStore},
+ * so a text shared by many recipients is stored once. The insert runs on the connection of
+ * the current transaction; the job row must already be flushed.
+ */
+@ApplicationScoped
+public class SmsRecipientWriter {
+
+    @Inject
+    DatabaseSupport db;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    MessageBodyStore messageBodies;
+
+    @ConfigProperty(name = "sms.recipients.batch-size", defaultValue = "1000")
+    int batchSize;
+
+    /**
+     * Creates one recipient per member of the job's contact group with a single INSERT ... SELECT,
+     * so the members never leave the database. Recipients get no message of their own; the job's template is
+     * rendered for them at dispatch. Returns the number of recipients created.
+     */
+    public int insertFromGroup(SmsJob job) {
+        String sql = "INSERT INTO " + db.tableName(SmsRecipient.class) +
+                " (id, createdAt, updatedAt, tenantId, job_id, senderId, phoneNumber, message, messageType, status)" +
+                " SELECT " + db.randomUuidFunction() + ", :now, :now, :tenantId, :jobId, :senderId, c.phone," +
+                " NULL, :messageType, :status" +
+                " FROM " + db.tableName(ContactGroupMember.class) + " m" +
+                " JOIN " + db.tableName(Contact.class) + " c ON c.id = m.contact_id" +
+                " WHERE m.group_id = :groupId AND m.tenantId = :tenantId";
+        return em.createNativeQuery(sql)
+                .setParameter("now", Instant.now())
+                .setParameter("tenantId", job.tenantId)
+                .setParameter("jobId", job.id)
+                .setParameter("senderId", job.senderId)
+                .setParameter("messageType", job.messageType.name())
+                .setParameter("status", SmsRecipient.RecipientStatus.PENDING.name())
+                .setParameter("groupId", job.groupId)
+                .executeUpdate();
+    }
+
+    /**
+     * Opens a writer for recipients of the given job that all share one message. A null message leaves it to the
+     * job's template, rendered for each recipient at dispatch.
+     */
+    public Batch open(SmsJob job, String message, SmsJob.MessageType messageType, String webhookUrl) {
+        return new Batch(job, message, messageType, webhookUrl);
+    }
+
+    /**
+     * Opens a writer for recipients of the given job that each bring their own message,
+     * added with {@link Batch#add(String, String, SmsJob.MessageType, String)}.
+     */
+    public Batch open(SmsJob job) {
+        return new Batch(job, null, null, null);
+    }
+
+    public final class Batch implements AutoCloseable {
+
+        private final SmsJob job;
+        private final String message;
+        private final SmsJob.MessageType messageType;
+        private final String webhookUrl;
+        private final UUID[] ids = new UUID[batchSize];
+        private final String[] phoneNumbers = new String[batchSize];
+        private final String[] messages = new String[batchSize];
+        private final SmsJob.MessageType[] messageTypes = new SmsJob.MessageType[batchSize];
+        private final String[] webhookUrls = new String[batchSize];
+        private int buffered;
+        private long written;
+
+        private Batch(SmsJob job, String message, SmsJob.MessageType messageType, String webhookUrl) {
+            this.job = job;
+            this.message = message;
+            this.messageType = messageType;
+            this.webhookUrl = webhookUrl;
+        }
+
+        public UUID add(String phoneNumber) {
+            return add(phoneNumber, message, messageType, webhookUrl);
+        }
+
+        /**
+         * Adds a recipient with its own message and returns the id its row will be inserted with.
+         */
+        public UUID add(String phoneNumber, String message, SmsJob.MessageType messageType, String webhookUrl) {
+            UUID id = DatabaseSupport.newTimeOrderedId();
+            ids[buffered] = id;
+            phoneNumbers[buffered] = phoneNumber;
+            messages[buffered] = message;
+            messageTypes[buffered] = messageType;
+            webhookUrls[buffered] = webhookUrl;
+            if (++buffered == phoneNumbers.length) {
+                flush();
+            }
+            return id;
+        }
+
+        /**
+         * Number of rows written so far, including the ones still buffered.
+         */
+        public long count() {
+            return written + buffered;
+        }
+
+        public void flush() {
+            if (buffered == 0) {
+                return;
+            }
+            String sql = "INSERT INTO " + db.tableName(SmsRecipient.class) +
+                    " (id, createdAt, updatedAt, tenantId, job_id, senderId, phoneNumber, message, messageType," +
+                    " status, webhook_url, messageBodyId) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+            Timestamp now = Timestamp.from(Instant.now());
+            Map<String, Long> bodyIds = messageBodies.store(Arrays.asList(messages).subList(0, buffered));
+            db.session().doWork(connection -> {
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (int i = 0; i < buffered; i++) {
+                        ps.setObject(1, ids[i]);
+                        ps.setTimestamp(2, now);
+                        ps.setTimestamp(3, now);
+                        ps.setString(4, job.tenantId);
+                        ps.setObject(5, job.id);
+                        ps.setString(6, job.senderId);
+                        ps.setString(7, phoneNumbers[i]);
+                        Long bodyId = messages[i] != null ? bodyIds.get(messages[i]) : null;
+                        if (messages[i] != null && bodyId == null) {
+                            ps.setString(8, messages[i]);
+                        } else {
+                            ps.setNull(8, Types.VARCHAR);
+                        }
+                        ps.setString(9, messageTypes[i].name());
+                        ps.setString(10, SmsRecipient.RecipientStatus.PENDING.name());
+                        if (webhookUrls[i] != null) {
+                            ps.setString(11, webhookUrls[i]);
+                        } else {
+                            ps.setNull(11, Types.VARCHAR);
+                        }
+                        if (bodyId != null) {
+                            ps.setLong(12, bodyId);
+                        } else {
+                            ps.setNull(12, Types.BIGINT);
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            });
+            written += buffered;
+            Arrays.fill(ids, 0, buffered, null);
+            Arrays.fill(phoneNumbers, 0, buffered, null);
+            Arrays.fill(messages, 0, buffered, null);
+            Arrays.fill(messageTypes, 0, buffered, null);
+            Arrays.fill(webhookUrls, 0, buffered, null);
+            buffered = 0;
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,339 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.sms.MessageBody;
+import org.hmmk.sms.entity.sms.SmsHourlyStat;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.jboss.logging.Logger;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps {@code sms_recipients} partitioned by month and removes SMS data once its retention has passed.
+ *
+ * On PostgreSQL the table is range partitioned on createdAt (see the postgresql/ migrations). Partitions are
+ * created {@code sms.partitions.months-ahead} months in advance, and a partition is detached once all of it is
+ * older than the longest retention of any tenant, which is a metadata change rather than a DELETE. Detached
+ * partitions are left in the schema as standalone tables to be archived, unless
+ * {@code sms.partitions.drop-detached} is set. Tenants whose retention is shorter, be it their
+ * {@link Tenant#smsRetentionMonths} or the default, have their remaining expired recipients deleted in
+ * batches; on an unpartitioned database, such as H2 in dev and tests, every tenant's are. Data is thus kept at
+ * least as long as its retention and at most a month longer.
+ * Finished jobs without recipients left are removed with them, and hourly rollups once older than
+ * {@code sms.stats.hourly.retention}. Shared message bodies no recipient references anymore are removed once
+ * {@link MessageBodyStore} has not handed them out for {@code sms.messages.orphan-grace}; detached partitions get
+ * their bodies' texts inlined first, so archives keep their messages.
+ */
+@ApplicationScoped
+public class SmsRetentionService {
+
+    private static final Logger LOG = Logger.getLogger(SmsRetentionService.class);
+
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'_p'yyyyMM");
+    private static final Pattern UPPER_BOUND = Pattern.compile("TO \\('([^']+)'\\)");
+    private static final DateTimeFormatter BOUND_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss[.SSSSSS][XXX][X]");
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    @ConfigProperty(name = "sms.retention.default-months", defaultValue = "12")
+    int defaultMonths;
+
+    @ConfigProperty(name = "sms.retention.delete-batch-size", defaultValue = "10000")
+    int deleteBatchSize;
+
+    @ConfigProperty(name = "sms.partitions.months-ahead", defaultValue = "3")
+    int monthsAhead;
+
+    @ConfigProperty(name = "sms.partitions.drop-detached", defaultValue = "false")
+    boolean dropDetached;
+
+    @ConfigProperty(name = "sms.stats.hourly.retention", defaultValue = "180d")
+    Duration hourlyStatsRetention;
+
+    @ConfigProperty(name = "sms.messages.orphan-grace", defaultValue = "1d")
+    Duration orphanBodyGrace;
+
+    private record Partition(String name, Instant upperBound) {
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        if (db.isPostgres() && isPartitioned()) {
+            createPartitions(YearMonth.now(ZoneOffset.UTC));
+        }
+    }
+
+    /**
+     * What a maintenance run removes: partitions ending before partitionCutoff, and each listed tenant's
+     * recipients from before its cutoff.
+     */
+    record RetentionPlan(Instant partitionCutoff, Map<String, Instant> tenantCutoffs) {
+    }
+
+    @Scheduled(every = "${sms.retention.interval:6h}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void maintain() {
+        YearMonth now = YearMonth.now(ZoneOffset.UTC);
+        boolean partitioned = db.isPostgres() && isPartitioned();
+        List<Object[]> tenants = QuarkusTransaction.requiringNew().call(() -> em.createQuery(
+                        "SELECT t.id, t.smsRetentionMonths FROM Tenant t", Object[].class)
+                .getResultList());
+        RetentionPlan plan = plan(now, tenants, defaultMonths, partitioned);
+
+        if (partitioned) {
+            createPartitions(now);
+            detachPartitions(plan.partitionCutoff());
+            purgeJobs(null, plan.partitionCutoff());
+        }
+        plan.tenantCutoffs().forEach(this::purgeTenant);
+        purgeHourlyStats(Instant.now().minus(hourlyStatsRetention));
+        purgeMessageBodies(Instant.now().minus(orphanBodyGrace));
+    }
+
+    /**
+     * Works out the cutoffs from (tenant id, retention months or null for the default) rows. Partitions only go
+     * once the longest retention has passed, so when partitioned, every tenant keeping its data for less, on the
+     * default retention or an override, has its expired recipients deleted row by row; otherwise every tenant
+     * does.
+     */
+    static RetentionPlan plan(YearMonth now, List<Object[]> tenants, int defaultMonths, boolean partitioned) {
+        int longest = defaultMonths;
+        for (Object[] row : tenants) {
+            if (row[1] != null) {
+                longest = Math.max(longest, (Integer) row[1]);
+            }
+        }
+        Map<String, Instant> tenantCutoffs = new LinkedHashMap<>();
+        for (Object[] row : tenants) {
+            int months = row[1] != null ? (Integer) row[1] : defaultMonths;
+            if (!partitioned || months < longest) {
+                tenantCutoffs.put((String) row[0], cutoff(now, months));
+            }
+        }
+        return new RetentionPlan(cutoff(now, longest), tenantCutoffs);
+    }
+
+    /**
+     * Start of the oldest month still kept, counting the current one.
+     */
+    private static Instant cutoff(YearMonth now, int months) {
+        return now.minusMonths(months - 1L).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    /**
+     * Deletes a tenant's recipients created before the cutoff in batches, each in its own transaction, then the
+     * tenant's jobs that are left without recipients.
+     */
+    void purgeTenant(String tenantId, Instant cutoff) {
+        String table = db.tableName(SmsRecipient.class);
+        String sql = "DELETE FROM " + table + " WHERE id IN (SELECT id FROM " + table +
+                " WHERE tenantId = :tenantId AND createdAt < :cutoff LIMIT :limit)";
+        long deleted = 0;
+        int batch;
+        do {
+            batch = QuarkusTransaction.requiringNew().call(() -> em.createNativeQuery(sql)
+                    .setParameter("tenantId", tenantId)
+                    .setParameter("cutoff", cutoff)
+                    .setParameter("limit", deleteBatchSize)
+                    .executeUpdate());
+            deleted += batch;
+        } while (batch == deleteBatchSize);
+
+        if (deleted > 0) {
+            LOG.infof("Removed %d recipients of tenant %s created before %s", deleted, tenantId, cutoff);
+        }
+        purgeJobs(tenantId, cutoff);
+    }
+
+    /**
+     * Deletes finished jobs created before the cutoff that have no recipients left, of one tenant or, for a null
+     * tenant, of all, in batches, each in its own transaction.
+     *
+     * sms_jobs is not partitioned: a partitioned table's keys must include the partition column, so every
+     * recipient would have to carry its job's createdAt for the foreign key. With one row per campaign, or per
+     * day and sender for transactional traffic, jobs are orders of magnitude fewer than recipients, and deleting
+     * them in batches stays short.
+     */
+    void purgeJobs(String tenantId, Instant cutoff) {
+        String jobs = db.tableName(SmsJob.class);
+        String sql = "DELETE FROM " + jobs + " WHERE id IN (SELECT j.id FROM " + jobs + " j " +
+                "WHERE j.createdAt < :cutoff AND j.status IN :finished " +
+                (tenantId != null ? "AND j.tenantId = :tenantId " : "") +
+                "AND NOT EXISTS (SELECT 1 FROM " + db.tableName(SmsRecipient.class) + " r WHERE r.job_id = j.id) " +
+                "LIMIT :limit)";
+        List<String> finished = List.of(SmsJob.JobStatus.COMPLETED.name(), SmsJob.JobStatus.FAILED.name(),
+                SmsJob.JobStatus.CANCELED.name());
+        long deleted = 0;
+        int batch;
+        do {
+            batch = QuarkusTransaction.requiringNew().call(() -> {
+                var query = em.createNativeQuery(sql)
+                        .setParameter("cutoff", cutoff)
+                        .setParameter("finished", finished)
+                        .setParameter("limit", deleteBatchSize);
+                if (tenantId != null) {
+                    query.setParameter("tenantId", tenantId);
+                }
+                return query.executeUpdate();
+            });
+            deleted += batch;
+        } while (batch == deleteBatchSize);
+
+        if (deleted > 0) {
+            LOG.infof("Removed %d finished SMS jobs created before %s", deleted, cutoff);
+        }
+    }
+
+    /**
+     * Deletes hourly rollups from before the cutoff; daily ones are small enough to keep for good.
+     */
+    void purgeHourlyStats(Instant cutoff) {
+        long deleted = QuarkusTransaction.requiringNew().call(() ->
+                SmsHourlyStat.delete("statHour < ?1", cutoff));
+        if (deleted > 0) {
+            LOG.infof("Removed %d hourly SMS rollups from before %s", deleted, cutoff);
+        }
+    }
+
+    /**
+     * Deletes message bodies last used before the cutoff that no recipient references, in batches, each in its own
+     * transaction. The cutoff must be well over the store's cache TTL ago, so that no id still handed out from a
+     * cache can be among them.
+     */
+    void purgeMessageBodies(Instant cutoff) {
+        String bodies = db.tableName(MessageBody.class);
+        String sql = "DELETE FROM " + bodies + " WHERE id IN (SELECT b.id FROM " + bodies + " b " +
+                "WHERE b.lastUsedAt < :cutoff AND NOT EXISTS (SELECT 1 FROM " + db.tableName(SmsRecipient.class) +
+                " r WHERE r.messageBodyId = b.id) LIMIT :limit)";
+        long deleted = 0;
+        int batch;
+        do {
+            batch = QuarkusTransaction.requiringNew().call(() -> em.createNativeQuery(sql)
+                    .setParameter("cutoff", cutoff)
+                    .setParameter("limit", deleteBatchSize)
+                    .executeUpdate());
+            deleted += batch;
+        } while (batch == deleteBatchSize);
+
+        if (deleted > 0) {
+            LOG.infof("Removed %d message bodies unused since %s", deleted, cutoff);
+        }
+    }
+
+    /**
+     * Creates the missing monthly partitions from where the existing ones end through the months ahead.
+     */
+    void createPartitions(YearMonth now) {
+        Instant coveredUntil = partitions().stream()
+                .map(Partition::upperBound)
+                .max(Instant::compareTo)
+                .orElse(now.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant());
+        YearMonth month = YearMonth.from(coveredUntil.atOffset(ZoneOffset.UTC));
+        for (; !month.isAfter(now.plusMonths(monthsAhead)); month = month.plusMonths(1)) {
+            String ddl = "CREATE TABLE IF NOT EXISTS " + partitionName(month.format(PARTITION_SUFFIX)) +
+                    " PARTITION OF " + db.tableName(SmsRecipient.class) +
+                    " FOR VALUES FROM ('" + month.atDay(1) + " 00:00:00+00') TO ('" +
+                    month.plusMonths(1).atDay(1) + " 00:00:00+00')";
+            QuarkusTransaction.requiringNew().run(() -> em.createNativeQuery(ddl).executeUpdate());
+            LOG.infof("Created SMS recipient partition for %s", month);
+        }
+    }
+
+    /**
+     * Detaches the partitions that end before the cutoff and drops their foreign keys, so they neither hold back
+     * job or message body deletion nor get in the way of archiving. Texts kept as shared bodies are copied onto
+     * the detached rows, since their bodies are purged once no attached recipient references them.
+     */
+    void detachPartitions(Instant cutoff) {
+        for (Partition partition : partitions()) {
+            if (partition.upperBound().isAfter(cutoff)) {
+                continue;
+            }
+            String name = partitionName(partition.name().substring("sms_recipients".length()));
+            QuarkusTransaction.requiringNew().run(() -> {
+                em.createNativeQuery("ALTER TABLE " + db.tableName(SmsRecipient.class) + " DETACH PARTITION " + name)
+                        .executeUpdate();
+                if (dropDetached) {
+                    em.createNativeQuery("DROP TABLE " + name).executeUpdate();
+                    return;
+                }
+                em.createNativeQuery("UPDATE " + name + " r SET message = b.body, messageBodyId = NULL FROM " +
+                                db.tableName(MessageBody.class) + " b WHERE b.id = r.messageBodyId")
+                        .executeUpdate();
+                List<?> foreignKeys = em.createNativeQuery("SELECT conname FROM pg_constraint " +
+                                "WHERE conrelid = to_regclass(:table) AND contype = 'f'")
+                        .setParameter("table", name)
+                        .getResultList();
+                for (Object foreignKey : foreignKeys) {
+                    em.createNativeQuery("ALTER TABLE " + name + " DROP CONSTRAINT \"" + foreignKey + "\"")
+                            .executeUpdate();
+                }
+            });
+            LOG.infof("%s SMS recipient partition %s, which ended at %s", dropDetached ? "Dropped" : "Detached",
+                    partition.name(), partition.upperBound());
+        }
+    }
+
+    boolean isPartitioned() {
+        return QuarkusTransaction.requiringNew().call(() -> ((Number) em.createNativeQuery(
+                        "SELECT COUNT(*) FROM pg_partitioned_table WHERE partrelid = to_regclass(:table)")
+                .setParameter("table", db.tableName(SmsRecipient.class))
+                .getSingleResult()).longValue() > 0);
+    }
+
+    private List<Partition> partitions() {
+        String sql = "SELECT c.relname, pg_get_expr(c.relpartbound, c.oid) FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)";
+        List<Partition> partitions = new ArrayList<>();
+        QuarkusTransaction.requiringNew().run(() -> db.session().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, db.tableName(SmsRecipient.class));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        Matcher bound = UPPER_BOUND.matcher(rs.getString(2));
+                        if (bound.find()) {
+                            partitions.add(new Partition(rs.getString(1),
+                                    OffsetDateTime.parse(bound.group(1), BOUND_FORMAT).toInstant()));
+                        }
+                    }
+                }
+            }
+        }));
+        return partitions;
+    }
+
+    /**
+     * The schema-qualified name of a partition, i.e. the recipients table's name with the suffix appended.
+     */
+    private String partitionName(String suffix) {
+        String table = db.tableName(SmsRecipient.class);
+        return table.endsWith("\"")
+                ? table.substring(0, table.length() - 1) + suffix + "\""
+                : table + suffix;
+    }
+}
@@ -0,0 +1,155 @@
+package org.hmmk.sms.service;
+
+import io.smallrye.reactive.messaging.annotations.Blocking;
+import io.vertx.core.json.JsonObject;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.reactive.messaging.Incoming;
+import org.hmmk.sms.dto.sms.SmsDispatchBatch;
+import org.hmmk.sms.dto.sms.SmsOutcomeBatch;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.gateway.OutboundSms;
+import org.hmmk.sms.gateway.SmsGateway;
+import org.hmmk.sms.gateway.SubmitResult;
+import org.jboss.logging.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Consumes dispatch batches and hands every recipient to the {@link SmsGateway}.
+ *
+ * All messages of a batch are submitted without waiting for each other, so the gateway's in-flight
+ * window stays full; the worker only waits once for the whole batch before recording outcomes.
+ * Transient failures are re-published as a new batch with a bumped attempt counter, on the lane they came from.
+ * Every priority lane has its own queue and worker pool, sized by {@code smallrye.messaging.worker.<lane>.*},
+ * so HIGH batches never wait for threads busy with a LOW campaign.
+ */
+@ApplicationScoped
+public class SmsSendWorker {
+
+    private static final Logger LOG = Logger.getLogger(SmsSendWorker.class);
+
+    @Inject
+    SmsGateway gateway;
+
+    @Inject
+    SmsDispatchService dispatchService;
+
+    @Inject
+    SmsDispatchPublisher publisher;
+
+    @Inject
+    SmsMetrics metrics;
+
+    @ConfigProperty(name = "sms.send.max-attempts", defaultValue = "3")
+    int maxAttempts;
+
+    @ConfigProperty(name = "sms.send.retry-delay", defaultValue = "2s")
+    Duration retryDelay;
+
+    @Incoming("sms-send-high")
+    @Blocking(value = "sms-send-high", ordered = false)
+    public void onHighBatch(JsonObject payload) {
+        process(payload.mapTo(SmsDispatchBatch.class));
+    }
+
+    @Incoming("sms-send")
+    @Blocking(value = "sms-send", ordered = false)
+    public void onBatch(JsonObject payload) {
+        process(payload.mapTo(SmsDispatchBatch.class));
+    }
+
+    @Incoming("sms-send-low")
+    @Blocking(value = "sms-send-low", ordered = false)
+    public void onLowBatch(JsonObject payload) {
+        process(payload.mapTo(SmsDispatchBatch.class));
+    }
+
+    void process(SmsDispatchBatch batch) {
+        if (batch.getRecipients() == null || batch.getRecipients().isEmpty()) {
+            return;
+        }
+        metrics.consumed(batch.getPriority() != null ? batch.getPriority() : SmsJob.Priority.NORMAL,
+                batch.getRecipients().size());
+
+        List<CompletableFuture<SubmitResult>> results = new ArrayList<>(batch.getRecipients().size());
+        for (SmsDispatchBatch.Item item : batch.getRecipients()) {
+            OutboundSms sms = new OutboundSms(item.getRecipientId(), batch.getSenderId(), batch.getSourceAddress(),
+                    item.getPhoneNumber(), item.getMessage() != null ? item.getMessage() : batch.getMessage(),
+                    item.getMessageType() != null ? item.getMessageType() : batch.getMessageType());
+            results.add(gateway.submit(sms).toCompletableFuture()
+                    .exceptionally(e -> SubmitResult.retry(e.getMessage())));
+        }
+        CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).join();
+
+        int attempt = Math.max(batch.getAttempt(), 1);
+        List<SmsOutcomeBatch.Outcome> outcomes = new ArrayList<>(results.size());
+        List<SmsDispatchBatch.Item> retries = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            SmsDispatchBatch.Item item = batch.getRecipients().get(i);
+            SubmitResult result = results.get(i).join();
+            switch (result.status()) {
+                case ACCEPTED -> outcomes.add(SmsOutcomeBatch.Outcome.builder()
+                        .recipientId(item.getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.SENT)
+                        .messageId(result.messageId())
+                        .build());
+                case REJECTED -> outcomes.add(outcome(item, SmsRecipient.RecipientStatus.FAILED));
+                case UNCONFIRMED -> {
+                    LOG.warnf("Submission of recipient %s went unanswered, not sending it again: %s",
+                            item.getRecipientId(), result.error());
+                    outcomes.add(outcome(item, SmsRecipient.RecipientStatus.FAILED));
+                }
+                case RETRY -> {
+                    if (attempt < maxAttempts) {
+                        retries.add(item);
+                    } else {
+                        LOG.debugf("Giving up on recipient %s after %d attempts: %s",
+                                item.getRecipientId(), attempt, result.error());
+                        outcomes.add(outcome(item, SmsRecipient.RecipientStatus.FAILED));
+                    }
+                }
+            }
+        }
+
+        if (!outcomes.isEmpty()) {
+            dispatchService.recordOutcomes(outcomes);
+        }
+        if (!retries.isEmpty()) {
+            republish(batch, retries, attempt + 1);
+        }
+    }
+
+    private void republish(SmsDispatchBatch batch, List<SmsDispatchBatch.Item> retries, int attempt) {
+        LOG.infof("Re-publishing %d recipients of job %s for attempt %d", retries.size(), batch.getJobId(), attempt);
+        try {
+            // Linear backoff; the batch stays unacknowledged meanwhile so the broker holds back new work
+            Thread.sleep(retryDelay.multipliedBy(attempt - 1).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        publisher.publish(SmsDispatchBatch.builder()
+                .jobId(batch.getJobId())
+                .tenantId(batch.getTenantId())
+                .senderId(batch.getSenderId())
+                .sourceAddress(batch.getSourceAddress())
+                .messageType(batch.getMessageType())
+                .message(batch.getMessage())
+                .attempt(attempt)
+                .priority(batch.getPriority())
+                .recipients(retries)
+                .build()).toCompletableFuture().join();
+    }
+
+    private static SmsOutcomeBatch.Outcome outcome(SmsDispatchBatch.Item item, SmsRecipient.RecipientStatus status) {
+        return SmsOutcomeBatch.Outcome.builder()
+                .recipientId(item.getRecipientId())
+                .status(status)
+                .build();
+    }
+}
@@ -0,0 +1,123 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+import org.hmmk.sms.entity.sms.SmsDailyStat;
+import org.hmmk.sms.entity.sms.SmsHourlyStat;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Maintains the {@link SmsDailyStat} and {@link SmsHourlyStat} rollups as recipients leave PENDING.
+ *
+ * Counts are added in the transaction that changes the recipients' status, so they never drift from the rows
+ * they count. Increments are upserts on the rollup's key, and concurrent dispatchers adding to the same row
+ * just queue on its lock for the rest of their transaction.
+ */
+@ApplicationScoped
+public class SmsStatsService {
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    @Inject
+    SmsMetrics metrics;
+
+    /**
+     * Counts the recipients among the given ones that this transaction moved to the status at the given time,
+     * i.e. whose updatedAt it set to exactly that instant, so redelivered outcomes are not counted twice.
+     */
+    @Transactional
+    public void recordTransitions(Collection<UUID> recipientIds, SmsRecipient.RecipientStatus status, Instant at) {
+        List<Object[]> groups = em.createQuery("SELECT r.tenantId, j.sourceType, r.senderId, COUNT(r) " +
+                        "FROM SmsRecipient r JOIN r.job j " +
+                        "WHERE r.id IN :ids AND r.status = :status AND r.updatedAt = :at " +
+                        "GROUP BY r.tenantId, j.sourceType, r.senderId", Object[].class)
+                .setParameter("ids", recipientIds)
+                .setParameter("status", status)
+                .setParameter("at", at)
+                .getResultList();
+        for (Object[] group : groups) {
+            long count = ((Number) group[3]).longValue();
+            increment((String) group[0], at, (SmsJob.SourceType) group[1], (String) group[2], status, count);
+            if (status == SmsRecipient.RecipientStatus.SENT) {
+                metrics.outcomes((String) group[0], count, 0);
+            } else if (status == SmsRecipient.RecipientStatus.FAILED) {
+                metrics.outcomes((String) group[0], 0, count);
+            }
+        }
+    }
+
+    /**
+     * Adds to the tenant's counts for the day and hour of the given time, source, sender and status.
+     */
+    @Transactional
+    public void increment(String tenantId, Instant at, SmsJob.SourceType sourceType, String senderId,
+                          SmsRecipient.RecipientStatus status, long count) {
+        if (count <= 0) {
+            return;
+        }
+        String daily = upsert(db.tableName(SmsDailyStat.class),
+                List.of("tenantId", "statDate", "sourceType", "senderId", "status"));
+        String hourly = upsert(db.tableName(SmsHourlyStat.class),
+                List.of("tenantId", "statHour", "senderId", "status"));
+        db.session().doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(daily)) {
+                ps.setString(1, tenantId);
+                ps.setObject(2, LocalDate.ofInstant(at, ZoneOffset.UTC));
+                ps.setString(3, sourceType.name());
+                ps.setString(4, senderId);
+                ps.setString(5, status.name());
+                ps.setLong(6, count);
+                ps.executeUpdate();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(hourly)) {
+                ps.setString(1, tenantId);
+                ps.setTimestamp(2, Timestamp.from(at.truncatedTo(ChronoUnit.HOURS)));
+                ps.setString(3, senderId);
+                ps.setString(4, status.name());
+                ps.setLong(5, count);
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    /**
+     * Insert-or-add statement for a rollup table, binding its key columns in order and then the count.
+     */
+    private String upsert(String table, List<String> keys) {
+        String columns = String.join(", ", keys) + ", messageCount";
+        String placeholders = "?, ".repeat(keys.size());
+        if (db.isPostgres()) {
+            return "INSERT INTO " + table + " AS t (" + columns + ") VALUES (" + placeholders + "?) " +
+                    "ON CONFLICT (" + String.join(", ", keys) + ") " +
+                    "DO UPDATE SET messageCount = t.messageCount + EXCLUDED.messageCount";
+        }
+        // H2 has no ON CONFLICT DO UPDATE, and PostgreSQL's MERGE does not handle concurrent inserts
+        StringBuilder on = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (String key : keys) {
+            on.append(on.isEmpty() ? "" : " AND ").append("t.").append(key).append(" = s.").append(key);
+            values.append("s.").append(key).append(", ");
+        }
+        return "MERGE INTO " + table + " t USING (VALUES (" + placeholders + "CAST(? AS BIGINT))) " +
+                "s (" + columns + ") ON " + on + " " +
+                "WHEN MATCHED THEN UPDATE SET messageCount = t.messageCount + s.messageCount " +
+                "WHEN NOT MATCHED THEN INSERT (" + columns + ") VALUES (" + values + "s.messageCount)";
+    }
+}
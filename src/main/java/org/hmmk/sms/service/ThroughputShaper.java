@@ -0,0 +1,155 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.entity.SendRateLimit;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps dispatch within the messages per second allowed for each tenant and each sender.
+ *
+ * Every tenant and sender has a {@link TokenBucket}; the dispatcher takes tokens from both before publishing
+ * recipients and only publishes as many as it got. HIGH priority traffic is never held back but still takes its
+ * tokens, so bulk dispatch on the same sender or tenant slows down to make room for it.
+ * Rates come from {@code sms.throttle.*} unless overridden in {@link SendRateLimit}, which is re-read every
+ * {@code sms.throttle.refresh-interval}. Buckets live in memory, so the limits apply per dispatching node.
+ */
+@ApplicationScoped
+public class ThroughputShaper {
+
+    @ConfigProperty(name = "sms.throttle.tenant.default-rate", defaultValue = "0")
+    double defaultTenantRate;
+
+    @ConfigProperty(name = "sms.throttle.sender.default-rate", defaultValue = "100")
+    double defaultSenderRate;
+
+    @ConfigProperty(name = "sms.throttle.burst", defaultValue = "1s")
+    Duration burst;
+
+    private record Key(SendRateLimit.Scope scope, String id) {
+    }
+
+    private record Limit(double messagesPerSecond, int weight) {
+    }
+
+    private record Entry(Limit limit, TokenBucket bucket) {
+    }
+
+    private volatile Map<Key, Limit> overrides = Map.of();
+    private final Map<Key, Entry> buckets = new ConcurrentHashMap<>();
+
+    void onStart(@Observes StartupEvent event) {
+        refresh();
+    }
+
+    /**
+     * Reloads the overrides; buckets whose rate changed start over full at the new rate.
+     */
+    @Scheduled(every = "${sms.throttle.refresh-interval:30s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void refresh() {
+        List<SendRateLimit> rows = QuarkusTransaction.requiringNew().call(() -> SendRateLimit.<SendRateLimit>listAll());
+        Map<Key, Limit> loaded = new HashMap<>();
+        for (SendRateLimit row : rows) {
+            loaded.put(new Key(row.scope, row.scopeId), new Limit(
+                    row.messagesPerSecond != null ? row.messagesPerSecond : 0,
+                    row.weight != null ? Math.max(row.weight, 1) : 1));
+        }
+        overrides = loaded;
+        buckets.entrySet().removeIf(e -> !e.getValue().limit().equals(limit(e.getKey())));
+    }
+
+    /**
+     * Takes up to {@code max} tokens from both the tenant's and the sender's bucket and returns how many
+     * recipients may be published now. Tokens left unused must be handed back with {@link #release}.
+     */
+    public int acquire(String tenantId, String senderId, int max) {
+        long now = System.nanoTime();
+        TokenBucket tenant = bucket(new Key(SendRateLimit.Scope.TENANT, tenantId), now);
+        TokenBucket sender = bucket(new Key(SendRateLimit.Scope.SENDER, senderId), now);
+        int granted = tenant != null ? tenant.tryAcquire(max, now) : max;
+        if (sender != null && granted > 0) {
+            int fromSender = sender.tryAcquire(granted, now);
+            if (tenant != null && fromSender < granted) {
+                tenant.release(granted - fromSender);
+            }
+            granted = fromSender;
+        }
+        return granted;
+    }
+
+    public void release(String tenantId, String senderId, int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        TokenBucket tenant = bucket(new Key(SendRateLimit.Scope.TENANT, tenantId), now);
+        TokenBucket sender = bucket(new Key(SendRateLimit.Scope.SENDER, senderId), now);
+        if (tenant != null) {
+            tenant.release(permits);
+        }
+        if (sender != null) {
+            sender.release(permits);
+        }
+    }
+
+    /**
+     * Takes tokens for messages that are published regardless, such as immediate API sends.
+     */
+    public void consume(String tenantId, String senderId, int permits) {
+        long now = System.nanoTime();
+        TokenBucket tenant = bucket(new Key(SendRateLimit.Scope.TENANT, tenantId), now);
+        TokenBucket sender = bucket(new Key(SendRateLimit.Scope.SENDER, senderId), now);
+        if (tenant != null) {
+            tenant.consume(permits, now);
+        }
+        if (sender != null) {
+            sender.consume(permits, now);
+        }
+    }
+
+    /**
+     * The tenant's share of the dispatcher relative to other tenants with work queued, 1 unless overridden.
+     */
+    public int weight(String tenantId) {
+        return limit(new Key(SendRateLimit.Scope.TENANT, tenantId)).weight();
+    }
+
+    private Limit limit(Key key) {
+        Limit limit = overrides.get(key);
+        if (limit != null) {
+            return limit;
+        }
+        return new Limit(key.scope() == SendRateLimit.Scope.TENANT ? defaultTenantRate : defaultSenderRate, 1);
+    }
+
+    /**
+     * Returns the bucket for the key, or null when its rate is unlimited.
+     */
+    private TokenBucket bucket(Key key, long now) {
+        if (key.id() == null) {
+            return null;
+        }
+        Entry entry = buckets.get(key);
+        if (entry == null) {
+            Limit limit = limit(key);
+            TokenBucket bucket = limit.messagesPerSecond() > 0
+                    ? new TokenBucket(limit.messagesPerSecond(), capacity(limit.messagesPerSecond()), now)
+                    : null;
+            entry = buckets.computeIfAbsent(key, k -> new Entry(limit, bucket));
+        }
+        return entry.bucket();
+    }
+
+    private long capacity(double messagesPerSecond) {
+        return Math.max(1L, (long) (messagesPerSecond * burst.toMillis() / 1000.0));
+    }
+}
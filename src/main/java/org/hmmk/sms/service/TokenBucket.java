@@ -0,0 +1,68 @@
+package org.hmmk.sms.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A token bucket that is safe to share between threads without locking.
+ *
+ * The whole state is one timestamp, the moment the bucket was last empty. Tokens accrue one per interval
+ * after it, up to the capacity, and taking tokens moves it forward by one interval each, so every operation
+ * is a single compare-and-set. {@link #consume} may move it past now, which leaves the bucket in debt until
+ * time catches up. All times are {@link System#nanoTime()} values passed in by the caller.
+ */
+final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long capacityNanos;
+    private final AtomicLong emptyAt;
+
+    /**
+     * Creates a full bucket.
+     *
+     * @param permitsPerSecond refill rate
+     * @param capacity         tokens the bucket holds when full, i.e. the largest burst; at least 1
+     */
+    TokenBucket(double permitsPerSecond, long capacity, long now) {
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / permitsPerSecond));
+        this.capacityNanos = Math.max(1L, capacity) * intervalNanos;
+        this.emptyAt = new AtomicLong(now - capacityNanos);
+    }
+
+    /**
+     * Takes up to {@code max} tokens and returns how many were taken, possibly 0.
+     */
+    int tryAcquire(int max, long now) {
+        while (true) {
+            long current = emptyAt.get();
+            long start = Math.max(current, now - capacityNanos);
+            long available = (now - start) / intervalNanos;
+            if (available <= 0 || max <= 0) {
+                return 0;
+            }
+            int granted = (int) Math.min(max, available);
+            if (emptyAt.compareAndSet(current, start + granted * intervalNanos)) {
+                return granted;
+            }
+        }
+    }
+
+    /**
+     * Takes {@code permits} tokens whether or not the bucket has them, for traffic that must not wait.
+     */
+    void consume(int permits, long now) {
+        while (true) {
+            long current = emptyAt.get();
+            long start = Math.max(current, now - capacityNanos);
+            if (emptyAt.compareAndSet(current, start + permits * intervalNanos)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Puts back tokens taken by {@link #tryAcquire} that ended up unused.
+     */
+    void release(int permits) {
+        emptyAt.addAndGet(-permits * intervalNanos);
+    }
+}
@@ -0,0 +1,315 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+import jakarta.ws.rs.BadRequestException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.dto.sms.SmsDispatchBatch;
+import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.gateway.SmsEncoding;
+import org.jboss.logging.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sends immediate single API messages without creating an {@link SmsJob} per message.
+ *
+ * Each message is written as one {@link SmsRecipient} attached to a TRANSACTIONAL rollup job shared by all
+ * immediate API messages of the same tenant and sender on the same UTC day, and is published to the dispatch
+ * exchange's HIGH lane as soon as it commits instead of waiting for the dispatch poll.
+ * The rollup job is created once per day with a deterministic id, so every node agrees on it without
+ * coordination. Its totals are not touched on the send path; {@link #refreshRollups()} recomputes them from
+ * the recipients, which keeps job listings and the dashboard correct without a hot row updated on every send.
+ */
+@ApplicationScoped
+public class TransactionalSmsService {
+
+    private static final Logger LOG = Logger.getLogger(TransactionalSmsService.class);
+
+    static final String ROLLUP_MESSAGE = "Transactional API messages";
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    @Inject
+    DatabaseSupport databaseSupport;
+
+    @Inject
+    CreditService creditService;
+
+    @Inject
+    PhoneNumberNormalizer phoneNumberNormalizer;
+
+    @Inject
+    WebhookUrlPolicy webhookUrlPolicy;
+
+    @Inject
+    ThroughputShaper shaper;
+
+    @Inject
+    SmsDispatchPublisher publisher;
+
+    @Inject
+    MessageBodyStore messageBodies;
+
+    @ConfigProperty(name = "sms.transactional.republish-after", defaultValue = "5m")
+    Duration republishAfter;
+
+    @ConfigProperty(name = "sms.transactional.republish-batch-size", defaultValue = "500")
+    int republishBatchSize;
+
+    private record RollupKey(String tenantId, String senderId, LocalDate day) {
+    }
+
+    private final Map<RollupKey, UUID> rollups = new ConcurrentHashMap<>();
+
+    /**
+     * Records one message for a resolved API key and hands it to the delivery workers once the transaction
+     * commits. Credits are reserved against the message's own id.
+     */
+    @Transactional
+    public SmsRecipient send(ApiKeyCache.ResolvedKey apiKey, String to, String message, String webhookUrl) {
+        String phoneNumber = phoneNumberNormalizer.normalize(to);
+        if (phoneNumber == null) {
+            throw new BadRequestException("Invalid phone number format");
+        }
+        String webhookError = webhookUrlPolicy.rejectionReason(webhookUrl);
+        if (webhookError != null) {
+            throw new BadRequestException(webhookError);
+        }
+        SmsJob.MessageType messageType = SmsEncoding.detect(message);
+        int smsCount = SmsEncoding.segments(message, messageType);
+
+        UUID rollupId = rollupFor(apiKey.tenantId(), apiKey.senderId(), apiKey.apiKeyId());
+
+        SmsRecipient recipient = SmsRecipient.builder()
+                .senderId(apiKey.senderId())
+                .job(em.getReference(SmsJob.class, rollupId))
+                .phoneNumber(phoneNumber)
+                .webhookUrl(webhookUrl)
+                .messageType(messageType)
+                .status(SmsRecipient.RecipientStatus.PENDING)
+                .smsCount(smsCount)
+                .build();
+        messageBodies.assign(recipient, message);
+        recipient.tenantId = apiKey.tenantId();
+        recipient.persist();
+
+        creditService.reserve(apiKey.tenantId(), smsCount, recipient.id.toString());
+
+        SmsDispatchBatch batch = SmsDispatchBatch.builder()
+                .jobId(rollupId)
+                .tenantId(apiKey.tenantId())
+                .senderId(apiKey.senderId())
+                .sourceAddress(apiKey.senderName())
+                .messageType(messageType)
+                .attempt(1)
+                .priority(SmsJob.Priority.HIGH)
+                .recipients(List.of(SmsDispatchBatch.Item.builder()
+                        .recipientId(recipient.id)
+                        .phoneNumber(phoneNumber)
+                        .message(message)
+                        .messageType(messageType)
+                        .build()))
+                .build();
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    publish(batch);
+                }
+            }
+        });
+        return recipient;
+    }
+
+    /**
+     * Publishes without waiting for the broker. A message that never reaches it stays PENDING and is picked up
+     * again by {@link #republishStale()}. The messages are charged to the sender's and tenant's throughput so
+     * bulk dispatch makes room for them.
+     */
+    private void publish(SmsDispatchBatch batch) {
+        shaper.consume(batch.getTenantId(), batch.getSenderId(), batch.getRecipients().size());
+        try {
+            publisher.publish(batch).whenComplete((ignored, failure) -> {
+                if (failure != null) {
+                    LOG.warnf("Failed to publish transactional SMS for job %s: %s", batch.getJobId(),
+                            failure.getMessage());
+                }
+            });
+        } catch (RuntimeException e) {
+            LOG.warnf("Failed to publish transactional SMS for job %s: %s", batch.getJobId(), e.getMessage());
+        }
+    }
+
+    /**
+     * Returns the id of today's rollup job for the sender, creating the job if this is the first message of
+     * the day. After the first call on a node this is a map lookup.
+     */
+    UUID rollupFor(String tenantId, String senderId, String apiKeyId) {
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        RollupKey key = new RollupKey(tenantId, senderId, today);
+        UUID id = rollups.get(key);
+        if (id != null) {
+            return id;
+        }
+        id = rollupId(tenantId, senderId, today);
+        createRollup(id, tenantId, senderId, apiKeyId, today);
+        rollups.keySet().removeIf(k -> k.day().isBefore(today));
+        rollups.put(key, id);
+        return id;
+    }
+
+    static UUID rollupId(String tenantId, String senderId, LocalDate day) {
+        return UUID.nameUUIDFromBytes((tenantId + "|" + senderId + "|" + day).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Inserts the rollup job in its own transaction; ON CONFLICT lets nodes racing on the first message
+     * of the day all succeed against the same row.
+     */
+    private void createRollup(UUID id, String tenantId, String senderId, String apiKeyId, LocalDate day) {
+        String table = databaseSupport.tableName(SmsJob.class);
+        Instant start = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+        QuarkusTransaction.requiringNew().run(() -> em.createNativeQuery("INSERT INTO " + table +
+                        " (id, tenantId, createdAt, updatedAt, senderId, jobType, sourceType, message_content, " +
+                        "message_type, totalRecipients, totalSmsCount, created_by, scheduledAt, status, approvalStatus, " +
+                        "priority) VALUES (?1, ?2, ?3, ?3, ?4, ?5, ?6, ?7, ?8, 0, 0, ?9, ?10, ?11, ?12, ?13) " +
+                        "ON CONFLICT DO NOTHING")
+                .setParameter(1, id)
+                .setParameter(2, tenantId)
+                .setParameter(3, Instant.now())
+                .setParameter(4, senderId)
+                .setParameter(5, SmsJob.JobType.TRANSACTIONAL.name())
+                .setParameter(6, SmsJob.SourceType.API.name())
+                .setParameter(7, ROLLUP_MESSAGE)
+                .setParameter(8, SmsJob.MessageType.English.name())
+                .setParameter(9, "API-KEY:" + apiKeyId)
+                .setParameter(10, start)
+                .setParameter(11, SmsJob.JobStatus.SENDING.name())
+                .setParameter(12, SmsJob.ApprovalStatus.APPROVED.name())
+                .setParameter(13, SmsJob.Priority.HIGH.name())
+                .executeUpdate());
+    }
+
+    /**
+     * Recomputes recipient and segment totals of rollup jobs that can still change: today's and yesterday's,
+     * the latter so messages sent just before midnight are counted.
+     */
+    @Scheduled(every = "${sms.transactional.rollup-interval:1m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    @Transactional
+    void refreshRollups() {
+        em.createQuery("UPDATE SmsJob j SET " +
+                        "j.totalRecipients = (SELECT COUNT(r) FROM SmsRecipient r WHERE r.job = j), " +
+                        "j.totalSmsCount = (SELECT COALESCE(SUM(r.smsCount), 0) FROM SmsRecipient r WHERE r.job = j), " +
+                        "j.updatedAt = :now " +
+                        "WHERE j.jobType = :transactional AND j.scheduledAt >= :since")
+                .setParameter("now", Instant.now())
+                .setParameter("transactional", SmsJob.JobType.TRANSACTIONAL)
+                .setParameter("since", Instant.now().truncatedTo(ChronoUnit.DAYS).minus(1, ChronoUnit.DAYS))
+                .executeUpdate();
+    }
+
+    /**
+     * Publishes again messages of recent rollups that are still PENDING long after they were sent, e.g. because
+     * the broker was unreachable at commit time. Each message is claimed by bumping its updatedAt, so nodes
+     * running this together do not publish it twice. A message whose first publish did arrive but was slow to
+     * be delivered may still go out twice, so {@code sms.transactional.republish-after} should stay well above
+     * the normal delivery latency.
+     */
+    @Scheduled(every = "${sms.transactional.republish-interval:1m}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void republishStale() {
+        List<SmsRecipient> stale = QuarkusTransaction.requiringNew().call(this::claimStale);
+        Map<UUID, List<SmsRecipient>> byJob = new LinkedHashMap<>();
+        List<Long> bodyIds = new ArrayList<>();
+        for (SmsRecipient recipient : stale) {
+            byJob.computeIfAbsent(recipient.job.id, id -> new ArrayList<>()).add(recipient);
+            if (recipient.messageBodyId != null) {
+                bodyIds.add(recipient.messageBodyId);
+            }
+        }
+        Map<Long, String> bodies = bodyIds.isEmpty() ? Map.of() : messageBodies.load(bodyIds);
+        for (List<SmsRecipient> recipients : byJob.values()) {
+            SmsRecipient first = recipients.get(0);
+            List<SmsDispatchBatch.Item> items = new ArrayList<>(recipients.size());
+            for (SmsRecipient r : recipients) {
+                items.add(SmsDispatchBatch.Item.builder()
+                        .recipientId(r.id)
+                        .phoneNumber(r.phoneNumber)
+                        .message(r.message != null ? r.message : bodies.get(r.messageBodyId))
+                        .messageType(r.messageType)
+                        .build());
+            }
+            publish(SmsDispatchBatch.builder()
+                    .jobId(first.job.id)
+                    .tenantId(first.tenantId)
+                    .senderId(first.senderId)
+                    .sourceAddress(QuarkusTransaction.requiringNew().call(() -> senderName(first.senderId)))
+                    .messageType(first.messageType)
+                    .attempt(1)
+                    .priority(SmsJob.Priority.HIGH)
+                    .recipients(items)
+                    .build());
+        }
+        if (!stale.isEmpty()) {
+            LOG.infof("Republished %d stale transactional SMS", stale.size());
+        }
+    }
+
+    private List<SmsRecipient> claimStale() {
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(republishAfter);
+        List<SmsRecipient> candidates = em.createQuery(
+                        "SELECT r FROM SmsRecipient r JOIN FETCH r.job j " +
+                                "WHERE j.jobType = :transactional AND j.scheduledAt >= :since " +
+                                "AND r.status = :pending AND r.updatedAt < :cutoff", SmsRecipient.class)
+                .setParameter("transactional", SmsJob.JobType.TRANSACTIONAL)
+                .setParameter("since", now.truncatedTo(ChronoUnit.DAYS).minus(1, ChronoUnit.DAYS))
+                .setParameter("pending", SmsRecipient.RecipientStatus.PENDING)
+                .setParameter("cutoff", cutoff)
+                .setMaxResults(republishBatchSize)
+                .getResultList();
+
+        List<SmsRecipient> claimed = new ArrayList<>(candidates.size());
+        for (SmsRecipient recipient : candidates) {
+            int updated = SmsRecipient.update("updatedAt = ?1 where id = ?2 and status = ?3 and updatedAt < ?4",
+                    now, recipient.id, SmsRecipient.RecipientStatus.PENDING, cutoff);
+            if (updated == 1) {
+                claimed.add(recipient);
+            }
+        }
+        return claimed;
+    }
+
+    private String senderName(String senderId) {
+        Sender sender = Sender.findById(senderId);
+        return sender != null ? sender.name : senderId;
+    }
+}
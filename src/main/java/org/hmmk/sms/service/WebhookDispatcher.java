@@ -0,0 +1,379 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.scheduler.Scheduled;
+import io.smallrye.mutiny.infrastructure.Infrastructure;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.client.WebClientOptions;
+import io.vertx.mutiny.core.Vertx;
+import io.vertx.mutiny.ext.web.client.WebClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hmmk.sms.dto.sms.DeliveryReport;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.entity.webhook.WebhookDeadLetter;
+import org.hmmk.sms.entity.webhook.WebhookEvent;
+import org.jboss.logging.Logger;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * POSTs delivery reports to the webhook URLs customers gave when sending.
+ *
+ * Status changes are written to the {@code webhook_events} table in the transaction that records them,
+ * so no report is lost when a node goes down. Every poll claims due events by pushing their
+ * {@code nextAttemptAt} ahead by {@code sms.webhooks.lease}, groups them by URL and, when
+ * {@code sms.webhooks.max-batch-size} is above 1, sends several reports for the same URL in one POST.
+ * Requests go out through a non-blocking client with a connection pool per destination host, and at most
+ * {@code sms.webhooks.max-in-flight-per-host} requests run against a host at once; the rest wait in memory,
+ * so one slow customer endpoint cannot hold up the others. Failed deliveries are retried with exponential
+ * backoff and jitter, and moved to {@code webhook_dead_letters} after {@code sms.webhooks.max-attempts}.
+ * Events for a URL that {@link WebhookUrlPolicy} blocks, e.g. because its host now resolves to a private
+ * address, are dead-lettered without a request.
+ */
+@ApplicationScoped
+public class WebhookDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(WebhookDispatcher.class);
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    @Inject
+    Vertx vertx;
+
+    @Inject
+    WebhookUrlPolicy urlPolicy;
+
+    @ConfigProperty(name = "sms.webhooks.claim-size", defaultValue = "500")
+    int claimSize;
+
+    @ConfigProperty(name = "sms.webhooks.lease", defaultValue = "2m")
+    Duration lease;
+
+    @ConfigProperty(name = "sms.webhooks.max-batch-size", defaultValue = "1")
+    int maxBatchSize;
+
+    @ConfigProperty(name = "sms.webhooks.max-connections-per-host", defaultValue = "4")
+    int maxConnectionsPerHost;
+
+    @ConfigProperty(name = "sms.webhooks.max-in-flight-per-host", defaultValue = "4")
+    int maxInFlightPerHost;
+
+    @ConfigProperty(name = "sms.webhooks.connect-timeout", defaultValue = "5s")
+    Duration connectTimeout;
+
+    @ConfigProperty(name = "sms.webhooks.request-timeout", defaultValue = "10s")
+    Duration requestTimeout;
+
+    @ConfigProperty(name = "sms.webhooks.max-attempts", defaultValue = "8")
+    int maxAttempts;
+
+    @ConfigProperty(name = "sms.webhooks.retry-base-delay", defaultValue = "10s")
+    Duration retryBaseDelay;
+
+    @ConfigProperty(name = "sms.webhooks.retry-max-delay", defaultValue = "1h")
+    Duration retryMaxDelay;
+
+    private WebClient client;
+
+    private final Map<String, HostLane> lanes = new ConcurrentHashMap<>();
+
+    /** Claimed events not yet finished, waiting or in flight. */
+    private final AtomicInteger pending = new AtomicInteger();
+
+    @PostConstruct
+    void init() {
+        // Vert.x keeps a separate pool of this size for every host:port
+        client = WebClient.create(vertx, new WebClientOptions()
+                .setMaxPoolSize(maxConnectionsPerHost)
+                .setConnectTimeout((int) connectTimeout.toMillis())
+                .setKeepAlive(true)
+                .setFollowRedirects(false)
+                .setUserAgent("a2p-service-webhooks"));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        client.close();
+    }
+
+    /**
+     * Queues a report for every recipient in {@code recipientIds} that is still PENDING and has a webhook URL.
+     * Must run in the transaction that moves those recipients to {@code status}, before the update.
+     */
+    public int enqueue(Collection<UUID> recipientIds, SmsRecipient.RecipientStatus status, Instant now) {
+        return enqueue(recipientIds, status.name(), "r.status = '" + SmsRecipient.RecipientStatus.PENDING.name() + "'",
+                now);
+    }
+
+    /**
+     * Queues a report for every recipient in {@code recipientIds} that has no delivery status yet and has
+     * a webhook URL. Must run in the transaction that records the delivery receipts, before the update.
+     */
+    public int enqueue(Collection<UUID> recipientIds, SmsRecipient.DeliveryStatus status, Instant now) {
+        return enqueue(recipientIds, status.name(), "r.deliveryStatus IS NULL", now);
+    }
+
+    private int enqueue(Collection<UUID> recipientIds, String status, String condition, Instant now) {
+        String sql = "INSERT INTO " + db.tableName(WebhookEvent.class) +
+                " (tenantId, recipientId, jobId, url, phoneNumber, status, occurredAt, attempts, nextAttemptAt, createdAt)" +
+                " SELECT r.tenantId, r.id, r.job_id, r.webhook_url, r.phoneNumber, :status, :now, 0, :now, :now" +
+                " FROM " + db.tableName(SmsRecipient.class) + " r" +
+                " WHERE r.id IN (:ids) AND " + condition + " AND r.webhook_url IS NOT NULL";
+        return em.createNativeQuery(sql)
+                .setParameter("status", status)
+                .setParameter("now", now)
+                .setParameter("ids", recipientIds)
+                .executeUpdate();
+    }
+
+    @Scheduled(every = "${sms.webhooks.poll-interval:1s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void poll() {
+        int room = claimSize - pending.get();
+        if (room <= 0) {
+            return;
+        }
+        Instant leaseUntil = Instant.now().plus(lease);
+        List<WebhookEvent> claimed = QuarkusTransaction.requiringNew().call(() -> claim(room, leaseUntil));
+        if (claimed.isEmpty()) {
+            return;
+        }
+        pending.addAndGet(claimed.size());
+
+        Map<String, List<WebhookEvent>> byUrl = new LinkedHashMap<>();
+        for (WebhookEvent event : claimed) {
+            byUrl.computeIfAbsent(event.url, u -> new ArrayList<>()).add(event);
+        }
+        for (Map.Entry<String, List<WebhookEvent>> entry : byUrl.entrySet()) {
+            List<WebhookEvent> events = entry.getValue();
+            // Checked against what the host resolves to now, not when the message was accepted
+            String blocked = urlPolicy.blockedReason(entry.getKey());
+            if (blocked != null) {
+                finish(events, () -> deadLetter(events, blocked));
+                continue;
+            }
+            String host = hostOf(entry.getKey());
+            HostLane lane = lanes.computeIfAbsent(host, h -> new HostLane());
+            int perRequest = Math.max(maxBatchSize, 1);
+            for (int from = 0; from < events.size(); from += perRequest) {
+                List<WebhookEvent> chunk = events.subList(from, Math.min(from + perRequest, events.size()));
+                lane.submit(new Delivery(entry.getKey(), chunk, leaseUntil));
+            }
+        }
+    }
+
+    /**
+     * Claims up to {@code limit} due events, one conditional update each so nodes polling together
+     * never claim the same event.
+     */
+    private List<WebhookEvent> claim(int limit, Instant leaseUntil) {
+        Instant now = Instant.now();
+        List<WebhookEvent> due = em.createQuery(
+                        "SELECT e FROM WebhookEvent e WHERE e.nextAttemptAt <= :now ORDER BY e.nextAttemptAt, e.id",
+                        WebhookEvent.class)
+                .setParameter("now", now)
+                .setMaxResults(limit)
+                .getResultList();
+
+        List<WebhookEvent> claimed = new ArrayList<>(due.size());
+        for (WebhookEvent event : due) {
+            int updated = WebhookEvent.update("nextAttemptAt = ?1 where id = ?2 and nextAttemptAt = ?3",
+                    leaseUntil, event.id, event.nextAttemptAt);
+            if (updated == 1) {
+                em.detach(event);
+                claimed.add(event);
+            }
+        }
+        return claimed;
+    }
+
+    private void send(Delivery delivery, Runnable done) {
+        Object body;
+        if (maxBatchSize > 1) {
+            body = JsonObject.mapFrom(DeliveryReport.Batch.builder()
+                    .reports(delivery.events().stream().map(WebhookDispatcher::report).toList())
+                    .build());
+        } else {
+            body = JsonObject.mapFrom(report(delivery.events().get(0)));
+        }
+        try {
+            client.postAbs(delivery.url())
+                    .timeout(requestTimeout.toMillis())
+                    .sendJson(body)
+                    .emitOn(Infrastructure.getDefaultWorkerPool())
+                    .subscribe().with(
+                            response -> {
+                                if (response.statusCode() >= 200 && response.statusCode() < 300) {
+                                    finish(delivery.events(), done, () -> delivered(delivery.events()));
+                                } else {
+                                    finish(delivery.events(), done,
+                                            () -> failed(delivery.events(), "HTTP " + response.statusCode()));
+                                }
+                            },
+                            failure -> finish(delivery.events(), done,
+                                    () -> failed(delivery.events(), String.valueOf(failure.getMessage()))));
+        } catch (RuntimeException e) {
+            // e.g. a URL the client cannot parse
+            finish(delivery.events(), done, () -> deadLetter(delivery.events(), String.valueOf(e.getMessage())));
+        }
+    }
+
+    private void finish(List<WebhookEvent> events, Runnable record) {
+        finish(events, () -> {
+        }, record);
+    }
+
+    private void finish(List<WebhookEvent> events, Runnable done, Runnable record) {
+        try {
+            QuarkusTransaction.requiringNew().run(record);
+        } catch (RuntimeException e) {
+            // The lease runs out and another poll picks the events up again
+            LOG.errorf(e, "Failed to record the webhook delivery of %d events", events.size());
+        } finally {
+            pending.addAndGet(-events.size());
+            done.run();
+        }
+    }
+
+    private void delivered(List<WebhookEvent> events) {
+        WebhookEvent.delete("id in ?1", events.stream().map(e -> e.id).toList());
+    }
+
+    private void failed(List<WebhookEvent> events, String error) {
+        Instant now = Instant.now();
+        List<WebhookEvent> exhausted = new ArrayList<>();
+        for (WebhookEvent event : events) {
+            int attempts = event.attempts + 1;
+            if (attempts >= maxAttempts) {
+                event.attempts = attempts;
+                exhausted.add(event);
+            } else {
+                WebhookEvent.update("attempts = ?1, nextAttemptAt = ?2, lastError = ?3 where id = ?4",
+                        attempts, now.plus(backoff(attempts)), error, event.id);
+            }
+        }
+        if (!exhausted.isEmpty()) {
+            deadLetter(exhausted, error);
+        }
+        LOG.debugf("Webhook delivery of %d events to %s failed: %s", events.size(), events.get(0).url, error);
+    }
+
+    private void deadLetter(List<WebhookEvent> events, String error) {
+        Instant now = Instant.now();
+        for (WebhookEvent event : events) {
+            WebhookDeadLetter.builder()
+                    .tenantId(event.tenantId)
+                    .recipientId(event.recipientId)
+                    .jobId(event.jobId)
+                    .url(event.url)
+                    .phoneNumber(event.phoneNumber)
+                    .status(event.status)
+                    .occurredAt(event.occurredAt)
+                    .attempts(event.attempts)
+                    .lastError(error)
+                    .failedAt(now)
+                    .build()
+                    .persist();
+        }
+        WebhookEvent.delete("id in ?1", events.stream().map(e -> e.id).toList());
+        LOG.warnf("Gave up on %d webhook events for %s: %s", events.size(), events.get(0).url, error);
+    }
+
+    /**
+     * Exponential backoff capped at {@code sms.webhooks.retry-max-delay}, of which a random half is dropped
+     * so endpoints that recover are not hit by every queued retry at the same moment.
+     */
+    Duration backoff(int attempts) {
+        long base = Math.max(retryBaseDelay.toMillis(), 0);
+        long max = retryMaxDelay.toMillis();
+        long delay = attempts >= 31 ? max : Math.min(max, base << Math.max(attempts - 1, 0));
+        if (delay <= 1) {
+            return Duration.ofMillis(delay);
+        }
+        long half = delay / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(delay - half + 1));
+    }
+
+    private static DeliveryReport report(WebhookEvent event) {
+        return DeliveryReport.builder()
+                .recipientId(event.recipientId)
+                .jobId(event.jobId)
+                .to(event.phoneNumber)
+                .status(event.status)
+                .occurredAt(event.occurredAt)
+                .build();
+    }
+
+    /** The lane key of a URL the policy allowed, so one that parses as an absolute http(s) URL. */
+    private static String hostOf(String url) {
+        URI uri = URI.create(url.trim());
+        return uri.getScheme().toLowerCase() + "://" + uri.getHost().toLowerCase() + ":" + uri.getPort();
+    }
+
+    private record Delivery(String url, List<WebhookEvent> events, Instant leaseUntil) {
+    }
+
+    /**
+     * Requests for one destination host: at most {@code sms.webhooks.max-in-flight-per-host} run at once.
+     */
+    private final class HostLane {
+
+        private final Deque<Delivery> waiting = new ArrayDeque<>();
+        private int inFlight;
+
+        void submit(Delivery delivery) {
+            synchronized (this) {
+                waiting.add(delivery);
+            }
+            drain();
+        }
+
+        private void drain() {
+            while (true) {
+                Delivery next;
+                synchronized (this) {
+                    if (inFlight >= maxInFlightPerHost || waiting.isEmpty()) {
+                        return;
+                    }
+                    next = waiting.poll();
+                    inFlight++;
+                }
+                if (Instant.now().plus(requestTimeout).isAfter(next.leaseUntil())) {
+                    // Waited too long behind a slow host; once the lease is over another poll claims these again
+                    pending.addAndGet(-next.events().size());
+                    done();
+                    return;
+                }
+                send(next, this::done);
+            }
+        }
+
+        private void done() {
+            synchronized (this) {
+                inFlight--;
+            }
+            drain();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package org.hmmk.sms.service;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.UnknownHostException;
+import java.util.Locale;
+
+/**
+ * Decides which webhook URLs the service may POST delivery reports to.
+ *
+ * A URL is accepted with a message only if it is absolute http or https, has a host and carries no
+ * credentials, and its host is not a loopback, link-local, private or otherwise internal address or name.
+ * Since a public name can later resolve to an internal address, the dispatcher asks again right before
+ * sending, against everything the host resolves to. {@code sms.webhooks.allow-private-destinations} lifts
+ * the address checks, for local development against a receiver on the same machine.
+ */
+@ApplicationScoped
+public class WebhookUrlPolicy {
+
+    @ConfigProperty(name = "sms.webhooks.allow-private-destinations", defaultValue = "false")
+    boolean allowPrivateDestinations;
+
+    /**
+     * Returns why a webhook URL given with a message is not acceptable, or null if it is or none was given.
+     */
+    public String rejectionReason(String url) {
+        if (url == null || url.isBlank()) {
+            return null;
+        }
+        URI uri = parse(url);
+        if (uri == null) {
+            return "Webhook URL must be an absolute http or https URL";
+        }
+        if (uri.getRawUserInfo() != null) {
+            return "Webhook URL must not contain credentials";
+        }
+        String host = host(uri);
+        if (!allowPrivateDestinations && (isInternalName(host) || isLiteral(host) && !isPublic(literal(host)))) {
+            return "Webhook URL must not point to a private address";
+        }
+        return null;
+    }
+
+    /**
+     * Returns why reports must not be sent to the URL now, or null if they may. Resolves the host, so this
+     * blocks; a host that does not resolve is left to fail, and be retried, on the request itself.
+     */
+    public String blockedReason(String url) {
+        URI uri = url != null ? parse(url) : null;
+        if (uri == null) {
+            return "Invalid webhook URL";
+        }
+        if (allowPrivateDestinations) {
+            return null;
+        }
+        String host = host(uri);
+        if (isInternalName(host)) {
+            return "Webhook host " + host + " is internal";
+        }
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (!isPublic(address)) {
+                    return "Webhook host " + host + " resolves to private address " + address.getHostAddress();
+                }
+            }
+        } catch (UnknownHostException e) {
+            return null;
+        }
+        return null;
+    }
+
+    /**
+     * Whether the address is reachable on the public internet, i.e. not loopback, unspecified, link-local,
+     * private (RFC 1918, IPv6 unique local), carrier-grade NAT, benchmarking, multicast or broadcast.
+     */
+    static boolean isPublic(InetAddress address) {
+        if (address.isAnyLocalAddress() || address.isLoopbackAddress() || address.isLinkLocalAddress()
+                || address.isSiteLocalAddress() || address.isMulticastAddress()) {
+            return false;
+        }
+        byte[] b = address.getAddress();
+        if (address instanceof Inet4Address) {
+            int first = b[0] & 0xff;
+            int second = b[1] & 0xff;
+            return first != 0
+                    && !(first == 100 && second >= 64 && second < 128)
+                    && !(first == 198 && (second == 18 || second == 19))
+                    && first < 240;
+        }
+        if (address instanceof Inet6Address) {
+            // Unique local fc00::/7, and IPv4 addresses embedded as ::ffff:a.b.c.d or ::a.b.c.d
+            if ((b[0] & 0xfe) == 0xfc) {
+                return false;
+            }
+            boolean embedded = true;
+            for (int i = 0; i < 10; i++) {
+                embedded &= b[i] == 0;
+            }
+            if (embedded && ((b[10] == 0 && b[11] == 0) || (b[10] == (byte) 0xff && b[11] == (byte) 0xff))) {
+                try {
+                    return isPublic(InetAddress.getByAddress(new byte[]{b[12], b[13], b[14], b[15]}));
+                } catch (UnknownHostException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static URI parse(String url) {
+        try {
+            URI uri = URI.create(url.trim());
+            String scheme = uri.getScheme();
+            if (uri.getHost() == null || scheme == null
+                    || !(scheme.equalsIgnoreCase("http") || scheme.equalsIgnoreCase("https"))) {
+                return null;
+            }
+            return uri;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String host(URI uri) {
+        String host = uri.getHost().toLowerCase(Locale.ROOT);
+        if (host.startsWith("[") && host.endsWith("]")) {
+            host = host.substring(1, host.length() - 1);
+        }
+        return host.endsWith(".") ? host.substring(0, host.length() - 1) : host;
+    }
+
+    private static boolean isInternalName(String host) {
+        return host.equals("localhost") || host.endsWith(".localhost") || host.endsWith(".local")
+                || host.endsWith(".internal");
+    }
+
+    private static boolean isLiteral(String host) {
+        return host.contains(":") || host.matches("[0-9.]+");
+    }
+
+    /** Parses an IP literal without a DNS lookup. */
+    private static InetAddress literal(String host) {
+        try {
+            return InetAddress.getByName(host);
+        } catch (UnknownHostException e) {
+            // Not a well-formed address, so nothing that could be reached either
+            return InetAddress.getLoopbackAddress();
+        }
+    }
+}
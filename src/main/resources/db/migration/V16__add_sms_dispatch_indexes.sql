@@ -0,0 +1,5 @@
+-- Supports the dispatcher poll: due jobs by status and scheduled time
+CREATE INDEX IF NOT EXISTS idx_sms_jobs_status_scheduled ON sms_jobs (status, scheduledAt);
+
+-- Supports keyset paging of pending recipients per job and the job completion check
+CREATE INDEX IF NOT EXISTS idx_sms_recipients_job_status ON sms_recipients (job_id, status, id);
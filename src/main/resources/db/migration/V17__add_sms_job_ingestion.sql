@@ -0,0 +1,20 @@
+-- Add INGESTING to JobStatus check constraint
+ALTER TABLE sms_jobs DROP CONSTRAINT IF EXISTS sms_jobs_status_check;
+ALTER TABLE sms_jobs ADD CONSTRAINT sms_jobs_status_check CHECK (status IN ('INGESTING', 'PENDING_APPROVAL', 'SCHEDULED', 'SENDING', 'COMPLETED', 'FAILED', 'CANCELED'));
+
+-- Progress of background recipient expansion for bulk and group jobs
+CREATE TABLE IF NOT EXISTS sms_job_ingestion (
+    job_id UUID NOT NULL,
+    tenantId VARCHAR(255) NOT NULL,
+    createdAt TIMESTAMP(6) WITH TIME ZONE,
+    updatedAt TIMESTAMP(6) WITH TIME ZONE,
+    rowsParsed BIGINT NOT NULL DEFAULT 0,
+    rowsAccepted BIGINT NOT NULL DEFAULT 0,
+    rowsRejected BIGINT NOT NULL DEFAULT 0,
+    rowsDuplicate BIGINT NOT NULL DEFAULT 0,
+    rowsPersisted BIGINT NOT NULL DEFAULT 0,
+    error TEXT,
+    finishedAt TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (job_id),
+    CONSTRAINT fk_sms_job_ingestion_job FOREIGN KEY (job_id) REFERENCES sms_jobs(id) ON DELETE CASCADE
+);
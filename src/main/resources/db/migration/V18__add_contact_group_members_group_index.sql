@@ -0,0 +1,2 @@
+-- Supports expanding a contact group into SMS recipients with INSERT ... SELECT
+CREATE INDEX IF NOT EXISTS idx_contact_group_members_group ON contact_group_members (group_id, contact_id);
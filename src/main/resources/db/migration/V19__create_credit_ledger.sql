@@ -0,0 +1,26 @@
+-- Append-only history of every SMS credit change
+CREATE TABLE IF NOT EXISTS credit_ledger (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tenantId VARCHAR(255) NOT NULL,
+    entryType VARCHAR(32) NOT NULL,
+    amount BIGINT NOT NULL,
+    reference VARCHAR(255),
+    createdAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT credit_ledger_entry_type_check CHECK (entryType IN ('PURCHASE', 'RESERVE', 'REFUND', 'ADMIN_ADJUST', 'DELIVERY_FAIL_REFUND'))
+);
+
+CREATE INDEX IF NOT EXISTS idx_credit_ledger_tenant_id ON credit_ledger (tenantId, id);
+
+-- Ledger entries folded into one balance per tenant; balance reads add the entries after lastEntryId
+CREATE TABLE IF NOT EXISTS credit_balance_snapshot (
+    tenantId VARCHAR(255) NOT NULL,
+    balance BIGINT NOT NULL,
+    lastEntryId BIGINT NOT NULL DEFAULT 0,
+    updatedAt TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (tenantId)
+);
+
+-- Existing balances become the opening snapshots
+INSERT INTO credit_balance_snapshot (tenantId, balance, lastEntryId, updatedAt)
+SELECT id, sms_credit, 0, CURRENT_TIMESTAMP FROM tenant;
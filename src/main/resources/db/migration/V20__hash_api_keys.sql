@@ -0,0 +1,8 @@
+-- API keys are stored as SHA-256 digests; plaintext api_key values of existing keys are hashed
+-- and cleared by the application on startup
+ALTER TABLE api_keys ADD COLUMN IF NOT EXISTS key_digest VARCHAR(64);
+ALTER TABLE api_keys ADD COLUMN IF NOT EXISTS key_prefix VARCHAR(16);
+ALTER TABLE api_keys ALTER COLUMN api_key DROP NOT NULL;
+
+CREATE UNIQUE INDEX IF NOT EXISTS idx_api_keys_key_digest ON api_keys (key_digest);
+DROP INDEX IF EXISTS idx_api_keys_api_key;
@@ -0,0 +1,36 @@
+-- Delivery reports waiting to be POSTed to the recipient's webhook URL
+CREATE TABLE IF NOT EXISTS webhook_events (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tenantId VARCHAR(255) NOT NULL,
+    recipientId UUID NOT NULL,
+    jobId UUID NOT NULL,
+    url TEXT NOT NULL,
+    phoneNumber VARCHAR(255) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    occurredAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    nextAttemptAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    lastError TEXT,
+    createdAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_events_next_attempt ON webhook_events (nextAttemptAt, id);
+
+-- Delivery reports that could not be delivered within the retry budget
+CREATE TABLE IF NOT EXISTS webhook_dead_letters (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tenantId VARCHAR(255) NOT NULL,
+    recipientId UUID NOT NULL,
+    jobId UUID NOT NULL,
+    url TEXT NOT NULL,
+    phoneNumber VARCHAR(255) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    occurredAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    attempts INT NOT NULL,
+    lastError TEXT,
+    failedAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_webhook_dead_letters_tenant ON webhook_dead_letters (tenantId, id);
@@ -0,0 +1,13 @@
+-- Handset delivery reported by the carrier; NULL until a final delivery receipt arrives
+ALTER TABLE sms_recipients ADD COLUMN IF NOT EXISTS deliveryStatus VARCHAR(32);
+ALTER TABLE sms_recipients ADD COLUMN IF NOT EXISTS deliveredAt TIMESTAMP(6) WITH TIME ZONE;
+
+-- Carrier message id of every accepted submission, to match delivery receipts to recipients
+CREATE TABLE IF NOT EXISTS sms_message_ids (
+    messageId VARCHAR(64) NOT NULL,
+    recipientId UUID NOT NULL,
+    createdAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (messageId)
+);
+
+CREATE INDEX IF NOT EXISTS idx_sms_message_ids_created ON sms_message_ids (createdAt);
@@ -0,0 +1,12 @@
+-- Throughput overrides for one tenant or one sender; anything not listed uses the sms.throttle.* defaults
+CREATE TABLE IF NOT EXISTS send_rate_limits (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    scope VARCHAR(16) NOT NULL,
+    scopeId VARCHAR(255) NOT NULL,
+    messagesPerSecond DOUBLE PRECISION,
+    weight INT,
+    updatedAt TIMESTAMP(6) WITH TIME ZONE,
+    PRIMARY KEY (id),
+    CONSTRAINT uq_send_rate_limits_scope UNIQUE (scope, scopeId),
+    CONSTRAINT chk_send_rate_limits_scope CHECK (scope IN ('TENANT', 'SENDER'))
+);
@@ -0,0 +1,9 @@
+-- Dispatch lane of a job: HIGH for single messages, LOW for CSV campaigns, NORMAL otherwise
+ALTER TABLE sms_jobs ADD COLUMN IF NOT EXISTS priority VARCHAR(16);
+UPDATE sms_jobs SET priority = CASE
+    WHEN jobType IN ('SINGLE', 'TRANSACTIONAL') THEN 'HIGH'
+    WHEN jobType = 'BULK' AND sourceType = 'CSV_UPLOAD' THEN 'LOW'
+    ELSE 'NORMAL'
+END;
+ALTER TABLE sms_jobs ALTER COLUMN priority SET NOT NULL;
+ALTER TABLE sms_jobs ADD CONSTRAINT sms_jobs_priority_check CHECK (priority IN ('HIGH', 'NORMAL', 'LOW'));
@@ -0,0 +1,2 @@
+-- Extra per-contact values for message template placeholders, as a JSON object of strings
+ALTER TABLE contacts ADD COLUMN IF NOT EXISTS customFields TEXT;
@@ -0,0 +1,14 @@
+-- Message texts stored once, keyed by the SHA-256 digest of the text, and shared by the recipients sending them
+CREATE TABLE IF NOT EXISTS message_bodies (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    digest VARCHAR(64) NOT NULL,
+    body TEXT NOT NULL,
+    createdAt TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uq_message_bodies_digest UNIQUE (digest)
+);
+
+-- Recipients keep short texts inline in message and point to a shared body otherwise; existing rows stay inline
+ALTER TABLE sms_recipients ADD COLUMN IF NOT EXISTS messageBodyId BIGINT;
+ALTER TABLE sms_recipients ADD CONSTRAINT fk_sms_recipients_message_body
+    FOREIGN KEY (messageBodyId) REFERENCES message_bodies(id);
@@ -0,0 +1,2 @@
+-- Months a tenant's recipients are kept; NULL uses sms.retention.default-months
+ALTER TABLE tenant ADD COLUMN IF NOT EXISTS sms_retention_months INT;
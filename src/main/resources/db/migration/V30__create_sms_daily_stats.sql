@@ -0,0 +1,21 @@
+-- Recipient counts per tenant, UTC day, job source and final status, kept up to date as recipients leave PENDING
+CREATE TABLE IF NOT EXISTS sms_daily_stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tenantId VARCHAR(255) NOT NULL,
+    statDate DATE NOT NULL,
+    sourceType VARCHAR(32) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    messageCount BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uq_sms_daily_stats UNIQUE (tenantId, statDate, sourceType, status)
+);
+
+-- Backfill from the recipients recorded so far; SENT ones count on the day they were sent
+INSERT INTO sms_daily_stats (tenantId, statDate, sourceType, status, messageCount)
+SELECT r.tenantId, CAST(COALESCE(r.sentAt, r.updatedAt, r.createdAt) AT TIME ZONE 'UTC' AS DATE), j.sourceType,
+       r.status, COUNT(*)
+FROM sms_recipients r
+JOIN sms_jobs j ON j.id = r.job_id
+WHERE r.status <> 'PENDING'
+GROUP BY r.tenantId, CAST(COALESCE(r.sentAt, r.updatedAt, r.createdAt) AT TIME ZONE 'UTC' AS DATE), j.sourceType,
+         r.status;
@@ -0,0 +1,32 @@
+-- Daily rollups gain the sender, so traffic can be broken down per sender; they are rebuilt from the recipients
+DELETE FROM sms_daily_stats;
+ALTER TABLE sms_daily_stats ADD COLUMN IF NOT EXISTS senderId VARCHAR(255) NOT NULL;
+ALTER TABLE sms_daily_stats DROP CONSTRAINT IF EXISTS uq_sms_daily_stats;
+ALTER TABLE sms_daily_stats ADD CONSTRAINT uq_sms_daily_stats UNIQUE (tenantId, statDate, sourceType, senderId, status);
+
+INSERT INTO sms_daily_stats (tenantId, statDate, sourceType, senderId, status, messageCount)
+SELECT r.tenantId, CAST(COALESCE(r.sentAt, r.updatedAt, r.createdAt) AT TIME ZONE 'UTC' AS DATE), j.sourceType,
+       r.senderId, r.status, COUNT(*)
+FROM sms_recipients r
+JOIN sms_jobs j ON j.id = r.job_id
+WHERE r.status <> 'PENDING'
+GROUP BY r.tenantId, CAST(COALESCE(r.sentAt, r.updatedAt, r.createdAt) AT TIME ZONE 'UTC' AS DATE), j.sourceType,
+         r.senderId, r.status;
+
+-- The same counts per hour, for hourly traffic curves; kept for sms.stats.hourly.retention only
+CREATE TABLE IF NOT EXISTS sms_hourly_stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    tenantId VARCHAR(255) NOT NULL,
+    statHour TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    senderId VARCHAR(255) NOT NULL,
+    status VARCHAR(32) NOT NULL,
+    messageCount BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uq_sms_hourly_stats UNIQUE (tenantId, statHour, senderId, status)
+);
+
+INSERT INTO sms_hourly_stats (tenantId, statHour, senderId, status, messageCount)
+SELECT r.tenantId, DATE_TRUNC('hour', COALESCE(r.sentAt, r.updatedAt, r.createdAt)), r.senderId, r.status, COUNT(*)
+FROM sms_recipients r
+WHERE r.status <> 'PENDING'
+GROUP BY r.tenantId, DATE_TRUNC('hour', COALESCE(r.sentAt, r.updatedAt, r.createdAt)), r.senderId, r.status;
@@ -0,0 +1,8 @@
+-- List endpoints page newest first on (createdAt, id), seeking past the previous page's last row
+CREATE INDEX IF NOT EXISTS idx_sms_jobs_tenant_created ON sms_jobs (tenantId, createdAt, id);
+CREATE INDEX IF NOT EXISTS idx_contacts_tenant_created ON contacts (tenantId, createdAt, id);
+CREATE INDEX IF NOT EXISTS idx_contact_groups_tenant_created ON contact_groups (tenantId, createdAt, id);
+CREATE INDEX IF NOT EXISTS idx_api_keys_tenant_created ON api_keys ("tenantId", "createdAt", id);
+CREATE INDEX IF NOT EXISTS idx_payment_transaction_tenant_created ON payment_transaction (tenantId, createdAt, id);
+CREATE INDEX IF NOT EXISTS idx_tenant_created ON tenant (created_at, id);
+
@@ -0,0 +1,3 @@
+-- Node that owns an ingestion and its last heartbeat; stalled ingestions are told apart by the heartbeat
+ALTER TABLE sms_job_ingestion ADD COLUMN IF NOT EXISTS ownerNode VARCHAR(255);
+ALTER TABLE sms_job_ingestion ADD COLUMN IF NOT EXISTS heartbeatAt TIMESTAMP(6) WITH TIME ZONE;
@@ -0,0 +1,34 @@
+-- Contact phones were stored as entered (e.g. 0911...), while recipients carry the normalized number (+251911...),
+-- so personalized messages found no contact. Brings existing contacts into PhoneNumberNormalizer's form; a contact
+-- whose normalized number another contact of the tenant already has, or that is no valid number, is left as is.
+CREATE TABLE contact_phone_backfill AS
+SELECT id, tenantId,
+       REGEXP_REPLACE(phone, '[ ().-]', '', 'g') AS phone
+FROM contacts;
+
+UPDATE contact_phone_backfill SET phone = '+' || SUBSTRING(phone, 3)
+WHERE phone LIKE '00%';
+
+UPDATE contact_phone_backfill SET phone = '+${defaultCountryCode}' || SUBSTRING(phone, 2)
+WHERE phone LIKE '0%' AND '${defaultCountryCode}' <> '';
+
+DELETE FROM contact_phone_backfill
+WHERE NOT phone ~ '^\+?[0-9]{10,15}$';
+
+DELETE FROM contact_phone_backfill
+WHERE EXISTS (SELECT 1 FROM contacts c
+              WHERE c.tenantId = contact_phone_backfill.tenantId
+                AND c.phone = contact_phone_backfill.phone
+                AND c.id <> contact_phone_backfill.id);
+
+DELETE FROM contact_phone_backfill
+WHERE EXISTS (SELECT 1 FROM contact_phone_backfill o
+              WHERE o.tenantId = contact_phone_backfill.tenantId
+                AND o.phone = contact_phone_backfill.phone
+                AND o.id < contact_phone_backfill.id);
+
+UPDATE contacts
+SET phone = (SELECT b.phone FROM contact_phone_backfill b WHERE b.id = contacts.id)
+WHERE id IN (SELECT b.id FROM contact_phone_backfill b WHERE b.phone <> contacts.phone);
+
+DROP TABLE contact_phone_backfill;
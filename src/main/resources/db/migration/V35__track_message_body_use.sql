@@ -0,0 +1,8 @@
+-- Bodies no recipient references anymore are purged once they have not been handed out for a while, so the store
+-- records when it last resolved each one; existing bodies count as used when they were created
+ALTER TABLE message_bodies ADD COLUMN IF NOT EXISTS lastUsedAt TIMESTAMP(6) WITH TIME ZONE;
+UPDATE message_bodies SET lastUsedAt = createdAt;
+ALTER TABLE message_bodies ALTER COLUMN lastUsedAt SET NOT NULL;
+
+-- Finding unreferenced bodies, and deleting a body, both look up the recipients pointing to it
+CREATE INDEX IF NOT EXISTS idx_sms_recipients_message_body ON sms_recipients (messageBodyId);
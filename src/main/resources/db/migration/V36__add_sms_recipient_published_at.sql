@@ -0,0 +1,3 @@
+-- When dispatch handed the recipient to the broker; a job taken over from a lapsed node only republishes
+-- recipients without it, since published ones are still queued or being retried by the send workers
+ALTER TABLE sms_recipients ADD COLUMN IF NOT EXISTS publishedAt TIMESTAMP(6) WITH TIME ZONE;
@@ -0,0 +1,43 @@
+-- PostgreSQL only: turns sms_recipients into a table range partitioned by month on createdAt.
+-- The existing table becomes the partition for everything before next month, so no rows are copied;
+-- SmsRetentionService adds the monthly partitions after it and detaches partitions once they expire.
+-- The primary key has to include createdAt, so its index is built once on the existing rows, holding an
+-- exclusive lock on sms_recipients meanwhile; the other indexes and constraints are reused as they are.
+
+UPDATE sms_recipients SET createdAt = COALESCE(updatedAt, sentAt, now()) WHERE createdAt IS NULL;
+ALTER TABLE sms_recipients ALTER COLUMN createdAt SET NOT NULL;
+
+ALTER TABLE sms_recipients RENAME TO sms_recipients_legacy;
+ALTER TABLE sms_recipients_legacy RENAME CONSTRAINT sms_recipients_pkey TO sms_recipients_legacy_pkey;
+ALTER INDEX idx_tenant_job RENAME TO idx_tenant_job_legacy;
+ALTER INDEX idx_sms_recipients_job_status RENAME TO idx_sms_recipients_job_status_legacy;
+
+CREATE TABLE sms_recipients (LIKE sms_recipients_legacy INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (createdAt);
+ALTER TABLE sms_recipients ADD CONSTRAINT sms_recipients_pkey PRIMARY KEY (id, createdAt);
+ALTER TABLE sms_recipients ADD CONSTRAINT FKax2say37ns6b2l2kp76f2hgyt FOREIGN KEY (job_id) REFERENCES sms_jobs(id);
+ALTER TABLE sms_recipients ADD CONSTRAINT fk_sms_recipients_message_body
+    FOREIGN KEY (messageBodyId) REFERENCES message_bodies(id);
+CREATE INDEX idx_tenant_job ON sms_recipients (tenantId, job_id);
+CREATE INDEX idx_sms_recipients_job_status ON sms_recipients (job_id, status, id);
+
+DO $$
+DECLARE
+    next_month TIMESTAMP := date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '1 month';
+    month_start TIMESTAMP;
+BEGIN
+    -- A valid CHECK lets the attach skip scanning the rows for their range
+    EXECUTE format('ALTER TABLE sms_recipients_legacy ADD CONSTRAINT sms_recipients_legacy_range '
+                   'CHECK (createdAt < %L)', next_month AT TIME ZONE 'UTC');
+    EXECUTE format('ALTER TABLE sms_recipients ATTACH PARTITION sms_recipients_legacy '
+                   'FOR VALUES FROM (MINVALUE) TO (%L)', next_month AT TIME ZONE 'UTC');
+    ALTER TABLE sms_recipients_legacy DROP CONSTRAINT sms_recipients_legacy_range;
+
+    FOR i IN 0..2 LOOP
+        month_start := next_month + make_interval(months => i);
+        EXECUTE format('CREATE TABLE %I PARTITION OF sms_recipients FOR VALUES FROM (%L) TO (%L)',
+                       'sms_recipients_p' || to_char(month_start, 'YYYYMM'),
+                       month_start AT TIME ZONE 'UTC',
+                       (month_start + INTERVAL '1 month') AT TIME ZONE 'UTC');
+    END LOOP;
+END $$;
@@ -0,0 +1,51 @@
+package org.hmmk.sms.gateway;
+
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SmsEncodingTest {
+
+    @Test
+    public void testGsmCharactersAboveAsciiStayGsm() {
+        assertEquals(SmsJob.MessageType.English, SmsEncoding.detect("Price: £5 or 6€, café à Zürich"));
+        assertEquals(SmsJob.MessageType.UNICODE, SmsEncoding.detect("ሰላም"));
+        // The backtick is ASCII but not in the GSM alphabet
+        assertEquals(SmsJob.MessageType.UNICODE, SmsEncoding.detect("`code`"));
+    }
+
+    @Test
+    public void testExtensionCharactersTakeTwoSeptets() {
+        assertEquals(160, SmsEncoding.septets("a".repeat(160)));
+        assertEquals(1, SmsEncoding.segments("a".repeat(160), SmsJob.MessageType.English));
+        assertEquals(161, SmsEncoding.septets("€" + "a".repeat(159)));
+        assertEquals(2, SmsEncoding.segments("€" + "a".repeat(159), SmsJob.MessageType.English));
+    }
+
+    @Test
+    public void testEscapeSequenceIsNotSplitBetweenParts() {
+        // 152 septets, then an escape pair that no longer fits the first part's 153
+        String text = "a".repeat(152) + "{" + "a".repeat(152);
+        assertEquals(306, SmsEncoding.septets(text));
+        assertEquals(3, SmsEncoding.segments(text, SmsJob.MessageType.English));
+        assertEquals(2, SmsEncoding.segments("a".repeat(306), SmsJob.MessageType.English));
+    }
+
+    @Test
+    public void testUcs2CountsSurrogatePairsAndKeepsThemTogether() {
+        assertEquals(1, SmsEncoding.segments("ሰ".repeat(70), SmsJob.MessageType.UNICODE));
+        assertEquals(2, SmsEncoding.segments("ሰ".repeat(71), SmsJob.MessageType.UNICODE));
+        assertEquals(2, SmsEncoding.segments("ሰ".repeat(134), SmsJob.MessageType.UNICODE));
+        // 66 units, then an emoji of two units that does not fit the first part's 67
+        String text = "ሰ".repeat(66) + "😀" + "ሰ".repeat(66);
+        assertEquals(3, SmsEncoding.segments(text, SmsJob.MessageType.UNICODE));
+    }
+
+    @Test
+    public void testEncodesUnpackedSeptets() {
+        assertArrayEquals(new byte[]{0x48, 0x69, 0x01, 0x1B, 0x65, 0x1B, 0x3C, 0x05, 0x3F},
+                SmsEncoding.toGsm7("Hi£€[é`"));
+    }
+}
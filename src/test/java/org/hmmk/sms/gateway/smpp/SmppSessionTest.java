@@ -0,0 +1,172 @@
+package org.hmmk.sms.gateway.smpp;
+
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.gateway.DeliveryReceipt;
+import org.hmmk.sms.gateway.OutboundSms;
+import org.hmmk.sms.gateway.SmsEncoding;
+import org.hmmk.sms.gateway.SubmitResult;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SmppSessionTest {
+
+    private SmppSimulator simulator;
+    private SmppSession session;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        simulator = new SmppSimulator();
+        simulator.start(0);
+        session = new SmppSession("test", new SmppSessionConfig("localhost", simulator.port(), "a2p", "secret", "",
+                10, Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ZERO));
+    }
+
+    @AfterEach
+    public void teardown() {
+        session.close();
+        simulator.stop();
+    }
+
+    @Test
+    public void testWindowedSubmitsAreAllAcknowledged() throws Exception {
+        session.ensureBound();
+        assertTrue(session.isBound());
+
+        List<CompletableFuture<SmppPdu>> responses = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            responses.add(session.request(SmppPdu.SUBMIT_SM, new byte[]{0}, true));
+        }
+
+        Set<String> messageIds = new HashSet<>();
+        for (CompletableFuture<SmppPdu> response : responses) {
+            SmppPdu pdu = response.get(5, TimeUnit.SECONDS);
+            assertEquals(SmppPdu.SUBMIT_SM | SmppPdu.RESPONSE_MASK, pdu.commandId);
+            assertEquals(SmppPdu.ESME_ROK, pdu.commandStatus);
+            messageIds.add(new SmppPdu.Reader(pdu.body).cString());
+        }
+        assertEquals(200, messageIds.size());
+        assertEquals(0, session.inFlight());
+    }
+
+    @Test
+    public void testConnectionLossFailsSessionAndRebinds() throws Exception {
+        session.ensureBound();
+        simulator.stop();
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (session.isBound() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(session.isBound());
+
+        simulator.start(0);
+        session = new SmppSession("test", new SmppSessionConfig("localhost", simulator.port(), "a2p", "secret", "",
+                10, Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ZERO));
+        session.ensureBound();
+        assertTrue(session.isBound());
+    }
+
+    @Test
+    public void testDeliveryReceiptsAreHandedToTheHandler() throws Exception {
+        simulator.deliveryReceipts = true;
+        BlockingQueue<DeliveryReceipt> receipts = new LinkedBlockingQueue<>();
+        session.close();
+        session = new SmppSession("test", new SmppSessionConfig("localhost", simulator.port(), "a2p", "secret", "",
+                10, Duration.ofSeconds(2), Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ZERO),
+                pdu -> receipts.add(SmppSmsGateway.parseReceipt(pdu.body)));
+        session.ensureBound();
+
+        SmppPdu response = session.request(SmppPdu.SUBMIT_SM, new byte[]{0}, true).get(5, TimeUnit.SECONDS);
+        String messageId = new SmppPdu.Reader(response.body).cString();
+
+        DeliveryReceipt receipt = receipts.poll(5, TimeUnit.SECONDS);
+        assertNotNull(receipt);
+        assertEquals(messageId, receipt.messageId());
+        assertTrue(receipt.delivered());
+    }
+
+    @Test
+    public void testOnlyUnwrittenSubmitsAreRetried() throws Exception {
+        // Never bound, so nothing can be written
+        CompletableFuture<SmppPdu> unsent = session.request(SmppPdu.SUBMIT_SM, new byte[]{0}, true);
+        ExecutionException notSent = assertThrows(ExecutionException.class, () -> unsent.get(5, TimeUnit.SECONDS));
+        assertTrue(notSent.getCause() instanceof SmppSession.NotSentException);
+        assertEquals(SubmitResult.Status.RETRY, SmppSmsGateway.toResult(notSent.getCause()).status());
+
+        SubmitResult unanswered = SmppSmsGateway.toResult(new CompletionException(
+                new TimeoutException("No SMPP response for sequence 7")));
+        assertEquals(SubmitResult.Status.UNCONFIRMED, unanswered.status());
+        assertEquals(SubmitResult.Status.UNCONFIRMED,
+                SmppSmsGateway.toResult(new IOException("SMPP connection of test closed")).status());
+    }
+
+    @Test
+    public void testMultipartUnicodeTextGoesInTheMessagePayload() throws Exception {
+        // 100 Ethiopic characters: 200 octets of UCS-2, billed as 2 parts
+        String text = "ሰላም ውድ ደንበኛ ".repeat(8) + "ሰላም!";
+        assertEquals(100, text.length());
+        assertEquals(2, SmsEncoding.segments(text, SmsJob.MessageType.UNICODE));
+        byte[] body = SmppSmsGateway.encodeSubmitSm(new OutboundSms(UUID.randomUUID(), "sender-1", "Sender",
+                "+251911000001", text, SmsJob.MessageType.UNICODE));
+
+        assertTrue(SmppSimulator.fitsShortMessage(body));
+        assertEquals(text, new String(SmppSimulator.submittedText(body), StandardCharsets.UTF_16BE));
+        session.ensureBound();
+        assertEquals(SmppPdu.ESME_ROK, session.request(SmppPdu.SUBMIT_SM, body, true)
+                .get(5, TimeUnit.SECONDS).commandStatus);
+
+        // The same text in short_message is more than one SMS, which the SMSC refuses
+        byte[] oversized = new SmppPdu.Writer()
+                .cString("").u8(5).u8(0).cString("Sender").u8(1).u8(1).cString("251911000001")
+                .u8(0).u8(0).u8(0).cString("").cString("").u8(1).u8(0)
+                .u8(SmppPdu.DATA_CODING_UCS2).u8(0)
+                .u8(200).octets(text.getBytes(StandardCharsets.UTF_16BE))
+                .toByteArray();
+        assertEquals(SmppPdu.ESME_RINVMSGLEN, session.request(SmppPdu.SUBMIT_SM, oversized, true)
+                .get(5, TimeUnit.SECONDS).commandStatus);
+
+        String single = "ሰላም ውድ ደንበኛ ".repeat(5);
+        assertEquals(single, new String(SmppSimulator.submittedText(SmppSmsGateway.encodeSubmitSm(new OutboundSms(
+                UUID.randomUUID(), "sender-1", "Sender", "+251911000001", single, SmsJob.MessageType.UNICODE))),
+                StandardCharsets.UTF_16BE));
+    }
+
+    @Test
+    public void testReceiptTextIsReadWithoutTlvs() {
+        byte[] text = "id:ABC123 sub:001 dlvrd:000 submit date:2501011200 done date:2501011201 stat:UNDELIV err:001"
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new SmppPdu.Writer()
+                .cString("").u8(1).u8(1).cString("251911000001").u8(5).u8(0).cString("OTP")
+                .u8(SmppPdu.ESM_CLASS_DELIVERY_RECEIPT).u8(0).u8(0).cString("").cString("")
+                .u8(0).u8(0).u8(0).u8(0).u8(text.length).octets(text)
+                .toByteArray();
+
+        DeliveryReceipt receipt = SmppSmsGateway.parseReceipt(body);
+        assertEquals("ABC123", receipt.messageId());
+        assertFalse(receipt.delivered());
+        assertEquals("UNDELIV", receipt.state());
+    }
+}
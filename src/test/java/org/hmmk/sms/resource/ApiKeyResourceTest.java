@@ -19,6 +19,10 @@ import jakarta.transaction.Transactional;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 @QuarkusTest
 public class ApiKeyResourceTest {
@@ -70,6 +74,39 @@ public class ApiKeyResourceTest {
                 .body("name", is("Test Key"));
     }
 
+    @Test
+    @TestSecurity(user = "tenant-admin", roles = "tenant_admin")
+    public void testApiKeyIsStoredOnlyAsDigest() {
+        Mockito.when(jwt.getClaim("tenantId")).thenReturn(tenantId);
+
+        ApiKeyRequest request = new ApiKeyRequest();
+        request.setSenderId(senderId);
+        request.setName("Hashed Key");
+
+        String plaintext = given()
+                .contentType(ContentType.JSON)
+                .body(request)
+                .when()
+                .post("/api/api-keys")
+                .then()
+                .statusCode(200)
+                .extract().path("apiKey");
+
+        ApiKey stored = QuarkusTransaction.requiringNew()
+                .call(() -> ApiKey.<ApiKey>find("keyDigest", ApiKey.digest(plaintext)).firstResult());
+        assertNotNull(stored);
+        assertEquals(plaintext.substring(0, 8), stored.keyPrefix);
+        assertNull(stored.apiKey);
+
+        given()
+                .when()
+                .get("/api/api-keys")
+                .then()
+                .statusCode(200)
+                .body("items[0].apiKey", nullValue())
+                .body("items[0].keyPrefix", is(plaintext.substring(0, 8)));
+    }
+
     @Test
     @TestSecurity(user = "tenant-admin", roles = "tenant_admin")
     public void testListApiKeys() {
@@ -66,6 +66,43 @@ public class ContactResourceTest {
                 .body("tenantId", is(tenantId));
     }
 
+    @Test
+    @TestSecurity(user = "tenant-admin", roles = "tenant_admin")
+    public void testPhonesAreStoredNormalized() {
+        Mockito.when(jwt.getClaim("tenantId")).thenReturn(tenantId);
+
+        ContactDto dto = new ContactDto();
+        dto.name = "Abebe";
+        dto.phone = "0911-000-123";
+
+        given()
+                .contentType(ContentType.JSON)
+                .body(dto)
+                .when()
+                .post("/api/contacts")
+                .then()
+                .statusCode(200)
+                .body("phone", is("+251911000123"));
+
+        given()
+                .contentType(ContentType.TEXT)
+                .body("phone,name\n0911 000 124,Imported Local")
+                .when()
+                .post("/api/contacts/upload")
+                .then()
+                .statusCode(200)
+                .body("[0].phone", is("+251911000124"));
+
+        // Looked up by the number as the user typed it
+        given()
+                .queryParam("phone", "0911000123")
+                .when()
+                .get("/api/contacts/search/by-phone")
+                .then()
+                .statusCode(200)
+                .body("name", is("Abebe"));
+    }
+
     @Test
     @TestSecurity(user = "tenant-admin", roles = "tenant_admin")
     public void testListContacts() {
@@ -6,6 +6,7 @@ import io.quarkus.test.security.TestSecurity;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.hmmk.sms.entity.Tenant;
 import org.hmmk.sms.entity.contact.Contact;
+import org.hmmk.sms.entity.sms.SmsDailyStat;
 import org.hmmk.sms.entity.sms.SmsJob;
 import org.hmmk.sms.entity.sms.SmsRecipient;
 import org.junit.jupiter.api.BeforeEach;
@@ -14,6 +15,8 @@ import org.mockito.Mockito;
 
 import jakarta.transaction.Transactional;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
@@ -35,6 +38,7 @@ public class DashboardResourceIT {
         // clean up existing data
         SmsRecipient.deleteAll();
         SmsJob.deleteAll();
+        SmsDailyStat.deleteAll();
         Contact.deleteAll();
         Tenant.deleteAll();
 
@@ -121,6 +125,11 @@ public class DashboardResourceIT {
         r3.sentAt = Instant.now().minus(400, ChronoUnit.DAYS);
         r3.persist();
 
+        // rollups the dispatcher would have recorded for the recipients above
+        stat(SmsJob.SourceType.API, "sender-1", r1.sentAt, 1);
+        stat(SmsJob.SourceType.API, "sender-1", r2.sentAt, 1);
+        stat(SmsJob.SourceType.MANUAL, "sender-2", r3.sentAt, 1);
+
         // create CSV_UPLOAD job with 0 recipients (to test zero count)
         SmsJob csvJob = new SmsJob();
         csvJob.tenantId = TENANT_ID;
@@ -136,6 +145,17 @@ public class DashboardResourceIT {
         csvJob.persist();
     }
 
+    private static void stat(SmsJob.SourceType sourceType, String senderId, Instant sentAt, long count) {
+        SmsDailyStat stat = new SmsDailyStat();
+        stat.tenantId = TENANT_ID;
+        stat.statDate = LocalDate.ofInstant(sentAt, ZoneOffset.UTC);
+        stat.sourceType = sourceType;
+        stat.senderId = senderId;
+        stat.status = SmsRecipient.RecipientStatus.SENT;
+        stat.messageCount = count;
+        stat.persist();
+    }
+
     @Test
     @TestSecurity(user = "tenant-admin", roles = "tenant_admin")
     public void testGetDashboard() {
@@ -191,6 +211,6 @@ public class DashboardResourceIT {
                 .get("/api/dashboard/overview?granularity=weekly")
                 .then()
                 .statusCode(400)
-                .body(is("Invalid granularity. Use MONTH, QUARTER, or YEAR."));
+                .body(is("Invalid granularity. Use HOUR, DAY, WEEK, MONTH, QUARTER, or YEAR."));
     }
 }
@@ -9,15 +9,23 @@ import org.hmmk.sms.entity.ApiKey;
 import org.hmmk.sms.entity.Sender;
 import org.hmmk.sms.entity.Tenant;
 import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.service.ApiKeyCache;
 import org.hmmk.sms.service.SmsJobService;
+import org.hmmk.sms.service.TransactionalSmsService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.UUID;
 
 import static io.restassured.RestAssured.given;
+import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -29,8 +37,15 @@ public class PublicSmsResourceTest {
     @InjectMock
     SmsJobService smsJobService;
 
+    @InjectMock
+    TransactionalSmsService transactionalSmsService;
+
+    @Inject
+    ApiKeyCache apiKeyCache;
+
     private String apiKeyStr;
     private String tenantId;
+    private String apiKeyId;
 
     @BeforeEach
     @Transactional
@@ -58,6 +73,7 @@ public class PublicSmsResourceTest {
         apiKey.tenantId = tenantId;
         apiKey.persist();
         this.apiKeyStr = apiKey.apiKey;
+        this.apiKeyId = apiKey.id;
     }
 
     @Test
@@ -66,12 +82,35 @@ public class PublicSmsResourceTest {
         request.setTo("+251911000000");
         request.setMessage("Hello Public");
 
+        mockTransactionalSend();
+
+        given()
+                .contentType(ContentType.JSON)
+                .header("API-Key", apiKeyStr)
+                .body(request)
+                .when()
+                .post("/api/p/sms/send")
+                .then()
+                .statusCode(200)
+                .body("id", notNullValue())
+                .body("recipientId", notNullValue())
+                .body("jobType", equalTo("TRANSACTIONAL"));
+    }
+
+    @Test
+    public void testScheduledSmsCreatesJob() {
+        PublicSmsRequest request = new PublicSmsRequest();
+        request.setTo("+251911000000");
+        request.setMessage("Hello later");
+        request.setScheduledAt(Instant.now().plus(1, ChronoUnit.HOURS));
+
         SmsJob mockJob = new SmsJob();
         mockJob.id = UUID.randomUUID();
         mockJob.jobType = SmsJob.JobType.SINGLE;
         mockJob.status = SmsJob.JobStatus.SCHEDULED;
 
-        Mockito.when(smsJobService.sendSingle(eq(tenantId), anyString(), any(SingleSmsRequest.class), any()))
+        Mockito.when(smsJobService.sendSingleFromVerifiedSender(eq(tenantId), anyString(),
+                        any(SingleSmsRequest.class), any()))
                 .thenReturn(mockJob);
 
         given()
@@ -82,7 +121,9 @@ public class PublicSmsResourceTest {
                 .post("/api/p/sms/send")
                 .then()
                 .statusCode(200)
-                .body("id", notNullValue());
+                .body("jobType", equalTo("SINGLE"));
+
+        Mockito.verifyNoInteractions(transactionalSmsService);
     }
 
     @Test
@@ -100,4 +141,48 @@ public class PublicSmsResourceTest {
                 .then()
                 .statusCode(401);
     }
+
+    @Test
+    public void testRevokedKeyIsRejectedDespiteCache() {
+        PublicSmsRequest request = new PublicSmsRequest();
+        request.setTo("+251911000000");
+        request.setMessage("Hello Public");
+
+        mockTransactionalSend();
+
+        given()
+                .contentType(ContentType.JSON)
+                .header("API-Key", apiKeyStr)
+                .body(request)
+                .when()
+                .post("/api/p/sms/send")
+                .then()
+                .statusCode(200);
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            ApiKey.deleteById(apiKeyId);
+            apiKeyCache.invalidateKey(apiKeyId);
+        });
+
+        given()
+                .contentType(ContentType.JSON)
+                .header("API-Key", apiKeyStr)
+                .body(request)
+                .when()
+                .post("/api/p/sms/send")
+                .then()
+                .statusCode(401);
+    }
+
+    private void mockTransactionalSend() {
+        SmsJob rollup = new SmsJob();
+        rollup.id = UUID.randomUUID();
+        SmsRecipient recipient = new SmsRecipient();
+        recipient.id = UUID.randomUUID();
+        recipient.job = rollup;
+        recipient.smsCount = 1;
+
+        Mockito.when(transactionalSmsService.send(any(ApiKeyCache.ResolvedKey.class), anyString(), anyString(), any()))
+                .thenReturn(recipient);
+    }
 }
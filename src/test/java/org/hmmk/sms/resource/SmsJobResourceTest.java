@@ -7,6 +7,7 @@ import io.restassured.http.ContentType;
 import org.eclipse.microprofile.jwt.JsonWebToken;
 import org.hmmk.sms.dto.sms.GroupSmsRequest;
 import org.hmmk.sms.dto.sms.SingleSmsRequest;
+import org.hmmk.sms.dto.sms.SmsJobProgressResponse;
 import org.hmmk.sms.entity.sms.SmsJob;
 import org.hmmk.sms.service.SmsJobService;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,7 +16,7 @@ import org.mockito.Mockito;
 
 import jakarta.transaction.Transactional;
 
-import java.io.InputStream;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.UUID;
 
@@ -99,9 +100,9 @@ public class SmsJobResourceTest {
         SmsJob mockJob = new SmsJob();
         mockJob.id = UUID.randomUUID();
         mockJob.jobType = SmsJob.JobType.GROUP;
-        // Case: Pending Approval
+        // Recipients are expanded in the background
         mockJob.approvalStatus = SmsJob.ApprovalStatus.PENDING;
-        mockJob.status = SmsJob.JobStatus.PENDING_APPROVAL;
+        mockJob.status = SmsJob.JobStatus.INGESTING;
 
         Mockito.when(smsJobService.sendToGroup(eq(TENANT_ID), eq(USER_ID), any(GroupSmsRequest.class)))
                 .thenReturn(mockJob);
@@ -112,9 +113,10 @@ public class SmsJobResourceTest {
                 .when()
                 .post("/api/sms/group")
                 .then()
-                .statusCode(200)
+                .statusCode(202)
                 .body("id", notNullValue())
-                .body("message", is("Group SMS job created and pending approval"));
+                .body("status", is("INGESTING"))
+                .body("message", is("Group SMS job accepted, recipients are being added"));
     }
 
     @Test
@@ -126,10 +128,10 @@ public class SmsJobResourceTest {
         SmsJob mockJob = new SmsJob();
         mockJob.id = UUID.randomUUID();
         mockJob.jobType = SmsJob.JobType.BULK;
-        mockJob.approvalStatus = SmsJob.ApprovalStatus.APPROVED;
-        mockJob.status = SmsJob.JobStatus.SCHEDULED;
+        mockJob.approvalStatus = SmsJob.ApprovalStatus.PENDING;
+        mockJob.status = SmsJob.JobStatus.INGESTING;
 
-        Mockito.when(smsJobService.sendBulk(eq(TENANT_ID), eq(USER_ID), any(InputStream.class), any()))
+        Mockito.when(smsJobService.sendBulk(eq(TENANT_ID), eq(USER_ID), any(Path.class), any()))
                 .thenReturn(mockJob);
 
         given()
@@ -140,8 +142,38 @@ public class SmsJobResourceTest {
                 .when()
                 .post("/api/sms/bulk")
                 .then()
-                .statusCode(200)
+                .statusCode(202)
                 .body("id", notNullValue())
-                .body("message", is("Bulk SMS job created and scheduled"));
+                .body("status", is("INGESTING"))
+                .body("message", is("Bulk SMS job accepted, recipients are being added"));
+    }
+
+    @Test
+    @TestSecurity(user = "tenant-admin", roles = "tenant_admin")
+    public void testGetJobProgress() {
+        Mockito.when(jwt.getClaim("tenantId")).thenReturn(TENANT_ID);
+
+        UUID jobId = UUID.randomUUID();
+        SmsJobProgressResponse progress = SmsJobProgressResponse.builder()
+                .jobId(jobId)
+                .status(SmsJob.JobStatus.INGESTING)
+                .rowsParsed(1200)
+                .rowsAccepted(1150)
+                .rowsRejected(30)
+                .rowsDuplicate(20)
+                .rowsPersisted(1000)
+                .build();
+
+        Mockito.when(smsJobService.getIngestionProgress(jobId, TENANT_ID)).thenReturn(progress);
+
+        given()
+                .when()
+                .get("/api/sms/" + jobId + "/progress")
+                .then()
+                .statusCode(200)
+                .body("status", is("INGESTING"))
+                .body("rowsParsed", is(1200))
+                .body("rowsRejected", is(30))
+                .body("rowsPersisted", is(1000));
     }
 }
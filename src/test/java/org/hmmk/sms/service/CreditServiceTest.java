@@ -0,0 +1,200 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
+import jakarta.ws.rs.BadRequestException;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.credit.CreditBalanceSnapshot;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry.EntryType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class CreditServiceTest {
+
+    @Inject
+    CreditService creditService;
+
+    @Inject
+    EntityManager em;
+
+    @Inject
+    DatabaseSupport db;
+
+    private String tenantId;
+
+    @BeforeEach
+    public void setup() {
+        tenantId = QuarkusTransaction.requiringNew().call(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Credit Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = 100;
+            tenant.persist();
+            return tenant.id;
+        });
+    }
+
+    @Test
+    public void testConcurrentReservationsNeverOverdraw() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 150; i++) {
+                String reference = "job-" + i;
+                results.add(executor.submit(() -> creditService.tryReserve(tenantId, 1, reference)));
+            }
+            long reserved = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get()) {
+                    reserved++;
+                }
+            }
+            assertEquals(100, reserved);
+            assertEquals(0L, balance());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testRolledBackReservationIsReturned() {
+        assertThrows(IllegalStateException.class, () -> QuarkusTransaction.requiringNew().run(() -> {
+            creditService.reserve(tenantId, 40, "job");
+            throw new IllegalStateException("rollback");
+        }));
+        assertEquals(100L, balance());
+    }
+
+    @Test
+    public void testReserveFailsWithoutTouchingBalance() {
+        assertThrows(BadRequestException.class, () -> creditService.reserve(tenantId, 101, "job"));
+        assertFalse(creditService.tryReserve(tenantId, 101, "job"));
+        creditService.refund(tenantId, 5, EntryType.REFUND, "job");
+        assertEquals(105L, balance());
+    }
+
+    @Test
+    public void testLedgerRecordsChangesAndFoldsIntoSnapshot() {
+        creditService.add(tenantId, 50, EntryType.PURCHASE, "payment-1");
+        creditService.reserve(tenantId, 30, "job-1");
+        creditService.refund(tenantId, 10, EntryType.DELIVERY_FAIL_REFUND, "job-1");
+        assertEquals(130L, ledgerBalance());
+
+        creditService.foldLedger();
+
+        CreditBalanceSnapshot snapshot = QuarkusTransaction.requiringNew()
+                .call(() -> CreditBalanceSnapshot.<CreditBalanceSnapshot>findById(tenantId));
+        assertEquals(130L, snapshot.balance);
+        assertEquals(3L, QuarkusTransaction.requiringNew().call(() -> CreditLedgerEntry.count("tenantId", tenantId)));
+        assertEquals(-30L, QuarkusTransaction.requiringNew().call(() -> CreditLedgerEntry.<CreditLedgerEntry>find(
+                "tenantId = ?1 and entryType = ?2", tenantId, EntryType.RESERVE).firstResult().amount));
+        creditService.reserve(tenantId, 5, "job-2");
+        assertEquals(125L, ledgerBalance());
+        assertEquals(125L, balance());
+    }
+
+    @Test
+    public void testEntryCommittedBehindTheFoldIsReconciled() {
+        creditService.reserve(tenantId, 10, "job-1");
+        creditService.foldLedger();
+
+        // A reservation whose transaction committed only after a fold had already passed its id
+        QuarkusTransaction.requiringNew().run(() -> {
+            Tenant.update("smsCredit = smsCredit - 7 where id = ?1", tenantId);
+            CreditLedgerEntry late = CreditLedgerEntry.builder()
+                    .tenantId(tenantId)
+                    .entryType(EntryType.RESERVE)
+                    .amount(-7)
+                    .reference("job-2")
+                    .build();
+            late.persistAndFlush();
+            CreditBalanceSnapshot.update("lastEntryId = ?1 where tenantId = ?2", late.id, tenantId);
+        });
+        assertEquals(90L, ledgerBalance());
+
+        creditService.foldLedger();
+
+        assertEquals(83L, ledgerBalance());
+        assertEquals(83L, balance());
+    }
+
+    @Test
+    public void testLeasedTenantCanSpendLessThanABlock() {
+        // Below the 1000 credit block, so the lease cannot be refilled
+        String leased = leasedTenant(500);
+        assertTrue(creditService.tryReserve(leased, 1, "job-1"));
+        assertEquals(499L, balance(leased));
+        assertFalse(creditService.tryReserve(leased, 500, "job-2"));
+    }
+
+    @Test
+    public void testLeasedTenantCanSpendCreditHeldByOtherStripes() throws Exception {
+        String leased = leasedTenant(1500);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Another thread's stripe takes a block, leaving 500 in the database
+            assertTrue(executor.submit(() -> creditService.tryReserve(leased, 1, "job-1")).get());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(500L, balance(leased));
+
+        assertTrue(creditService.tryReserve(leased, 800, "job-2"));
+        assertFalse(creditService.tryReserve(leased, 800, "job-3"));
+        assertEquals(699L, QuarkusTransaction.requiringNew().call(() -> creditService.getBalance(leased)));
+    }
+
+    /**
+     * Creates the tenant listed in sms.credits.lease.tenants for tests, replacing the one of an earlier test.
+     */
+    private String leasedTenant(long credits) {
+        String leased = "lease-test-tenant";
+        creditService.releaseLeases();
+        QuarkusTransaction.requiringNew().run(() -> {
+            CreditLedgerEntry.delete("tenantId", leased);
+            CreditBalanceSnapshot.deleteById(leased);
+            Tenant.deleteById(leased);
+        });
+        String id = QuarkusTransaction.requiringNew().call(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Leased Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = credits;
+            tenant.persist();
+            return tenant.id;
+        });
+        QuarkusTransaction.requiringNew().run(() -> em.createNativeQuery(
+                        "UPDATE " + db.tableName(Tenant.class) + " SET id = :leased WHERE id = :id")
+                .setParameter("leased", leased)
+                .setParameter("id", id)
+                .executeUpdate());
+        return leased;
+    }
+
+    private long ledgerBalance() {
+        return QuarkusTransaction.requiringNew().call(() -> creditService.getBalance(tenantId));
+    }
+
+    private long balance() {
+        return balance(tenantId);
+    }
+
+    private long balance(String id) {
+        return QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(id).smsCredit);
+    }
+}
@@ -0,0 +1,102 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.NotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class DashboardCacheTest {
+
+    @Inject
+    DashboardCache cache;
+
+    @Test
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        String tenantId = UUID.randomUUID().toString();
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(() -> cache.get(tenantId, "dashboard", () -> {
+                    loads.incrementAndGet();
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return 42;
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<Integer> result : results) {
+                assertEquals(42, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void testInvalidationDropsOnlyTheTenantsViews() {
+        String tenantId = UUID.randomUUID().toString();
+        String otherTenantId = UUID.randomUUID().toString();
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get(tenantId, "dashboard", loads::incrementAndGet);
+        cache.get(otherTenantId, "dashboard", loads::incrementAndGet);
+        cache.get(tenantId, "dashboard", loads::incrementAndGet);
+        assertEquals(2, loads.get());
+
+        cache.invalidateTenant(tenantId);
+        cache.get(tenantId, "dashboard", loads::incrementAndGet);
+        cache.get(otherTenantId, "dashboard", loads::incrementAndGet);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testScopeKeepsAtMostMaxViews() {
+        DashboardCache bounded = new DashboardCache();
+        bounded.ttl = Duration.ofMinutes(1);
+        bounded.maxViews = 3;
+        AtomicInteger loads = new AtomicInteger();
+
+        for (int i = 0; i < 10; i++) {
+            bounded.get("tenant", "overview:" + i, loads::incrementAndGet);
+        }
+        assertEquals(10, loads.get());
+        // The newest view is kept, older ones made room for it
+        bounded.get("tenant", "overview:9", loads::incrementAndGet);
+        assertEquals(10, loads.get());
+        bounded.get("tenant", "overview:0", loads::incrementAndGet);
+        assertEquals(11, loads.get());
+    }
+
+    @Test
+    public void testFailedLoadIsNotCached() {
+        String tenantId = UUID.randomUUID().toString();
+
+        assertThrows(NotFoundException.class, () -> cache.get(tenantId, "dashboard", () -> {
+            throw new NotFoundException();
+        }));
+        assertEquals(7, cache.get(tenantId, "dashboard", () -> 7));
+    }
+}
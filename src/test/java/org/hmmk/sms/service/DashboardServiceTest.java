@@ -0,0 +1,96 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.hmmk.sms.dto.DashboardOverviewResponse;
+import org.hmmk.sms.dto.DashboardTimeSeriesPoint;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.service.DashboardService.Granularity;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class DashboardServiceTest {
+
+    @Inject
+    DashboardService dashboardService;
+
+    @Inject
+    SmsStatsService stats;
+
+    @Test
+    public void testHourlyOverviewWithSenderBreakdown() {
+        String tenantId = UUID.randomUUID().toString();
+        sent(tenantId, "sender-1", "2026-03-02T10:15:00Z", 2);
+        sent(tenantId, "sender-2", "2026-03-02T10:45:00Z", 3);
+        sent(tenantId, "sender-1", "2026-03-02T12:00:00Z", 1);
+        // Outside the window
+        sent(tenantId, "sender-1", "2026-03-02T14:00:00Z", 7);
+
+        DashboardOverviewResponse overview = dashboardService.getSmsOverview(tenantId, Granularity.HOUR,
+                Instant.parse("2026-03-02T10:30:00Z"), Instant.parse("2026-03-02T13:00:00Z"), true);
+
+        assertEquals(Instant.parse("2026-03-02T10:00:00Z"), overview.getFrom());
+        assertEquals(3, overview.getPoints().size());
+        DashboardTimeSeriesPoint first = overview.getPoints().get(0);
+        assertEquals("2026-03-02 10:00", first.getLabel());
+        assertEquals(5L, first.getTotalSms());
+        assertEquals(Map.of("sender-1", 2L, "sender-2", 3L), first.getSenders());
+        assertEquals(0L, overview.getPoints().get(1).getTotalSms());
+        assertEquals(1L, overview.getPoints().get(2).getTotalSms());
+    }
+
+    @Test
+    public void testWeeksStartOnMonday() {
+        String tenantId = UUID.randomUUID().toString();
+        // Sunday, then the Monday after
+        sent(tenantId, "sender-1", "2026-03-08T23:00:00Z", 1);
+        sent(tenantId, "sender-1", "2026-03-09T01:00:00Z", 4);
+
+        DashboardOverviewResponse overview = dashboardService.getSmsOverview(tenantId, Granularity.WEEK,
+                Instant.parse("2026-03-04T00:00:00Z"), Instant.parse("2026-03-10T00:00:00Z"), false);
+
+        assertEquals(2, overview.getPoints().size());
+        assertEquals(Instant.parse("2026-03-02T00:00:00Z"), overview.getPoints().get(0).getPeriodStart());
+        assertEquals("2026-W10", overview.getPoints().get(0).getLabel());
+        assertEquals(1L, overview.getPoints().get(0).getTotalSms());
+        assertEquals(4L, overview.getPoints().get(1).getTotalSms());
+        assertNull(overview.getPoints().get(0).getSenders());
+    }
+
+    @Test
+    public void testRangeIsBounded() {
+        assertThrows(BadRequestException.class, () -> dashboardService.getSmsOverview("tenant-1", Granularity.HOUR,
+                Instant.parse("2020-01-01T00:00:00Z"), Instant.parse("2026-01-01T00:00:00Z"), false));
+        assertThrows(BadRequestException.class, () -> dashboardService.getSmsOverview("tenant-1", Granularity.DAY,
+                Instant.parse("2026-01-02T00:00:00Z"), Instant.parse("2026-01-01T00:00:00Z"), false));
+    }
+
+    @Test
+    public void testOverviewKeyIsTheFlooredWindow() {
+        assertEquals(dashboardService.overviewKey(Granularity.DAY, Instant.parse("2026-01-01T00:00:00Z"),
+                        Instant.parse("2026-01-03T00:00:00Z"), false),
+                dashboardService.overviewKey(Granularity.DAY, Instant.parse("2026-01-01T13:45:10Z"),
+                        Instant.parse("2026-01-02T00:00:01Z"), false));
+        assertNotEquals(dashboardService.overviewKey(Granularity.DAY, Instant.parse("2026-01-01T00:00:00Z"),
+                        Instant.parse("2026-01-03T00:00:00Z"), false),
+                dashboardService.overviewKey(Granularity.HOUR, Instant.parse("2026-01-01T00:00:00Z"),
+                        Instant.parse("2026-01-03T00:00:00Z"), false));
+    }
+
+    private void sent(String tenantId, String senderId, String at, long count) {
+        QuarkusTransaction.requiringNew().run(() -> stats.increment(tenantId, Instant.parse(at),
+                SmsJob.SourceType.API, senderId, SmsRecipient.RecipientStatus.SENT, count));
+    }
+}
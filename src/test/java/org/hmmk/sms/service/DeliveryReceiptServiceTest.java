@@ -0,0 +1,127 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hmmk.sms.dto.sms.SmsOutcomeBatch;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.entity.webhook.WebhookEvent;
+import org.hmmk.sms.gateway.DeliveryReceipt;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class DeliveryReceiptServiceTest {
+
+    @Inject
+    DeliveryReceiptService receiptService;
+
+    @Inject
+    SmsDispatchService dispatchService;
+
+    private UUID delivered;
+    private UUID undelivered;
+    private String prefix;
+
+    @BeforeEach
+    public void setup() {
+        prefix = UUID.randomUUID().toString().substring(0, 8) + "-";
+        List<UUID> ids = QuarkusTransaction.requiringNew().call(() -> {
+            WebhookEvent.deleteAll();
+            SmsJob job = SmsJob.builder()
+                    .senderId("sender-1")
+                    .jobType(SmsJob.JobType.BULK)
+                    .sourceType(SmsJob.SourceType.CSV_UPLOAD)
+                    .messageContent("Hello")
+                    .messageType(SmsJob.MessageType.English)
+                    .totalRecipients(2L)
+                    .totalSmsCount(2L)
+                    .createdBy("user-1")
+                    .scheduledAt(Instant.now())
+                    .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                    .status(SmsJob.JobStatus.SENDING)
+                    .build();
+            job.tenantId = "tenant-1";
+            job.persist();
+            return List.of(recipient(job, "https://example.com/hooks"), recipient(job, null));
+        });
+        delivered = ids.get(0);
+        undelivered = ids.get(1);
+
+        dispatchService.recordOutcomes(List.of(sent(delivered, prefix + "1"), sent(undelivered, prefix + "2")));
+    }
+
+    @Test
+    public void testReceiptsAreAppliedInOneBatch() {
+        receiptService.apply(List.of(
+                pending(new DeliveryReceipt(prefix + "1", true, "DELIVRD")),
+                pending(new DeliveryReceipt(prefix + "2", false, "EXPIRED")),
+                pending(new DeliveryReceipt(prefix + "unknown", true, "DELIVRD"))));
+
+        SmsRecipient first = QuarkusTransaction.requiringNew().call(() -> SmsRecipient.findById(delivered));
+        assertEquals(SmsRecipient.RecipientStatus.SENT, first.status);
+        assertEquals(SmsRecipient.DeliveryStatus.DELIVERED, first.deliveryStatus);
+        assertNotNull(first.deliveredAt);
+        SmsRecipient second = QuarkusTransaction.requiringNew().call(() -> SmsRecipient.findById(undelivered));
+        assertEquals(SmsRecipient.DeliveryStatus.UNDELIVERED, second.deliveryStatus);
+
+        // The SENT report plus the DELIVERED one, both for the recipient with a webhook
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> WebhookEvent.count("recipientId", delivered)));
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() ->
+                WebhookEvent.count("recipientId = ?1 and status = ?2", delivered, "DELIVERED")));
+    }
+
+    @Test
+    public void testObservedReceiptIsWrittenInTheBackground() throws Exception {
+        receiptService.onReceipt(new DeliveryReceipt(prefix + "1", true, "DELIVRD"));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        SmsRecipient recipient;
+        do {
+            Thread.sleep(50);
+            recipient = QuarkusTransaction.requiringNew().call(() -> SmsRecipient.findById(delivered));
+        } while (recipient.deliveryStatus == null && System.currentTimeMillis() < deadline);
+
+        assertEquals(SmsRecipient.DeliveryStatus.DELIVERED, recipient.deliveryStatus);
+        assertNull(QuarkusTransaction.requiringNew().call(() ->
+                SmsRecipient.<SmsRecipient>findById(undelivered).deliveryStatus));
+        assertTrue(recipient.deliveredAt.isAfter(Instant.now().minusSeconds(60)));
+    }
+
+    private static UUID recipient(SmsJob job, String webhookUrl) {
+        SmsRecipient recipient = SmsRecipient.builder()
+                .senderId(job.senderId)
+                .job(job)
+                .phoneNumber("+251911000001")
+                .message("Hello")
+                .webhookUrl(webhookUrl)
+                .messageType(SmsJob.MessageType.English)
+                .status(SmsRecipient.RecipientStatus.PENDING)
+                .build();
+        recipient.tenantId = job.tenantId;
+        recipient.persist();
+        return recipient.id;
+    }
+
+    private static SmsOutcomeBatch.Outcome sent(UUID recipientId, String messageId) {
+        return SmsOutcomeBatch.Outcome.builder()
+                .recipientId(recipientId)
+                .status(SmsRecipient.RecipientStatus.SENT)
+                .messageId(messageId)
+                .build();
+    }
+
+    private static DeliveryReceiptService.PendingReceipt pending(DeliveryReceipt receipt) {
+        return new DeliveryReceiptService.PendingReceipt(receipt, Instant.now());
+    }
+}
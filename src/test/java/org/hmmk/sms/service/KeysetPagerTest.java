@@ -0,0 +1,87 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.hmmk.sms.dto.common.PaginatedResponse;
+import org.hmmk.sms.entity.contact.Contact;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class KeysetPagerTest {
+
+    @Inject
+    KeysetPager pager;
+
+    @Test
+    public void testCursorWalksEveryRowOnceNewestFirst() {
+        String tenantId = seed(25);
+
+        List<String> seen = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String cursor = null;
+        int pages = 0;
+        do {
+            PaginatedResponse<String> page = pager.page(Contact.class, Map.of("tenantId", tenantId), 0, 10, cursor,
+                    false, c -> c.id);
+            assertEquals(pages, page.page);
+            assertEquals(25, page.total);
+            assertFalse(page.approximateTotal);
+            seen.addAll(page.items);
+            pageSizes.add(page.items.size());
+            cursor = page.nextCursor;
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(List.of(10, 10, 5), pageSizes);
+        assertEquals(25, new HashSet<>(seen).size());
+        // Page 1 by number holds the same rows the cursor led to
+        assertEquals(seen.subList(10, 20), pager.page(Contact.class, Map.of("tenantId", tenantId), 1, 10, null,
+                false, c -> c.id).items);
+    }
+
+    @Test
+    public void testLastFullPageHasNoCursor() {
+        String tenantId = seed(10);
+
+        PaginatedResponse<String> page = pager.page(Contact.class, Map.of("tenantId", tenantId), 0, 10, null,
+                true, c -> c.id);
+
+        assertEquals(10, page.items.size());
+        assertNull(page.nextCursor);
+        // H2 has no planner estimates, so the total is counted
+        assertEquals(10, page.total);
+        assertFalse(page.approximateTotal);
+    }
+
+    @Test
+    public void testInvalidCursorIsRejected() {
+        assertThrows(BadRequestException.class, () -> pager.page(Contact.class, Map.of("tenantId", "t"), 0, 10,
+                "not-a-cursor", false, c -> c));
+    }
+
+    private String seed(int contacts) {
+        String tenantId = UUID.randomUUID().toString();
+        QuarkusTransaction.requiringNew().run(() -> {
+            for (int i = 0; i < contacts; i++) {
+                Contact contact = new Contact();
+                contact.tenantId = tenantId;
+                contact.phone = "+2519" + String.format("%08d", i);
+                contact.persist();
+            }
+        });
+        return tenantId;
+    }
+}
@@ -0,0 +1,51 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hmmk.sms.entity.sms.MessageBody;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class MessageBodyStoreTest {
+
+    @Inject
+    MessageBodyStore store;
+
+    @Test
+    public void testIdenticalTextsShareOneBody() {
+        String text = "Our annual sale starts tomorrow at all branches, " + UUID.randomUUID();
+
+        Long id = store.store(List.of(text, text)).get(text);
+        assertNotNull(id);
+        assertEquals(id, store.store(List.of(text)).get(text));
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() ->
+                MessageBody.count("digest", MessageBody.digest(text))));
+        assertEquals(Map.of(id, text), store.load(List.of(id)));
+    }
+
+    @Test
+    public void testShortTextsStayInline() {
+        SmsRecipient recipient = new SmsRecipient();
+        store.assign(recipient, "Your code is 123456");
+        assertEquals("Your code is 123456", recipient.message);
+        assertNull(recipient.messageBodyId);
+
+        String text = "Dear customer, your package is ready for pickup at the Bole branch.";
+        store.assign(recipient, text);
+        assertNull(recipient.message);
+        assertNotNull(recipient.messageBodyId);
+        assertTrue(store.store(List.of("Hi", text)).keySet().contains(text));
+        assertEquals(1, store.store(List.of("Hi", text)).size());
+    }
+}
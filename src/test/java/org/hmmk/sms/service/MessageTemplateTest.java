@@ -0,0 +1,47 @@
+package org.hmmk.sms.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void testPlaceholdersAreReplacedWithValues() {
+        MessageTemplate template = MessageTemplate.compile("Dear {name}, your balance is {balance} ETB.");
+        Map<String, String> values = Map.of("name", "Abebe", "balance", "120");
+
+        assertTrue(template.isPersonalized());
+        assertEquals("Dear Abebe, your balance is 120 ETB.", template.render(values::get));
+    }
+
+    @Test
+    public void testMissingValueFallsBack() {
+        MessageTemplate template = MessageTemplate.compile("Hi {name|there}! {city}");
+
+        assertEquals("Hi there! ", template.render(field -> null));
+        assertEquals("Hi there! Adama", template.render(field -> field.equals("city") ? "Adama" : " "));
+    }
+
+    @Test
+    public void testTextWithoutPlaceholdersIsNotPersonalized() {
+        String source = "Promo {50% off} ends {}, use { code }";
+        MessageTemplate template = MessageTemplate.compile(source);
+
+        assertFalse(template.isPersonalized());
+        assertSame(source, template.render(field -> "x"));
+    }
+
+    @Test
+    public void testStrayBracesAroundPlaceholderAreKept() {
+        MessageTemplate template = MessageTemplate.compile("{{name}} {unclosed {phone}");
+
+        assertEquals("{Abebe} {unclosed +251911000000", template.render(
+                Map.of("name", "Abebe", "phone", "+251911000000")::get));
+    }
+}
@@ -0,0 +1,70 @@
+package org.hmmk.sms.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PhoneNumberCsvReaderTest {
+
+    private PhoneNumberCsvReader reader;
+
+    @BeforeEach
+    public void setup() {
+        PhoneNumberNormalizer normalizer = new PhoneNumberNormalizer();
+        normalizer.defaultCountryCode = Optional.of("251");
+        reader = new PhoneNumberCsvReader();
+        reader.normalizer = normalizer;
+    }
+
+    @Test
+    public void testNormalizesAndDeduplicatesWhileCounting() {
+        String csv = """
+                phone
+                +251 911-22 33 44
+                00251911223344
+                0911223344
+                +251911000001
+                not-a-number
+                12345
+                """;
+        PhoneNumberCsvReader.Counters counters = new PhoneNumberCsvReader.Counters();
+        List<String> accepted = new ArrayList<>();
+
+        reader.read(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), counters, accepted::add);
+
+        assertEquals(List.of("+251911223344", "+251911000001"), accepted);
+        assertEquals(6, counters.rows);
+        assertEquals(2, counters.accepted);
+        assertEquals(2, counters.duplicates);
+        assertEquals(2, counters.rejected);
+    }
+
+    @Test
+    public void testLargeFileIsDeduplicatedExactly() {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 100_000; i++) {
+            csv.append(String.format("+2519%08d%n", i % 60_000));
+        }
+        PhoneNumberCsvReader.Counters counters = new PhoneNumberCsvReader.Counters();
+
+        reader.read(new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)), counters, n -> {
+        });
+
+        assertEquals(60_000, counters.accepted);
+        assertEquals(40_000, counters.duplicates);
+    }
+
+    @Test
+    public void testNumbersWithoutCountryCodeStayAsTheyAre() {
+        assertEquals("251911223344", reader.normalizer.normalize("251911223344"));
+        assertNull(reader.normalizer.normalize("+0911"));
+    }
+}
@@ -0,0 +1,383 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import io.smallrye.reactive.messaging.memory.InMemoryConnector;
+import io.smallrye.reactive.messaging.memory.InMemorySink;
+import jakarta.enterprise.inject.Any;
+import jakarta.inject.Inject;
+import org.hmmk.sms.dto.sms.SmsDispatchBatch;
+import org.hmmk.sms.dto.sms.SmsOutcomeBatch;
+import org.hmmk.sms.entity.SendRateLimit;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.contact.Contact;
+import org.hmmk.sms.entity.credit.CreditLedgerEntry;
+import org.hmmk.sms.entity.sms.SmsDailyStat;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class SmsDispatchServiceTest {
+
+    @Inject
+    SmsDispatchService dispatchService;
+
+    @Inject
+    ThroughputShaper shaper;
+
+    @Inject
+    MessageBodyStore messageBodies;
+
+    @Inject
+    @Any
+    InMemoryConnector connector;
+
+    private UUID jobId;
+
+    @BeforeEach
+    public void setup() {
+        connector.sink("sms-dispatch-high").clear();
+        connector.sink("sms-dispatch").clear();
+        connector.sink("sms-dispatch-low").clear();
+        jobId = QuarkusTransaction.requiringNew().call(() -> {
+            SmsRecipient.deleteAll();
+            SmsJob.deleteAll();
+            SmsDailyStat.deleteAll();
+
+            SmsJob job = SmsJob.builder()
+                    .senderId("sender-1")
+                    .jobType(SmsJob.JobType.BULK)
+                    .sourceType(SmsJob.SourceType.CSV_UPLOAD)
+                    .messageContent("Hello")
+                    .messageType(SmsJob.MessageType.English)
+                    .totalRecipients(3L)
+                    .totalSmsCount(3L)
+                    .createdBy("user-1")
+                    .scheduledAt(Instant.now().minusSeconds(5))
+                    .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                    .status(SmsJob.JobStatus.SCHEDULED)
+                    .build();
+            job.tenantId = "tenant-1";
+            job.persist();
+
+            for (int i = 0; i < 3; i++) {
+                SmsRecipient recipient = SmsRecipient.builder()
+                        .senderId(job.senderId)
+                        .job(job)
+                        .phoneNumber("+25191100000" + i)
+                        .message("Hello")
+                        .messageType(SmsJob.MessageType.English)
+                        .status(SmsRecipient.RecipientStatus.PENDING)
+                        .build();
+                recipient.tenantId = "tenant-1";
+                recipient.persist();
+            }
+            return job.id;
+        });
+    }
+
+    @Test
+    public void testDueJobIsPublishedAndCompletedFromOutcomes() {
+        dispatchService.poll();
+
+        InMemorySink<SmsDispatchBatch> sink = connector.sink("sms-dispatch-low");
+        assertEquals(1, sink.received().size());
+        SmsDispatchBatch batch = sink.received().get(0).getPayload();
+        assertEquals(jobId, batch.getJobId());
+        assertEquals(3, batch.getRecipients().size());
+        assertEquals(SmsJob.JobStatus.SENDING, jobStatus());
+
+        List<SmsOutcomeBatch.Outcome> outcomes = batch.getRecipients().stream()
+                .map(item -> SmsOutcomeBatch.Outcome.builder()
+                        .recipientId(item.getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.SENT)
+                        .build())
+                .toList();
+        dispatchService.recordOutcomes(outcomes);
+        dispatchService.poll();
+
+        assertEquals(SmsJob.JobStatus.COMPLETED, jobStatus());
+        assertEquals(1, sink.received().size());
+    }
+
+    @Test
+    public void testJobWithOnlyFailedRecipientsIsMarkedFailed() {
+        dispatchService.poll();
+
+        SmsDispatchBatch batch = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0).getPayload();
+        List<SmsOutcomeBatch.Outcome> outcomes = batch.getRecipients().stream()
+                .map(item -> SmsOutcomeBatch.Outcome.builder()
+                        .recipientId(item.getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.FAILED)
+                        .build())
+                .toList();
+        dispatchService.recordOutcomes(outcomes);
+        dispatchService.poll();
+
+        assertEquals(SmsJob.JobStatus.FAILED, jobStatus());
+    }
+
+    @Test
+    public void testStaleJobOnlyRepublishesRecipientsNeverPublished() {
+        dispatchService.poll();
+        InMemorySink<SmsDispatchBatch> sink = connector.sink("sms-dispatch-low");
+        assertEquals(1, sink.received().size());
+
+        // The lease runs out while all three are still queued, without outcomes
+        Instant lapsed = Instant.now().minus(1, ChronoUnit.HOURS);
+        QuarkusTransaction.requiringNew().run(() ->
+                SmsJob.update("updatedAt = ?1 where id = ?2", lapsed, jobId));
+        dispatchService.poll();
+
+        assertEquals(1, sink.received().size());
+        assertEquals(SmsJob.JobStatus.SENDING, jobStatus());
+
+        // A recipient whose batch was never confirmed is published again, and only it
+        UUID unconfirmed = sink.received().get(0).getPayload().getRecipients().get(0).getRecipientId();
+        QuarkusTransaction.requiringNew().run(() ->
+                SmsRecipient.update("publishedAt = null where id = ?1", unconfirmed));
+        dispatchService.poll();
+
+        assertEquals(2, sink.received().size());
+        List<SmsDispatchBatch.Item> republished = sink.received().get(1).getPayload().getRecipients();
+        assertEquals(1, republished.size());
+        assertEquals(unconfirmed, republished.get(0).getRecipientId());
+    }
+
+    @Test
+    public void testFailedRecipientsAreRefundedOnce() {
+        String tenantId = QuarkusTransaction.requiringNew().call(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Refund Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = 0;
+            tenant.persist();
+            SmsJob.update("tenantId = ?1 where id = ?2", tenant.id, jobId);
+            SmsRecipient.update("tenantId = ?1 where job.id = ?2", tenant.id, jobId);
+            return tenant.id;
+        });
+        dispatchService.poll();
+
+        List<SmsDispatchBatch.Item> items = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0)
+                .getPayload().getRecipients();
+        List<SmsOutcomeBatch.Outcome> outcomes = List.of(
+                SmsOutcomeBatch.Outcome.builder().recipientId(items.get(0).getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.SENT).build(),
+                SmsOutcomeBatch.Outcome.builder().recipientId(items.get(1).getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.FAILED).build(),
+                SmsOutcomeBatch.Outcome.builder().recipientId(items.get(2).getRecipientId())
+                        .status(SmsRecipient.RecipientStatus.FAILED).build());
+        dispatchService.recordOutcomes(outcomes);
+        // A redelivered outcome message changes nothing
+        dispatchService.recordOutcomes(outcomes);
+
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+        CreditLedgerEntry refund = QuarkusTransaction.requiringNew().call(() -> CreditLedgerEntry
+                .<CreditLedgerEntry>find("tenantId", tenantId).singleResult());
+        assertEquals(CreditLedgerEntry.EntryType.DELIVERY_FAIL_REFUND, refund.entryType);
+        assertEquals(2L, refund.amount);
+        assertEquals(jobId.toString(), refund.reference);
+    }
+
+    @Test
+    public void testOutcomesAreCountedOnceInDailyRollup() {
+        dispatchService.poll();
+
+        SmsDispatchBatch batch = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0).getPayload();
+        List<SmsOutcomeBatch.Outcome> outcomes = batch.getRecipients().stream()
+                .map(item -> SmsOutcomeBatch.Outcome.builder()
+                        .recipientId(item.getRecipientId())
+                        .status(item == batch.getRecipients().get(0)
+                                ? SmsRecipient.RecipientStatus.FAILED
+                                : SmsRecipient.RecipientStatus.SENT)
+                        .build())
+                .toList();
+        dispatchService.recordOutcomes(outcomes);
+        // Redelivered outcomes change nothing
+        dispatchService.recordOutcomes(outcomes);
+
+        Map<SmsRecipient.RecipientStatus, Long> counts = QuarkusTransaction.requiringNew().call(() ->
+                SmsDailyStat.<SmsDailyStat>list("tenantId = ?1 and sourceType = ?2", "tenant-1",
+                                SmsJob.SourceType.CSV_UPLOAD).stream()
+                        .collect(Collectors.toMap(stat -> stat.status, stat -> stat.messageCount)));
+        assertEquals(Map.of(SmsRecipient.RecipientStatus.SENT, 2L, SmsRecipient.RecipientStatus.FAILED, 1L), counts);
+    }
+
+    @AfterEach
+    public void removeRateLimits() {
+        QuarkusTransaction.requiringNew().run(() -> SendRateLimit.deleteAll());
+        shaper.refresh();
+    }
+
+    @Test
+    public void testSenderRateLimitSpreadsJobOverPolls() throws Exception {
+        limitSender(2.0);
+
+        dispatchService.poll();
+        InMemorySink<SmsDispatchBatch> sink = connector.sink("sms-dispatch-low");
+        assertEquals(1, sink.received().size());
+        assertEquals(2, sink.received().get(0).getPayload().getRecipients().size());
+
+        // Out of tokens until the bucket refills
+        dispatchService.poll();
+        assertEquals(1, sink.received().size());
+
+        Thread.sleep(600);
+        dispatchService.poll();
+        assertEquals(2, sink.received().size());
+        assertEquals(1, sink.received().get(1).getPayload().getRecipients().size());
+    }
+
+    @Test
+    public void testHighPriorityJobIsNotHeldBackByRateLimit() {
+        limitSender(1.0);
+        setPriority(SmsJob.Priority.HIGH);
+
+        dispatchService.poll();
+
+        assertEquals(0, connector.sink("sms-dispatch-low").received().size());
+        InMemorySink<SmsDispatchBatch> high = connector.sink("sms-dispatch-high");
+        assertEquals(1, high.received().size());
+        assertEquals(3, high.received().get(0).getPayload().getRecipients().size());
+        assertEquals(SmsJob.Priority.HIGH, high.received().get(0).getPayload().getPriority());
+    }
+
+    @Test
+    public void testEachPriorityHasItsOwnLane() {
+        assertEquals(SmsJob.Priority.LOW, QuarkusTransaction.requiringNew().call(() ->
+                SmsJob.<SmsJob>findById(jobId).priority));
+        setPriority(SmsJob.Priority.NORMAL);
+
+        dispatchService.poll();
+
+        assertEquals(1, connector.sink("sms-dispatch").received().size());
+        assertEquals(0, connector.sink("sms-dispatch-low").received().size());
+        assertEquals(0, connector.sink("sms-dispatch-high").received().size());
+    }
+
+    @Test
+    public void testTemplateIsRenderedPerRecipientAtDispatch() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Contact.delete("tenantId", "tenant-1");
+            contact("+251911000000", "Abebe", Map.of("city", "Adama"));
+            contact("+251911000001", "ሰላም", null);
+            SmsJob.update("messageContent = ?1 where id = ?2", "Hi {name|there}, see you in {city}", jobId);
+            SmsRecipient.update("message = null where job.id = ?1", jobId);
+        });
+
+        dispatchService.poll();
+
+        SmsDispatchBatch batch = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0).getPayload();
+        Map<String, SmsDispatchBatch.Item> byPhone = batch.getRecipients().stream()
+                .collect(Collectors.toMap(SmsDispatchBatch.Item::getPhoneNumber, item -> item));
+        assertEquals("Hi Abebe, see you in Adama", byPhone.get("+251911000000").getMessage());
+        assertEquals(SmsJob.MessageType.English, byPhone.get("+251911000000").getMessageType());
+        assertEquals("Hi ሰላም, see you in ", byPhone.get("+251911000001").getMessage());
+        assertEquals(SmsJob.MessageType.UNICODE, byPhone.get("+251911000001").getMessageType());
+        // No contact with this number
+        assertEquals("Hi there, see you in ", byPhone.get("+251911000002").getMessage());
+    }
+
+    @Test
+    public void testRenderedTextTakingMorePartsIsChargedTheDifference() {
+        // 1 GSM-7 part as written, 2 UCS-2 parts once an Amharic name is filled in
+        String template = "Dear {name|customer}, your order has been dispatched and will reach you within two " +
+                "working days.";
+        String tenantId = QuarkusTransaction.requiringNew().call(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Template Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = 1;
+            tenant.persist();
+            SmsJob.update("tenantId = ?1, messageContent = ?2 where id = ?3", tenant.id, template, jobId);
+            SmsRecipient.update("tenantId = ?1, message = null where job.id = ?2", tenant.id, jobId);
+            for (String phone : List.of("+251911000000", "+251911000001")) {
+                Contact contact = Contact.builder().phone(phone).name("ሰላማዊት").build();
+                contact.tenantId = tenant.id;
+                contact.persist();
+            }
+            return tenant.id;
+        });
+
+        dispatchService.poll();
+
+        SmsDispatchBatch batch = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0).getPayload();
+        // One extra part could be paid for, the other recipient with a long rendering is failed and refunded
+        assertEquals(2, batch.getRecipients().size());
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id = ?1 and status = ?2",
+                jobId, SmsRecipient.RecipientStatus.FAILED)));
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+        SmsDispatchBatch.Item charged = batch.getRecipients().stream()
+                .filter(item -> item.getMessageType() == SmsJob.MessageType.UNICODE)
+                .findFirst().orElseThrow();
+        assertEquals(charged.getMessage(), QuarkusTransaction.requiringNew().call(() ->
+                SmsRecipient.<SmsRecipient>findById(charged.getRecipientId()).message));
+    }
+
+    @Test
+    public void testPlainTextIsSentOncePerBatch() {
+        QuarkusTransaction.requiringNew().run(() ->
+                SmsRecipient.update("message = null where job.id = ?1", jobId));
+
+        dispatchService.poll();
+
+        SmsDispatchBatch batch = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0).getPayload();
+        assertEquals("Hello", batch.getMessage());
+        assertTrue(batch.getRecipients().stream().allMatch(item -> item.getMessage() == null));
+    }
+
+    @Test
+    public void testSharedBodyIsResolvedAtDispatch() {
+        String text = "Dear customer, our offices are closed on Friday for the holiday.";
+        Long bodyId = messageBodies.store(List.of(text)).get(text);
+        QuarkusTransaction.requiringNew().run(() ->
+                SmsRecipient.update("message = null, messageBodyId = ?1 where job.id = ?2", bodyId, jobId));
+
+        dispatchService.poll();
+
+        SmsDispatchBatch batch = connector.<SmsDispatchBatch>sink("sms-dispatch-low").received().get(0).getPayload();
+        assertTrue(batch.getRecipients().stream().allMatch(item -> text.equals(item.getMessage())));
+    }
+
+    private static void contact(String phone, String name, Map<String, String> customFields) {
+        Contact contact = Contact.builder()
+                .phone(phone)
+                .name(name)
+                .customFields(customFields)
+                .build();
+        contact.tenantId = "tenant-1";
+        contact.persist();
+    }
+
+    private void setPriority(SmsJob.Priority priority) {
+        QuarkusTransaction.requiringNew().run(() ->
+                SmsJob.update("priority = ?1 where id = ?2", priority, jobId));
+    }
+
+    private void limitSender(double messagesPerSecond) {
+        QuarkusTransaction.requiringNew().run(() -> SendRateLimit.builder()
+                .scope(SendRateLimit.Scope.SENDER)
+                .scopeId("sender-1")
+                .messagesPerSecond(messagesPerSecond)
+                .build()
+                .persist());
+        shaper.refresh();
+    }
+
+    private SmsJob.JobStatus jobStatus() {
+        return QuarkusTransaction.requiringNew().call(() -> SmsJob.<SmsJob>findById(jobId).status);
+    }
+}
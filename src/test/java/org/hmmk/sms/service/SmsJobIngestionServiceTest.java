@@ -0,0 +1,225 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hmmk.sms.dto.sms.BulkSmsRequest;
+import org.hmmk.sms.dto.sms.GroupSmsRequest;
+import org.hmmk.sms.dto.sms.SmsJobProgressResponse;
+import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.contact.Contact;
+import org.hmmk.sms.entity.contact.ContactGroup;
+import org.hmmk.sms.entity.contact.ContactGroupMember;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsJobIngestion;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@QuarkusTest
+public class SmsJobIngestionServiceTest {
+
+    @Inject
+    SmsJobService smsJobService;
+
+    @Inject
+    SmsJobIngestionService ingestionService;
+
+    private String tenantId;
+    private String senderId;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Ingestion Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = 10;
+            tenant.smsApprovalThreshold = 100;
+            tenant.persist();
+            tenantId = tenant.id;
+
+            Sender sender = new Sender();
+            sender.tenantId = tenantId;
+            sender.name = "INGEST";
+            sender.status = Sender.SenderStatus.ACTIVE;
+            sender.persist();
+            senderId = sender.id;
+        });
+    }
+
+    @Test
+    public void testBulkJobIsIngestedInBackground() throws Exception {
+        Path csv = Files.createTempFile("ingestion-test", ".csv");
+        Files.writeString(csv, "phone\n+251911000001\n+251911000002\n+251911000002\ninvalid\n");
+
+        SmsJob job = smsJobService.sendBulk(tenantId, "user-1", csv, bulkRequest());
+        assertEquals(SmsJob.JobStatus.INGESTING, job.status);
+
+        SmsJobProgressResponse progress = awaitFinished(job.id);
+        assertEquals(SmsJob.JobStatus.SCHEDULED, progress.getStatus());
+        assertEquals(4, progress.getRowsParsed());
+        assertEquals(2, progress.getRowsAccepted());
+        assertEquals(1, progress.getRowsRejected());
+        assertEquals(1, progress.getRowsDuplicate());
+        assertEquals(2, progress.getRowsPersisted());
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", job.id)));
+        assertEquals(8L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+    }
+
+    @Test
+    public void testInsufficientCreditsFailJobAndDropRecipients() throws Exception {
+        StringBuilder rows = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            rows.append(String.format("+2519110%05d%n", i));
+        }
+        Path csv = Files.createTempFile("ingestion-test", ".csv");
+        Files.writeString(csv, rows);
+
+        SmsJob job = smsJobService.sendBulk(tenantId, "user-1", csv, bulkRequest());
+
+        SmsJobProgressResponse progress = awaitFinished(job.id);
+        assertEquals(SmsJob.JobStatus.FAILED, progress.getStatus());
+        assertNotNull(progress.getError());
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", job.id)));
+        assertEquals(10L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+    }
+
+    @Test
+    public void testGroupJobIsExpandedInsideTheDatabase() throws Exception {
+        String groupId = QuarkusTransaction.requiringNew().call(() -> {
+            ContactGroup group = new ContactGroup();
+            group.tenantId = tenantId;
+            group.name = "Ingestion group";
+            group.persist();
+            for (int i = 0; i < 3; i++) {
+                Contact contact = new Contact();
+                contact.tenantId = tenantId;
+                contact.phone = "+25191200000" + i;
+                contact.persist();
+                ContactGroupMember member = ContactGroupMember.builder()
+                        .contact(contact)
+                        .group(group)
+                        .build();
+                member.tenantId = tenantId;
+                member.persist();
+            }
+            return group.id;
+        });
+
+        GroupSmsRequest request = GroupSmsRequest.builder()
+                .senderId(senderId)
+                .groupId(groupId)
+                .message("Hello group")
+                .build();
+        SmsJob job = smsJobService.sendToGroup(tenantId, "user-1", request);
+        assertEquals(SmsJob.JobStatus.INGESTING, job.status);
+
+        SmsJobProgressResponse progress = awaitFinished(job.id);
+        assertEquals(SmsJob.JobStatus.SCHEDULED, progress.getStatus());
+        assertEquals(3, progress.getRowsPersisted());
+        // The text is kept once on the job and rendered at dispatch, not copied into every recipient
+        assertEquals(3L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count(
+                "job.id = ?1 and status = ?2 and message is null",
+                job.id, SmsRecipient.RecipientStatus.PENDING)));
+        assertEquals(3L, QuarkusTransaction.requiringNew().call(() -> SmsJob.<SmsJob>findById(job.id).totalRecipients));
+    }
+
+    @Test
+    public void testIngestionWithRecentHeartbeatIsNotFailedForSlowProgress() {
+        UUID jobId = ingestingJob(Instant.now().minus(Duration.ofHours(1)), Instant.now());
+
+        ingestionService.failStaleIngestions();
+
+        assertEquals(SmsJob.JobStatus.INGESTING,
+                QuarkusTransaction.requiringNew().call(() -> SmsJob.<SmsJob>findById(jobId).status));
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", jobId)));
+    }
+
+    @Test
+    public void testIngestionWithStaleHeartbeatIsFailed() {
+        Instant hourAgo = Instant.now().minus(Duration.ofHours(1));
+        UUID jobId = ingestingJob(hourAgo, hourAgo);
+
+        ingestionService.failStaleIngestions();
+
+        SmsJobIngestion progress = QuarkusTransaction.requiringNew().call(() -> SmsJobIngestion.findById(jobId));
+        assertNotNull(progress.finishedAt);
+        assertEquals("Ingestion stalled", progress.error);
+        assertEquals(SmsJob.JobStatus.FAILED,
+                QuarkusTransaction.requiringNew().call(() -> SmsJob.<SmsJob>findById(jobId).status));
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", jobId)));
+    }
+
+    /**
+     * An INGESTING job with one recipient written, whose progress last moved and last had a heartbeat as given.
+     */
+    private UUID ingestingJob(Instant updatedAt, Instant heartbeatAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            SmsJob job = SmsJob.builder()
+                    .senderId(senderId)
+                    .jobType(SmsJob.JobType.BULK)
+                    .sourceType(SmsJob.SourceType.CSV_UPLOAD)
+                    .messageContent("Hello")
+                    .messageType(SmsJob.MessageType.English)
+                    .totalRecipients(0L)
+                    .totalSmsCount(0L)
+                    .createdBy("user-1")
+                    .scheduledAt(Instant.now())
+                    .approvalStatus(SmsJob.ApprovalStatus.PENDING)
+                    .status(SmsJob.JobStatus.INGESTING)
+                    .build();
+            job.tenantId = tenantId;
+            job.persist();
+
+            SmsRecipient recipient = SmsRecipient.builder()
+                    .senderId(senderId)
+                    .job(job)
+                    .phoneNumber("+251911000001")
+                    .messageType(SmsJob.MessageType.English)
+                    .status(SmsRecipient.RecipientStatus.PENDING)
+                    .build();
+            recipient.tenantId = tenantId;
+            recipient.persist();
+
+            SmsJobIngestion progress = SmsJobIngestion.builder()
+                    .jobId(job.id)
+                    .build();
+            progress.tenantId = tenantId;
+            progress.persist();
+            SmsJobIngestion.flush();
+            SmsJobIngestion.update("updatedAt = ?1, heartbeatAt = ?2 where jobId = ?3",
+                    updatedAt, heartbeatAt, job.id);
+            return job.id;
+        });
+    }
+
+    private BulkSmsRequest bulkRequest() {
+        return BulkSmsRequest.builder()
+                .senderId(senderId)
+                .message("Hello")
+                .build();
+    }
+
+    private SmsJobProgressResponse awaitFinished(UUID jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            SmsJobProgressResponse progress = QuarkusTransaction.requiringNew()
+                    .call(() -> smsJobService.getIngestionProgress(jobId, tenantId));
+            if (progress.getFinishedAt() != null || System.currentTimeMillis() > deadline) {
+                return progress;
+            }
+            Thread.sleep(50);
+        }
+    }
+}
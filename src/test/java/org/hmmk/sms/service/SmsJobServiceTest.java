@@ -0,0 +1,119 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.hmmk.sms.dto.sms.BulkSmsRequest;
+import org.hmmk.sms.dto.sms.PublicSmsBatchRequest;
+import org.hmmk.sms.dto.sms.PublicSmsBatchResponse;
+import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class SmsJobServiceTest {
+
+    @Inject
+    SmsJobService smsJobService;
+
+    private String tenantId;
+    private String senderId;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Batch Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = 10;
+            tenant.persist();
+            tenantId = tenant.id;
+
+            Sender sender = new Sender();
+            sender.tenantId = tenantId;
+            sender.name = "BATCH";
+            sender.status = Sender.SenderStatus.ACTIVE;
+            sender.persist();
+            senderId = sender.id;
+        });
+    }
+
+    @Test
+    public void testBatchWritesOneJobAndReportsEachItem() {
+        PublicSmsBatchRequest request = PublicSmsBatchRequest.builder()
+                .messages(List.of(
+                        item("+251911000001", "Your code is 1234"),
+                        item("not-a-number", "Ignored"),
+                        item("0911000002", "ሰላም"),
+                        item("+251911000003", " ")))
+                .build();
+
+        PublicSmsBatchResponse response = smsJobService.sendBatchFromVerifiedSender(tenantId, "API-KEY:test",
+                senderId, request);
+
+        assertNotNull(response.getJobId());
+        assertEquals(2, response.getAccepted());
+        assertEquals(2, response.getRejected());
+        assertEquals(2L, response.getTotalSmsCount());
+        assertEquals(PublicSmsBatchResponse.ItemStatus.ACCEPTED, response.getResults().get(0).getStatus());
+        assertEquals(PublicSmsBatchResponse.ItemStatus.REJECTED, response.getResults().get(1).getStatus());
+        assertNull(response.getResults().get(1).getRecipientId());
+        assertEquals(PublicSmsBatchResponse.ItemStatus.REJECTED, response.getResults().get(3).getStatus());
+
+        SmsRecipient unicode = QuarkusTransaction.requiringNew().call(() ->
+                SmsRecipient.<SmsRecipient>findById(response.getResults().get(2).getRecipientId()));
+        assertEquals("+251911000002", unicode.phoneNumber);
+        assertEquals(SmsJob.MessageType.UNICODE, unicode.messageType);
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", response.getJobId())));
+        assertEquals(8L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+        assertEquals(SmsJob.Priority.NORMAL, QuarkusTransaction.requiringNew().call(() ->
+                SmsJob.<SmsJob>findById(response.getJobId()).priority));
+    }
+
+    @Test
+    public void testHighPriorityIsReservedForSingleMessages() {
+        BulkSmsRequest request = BulkSmsRequest.builder()
+                .senderId(senderId)
+                .message("Big sale")
+                .priority(SmsJob.Priority.HIGH)
+                .build();
+
+        assertThrows(BadRequestException.class,
+                () -> smsJobService.sendBulk(tenantId, "user-1", Path.of("unused.csv"), request));
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> SmsJob.count("tenantId", tenantId)));
+    }
+
+    @Test
+    public void testCancelRefundsAScheduledJobOnce() {
+        PublicSmsBatchRequest request = PublicSmsBatchRequest.builder()
+                .messages(List.of(item("+251911000001", "One"), item("+251911000002", "Two")))
+                .build();
+        PublicSmsBatchResponse response = smsJobService.sendBatchFromVerifiedSender(tenantId, "API-KEY:test",
+                senderId, request);
+
+        SmsJob canceled = smsJobService.cancelJob(response.getJobId(), tenantId);
+
+        assertEquals(SmsJob.JobStatus.CANCELED, canceled.status);
+        assertEquals(10L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id = ?1 and status = ?2",
+                response.getJobId(), SmsRecipient.RecipientStatus.CANCELED)));
+        assertThrows(BadRequestException.class, () -> smsJobService.cancelJob(response.getJobId(), tenantId));
+        assertEquals(10L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+    }
+
+    private static PublicSmsBatchRequest.Item item(String to, String message) {
+        return PublicSmsBatchRequest.Item.builder().to(to).message(message).build();
+    }
+}
@@ -0,0 +1,71 @@
+package org.hmmk.sms.service;
+
+import org.hmmk.sms.dto.AdminDashboardTick;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SmsMetricsTest {
+
+    @Test
+    public void testSecondAddsUpConcurrentRecordings() throws Exception {
+        AdminDashboardTick tick;
+        long second;
+        do {
+            // Recordings that straddle a second boundary land in two slots, so retry until they don't
+            SmsMetrics metrics = new SmsMetrics();
+            second = System.currentTimeMillis() / 1000;
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            for (int i = 0; i < 1000; i++) {
+                String tenantId = i % 2 == 0 ? "a" : "b";
+                executor.execute(() -> {
+                    metrics.outcomes(tenantId, 2, 1);
+                    metrics.receipts(1, 0);
+                    metrics.creditsBurned(3);
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+            tick = metrics.snapshot(second);
+        } while (System.currentTimeMillis() / 1000 != second);
+
+        assertEquals(2000, tick.getSent());
+        assertEquals(1000, tick.getFailed());
+        assertEquals(1000, tick.getDelivered());
+        assertEquals(3000, tick.getCreditsBurned());
+        assertEquals(Map.of("a", 1000L, "b", 1000L), tick.getTenantTps());
+    }
+
+    @Test
+    public void testQueueDepthIsPublishedMinusConsumedPerLane() {
+        SmsMetrics metrics = new SmsMetrics();
+
+        metrics.queued(SmsJob.Priority.HIGH, 50);
+        metrics.queued(SmsJob.Priority.NORMAL, 30);
+        metrics.consumed(SmsJob.Priority.HIGH, 20);
+        // Consuming what was published before a restart does not go below empty
+        metrics.consumed(SmsJob.Priority.LOW, 10);
+
+        Map<String, Long> depth = metrics.snapshot(System.currentTimeMillis() / 1000).getQueueDepth();
+        assertEquals(30L, depth.get("HIGH"));
+        assertEquals(30L, depth.get("NORMAL"));
+        assertEquals(0L, depth.get("LOW"));
+    }
+
+    @Test
+    public void testSecondNoLongerKeptReadsAsZero() {
+        SmsMetrics metrics = new SmsMetrics();
+        long now = System.currentTimeMillis() / 1000;
+        metrics.outcomes("a", 5, 0);
+
+        AdminDashboardTick old = metrics.snapshot(now - 64);
+        assertEquals(0, old.getSent());
+        assertEquals(Map.of(), old.getTenantTps());
+    }
+}
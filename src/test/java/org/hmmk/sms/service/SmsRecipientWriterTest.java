@@ -0,0 +1,64 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+public class SmsRecipientWriterTest {
+
+    @Inject
+    SmsRecipientWriter recipientWriter;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            SmsRecipient.deleteAll();
+            SmsJob.deleteAll();
+        });
+    }
+
+    @Test
+    public void testWritesAllRowsAcrossSeveralChunks() {
+        int rows = 2500;
+        UUID jobId = QuarkusTransaction.requiringNew().call(() -> {
+            SmsJob job = SmsJob.builder()
+                    .senderId("sender-1")
+                    .jobType(SmsJob.JobType.BULK)
+                    .sourceType(SmsJob.SourceType.CSV_UPLOAD)
+                    .messageContent("Hello")
+                    .messageType(SmsJob.MessageType.English)
+                    .totalRecipients((long) rows)
+                    .totalSmsCount((long) rows)
+                    .createdBy("user-1")
+                    .scheduledAt(Instant.now())
+                    .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                    .status(SmsJob.JobStatus.SCHEDULED)
+                    .build();
+            job.tenantId = "tenant-1";
+            job.persistAndFlush();
+
+            try (SmsRecipientWriter.Batch batch = recipientWriter.open(job, "Hello", SmsJob.MessageType.English, null)) {
+                for (int i = 0; i < rows; i++) {
+                    batch.add(String.format("+2519%08d", i));
+                }
+                assertEquals(rows, batch.count());
+            }
+            return job.id;
+        });
+
+        long written = QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count(
+                "job.id = ?1 and status = ?2 and tenantId = ?3",
+                jobId, SmsRecipient.RecipientStatus.PENDING, "tenant-1"));
+        assertEquals(rows, written);
+    }
+}
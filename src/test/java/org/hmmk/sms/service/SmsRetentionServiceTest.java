@@ -0,0 +1,158 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.sms.MessageBody;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@QuarkusTest
+public class SmsRetentionServiceTest {
+
+    @Inject
+    SmsRetentionService retentionService;
+
+    private String shortTenant;
+    private String defaultTenant;
+
+    @BeforeEach
+    public void setup() {
+        shortTenant = tenant(1);
+        defaultTenant = tenant(null);
+    }
+
+    @Test
+    public void testExpiredRecipientsAndJobsAreRemovedPerTenant() {
+        Instant old = Instant.now().minus(100, ChronoUnit.DAYS);
+        UUID expiredJob = job(shortTenant, old);
+        UUID recentJob = job(shortTenant, Instant.now());
+        UUID keptJob = job(defaultTenant, old);
+
+        retentionService.maintain();
+
+        assertNull(QuarkusTransaction.requiringNew().call(() -> SmsJob.findById(expiredJob)));
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", expiredJob)));
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", recentJob)));
+        // Twelve months by default
+        assertNotNull(QuarkusTransaction.requiringNew().call(() -> SmsJob.findById(keptJob)));
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("job.id", keptJob)));
+    }
+
+    @Test
+    public void testPartitionedPlanPurgesEveryTenantKeepingLessThanTheLongest() {
+        YearMonth now = YearMonth.of(2026, 10);
+        List<Object[]> tenants = List.of(
+                new Object[]{"default", null},
+                new Object[]{"short", 3},
+                new Object[]{"long", 24});
+
+        SmsRetentionService.RetentionPlan partitioned = SmsRetentionService.plan(now, tenants, 12, true);
+
+        assertEquals(Instant.parse("2024-11-01T00:00:00Z"), partitioned.partitionCutoff());
+        assertEquals(Map.of(
+                "default", Instant.parse("2025-11-01T00:00:00Z"),
+                "short", Instant.parse("2026-08-01T00:00:00Z")), partitioned.tenantCutoffs());
+
+        SmsRetentionService.RetentionPlan unpartitioned = SmsRetentionService.plan(now, tenants, 12, false);
+        assertEquals(3, unpartitioned.tenantCutoffs().size());
+        assertEquals(Instant.parse("2024-11-01T00:00:00Z"), unpartitioned.tenantCutoffs().get("long"));
+
+        // Without a longer override the default retention is covered by detaching partitions alone
+        assertEquals(Map.of("short", Instant.parse("2026-08-01T00:00:00Z")), SmsRetentionService.plan(now,
+                List.of(new Object[]{"default", null}, new Object[]{"short", 3}), 12, true).tenantCutoffs());
+    }
+
+    @Test
+    public void testOnlyLongUnusedBodiesWithoutRecipientsArePurged() {
+        Instant old = Instant.now().minus(3, ChronoUnit.DAYS);
+        Long orphan = body(old);
+        Long recentlyUsed = body(Instant.now());
+        Long referenced = body(old);
+        UUID jobId = job(defaultTenant, Instant.now());
+        QuarkusTransaction.requiringNew().run(() ->
+                SmsRecipient.update("messageBodyId = ?1 where job.id = ?2", referenced, jobId));
+
+        retentionService.purgeMessageBodies(Instant.now().minus(1, ChronoUnit.DAYS));
+
+        assertNull(QuarkusTransaction.requiringNew().call(() -> MessageBody.findById(orphan)));
+        assertNotNull(QuarkusTransaction.requiringNew().call(() -> MessageBody.findById(recentlyUsed)));
+        assertNotNull(QuarkusTransaction.requiringNew().call(() -> MessageBody.findById(referenced)));
+        assertEquals(2L, QuarkusTransaction.requiringNew().call(() ->
+                SmsRecipient.count("messageBodyId", referenced)));
+    }
+
+    private static String tenant(Integer retentionMonths) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Retention Tenant " + UUID.randomUUID();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsRetentionMonths = retentionMonths;
+            tenant.persist();
+            return tenant.id;
+        });
+    }
+
+    private static UUID job(String tenantId, Instant createdAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            SmsJob job = SmsJob.builder()
+                    .senderId("sender-1")
+                    .jobType(SmsJob.JobType.BULK)
+                    .sourceType(SmsJob.SourceType.CSV_UPLOAD)
+                    .messageContent("Hello")
+                    .messageType(SmsJob.MessageType.English)
+                    .totalRecipients(2L)
+                    .totalSmsCount(2L)
+                    .createdBy("user-1")
+                    .scheduledAt(createdAt)
+                    .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                    .status(SmsJob.JobStatus.COMPLETED)
+                    .build();
+            job.tenantId = tenantId;
+            job.persist();
+            for (int i = 0; i < 2; i++) {
+                SmsRecipient recipient = SmsRecipient.builder()
+                        .senderId(job.senderId)
+                        .job(job)
+                        .phoneNumber("+25191100000" + i)
+                        .messageType(SmsJob.MessageType.English)
+                        .status(SmsRecipient.RecipientStatus.SENT)
+                        .build();
+                recipient.tenantId = tenantId;
+                recipient.persist();
+            }
+            SmsJob.getEntityManager().flush();
+            SmsJob.update("createdAt = ?1 where id = ?2", createdAt, job.id);
+            SmsRecipient.update("createdAt = ?1 where job.id = ?2", createdAt, job.id);
+            return job.id;
+        });
+    }
+
+    private static Long body(Instant lastUsedAt) {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            String text = "Our annual sale starts tomorrow at all branches, " + UUID.randomUUID();
+            MessageBody body = MessageBody.builder()
+                    .digest(MessageBody.digest(text))
+                    .body(text)
+                    .createdAt(lastUsedAt)
+                    .lastUsedAt(lastUsedAt)
+                    .build();
+            body.persist();
+            return body.id;
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package org.hmmk.sms.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    public void testGrantsNoMoreThanCapacityThenRefills() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        assertEquals(5, bucket.tryAcquire(100, 0));
+        assertEquals(0, bucket.tryAcquire(1, 0));
+        assertEquals(3, bucket.tryAcquire(100, SECOND * 3 / 10));
+        // A long idle period refills no more than the capacity
+        assertEquals(5, bucket.tryAcquire(100, SECOND * 60));
+    }
+
+    @Test
+    public void testReleasedTokensCanBeTakenAgain() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        assertEquals(4, bucket.tryAcquire(4, 0));
+        bucket.release(3);
+        assertEquals(4, bucket.tryAcquire(100, 0));
+    }
+
+    @Test
+    public void testConsumeOverdrawsUntilTimeCatchesUp() {
+        TokenBucket bucket = new TokenBucket(10, 5, 0);
+
+        bucket.consume(15, 0);
+        assertEquals(0, bucket.tryAcquire(1, SECOND));
+        assertEquals(1, bucket.tryAcquire(100, SECOND + SECOND / 10));
+    }
+}
@@ -0,0 +1,83 @@
+package org.hmmk.sms.service;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import org.hmmk.sms.entity.Sender;
+import org.hmmk.sms.entity.Tenant;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@QuarkusTest
+public class TransactionalSmsServiceTest {
+
+    @Inject
+    TransactionalSmsService transactionalSmsService;
+
+    @Inject
+    SmsDispatchService dispatchService;
+
+    private ApiKeyCache.ResolvedKey apiKey;
+    private String tenantId;
+
+    @BeforeEach
+    public void setup() {
+        QuarkusTransaction.requiringNew().run(() -> {
+            Tenant tenant = new Tenant();
+            tenant.name = "Transactional Tenant " + System.nanoTime();
+            tenant.status = Tenant.TenantStatus.ACTIVE;
+            tenant.smsCredit = 3;
+            tenant.persist();
+            tenantId = tenant.id;
+
+            Sender sender = new Sender();
+            sender.tenantId = tenantId;
+            sender.name = "OTP";
+            sender.status = Sender.SenderStatus.ACTIVE;
+            sender.persist();
+            apiKey = new ApiKeyCache.ResolvedKey("key-1", tenantId, sender.id, sender.name,
+                    Sender.SenderStatus.ACTIVE);
+        });
+    }
+
+    @Test
+    public void testMessagesShareOneRollupJob() {
+        SmsRecipient first = transactionalSmsService.send(apiKey, "0911000001", "Your code is 1234", null);
+        SmsRecipient second = transactionalSmsService.send(apiKey, "+251911000002", "Your code is 5678", null);
+
+        UUID rollupId = first.job.id;
+        assertEquals(rollupId, second.job.id);
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() -> SmsJob.count("tenantId", tenantId)));
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+        assertEquals("+251911000001", QuarkusTransaction.requiringNew().call(() ->
+                SmsRecipient.<SmsRecipient>findById(first.id).phoneNumber));
+
+        transactionalSmsService.refreshRollups();
+        dispatchService.completeFinishedJobs();
+
+        SmsJob rollup = QuarkusTransaction.requiringNew().call(() -> SmsJob.findById(rollupId));
+        assertEquals(SmsJob.JobType.TRANSACTIONAL, rollup.jobType);
+        assertEquals(SmsJob.JobStatus.SENDING, rollup.status);
+        assertEquals(2L, rollup.totalRecipients);
+        assertEquals(2L, rollup.totalSmsCount);
+    }
+
+    @Test
+    public void testInsufficientCreditsLeaveNoMessage() {
+        String longMessage = "x".repeat(500);
+
+        assertThrows(BadRequestException.class,
+                () -> transactionalSmsService.send(apiKey, "+251911000001", longMessage, null));
+
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> SmsRecipient.count("tenantId", tenantId)));
+        assertEquals(3L, QuarkusTransaction.requiringNew().call(() -> Tenant.<Tenant>findById(tenantId).smsCredit));
+    }
+}
@@ -0,0 +1,140 @@
+package org.hmmk.sms.service;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.core.WireMockConfiguration;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+import org.hmmk.sms.dto.sms.SmsOutcomeBatch;
+import org.hmmk.sms.entity.sms.SmsJob;
+import org.hmmk.sms.entity.sms.SmsRecipient;
+import org.hmmk.sms.entity.webhook.WebhookDeadLetter;
+import org.hmmk.sms.entity.webhook.WebhookEvent;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class WebhookDispatcherTest {
+
+    @Inject
+    SmsDispatchService dispatchService;
+
+    @Inject
+    WebhookDispatcher webhookDispatcher;
+
+    static WireMockServer wireMockServer;
+
+    private UUID recipientId;
+
+    @BeforeAll
+    static void startWireMock() {
+        wireMockServer = new WireMockServer(WireMockConfiguration.options().dynamicPort());
+        wireMockServer.start();
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        if (wireMockServer != null) {
+            wireMockServer.stop();
+        }
+    }
+
+    @BeforeEach
+    public void setup() {
+        wireMockServer.resetAll();
+        recipientId = QuarkusTransaction.requiringNew().call(() -> {
+            WebhookEvent.deleteAll();
+            WebhookDeadLetter.deleteAll();
+
+            SmsJob job = SmsJob.builder()
+                    .senderId("sender-1")
+                    .jobType(SmsJob.JobType.SINGLE)
+                    .sourceType(SmsJob.SourceType.API)
+                    .messageContent("Your code is 1234")
+                    .messageType(SmsJob.MessageType.English)
+                    .totalRecipients(1L)
+                    .totalSmsCount(1L)
+                    .createdBy("API-KEY:test")
+                    .scheduledAt(Instant.now())
+                    .approvalStatus(SmsJob.ApprovalStatus.APPROVED)
+                    .status(SmsJob.JobStatus.SENDING)
+                    .build();
+            job.tenantId = "tenant-1";
+            job.persist();
+
+            SmsRecipient recipient = SmsRecipient.builder()
+                    .senderId(job.senderId)
+                    .job(job)
+                    .phoneNumber("+251911000001")
+                    .message(job.messageContent)
+                    .webhookUrl(wireMockServer.baseUrl() + "/hooks/sms")
+                    .messageType(SmsJob.MessageType.English)
+                    .status(SmsRecipient.RecipientStatus.PENDING)
+                    .build();
+            recipient.tenantId = job.tenantId;
+            recipient.persist();
+            return recipient.id;
+        });
+    }
+
+    @Test
+    public void testOutcomeIsPostedToWebhook() throws Exception {
+        wireMockServer.stubFor(post(urlEqualTo("/hooks/sms")).willReturn(aResponse().withStatus(204)));
+
+        dispatchService.recordOutcomes(List.of(outcome(SmsRecipient.RecipientStatus.SENT)));
+        // A redelivered outcome must not queue a second report
+        dispatchService.recordOutcomes(List.of(outcome(SmsRecipient.RecipientStatus.SENT)));
+        assertEquals(1L, QuarkusTransaction.requiringNew().call(() -> WebhookEvent.count()));
+
+        webhookDispatcher.poll();
+
+        awaitUntil(() -> QuarkusTransaction.requiringNew().call(() -> WebhookEvent.count()) == 0);
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/hooks/sms"))
+                .withRequestBody(matchingJsonPath("$.recipientId", equalTo(recipientId.toString())))
+                .withRequestBody(matchingJsonPath("$.status", equalTo("SENT"))));
+    }
+
+    @Test
+    public void testFailingWebhookEndsInDeadLetters() throws Exception {
+        wireMockServer.stubFor(post(urlEqualTo("/hooks/sms")).willReturn(aResponse().withStatus(500)));
+
+        dispatchService.recordOutcomes(List.of(outcome(SmsRecipient.RecipientStatus.FAILED)));
+
+        awaitUntil(() -> {
+            webhookDispatcher.poll();
+            return QuarkusTransaction.requiringNew().call(() -> WebhookDeadLetter.count()) == 1;
+        });
+        assertEquals(0L, QuarkusTransaction.requiringNew().call(() -> WebhookEvent.count()));
+        WebhookDeadLetter deadLetter = QuarkusTransaction.requiringNew()
+                .call(() -> WebhookDeadLetter.<WebhookDeadLetter>findAll().firstResult());
+        assertEquals(recipientId, deadLetter.recipientId);
+        assertEquals(2, deadLetter.attempts);
+        assertEquals("HTTP 500", deadLetter.lastError);
+    }
+
+    private SmsOutcomeBatch.Outcome outcome(SmsRecipient.RecipientStatus status) {
+        return SmsOutcomeBatch.Outcome.builder()
+                .recipientId(recipientId)
+                .status(status)
+                .build();
+    }
+
+    private static void awaitUntil(Supplier<Boolean> condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.get()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for webhook delivery");
+            Thread.sleep(50);
+        }
+    }
+}